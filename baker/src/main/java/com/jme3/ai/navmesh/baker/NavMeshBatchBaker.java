@@ -0,0 +1,299 @@
+package com.jme3.ai.navmesh.baker;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.jme3.ai.navmesh.gen.GeometryProviderBuilder;
+import com.jme3.ai.navmesh.gen.NavMeshBuildReport;
+import com.jme3.ai.navmesh.gen.NavMeshBuildSettings;
+import com.jme3.ai.navmesh.gen.NavMeshBuilder;
+import com.jme3.ai.navmesh.gen.NavMeshExporter;
+import com.jme3.ai.navmesh.gen.NavMeshProperties;
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.plugins.FileLocator;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.system.NativeLibraryLoader;
+
+/**
+ * Bakes the navigation meshes of all the j3o scenes of a directory, without a
+ * running application, a window or a GL context, so that the navmeshes can be
+ * baked by the asset pipeline on a build machine.
+ * <p>
+ * The scenes are found recursively and baked in parallel. The settings of a
+ * scene are read, with {@link NavMeshProperties}, from the first existing file
+ * among:
+ * <ol>
+ * <li><code>&lt;scene&gt;.properties</code>, next to the scene;</li>
+ * <li><code>navmesh.properties</code>, in the directory of the scene;</li>
+ * <li>the file supplied with <code>--settings</code>.</li>
+ * </ol>
+ * The default {@link NavMeshBuildSettings} are used otherwise. For each scene,
+ * the navmesh asset <code>&lt;scene&gt;-NavMesh.j3o</code>, the same navmesh in
+ * the binary format of {@link com.jme3.ai.navmesh.NavMeshFile}
+ * (<code>&lt;scene&gt;-NavMesh.nmb</code>) and the build report
+ * <code>&lt;scene&gt;-NavMeshBuildReport.json</code> are written to the output
+ * directory, in the same relative location as the scene.
+ *
+ * <pre>
+ * Usage: NavMeshBatchBaker &lt;sceneDir&gt; [outputDir] [options]
+ *   --settings &lt;file&gt;   the default settings
+ *   --threads &lt;n&gt;       the number of scenes baked at once (default: 2)
+ *   --timeout &lt;s&gt;       the timeout of each scene, in seconds (default: 600)
+ *   --physics           bake the collision shapes instead of the render meshes
+ * </pre>
+ *
+ * The process exits with status 1 if any scene fails.
+ *
+ * @author capdevon
+ */
+public class NavMeshBatchBaker {
+
+    private static final Logger logger = Logger.getLogger(NavMeshBatchBaker.class.getName());
+
+    private final Path sceneDir;
+    private final Path outputDir;
+    private final AssetManager assetManager;
+    private final NavMeshExporter exporter;
+    private NavMeshBuildSettings defaultSettings = new NavMeshBuildSettings();
+    private int threads = 2;
+    private long timeout = 600;
+    private boolean physics = false;
+
+    /**
+     * Instantiate a <code>NavMeshBatchBaker</code>
+     *
+     * @param sceneDir  the directory of the scenes, also used as asset root
+     * @param outputDir the directory of the navmeshes and of the reports
+     */
+    public NavMeshBatchBaker(Path sceneDir, Path outputDir) {
+        this.sceneDir = sceneDir;
+        this.outputDir = outputDir;
+        this.assetManager = new DesktopAssetManager(true);
+        this.assetManager.registerLocator(sceneDir.toString(), FileLocator.class);
+        this.exporter = new NavMeshExporter(assetManager);
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: NavMeshBatchBaker <sceneDir> [outputDir]"
+                    + " [--settings <file>] [--threads <n>] [--timeout <s>] [--physics]");
+            System.exit(2);
+        }
+
+        Path sceneDir = Path.of(args[0]);
+        Path outputDir = sceneDir;
+        NavMeshBuildSettings settings = null;
+        int threads = 2;
+        long timeout = 600;
+        boolean physics = false;
+
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--settings":
+                        settings = NavMeshProperties.load(new File(args[++i]));
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--timeout":
+                        timeout = Long.parseLong(args[++i]);
+                        break;
+                    case "--physics":
+                        physics = true;
+                        break;
+                    default:
+                        outputDir = Path.of(args[i]);
+                        break;
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            logger.log(Level.SEVERE, "Invalid arguments.", ex);
+            System.exit(2);
+        }
+
+        // the scenes may hold physics controls, whose shapes are native objects
+        NativeLibraryLoader.loadNativeLibrary("bulletjme", true);
+
+        NavMeshBatchBaker baker = new NavMeshBatchBaker(sceneDir, outputDir);
+        if (settings != null) {
+            baker.setDefaultSettings(settings);
+        }
+        baker.setThreads(threads);
+        baker.setTimeout(timeout);
+        baker.setPhysics(physics);
+
+        int failures = baker.bakeAll();
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Bakes every scene of the scene directory.
+     *
+     * @return the number of scenes which failed
+     */
+    public int bakeAll() {
+        List<Path> scenes;
+        try (Stream<Path> stream = Files.walk(sceneDir)) {
+            scenes = stream
+                    .filter(path -> path.toString().endsWith(".j3o"))
+                    .filter(path -> !path.getFileName().toString().endsWith("-NavMesh.j3o"))
+                    .sorted()
+                    .collect(Collectors.toList());
+
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Error: Failed to list the scenes!", ex);
+            return 1;
+        }
+
+        logger.log(Level.INFO, "Baking {0} scenes, {1} at once.", new Object[] { scenes.size(), threads });
+        long start = System.nanoTime();
+
+        // the scenes are baked by a pool, and their tiles by another one shared by all the builders
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ExecutorService tilePool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        int failures = 0;
+        try {
+            List<Future<Boolean>> results = new ArrayList<>(scenes.size());
+            for (Path scene : scenes) {
+                results.add(pool.submit(() -> bake(scene, tilePool)));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    if (!results.get(i).get()) {
+                        failures++;
+                    }
+                } catch (InterruptedException | ExecutionException ex) {
+                    logger.log(Level.SEVERE, "Error: Failed to bake " + scenes.get(i), ex);
+                    failures++;
+                }
+            }
+        } finally {
+            // the builders do not own the tile pool: it is closed with the batch
+            pool.shutdownNow();
+            tilePool.shutdownNow();
+        }
+
+        logger.log(Level.INFO, "Baked {0} of {1} scenes in {2} s.", new Object[] {
+                scenes.size() - failures, scenes.size(), (System.nanoTime() - start) / 1_000_000_000 });
+        return failures;
+    }
+
+    /**
+     * Bakes a single scene.
+     *
+     * @param scene    the path of the scene
+     * @param tilePool the executor of the tiles
+     * @return {@code true} if the navmesh was written
+     */
+    private boolean bake(Path scene, ExecutorService tilePool) throws IOException {
+        Path relative = sceneDir.relativize(scene);
+        String name = scene.getFileName().toString().replaceFirst("\\.j3o$", "");
+        Path targetDir = outputDir.resolve(relative).getParent();
+        Files.createDirectories(targetDir);
+
+        NavMeshBuildSettings settings = loadSettings(scene, name);
+
+        Spatial model = assetManager.loadModel(relative.toString().replace(File.separatorChar, '/'));
+        Node root;
+        if (model instanceof Node) {
+            root = (Node) model;
+        } else {
+            root = new Node(name);
+            root.attachChild(model);
+        }
+        root.updateGeometricState();
+
+        List<Geometry> sources = physics
+                ? GeometryProviderBuilder.collectPhysicsSources(root)
+                : GeometryProviderBuilder.collectSources(root);
+
+        NavMeshBuildReport report = new NavMeshBuildReport(name);
+        NavMeshBuilder builder = new NavMeshBuilder();
+        builder.setBuildReport(report);
+        builder.setTileExecutor(tilePool);
+        builder.setTimeout(timeout, TimeUnit.SECONDS);
+
+        Mesh navMesh;
+        try {
+            navMesh = builder.buildNavMesh(sources, settings);
+        } finally {
+            builder.shutdown();
+        }
+
+        report.save(targetDir.resolve(name + "-NavMeshBuildReport.json").toFile());
+        if (navMesh == null) {
+            logger.log(Level.WARNING, "NavMesh generation failed: {0}", scene);
+            return false;
+        }
+        exporter.save(navMesh, targetDir.resolve(name + "-NavMesh.j3o").toFile());
+        exporter.saveBinary(navMesh, targetDir.resolve(name + "-NavMesh.nmb").toFile());
+        return true;
+    }
+
+    /**
+     * @return the settings of the scene.
+     */
+    private NavMeshBuildSettings loadSettings(Path scene, String name) throws IOException {
+        Path[] candidates = {
+                scene.resolveSibling(name + ".properties"),
+                scene.resolveSibling("navmesh.properties")
+        };
+        for (Path file : candidates) {
+            if (Files.isRegularFile(file)) {
+                logger.log(Level.INFO, "Loading File={0}", file);
+                return NavMeshProperties.load(file.toFile());
+            }
+        }
+        return defaultSettings.clone();
+    }
+
+    /**
+     * @param defaultSettings the settings of the scenes without a properties file
+     */
+    public void setDefaultSettings(NavMeshBuildSettings defaultSettings) {
+        this.defaultSettings = defaultSettings;
+    }
+
+    /**
+     * @param threads the number of scenes baked at once
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @param timeout the timeout of each scene (in seconds)
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * @param physics {@code true} to bake the collision shapes of the rigid
+     *                bodies instead of the render meshes
+     */
+    public void setPhysics(boolean physics) {
+        this.physics = physics;
+    }
+
+}
@@ -1,8 +1,6 @@
 package com.examples;
 
 import java.io.File;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -14,8 +12,8 @@ import com.jme3.ai.control.PathViewer;
 import com.jme3.ai.navmesh.gen.GeometryProviderBuilder;
 import com.jme3.ai.navmesh.gen.NavMeshBuildSettings;
 import com.jme3.ai.navmesh.gen.NavMeshBuilder;
+import com.jme3.ai.navmesh.gen.NavMeshCache;
 import com.jme3.ai.navmesh.gen.NavMeshDebugRenderer;
-import com.jme3.ai.navmesh.gen.NavMeshExporter;
 import com.examples.terrain.FractalHeightMap;
 import com.examples.terrain.TreeGenerator;
 import com.examples.util.MainCamera;
@@ -112,7 +110,6 @@ public class Test_NavMeshAgent extends SimpleApplication implements ActionListen
     private NavMeshAgentMT agent;
     private NavMeshDebugRenderer navMeshRenderer;
     private boolean showNavMesh = true;
-    private boolean bakeNavMesh = true;
 
     @Override
     public void simpleInitApp() {
@@ -206,29 +203,21 @@ public class Test_NavMeshAgent extends SimpleApplication implements ActionListen
 
         navMeshRenderer = new NavMeshDebugRenderer(assetManager);
 
-        if (bakeNavMesh) {
-            NavMeshBuildSettings nmSettings = new NavMeshBuildSettings();
-            nmSettings.setCellSize(.5f);
-            nmSettings.setCellHeight(.8f);
-            System.out.println(ReflectionToStringBuilder.toString(nmSettings, ToStringStyle.MULTI_LINE_STYLE));
-            
-            NavMeshBuilder builder = new NavMeshBuilder();
-            builder.setTimeout(40, TimeUnit.SECONDS);
-
-            List<Geometry> sources = GeometryProviderBuilder.collectSources(worldNode);
-            navMesh = builder.buildNavMesh(sources, nmSettings);
-            builder.shutdown();
-
-            Path dir = Paths.get("src/main/resources", "Scenes", "NavMesh");
-            File file = new File(dir.toFile(), "NavMesh.j3o");
-            NavMeshExporter exporter = new NavMeshExporter(assetManager);
-            exporter.save(navMesh, file);
-
-        } else {
-            System.out.println("Loading navmesh...");
-            Geometry geom = (Geometry) assetManager.loadModel("Scenes/NavMesh/NavMesh.j3o");
-            navMesh = geom.getMesh();
-        }
+        NavMeshBuildSettings nmSettings = new NavMeshBuildSettings();
+        nmSettings.setCellSize(.5f);
+        nmSettings.setCellHeight(.8f);
+        System.out.println(ReflectionToStringBuilder.toString(nmSettings, ToStringStyle.MULTI_LINE_STYLE));
+
+        // an unchanged scene is loaded from the cache instead of being baked again
+        NavMeshBuilder builder = new NavMeshBuilder();
+        builder.setTimeout(40, TimeUnit.SECONDS);
+        builder.setCache(new NavMeshCache(new File("navmesh-cache"), 256L * 1024 * 1024));
+
+        // the terrain heightfield and the tree shapes the physics collides with,
+        // instead of the detailed render meshes
+        List<Geometry> sources = GeometryProviderBuilder.collectPhysicsSources(worldNode);
+        navMesh = builder.buildNavMesh(sources, nmSettings);
+        builder.shutdown();
 
         if (navMesh != null) {
             navMeshRenderer.drawNavMesh(navMesh);
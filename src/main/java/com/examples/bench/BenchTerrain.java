@@ -0,0 +1,91 @@
+package com.examples.bench;
+
+import com.jme3.ai.navmesh.IndexedNavMesh;
+import com.jme3.ai.navmesh.NavMesh;
+import com.jme3.math.Vector3f;
+
+/**
+ * The generated terrain of the benchmarks: a grid of quads of one world unit,
+ * two cells each, on rolling hills, with optional holes.
+ *
+ * @author capdevon
+ */
+final class BenchTerrain {
+
+    /**
+     * Selects the quads left out of the terrain.
+     */
+    interface Holes {
+
+        /**
+         * @param x the column of the quad
+         * @param z the row of the quad
+         * @return {@code true} to leave the quad out
+         */
+        boolean isHole(int x, int z);
+    }
+
+    /**
+     * No hole: the terrain is a single open area.
+     */
+    static final Holes NONE = (x, z) -> false;
+
+    /**
+     * A wall every 40 quads, with a gap every 50 quads: the cross-map paths
+     * go round the walls.
+     */
+    static final Holes WALLS = (x, z) -> x % 40 == 20 && z % 50 > 4;
+
+    private BenchTerrain() {
+    }
+
+    /**
+     * Creates an {@link IndexedNavMesh} over the terrain, with its cells
+     * linked.
+     *
+     * @param size  the number of quads per side
+     * @param holes the quads to leave out
+     * @return a new navmesh
+     */
+    static NavMesh create(int size, Holes holes) {
+        NavMesh navMesh = new IndexedNavMesh();
+        addCells(navMesh, size, holes);
+        navMesh.linkCells();
+        return navMesh;
+    }
+
+    /**
+     * Adds the cells of the terrain to a navmesh, without linking them.
+     *
+     * @param navMesh the navmesh to fill
+     * @param size    the number of quads per side
+     * @param holes   the quads to leave out
+     */
+    static void addCells(NavMesh navMesh, int size, Holes holes) {
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                if (holes.isHole(x, z)) {
+                    continue;
+                }
+                Vector3f a = vertex(x, z), b = vertex(x, z + 1);
+                Vector3f c = vertex(x + 1, z + 1), d = vertex(x + 1, z);
+                navMesh.addCell(a, b, c);
+                navMesh.addCell(a, c, d);
+            }
+        }
+    }
+
+    /**
+     * @param x the x coordinate
+     * @param z the z coordinate
+     * @return the height of the terrain at the point.
+     */
+    static float height(float x, float z) {
+        return (float) (Math.sin(x * 0.1) * 3 + Math.cos(z * 0.07) * 2);
+    }
+
+    private static Vector3f vertex(int x, int z) {
+        return new Vector3f(x, height(x, z), z);
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.examples.bench;
+
+import java.util.Random;
+
+import com.jme3.ai.navmesh.Cell;
+import com.jme3.ai.navmesh.IndexedNavMesh;
+import com.jme3.ai.navmesh.NavMesh;
+import com.jme3.math.Vector3f;
+
+/**
+ * Compares {@link NavMesh#findClosestCell(Vector3f)} with the grid of the
+ * {@link IndexedNavMesh} on a generated terrain of about 100k cells.
+ *
+ * <pre>
+ * Usage: FindClosestCellBenchmark [quadsPerSide] [queries]
+ * </pre>
+ *
+ * @author capdevon
+ */
+public class FindClosestCellBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 224;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        NavMesh navMesh = new NavMesh();
+        IndexedNavMesh indexed = new IndexedNavMesh();
+        BenchTerrain.addCells(navMesh, size, BenchTerrain.NONE);
+        BenchTerrain.addCells(indexed, size, BenchTerrain.NONE);
+
+        long start = System.nanoTime();
+        indexed.getGrid();
+        System.out.printf("cells: %d, grid built in %.1f ms: %s%n",
+                indexed.getNumCells(), (System.nanoTime() - start) / 1e6, indexed.getGrid());
+
+        // points above the terrain, and a few out of it
+        Random random = new Random(42);
+        Vector3f[] points = new Vector3f[queries];
+        for (int i = 0; i < queries; i++) {
+            float margin = (i % 10 == 0) ? 20 : 0;
+            float x = -margin + random.nextFloat() * (size + 2 * margin);
+            float z = -margin + random.nextFloat() * (size + 2 * margin);
+            points[i] = new Vector3f(x, BenchTerrain.height(x, z) + random.nextFloat() * 2 - 1, z);
+        }
+
+        // warm up
+        for (int i = 0; i < Math.min(200, queries); i++) {
+            navMesh.findClosestCell(points[i]);
+            indexed.findClosestCell(points[i]);
+        }
+
+        start = System.nanoTime();
+        Cell[] expected = new Cell[queries];
+        for (int i = 0; i < queries; i++) {
+            expected[i] = navMesh.findClosestCell(points[i]);
+        }
+        double linear = (System.nanoTime() - start) / 1e3 / queries;
+
+        start = System.nanoTime();
+        Cell[] actual = new Cell[queries];
+        for (int i = 0; i < queries; i++) {
+            actual[i] = indexed.findClosestCell(points[i]);
+        }
+        double grid = (System.nanoTime() - start) / 1e3 / queries;
+
+        // the cells differ in the two meshes: compare their centers
+        int same = 0;
+        for (int i = 0; i < queries; i++) {
+            if (expected[i] != null && actual[i] != null && expected[i].getCenter().equals(actual[i].getCenter())) {
+                same++;
+            }
+        }
+
+        System.out.printf("linear scan: %.1f us/query%n", linear);
+        System.out.printf("grid: %.2f us/query (x%.0f)%n", grid, linear / grid);
+        System.out.printf("same cell: %d of %d (points out of the mesh may snap to another edge cell)%n",
+                same, queries);
+    }
+
+}
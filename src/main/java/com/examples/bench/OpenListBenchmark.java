@@ -0,0 +1,195 @@
+package com.examples.bench;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Random;
+
+import com.jme3.ai.navmesh.FlatNavMesh;
+import com.jme3.ai.navmesh.NavMesh;
+import com.jme3.ai.navmesh.util.IndexedMinHeap;
+import com.jme3.ai.navmesh.util.MinHeap;
+import com.jme3.math.Vector3f;
+
+/**
+ * Compares the open list of the A* used by {@link com.jme3.ai.navmesh.NavMeshPathfinder}
+ * (a {@link MinHeap} of nodes, searched and sorted again when the cost of a
+ * cell is lowered) with the {@link IndexedMinHeap}, on a generated terrain.
+ * <p>
+ * Both run the same search over the cells of a {@link FlatNavMesh}, from
+ * center to center, so that only the open list differs. The runs are warmed
+ * up first, and the cost of each path is checked to be the same.
+ *
+ * <pre>
+ * Usage: OpenListBenchmark [quadsPerSide] [queries]
+ * </pre>
+ *
+ * @author capdevon
+ */
+public class OpenListBenchmark {
+
+    private static final class Node {
+        final int cell;
+        float cost;
+
+        Node(int cell, float cost) {
+            this.cell = cell;
+            this.cost = cost;
+        }
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 160;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        NavMesh navMesh = BenchTerrain.create(size, BenchTerrain.NONE);
+        FlatNavMesh flat = FlatNavMesh.fromNavMesh(navMesh);
+        System.out.println(flat);
+
+        // cross-map queries, from one side of the terrain to the other
+        Random random = new Random(42);
+        int[] starts = new int[queries], goals = new int[queries];
+        for (int i = 0; i < queries; i++) {
+            starts[i] = flat.findClosestCell(new Vector3f(random.nextFloat() * size * 0.1f, 0, random.nextFloat() * size));
+            goals[i] = flat.findClosestCell(new Vector3f(size * (0.9f + random.nextFloat() * 0.1f), 0, random.nextFloat() * size));
+        }
+
+        Search search = new Search(flat);
+        for (int round = 0; round < 2; round++) {
+            // the first round warms up the JIT
+            long start = System.nanoTime();
+            float[] expected = new float[queries];
+            for (int i = 0; i < queries; i++) {
+                expected[i] = search.withMinHeap(starts[i], goals[i]);
+            }
+            double minHeap = (System.nanoTime() - start) / 1e6 / queries;
+            int minHeapDecreases = search.decreases;
+
+            start = System.nanoTime();
+            int same = 0;
+            for (int i = 0; i < queries; i++) {
+                // the ties may be broken in another order, with the same cost
+                if (Math.abs(search.withIndexedMinHeap(starts[i], goals[i]) - expected[i]) < 1e-3f) {
+                    same++;
+                }
+            }
+            double indexed = (System.nanoTime() - start) / 1e6 / queries;
+
+            if (round == 1) {
+                System.out.printf("MinHeap: %.2f ms/query (%d decrease-key)%n", minHeap, minHeapDecreases / queries);
+                System.out.printf("IndexedMinHeap: %.3f ms/query (x%.0f)%n", indexed, minHeap / indexed);
+                System.out.printf("same path cost: %d of %d%n", same, queries);
+            }
+            search.decreases = 0;
+        }
+    }
+
+    /**
+     * An A* over the cell graph, from center to center.
+     */
+    private static final class Search {
+
+        private final FlatNavMesh navMesh;
+        private final float[] costs;
+        private final boolean[] closed;
+        private final Node[] nodes;
+        private final IndexedMinHeap heap;
+        private final Vector3f center = new Vector3f(), next = new Vector3f(), goal = new Vector3f();
+        int decreases;
+
+        Search(FlatNavMesh navMesh) {
+            this.navMesh = navMesh;
+            this.costs = new float[navMesh.getCellCount()];
+            this.closed = new boolean[navMesh.getCellCount()];
+            this.nodes = new Node[navMesh.getCellCount()];
+            this.heap = new IndexedMinHeap(navMesh.getCellCount());
+        }
+
+        /**
+         * The open list of com.jme3.ai.navmesh.Heap: a node is allocated per
+         * cell, and a lower cost is applied by finding the node and sorting
+         * the heap again.
+         */
+        @SuppressWarnings("unchecked")
+        float withMinHeap(int startCell, int goalCell) {
+            reset(goalCell);
+            MinHeap open = new MinHeap(Comparator.comparingDouble((Node n) -> n.cost));
+            nodes[startCell] = new Node(startCell, 0);
+            costs[startCell] = 0;
+            open.add(nodes[startCell]);
+
+            while (!open.isEmpty()) {
+                Node node = (Node) open.deleteMin();
+                int cell = node.cell;
+                if (cell == goalCell) {
+                    return costs[cell];
+                }
+                closed[cell] = true;
+                navMesh.getCenter(cell, center);
+                for (int side = 0; side < 3; side++) {
+                    int other = navMesh.getLink(cell, side);
+                    if (other < 0 || closed[other]) {
+                        continue;
+                    }
+                    float cost = costs[cell] + center.distance(navMesh.getCenter(other, next));
+                    if (nodes[other] == null) {
+                        costs[other] = cost;
+                        nodes[other] = new Node(other, cost + next.distance(goal));
+                        open.add(nodes[other]);
+                    } else if (cost < costs[other]) {
+                        costs[other] = cost;
+                        Iterator<Node> it = open.iterator();
+                        while (it.hasNext()) {
+                            Node n = it.next();
+                            if (n.cell == other) {
+                                n.cost = cost + next.distance(goal);
+                                break;
+                            }
+                        }
+                        open.sort();
+                        decreases++;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        float withIndexedMinHeap(int startCell, int goalCell) {
+            reset(goalCell);
+            heap.clear();
+            costs[startCell] = 0;
+            heap.add(startCell, 0);
+
+            while (!heap.isEmpty()) {
+                int cell = heap.poll();
+                if (cell == goalCell) {
+                    return costs[cell];
+                }
+                closed[cell] = true;
+                navMesh.getCenter(cell, center);
+                for (int side = 0; side < 3; side++) {
+                    int other = navMesh.getLink(cell, side);
+                    if (other < 0 || closed[other]) {
+                        continue;
+                    }
+                    float cost = costs[cell] + center.distance(navMesh.getCenter(other, next));
+                    if (!heap.contains(other)) {
+                        costs[other] = cost;
+                        heap.add(other, cost + next.distance(goal));
+                    } else if (cost < costs[other]) {
+                        costs[other] = cost;
+                        heap.decreaseKey(other, cost + next.distance(goal));
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private void reset(int goalCell) {
+            Arrays.fill(closed, false);
+            Arrays.fill(nodes, null);
+            navMesh.getCenter(goalCell, goal);
+        }
+    }
+
+}
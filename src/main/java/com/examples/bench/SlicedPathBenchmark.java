@@ -0,0 +1,111 @@
+package com.examples.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.jme3.ai.navmesh.FlatNavMesh;
+import com.jme3.ai.navmesh.FlatNavMeshPathfinder;
+import com.jme3.ai.navmesh.NavMesh;
+import com.jme3.ai.navmesh.PathQueryScheduler;
+import com.jme3.math.Vector3f;
+
+/**
+ * Compares the time spent per frame on pathfinding when a group of agents is
+ * sent across the map at once, on a generated terrain crossed by walls:
+ * <ul>
+ * <li>each path computed at once, as by
+ * {@link FlatNavMeshPathfinder#computePath(Vector3f)}: the whole cost falls
+ * on one frame;</li>
+ * <li>the paths requested to a {@link PathQueryScheduler} updated once per
+ * simulated frame, within a budget of microseconds per frame.</li>
+ * </ul>
+ * The corners of the paths are checked to be the same.
+ *
+ * <pre>
+ * Usage: SlicedPathBenchmark [quadsPerSide] [agents] [microsPerFrame]
+ * </pre>
+ *
+ * @author capdevon
+ */
+public class SlicedPathBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int agents = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long micros = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+
+        NavMesh navMesh = BenchTerrain.create(size, BenchTerrain.WALLS);
+        FlatNavMesh flat = FlatNavMesh.fromNavMesh(navMesh);
+        System.out.println(flat);
+
+        Random random = new Random(42);
+        Vector3f[] starts = new Vector3f[agents], goals = new Vector3f[agents];
+        FlatNavMeshPathfinder[] pathfinders = new FlatNavMeshPathfinder[agents];
+        for (int i = 0; i < agents; i++) {
+            starts[i] = new Vector3f(random.nextFloat() * size * 0.05f, 0, random.nextFloat() * size);
+            goals[i] = new Vector3f(size * (0.95f + random.nextFloat() * 0.05f), 0, random.nextFloat() * size);
+            pathfinders[i] = new FlatNavMeshPathfinder(flat);
+        }
+        float[] expected = new float[agents * 3 * 64], corners = new float[3 * 64];
+        int[] expectedCounts = new int[agents];
+
+        PathQueryScheduler scheduler = new PathQueryScheduler();
+        scheduler.setMaxMicrosPerFrame(micros);
+        int[] completed = new int[1];
+        PathQueryScheduler.Listener listener = found -> completed[0]++;
+
+        int rounds = 4;
+        for (int round = 0; round < rounds; round++) {
+            // the first rounds warm up the JIT, which would otherwise compile
+            // during the frames
+            long start = System.nanoTime();
+            for (int i = 0; i < agents; i++) {
+                pathfinders[i].setPosition(starts[i]);
+                pathfinders[i].computePath(goals[i]);
+                expectedCounts[i] = pathfinders[i].getCorners(corners);
+                System.arraycopy(corners, 0, expected, i * 3 * 64, 3 * 64);
+            }
+            double atOnce = (System.nanoTime() - start) / 1e6;
+
+            completed[0] = 0;
+            for (int i = 0; i < agents; i++) {
+                pathfinders[i].clearPath();
+                pathfinders[i].setPosition(starts[i]);
+                scheduler.request(pathfinders[i], goals[i], listener);
+            }
+            int frames = 0;
+            double[] frameTimes = new double[1024];
+            double total = 0;
+            while (scheduler.getPendingCount() > 0) {
+                start = System.nanoTime();
+                scheduler.update();
+                if (frames == frameTimes.length) {
+                    frameTimes = Arrays.copyOf(frameTimes, frames * 2);
+                }
+                frameTimes[frames] = (System.nanoTime() - start) / 1e6;
+                total += frameTimes[frames++];
+            }
+            Arrays.sort(frameTimes, 0, frames);
+
+            int same = 0;
+            for (int i = 0; i < agents; i++) {
+                int count = pathfinders[i].getCorners(corners);
+                boolean equal = count == expectedCounts[i];
+                for (int k = 0; equal && k < Math.min(count, 64) * 3; k++) {
+                    equal = corners[k] == expected[i * 3 * 64 + k];
+                }
+                if (equal) {
+                    same++;
+                }
+            }
+
+            if (round == rounds - 1) {
+                System.out.printf("at once: %.2f ms in one frame%n", atOnce);
+                System.out.printf("scheduled (%d us/frame): %d frames, median frame %.2f ms, 95th percentile %.2f ms, worst %.2f ms, total %.2f ms%n",
+                        micros, frames, frameTimes[frames / 2], frameTimes[frames * 95 / 100], frameTimes[frames - 1], total);
+                System.out.printf("paths completed: %d, same corners: %d of %d%n", completed[0], same, agents);
+            }
+        }
+    }
+
+}
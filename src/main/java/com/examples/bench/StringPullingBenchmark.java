@@ -0,0 +1,233 @@
+package com.examples.bench;
+
+import java.util.Random;
+
+import com.jme3.ai.navmesh.FlatNavMesh;
+import com.jme3.ai.navmesh.FlatNavMeshPathfinder;
+import com.jme3.ai.navmesh.NavMesh;
+import com.jme3.ai.navmesh.NavMeshPathfinder;
+import com.jme3.ai.navmesh.Path;
+import com.jme3.math.Vector3f;
+
+/**
+ * Compares the corners of long cross-map paths, on a generated terrain
+ * crossed by walls with a few gaps:
+ * <ul>
+ * <li>the funnel of {@link FlatNavMeshPathfinder}, timed with the A* of the
+ * query;</li>
+ * <li>the smoothing of {@link Path#getFurthestVisibleWayPoint}, a
+ * line-of-sight walk for each pair of waypoints on the walls crossed, run
+ * over the same corridor, timed alone;</li>
+ * <li>the whole query of {@link NavMeshPathfinder}, for reference.</li>
+ * </ul>
+ * The length and the number of corners of the paths are printed with the
+ * times.
+ *
+ * <pre>
+ * Usage: StringPullingBenchmark [quadsPerSide] [queries]
+ * </pre>
+ *
+ * @author capdevon
+ */
+public class StringPullingBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        NavMesh navMesh = BenchTerrain.create(size, BenchTerrain.WALLS);
+        FlatNavMesh flat = FlatNavMesh.fromNavMesh(navMesh);
+        System.out.println(flat);
+
+        // cross-map queries, from one side of the terrain to the other
+        Random random = new Random(42);
+        Vector3f[] starts = new Vector3f[queries], goals = new Vector3f[queries];
+        for (int i = 0; i < queries; i++) {
+            starts[i] = new Vector3f(random.nextFloat() * size * 0.05f, 0, random.nextFloat() * size);
+            goals[i] = new Vector3f(size * (0.95f + random.nextFloat() * 0.05f), 0, random.nextFloat() * size);
+        }
+
+        FlatNavMeshPathfinder pathfinder = new FlatNavMeshPathfinder(flat);
+        pathfinder.setEntityRadius(0.3f);
+        LineOfSight lineOfSight = new LineOfSight(flat);
+        Vector3f goal = new Vector3f();
+
+        for (int round = 0; round < 2; round++) {
+            // the first round warms up the JIT
+            long funnelTime = 0, lineOfSightTime = 0;
+            double funnelLength = 0, lineOfSightLength = 0;
+            int funnelCorners = 0, lineOfSightCorners = 0, corridor = 0, found = 0;
+
+            for (int i = 0; i < queries; i++) {
+                long start = System.nanoTime();
+                pathfinder.setPosition(starts[i]);
+                boolean ok = pathfinder.computePath(goal.set(goals[i]));
+                funnelTime += System.nanoTime() - start;
+                if (!ok) {
+                    continue;
+                }
+                found++;
+                corridor += pathfinder.getCorridorLength();
+                funnelCorners += pathfinder.getCornerCount();
+                funnelLength += length(pathfinder);
+
+                start = System.nanoTime();
+                lineOfSight.smooth(pathfinder, starts[i], goal);
+                lineOfSightTime += System.nanoTime() - start;
+                lineOfSightCorners += lineOfSight.count;
+                lineOfSightLength += lineOfSight.length;
+            }
+
+            if (round == 1) {
+                System.out.printf("%d paths, %d cells per corridor%n", found, corridor / found);
+                System.out.printf("A* + funnel: %.3f ms/query, length %.1f, %.1f corners%n",
+                        funnelTime / 1e6 / queries, funnelLength / found, (float) funnelCorners / found);
+                System.out.printf("line of sight alone: %.3f ms/query, length %.1f, %.1f corners%n",
+                        lineOfSightTime / 1e6 / queries, lineOfSightLength / found, (float) lineOfSightCorners / found);
+            }
+        }
+
+        NavMeshPathfinder cells = new NavMeshPathfinder(navMesh);
+        cells.setEntityRadius(0.3f);
+        long time = 0;
+        double length = 0;
+        int corners = 0, found = 0;
+        for (int i = 0; i < queries; i++) {
+            long start = System.nanoTime();
+            cells.clearPath();
+            cells.setPosition(starts[i]);
+            boolean ok = cells.computePath(goal.set(goals[i]));
+            time += System.nanoTime() - start;
+            if (ok) {
+                found++;
+                corners += cells.getPath().getWaypoints().size();
+                for (int k = 1; k < cells.getPath().getWaypoints().size(); k++) {
+                    length += cells.getPath().getWaypoints().get(k - 1).getPosition()
+                            .distance(cells.getPath().getWaypoints().get(k).getPosition());
+                }
+            }
+        }
+        System.out.printf("NavMeshPathfinder: %.3f ms/query, length %.1f, %.1f corners%n",
+                time / 1e6 / queries, length / found, (float) corners / found);
+    }
+
+    private static float length(FlatNavMeshPathfinder pathfinder) {
+        Vector3f a = new Vector3f(), b = new Vector3f();
+        float length = 0;
+        for (int i = 1; i < pathfinder.getCornerCount(); i++) {
+            length += pathfinder.getCorner(i - 1, a).distance(pathfinder.getCorner(i, b));
+        }
+        return length;
+    }
+
+    /**
+     * The smoothing of {@link Path#getFurthestVisibleWayPoint}: a waypoint on
+     * each wall crossed by the corridor, where the line to the goal crosses
+     * it at least the entity radius away from the ends of the wall, then the
+     * furthest waypoint visible from each kept one.
+     */
+    private static final class LineOfSight {
+
+        private final FlatNavMesh navMesh;
+        private final Vector3f a = new Vector3f(), b = new Vector3f();
+        private float[] points = new float[0];
+        private int[] cells = new int[0];
+        int count;
+        float length;
+
+        LineOfSight(FlatNavMesh navMesh) {
+            this.navMesh = navMesh;
+        }
+
+        void smooth(FlatNavMeshPathfinder pathfinder, Vector3f start, Vector3f goal) {
+            int corridorLength = pathfinder.getCorridorLength();
+            int pointCount = corridorLength + 1;
+            if (cells.length < pointCount) {
+                points = new float[pointCount * 3];
+                cells = new int[pointCount];
+            }
+            points[0] = start.x;
+            points[1] = start.y;
+            points[2] = start.z;
+            cells[0] = pathfinder.getCorridorCell(0);
+
+            for (int i = 0; i < corridorLength - 1; i++) {
+                int cell = pathfinder.getCorridorCell(i);
+                int side = navMesh.getLinkSide(cell, pathfinder.getCorridorCell(i + 1));
+                navMesh.getVertex(cell, side, a);
+                navMesh.getVertex(cell, (side + 1) % 3, b);
+                float px = points[i * 3], pz = points[i * 3 + 2];
+                float dx = goal.x - px, dz = goal.z - pz;
+                float ex = b.x - a.x, ez = b.z - a.z;
+                float denom = dx * ez - dz * ex;
+                float t = denom != 0 ? ((a.x - px) * dz - (a.z - pz) * dx) / denom : 0.5f;
+                float length = (float) Math.sqrt(ex * ex + ez * ez);
+                float inset = length > 0 ? Math.min(0.5f, pathfinder.getEntityRadius() / length) : 0.5f;
+                t = Math.max(inset, Math.min(1 - inset, t));
+                float x = a.x + ex * t, z = a.z + ez * t;
+                points[(i + 1) * 3] = x;
+                points[(i + 1) * 3 + 1] = navMesh.getHeightOnCell(cell, x, z);
+                points[(i + 1) * 3 + 2] = z;
+                cells[i + 1] = cell;
+            }
+            points[corridorLength * 3] = goal.x;
+            points[corridorLength * 3 + 1] = goal.y;
+            points[corridorLength * 3 + 2] = goal.z;
+            cells[corridorLength] = pathfinder.getCorridorCell(corridorLength - 1);
+
+            count = 1;
+            length = 0;
+            int i = 0;
+            while (i < pointCount - 1) {
+                int j = i + 1;
+                while (j + 1 < pointCount && isInLineOfSight(cells[i], i, j + 1)) {
+                    j++;
+                }
+                length += (float) Math.sqrt(distanceSquared(i, j));
+                count++;
+                i = j;
+            }
+        }
+
+        private float distanceSquared(int i, int j) {
+            float dx = points[j * 3] - points[i * 3];
+            float dy = points[j * 3 + 1] - points[i * 3 + 1];
+            float dz = points[j * 3 + 2] - points[i * 3 + 2];
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        private boolean isInLineOfSight(int cell, int from, int to) {
+            float fx = points[from * 3], fz = points[from * 3 + 2];
+            float tx = points[to * 3], tz = points[to * 3 + 2];
+            float dx = tx - fx, dz = tz - fz;
+
+            for (int steps = 0; steps < navMesh.getCellCount(); steps++) {
+                if (navMesh.contains(cell, tx, tz)) {
+                    return true;
+                }
+                int exit = -1;
+                float exitT = Float.NEGATIVE_INFINITY;
+                for (int side = 0; side < 3; side++) {
+                    navMesh.getVertex(cell, side, a);
+                    navMesh.getVertex(cell, (side + 1) % 3, b);
+                    float ex = b.x - a.x, ez = b.z - a.z;
+                    float denom = dx * ez - dz * ex;
+                    if (denom == 0) {
+                        continue;
+                    }
+                    float t = ((a.x - fx) * ez - (a.z - fz) * ex) / denom;
+                    float u = ((a.x - fx) * dz - (a.z - fz) * dx) / denom;
+                    if (u >= -1e-4f && u <= 1 + 1e-4f && t > exitT) {
+                        exitT = t;
+                        exit = side;
+                    }
+                }
+                if (exit < 0 || (cell = navMesh.getLink(cell, exit)) < 0) {
+                    return false;
+                }
+            }
+            return false;
+        }
+    }
+
+}
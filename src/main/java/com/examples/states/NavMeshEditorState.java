@@ -4,20 +4,19 @@ import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
-import org.apache.commons.lang3.builder.ToStringStyle;
-import org.critterai.nmgen.IntermediateData;
-
 import com.jme3.ai.navmesh.gen.GeometryProviderBuilder;
+import com.jme3.ai.navmesh.gen.NavMeshBuildReport;
 import com.jme3.ai.navmesh.gen.NavMeshBuildSettings;
 import com.jme3.ai.navmesh.gen.NavMeshBuilder;
 import com.jme3.ai.navmesh.gen.NavMeshDebugRenderer;
 import com.jme3.ai.navmesh.gen.NavMeshExporter;
+import com.jme3.ai.navmesh.gen.NavMeshOptimizer;
 import com.jme3.ai.navmesh.gen.NavMeshProperties;
+import com.jme3.ai.navmesh.gen.NavMeshSettingsSweep;
 import com.jme3.app.Application;
 import com.jme3.math.Vector2f;
 import com.jme3.renderer.RenderManager;
@@ -26,6 +25,7 @@ import com.jme3.scene.Mesh;
 import com.simsilica.lemur.Button;
 import com.simsilica.lemur.Container;
 import com.simsilica.lemur.GuiGlobals;
+import com.simsilica.lemur.Label;
 import com.simsilica.lemur.RollupPanel;
 import com.simsilica.lemur.props.PropertyPanel;
 import com.simsilica.lemur.style.BaseStyles;
@@ -40,11 +40,14 @@ public class NavMeshEditorState extends MyBaseState {
 
     private Vector2f screenSize;
     private Container container;
+    private Label statusLabel;
+    private CompletableFuture<?> pendingBuild;
     
     private NavMeshBuilder builder = new NavMeshBuilder();
     private NavMeshDebugRenderer navMeshRenderer;
     private boolean navMeshDebugEnabled = true;
     private boolean autoSave = false;
+    private boolean optimizeMesh = false;
 
     @Override
     protected void initialize(Application app) {
@@ -77,6 +80,14 @@ public class NavMeshEditorState extends MyBaseState {
         this.autoSave = autoSave;
     }
 
+    public boolean isOptimizeMesh() {
+        return optimizeMesh;
+    }
+
+    public void setOptimizeMesh(boolean optimizeMesh) {
+        this.optimizeMesh = optimizeMesh;
+    }
+
     private Container initComponents() {
 
         NavMeshBuildSettings nmSettings = new NavMeshBuildSettings();
@@ -103,9 +114,12 @@ public class NavMeshEditorState extends MyBaseState {
         propertyPanel.addIntProperty("MaxVertsPerPoly", nmSettings, "maxVertsPerPoly", 3, 12, 1);
         propertyPanel.addFloatProperty("ContourSampleDistance", nmSettings, "contourSampleDistance", 0.01f, 32, 0.1f);
         propertyPanel.addFloatProperty("ContourMaxDeviation", nmSettings, "contourMaxDeviation", 0.01f, 32, 0.1f);
+        propertyPanel.addFloatProperty("TileSize", nmSettings, "tileSize", 0, 512, 8);
+        propertyPanel.addIntProperty("Parallelism", nmSettings, "parallelism", 0, 64, 1);
 
         propertyPanel.addBooleanProperty("Show NavMesh", this, "navMeshDebugEnabled");
         propertyPanel.addBooleanProperty("Auto Save", this, "autoSave");
+        propertyPanel.addBooleanProperty("Optimize Mesh", this, "optimizeMesh");
 
         RollupPanel rollup = new RollupPanel("NavMesh Settings", propertyPanel, "glass");
         rollup.setAlpha(0, false);
@@ -116,36 +130,116 @@ public class NavMeshEditorState extends MyBaseState {
         button.addClickCommands(source -> {
             generateNavMesh(nmSettings);
         });
+
+        Button sweep = container.addChild(new Button("Sweep Settings"));
+        sweep.addClickCommands(source -> {
+            sweepSettings(nmSettings);
+        });
+
+        Button cancel = container.addChild(new Button("Cancel"));
+        cancel.addClickCommands(source -> {
+            cancelNavMesh();
+        });
+
+        statusLabel = container.addChild(new Label("Ready"));
         
         return container;
     }
 
     public void generateNavMesh(NavMeshBuildSettings nmSettings) {
 
+        if (pendingBuild != null && !pendingBuild.isDone()) {
+            logger.log(Level.WARNING, "A navmesh is already being generated.");
+            return;
+        }
+
         navMeshRenderer.clear();
 
-        // the data object to use for storing data related to building the navigation mesh.
-        IntermediateData data = new IntermediateData();
-        builder.setIntermediateData(data);
-        builder.setTimeout(40, TimeUnit.SECONDS);
+        // the report of the time, memory and element counts of each build stage.
+        NavMeshBuildReport report = new NavMeshBuildReport(rootNode.getName());
+        builder.setBuildReport(report);
+        // weld and merge the coplanar triangles into fewer cells
+        builder.setOptimizer(optimizeMesh ? new NavMeshOptimizer() : null);
         
         System.out.println("Generating new navmesh... please wait");
         
+        // the build runs in the background: the progress and the result are
+        // applied on the render thread
         List<Geometry> sources = GeometryProviderBuilder.collectSources(rootNode);
-        Mesh navMesh = builder.buildNavMesh(sources, nmSettings);
-
-        if (navMesh != null) {
-            logger.log(Level.INFO, ReflectionToStringBuilder.toString(data, ToStringStyle.MULTI_LINE_STYLE));
-            
-            if (autoSave) {
-                NavMeshExporter exporter = new NavMeshExporter(assetManager);
-                exporter.save(navMesh, makeFile("NavMesh.j3o"));
-                
-                NavMeshProperties.save(nmSettings, makeFile("NavMeshBuildSettings.properties"));
+        CompletableFuture<Mesh> future = builder.buildNavMeshAsync(sources, nmSettings, (stage, progress) -> {
+            app.enqueue(() -> statusLabel.setText(String.format("%s %.0f%%", stage, progress * 100)));
+        });
+        future.whenCompleteAsync((navMesh, error) -> {
+            if (future.isCancelled()) {
+                statusLabel.setText("Cancelled");
+            } else if (error != null || navMesh == null) {
+                statusLabel.setText("Failed");
+            } else {
+                statusLabel.setText("Ready");
+                onNavMeshGenerated(navMesh, nmSettings, report);
             }
+        }, app::enqueue);
+        pendingBuild = future;
+    }
+
+    /**
+     * Bakes the combinations of cellSize, cellHeight and maxEdgeLength around
+     * the current settings, and logs the cost of each navmesh.
+     */
+    public void sweepSettings(NavMeshBuildSettings nmSettings) {
 
-            navMeshRenderer.drawNavMesh(navMesh);
+        if (pendingBuild != null && !pendingBuild.isDone()) {
+            logger.log(Level.WARNING, "A navmesh is already being generated.");
+            return;
         }
+
+        float cellSize = nmSettings.getCellSize();
+        float cellHeight = nmSettings.getCellHeight();
+        NavMeshSettingsSweep sweep = new NavMeshSettingsSweep(nmSettings)
+                .addValues("cellSize", NavMeshBuildSettings::setCellSize, cellSize / 2, cellSize, cellSize * 2)
+                .addValues("cellHeight", NavMeshBuildSettings::setCellHeight, cellHeight / 2, cellHeight)
+                .addValues("maxEdgeLength", NavMeshBuildSettings::setMaxEdgeLength, 0, 8, 16);
+
+        statusLabel.setText("Sweeping " + sweep.size() + " settings...");
+
+        int poolSize = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        List<Geometry> sources = GeometryProviderBuilder.collectSources(rootNode);
+        CompletableFuture<List<NavMeshSettingsSweep.Result>> future = builder.sweepSettingsAsync(sources, sweep, poolSize);
+        future.whenCompleteAsync((results, error) -> {
+            if (future.isCancelled()) {
+                statusLabel.setText("Cancelled");
+            } else if (error != null) {
+                statusLabel.setText("Failed");
+            } else {
+                statusLabel.setText("Ready");
+                StringBuilder sb = new StringBuilder("Settings sweep:");
+                for (NavMeshSettingsSweep.Result result : results) {
+                    sb.append("\n  ").append(result);
+                }
+                logger.log(Level.INFO, sb.toString());
+            }
+        }, app::enqueue);
+        pendingBuild = future;
+    }
+
+    public void cancelNavMesh() {
+        if (pendingBuild != null) {
+            pendingBuild.cancel(true);
+        }
+    }
+
+    private void onNavMeshGenerated(Mesh navMesh, NavMeshBuildSettings nmSettings, NavMeshBuildReport report) {
+        logger.log(Level.INFO, report.toString());
+
+        if (autoSave) {
+            NavMeshExporter exporter = new NavMeshExporter(assetManager);
+            exporter.save(navMesh, makeFile("NavMesh.j3o"));
+
+            NavMeshProperties.save(nmSettings, makeFile("NavMeshBuildSettings.properties"));
+            report.save(makeFile("NavMeshBuildReport.json"));
+        }
+
+        navMeshRenderer.drawNavMesh(navMesh);
     }
     
     private File makeFile(String fileName) {
@@ -163,6 +257,7 @@ public class NavMeshEditorState extends MyBaseState {
 
     @Override
     protected void cleanup(Application app) {
+        cancelNavMesh();
         builder.shutdown();
     }
 
@@ -0,0 +1,297 @@
+package com.jme3.ai.control;
+
+import java.util.List;
+
+import com.jme3.ai.navmesh.FlatNavMesh;
+import com.jme3.ai.navmesh.FlatNavMeshPathfinder;
+import com.jme3.ai.navmesh.NavMesh;
+import com.jme3.ai.navmesh.NavMeshPathfinder;
+import com.jme3.ai.navmesh.Path;
+import com.jme3.ai.navmesh.PathQueryScheduler;
+import com.jme3.ai.navmesh.Path.Waypoint;
+import com.jme3.math.Vector3f;
+
+/**
+ * The pathfinding of a navmesh agent, either on a shared {@link FlatNavMesh}
+ * or on a {@link NavMesh} which may be updated at runtime.
+ *
+ * @author capdevon
+ */
+interface AgentPathfinder {
+
+    /**
+     * Computes a path from the position of the agent to the target.
+     *
+     * @param position the position of the agent
+     * @param target   the destination, moved onto the navmesh (modified)
+     * @return {@code true} if a path was found
+     */
+    boolean computePath(Vector3f position, Vector3f target);
+
+    /**
+     * Requests a path from the position of the agent to the target, computed
+     * by the scheduler within its budget per frame, or at once if the
+     * navmesh can't be searched a few cells at a time.
+     *
+     * @param scheduler the scheduler of the queries
+     * @param position  the position of the agent
+     * @param target    the destination (unaffected)
+     * @param listener  notified when the query ends
+     */
+    void requestPath(PathQueryScheduler scheduler, Vector3f position, Vector3f target, PathQueryScheduler.Listener listener);
+
+    /**
+     * Cancels the request of a path to the scheduler, if any.
+     */
+    void cancelPath(PathQueryScheduler scheduler);
+
+    void clearPath();
+
+    /**
+     * @param store storage for the result (not null)
+     * @return the next waypoint (the store), or {@code null} if there is no
+     *         path
+     */
+    Vector3f getNextWaypoint(Vector3f store);
+
+    void goToNextWaypoint();
+
+    boolean isAtGoalWaypoint();
+
+    /**
+     * @return the current path, for the {@link PathViewer}.
+     */
+    Path getPath();
+
+    /**
+     * Copies the corners of the path into a list, reusing the vectors already
+     * in the list.
+     *
+     * @return the number of corners
+     */
+    int getCornersNonAlloc(List<Vector3f> results);
+
+    /**
+     * Copies the x, y, z of the corners of the path into an array.
+     *
+     * @return the number of corners, which may be greater than the number
+     *         of corners copied
+     */
+    int getCornersNonAlloc(float[] results);
+
+    void setEntityRadius(float radius);
+
+    /**
+     * Finds paths on a flat navmesh, which is shared without locking: the
+     * search state belongs to the calling thread.
+     */
+    static final class Flat implements AgentPathfinder {
+
+        private final FlatNavMeshPathfinder nav;
+        // the path drawn by the PathViewer, rebuilt only when the corners change
+        private final Path path = new Path();
+        private float[] pathCorners = new float[3 * 16];
+        private int pathCornerCount;
+        private final Vector3f corner = new Vector3f();
+
+        Flat(FlatNavMesh navMesh) {
+            this.nav = new FlatNavMeshPathfinder(navMesh);
+        }
+
+        @Override
+        public boolean computePath(Vector3f position, Vector3f target) {
+            nav.clearPath();
+            nav.setPosition(position);
+            nav.warpInside(target);
+            return nav.computePath(target);
+        }
+
+        @Override
+        public void requestPath(PathQueryScheduler scheduler, Vector3f position, Vector3f target, PathQueryScheduler.Listener listener) {
+            nav.setPosition(position);
+            scheduler.request(nav, target, listener);
+        }
+
+        @Override
+        public void cancelPath(PathQueryScheduler scheduler) {
+            scheduler.cancel(nav);
+        }
+
+        @Override
+        public void clearPath() {
+            nav.clearPath();
+        }
+
+        @Override
+        public Vector3f getNextWaypoint(Vector3f store) {
+            return nav.getNextCorner(store);
+        }
+
+        @Override
+        public void goToNextWaypoint() {
+            nav.goToNextCorner();
+        }
+
+        @Override
+        public boolean isAtGoalWaypoint() {
+            return nav.isAtGoalCorner();
+        }
+
+        /**
+         * Returns a path without cells: {@link FlatNavMeshPathfinder#getPath()}
+         * would build the cells of the whole navmesh, only to draw the path.
+         * The same path is returned until the corners change, so that drawing
+         * it each frame allocates nothing.
+         */
+        @Override
+        public Path getPath() {
+            int count = nav.getCornerCount();
+            if (!isPathChanged(count)) {
+                return path;
+            }
+
+            if (pathCorners.length < count * 3) {
+                pathCorners = new float[count * 3];
+            }
+            nav.getCorners(pathCorners);
+            pathCornerCount = count;
+
+            path.clear();
+            if (count > 0) {
+                path.initialize(null, nav.getCorner(0, new Vector3f()), null,
+                        nav.getCorner(count - 1, new Vector3f()), null);
+                for (int i = 1; i < count; i++) {
+                    path.addWaypoint(nav.getCorner(i, new Vector3f()), null);
+                }
+            }
+            return path;
+        }
+
+        private boolean isPathChanged(int count) {
+            if (count != pathCornerCount) {
+                return true;
+            }
+            for (int i = 0; i < count; i++) {
+                nav.getCorner(i, corner);
+                if (corner.x != pathCorners[i * 3] || corner.y != pathCorners[i * 3 + 1]
+                        || corner.z != pathCorners[i * 3 + 2]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int getCornersNonAlloc(List<Vector3f> results) {
+            return nav.getCornersNonAlloc(results);
+        }
+
+        @Override
+        public int getCornersNonAlloc(float[] results) {
+            return nav.getCorners(results);
+        }
+
+        @Override
+        public void setEntityRadius(float radius) {
+            nav.setEntityRadius(radius);
+        }
+    }
+
+    /**
+     * Finds paths on a navmesh whose cells hold the search state: the
+     * searches on the same navmesh are serialized.
+     */
+    static final class Cells implements AgentPathfinder {
+
+        private final NavMesh navMesh;
+        private final NavMeshPathfinder nav;
+
+        Cells(NavMesh navMesh) {
+            this.navMesh = navMesh;
+            this.nav = new NavMeshPathfinder(navMesh);
+        }
+
+        @Override
+        public boolean computePath(Vector3f position, Vector3f target) {
+            // the navmesh may be updated by another thread
+            synchronized (navMesh) {
+                nav.clearPath();
+                nav.setPosition(position);
+                nav.warpInside(target);
+                return nav.computePath(target);
+            }
+        }
+
+        /**
+         * Computes the path at once: the search state is held by the cells.
+         */
+        @Override
+        public void requestPath(PathQueryScheduler scheduler, Vector3f position, Vector3f target, PathQueryScheduler.Listener listener) {
+            listener.onPathComputed(computePath(position, target.clone()));
+        }
+
+        @Override
+        public void cancelPath(PathQueryScheduler scheduler) {
+        }
+
+        @Override
+        public void clearPath() {
+            nav.clearPath();
+        }
+
+        @Override
+        public Vector3f getNextWaypoint(Vector3f store) {
+            Waypoint waypoint = nav.getNextWaypoint();
+            return waypoint != null ? store.set(waypoint.getPosition()) : null;
+        }
+
+        @Override
+        public void goToNextWaypoint() {
+            nav.goToNextWaypoint();
+        }
+
+        @Override
+        public boolean isAtGoalWaypoint() {
+            return nav.isAtGoalWaypoint();
+        }
+
+        @Override
+        public Path getPath() {
+            return nav.getPath();
+        }
+
+        @Override
+        public int getCornersNonAlloc(List<Vector3f> results) {
+            List<Waypoint> waypoints = nav.getPath().getWaypoints();
+            for (int i = 0; i < waypoints.size(); i++) {
+                if (i < results.size()) {
+                    results.get(i).set(waypoints.get(i).getPosition());
+                } else {
+                    results.add(waypoints.get(i).getPosition().clone());
+                }
+            }
+            while (results.size() > waypoints.size()) {
+                results.remove(results.size() - 1);
+            }
+            return waypoints.size();
+        }
+
+        @Override
+        public int getCornersNonAlloc(float[] results) {
+            List<Waypoint> waypoints = nav.getPath().getWaypoints();
+            for (int i = 0; i < waypoints.size() && i * 3 + 2 < results.length; i++) {
+                Vector3f position = waypoints.get(i).getPosition();
+                results[i * 3] = position.x;
+                results[i * 3 + 1] = position.y;
+                results[i * 3 + 2] = position.z;
+            }
+            return waypoints.size();
+        }
+
+        @Override
+        public void setEntityRadius(float radius) {
+            nav.setEntityRadius(radius);
+        }
+    }
+
+}
@@ -6,9 +6,10 @@ import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.jme3.ai.navmesh.FlatNavMesh;
+import com.jme3.ai.navmesh.IndexedNavMesh;
 import com.jme3.ai.navmesh.NavMesh;
-import com.jme3.ai.navmesh.NavMeshPathfinder;
-import com.jme3.ai.navmesh.Path.Waypoint;
+import com.jme3.ai.navmesh.PathQueryScheduler;
 import com.jme3.bullet.control.BetterCharacterControl;
 import com.jme3.math.FastMath;
 import com.jme3.math.Quaternion;
@@ -35,9 +36,11 @@ public class NavMeshAgent extends AbstractControl {
     private final Vector3f waypoint2D = new Vector3f();
     
     private float radius = 1f;
-    private NavMesh navMesh;
-    private NavMeshPathfinder nav;
+    private final AgentPathfinder nav;
     private PathViewer pathViewer;
+    // Computes the paths within a budget per frame, if any.
+    private PathQueryScheduler scheduler;
+    private final PathQueryScheduler.Listener pathListener = this::onPathComputed;
     
     // Stop within this distance from the target position.
     private float stoppingDistance = .25f;
@@ -52,20 +55,51 @@ public class NavMeshAgent extends AbstractControl {
     private boolean hasPath;
     private boolean stopped = false;
     
+    // Is a path in the process of being computed but not yet ready? (Read Only)
+    private boolean pathPending;
+    
     /**
-     * Instantiate a NavMeshAgent.
+     * Instantiate a NavMeshAgent with its own navmesh, searched by a
+     * {@link com.jme3.ai.navmesh.NavMeshPathfinder}. To share one navmesh
+     * between the agents of a mesh, use
+     * {@code new NavMeshAgent(FlatNavMesh.shared(mesh))} instead.
      * @param mesh
      */
     public NavMeshAgent(Mesh mesh) {
-        this.navMesh = new NavMesh(mesh);
-        this.nav = new NavMeshPathfinder(navMesh);
+        this(new IndexedNavMesh(mesh));
+    }
+
+    /**
+     * Instantiate a NavMeshAgent sharing a FlatNavMesh with any number of
+     * agents, without locking. The path corners are found by the funnel of
+     * {@link com.jme3.ai.navmesh.FlatNavMeshPathfinder}, so they may differ
+     * from the ones of a {@link com.jme3.ai.navmesh.NavMeshPathfinder}.
+     * @param navMesh
+     */
+    public NavMeshAgent(FlatNavMesh navMesh) {
+        this(new AgentPathfinder.Flat(navMesh));
+    }
+
+    /**
+     * Instantiate a NavMeshAgent sharing an existing NavMesh, e.g. a
+     * {@link com.jme3.ai.navmesh.TiledNavMesh} updated at runtime.
+     * @param navMesh
+     */
+    public NavMeshAgent(NavMesh navMesh) {
+        this(new AgentPathfinder.Cells(navMesh));
+    }
+
+    private NavMeshAgent(AgentPathfinder nav) {
+        this.nav = nav;
         this.nav.setEntityRadius(radius);
     }
 
     @Override
     public void setSpatial(Spatial sp) {
         super.setSpatial(sp);
-        if (spatial != null) {
+        if (spatial == null) {
+            cancelPathRequest();
+        } else {
             this.pathViewer = spatial.getControl(PathViewer.class);
             this.bcc = spatial.getControl(BetterCharacterControl.class);
             Objects.requireNonNull(bcc, "BetterCharacterControl not found: " + spatial);
@@ -80,7 +114,8 @@ public class NavMeshAgent extends AbstractControl {
             pathChanged = false;
         }
 
-        if (stopped) {
+        // wait for the path being computed
+        if (stopped || pathPending) {
             bcc.setWalkDirection(Vector3f.ZERO);
             return;
         }
@@ -91,12 +126,12 @@ public class NavMeshAgent extends AbstractControl {
     private void updateMovement(float tpf) {
         // getNextWayPoint will return always the same waypoint until we
         // manually advance to the next
-        Waypoint wayPoint = nav.getNextWaypoint();
+        Vector3f wayPoint = nav.getNextWaypoint(waypoint2D);
 
         if (wayPoint != null) {
             // Gets the movement direction
             position2D.set(spatial.getWorldTranslation()).setY(0);
-            waypoint2D.set(wayPoint.getPosition()).setY(0);
+            waypoint2D.setY(0);
 
             // If they are more than one world distance unit they are not at the goal and
             // keep finding
@@ -138,15 +173,24 @@ public class NavMeshAgent extends AbstractControl {
     }
     
     /**
-     * Set the destination of the agent in world-space units.
+     * Set the destination of the agent in world-space units. With a
+     * {@link PathQueryScheduler}, the path is computed by the following
+     * updates of the scheduler, and the agent stands still until then: see
+     * {@link #pathPending()}.
      * @param targetPos
      */
     public void setDestination(Vector3f targetPos) {
-        nav.clearPath();
-        nav.setPosition(spatial.getWorldTranslation());
-        nav.warpInside(targetPos);
-        
-        hasPath = nav.computePath(targetPos);
+        if (scheduler != null) {
+            pathPending = true;
+            nav.requestPath(scheduler, spatial.getWorldTranslation(), targetPos, pathListener);
+        } else {
+            onPathComputed(nav.computePath(spatial.getWorldTranslation(), targetPos));
+        }
+    }
+
+    private void onPathComputed(boolean found) {
+        pathPending = false;
+        hasPath = found;
         if (logger.isLoggable(Level.FINE)) {
             logger.log(Level.FINE, "Path found: {0}", hasPath);
         }
@@ -164,12 +208,20 @@ public class NavMeshAgent extends AbstractControl {
      * Clears the current path.
      */
     public void resetPath() {
+        cancelPathRequest();
         clearPath();
         nav.clearPath();
         bcc.setWalkDirection(Vector3f.ZERO);
         hasPath = false;
     }
 
+    private void cancelPathRequest() {
+        if (pathPending) {
+            nav.cancelPath(scheduler);
+            pathPending = false;
+        }
+    }
+
     @Override
     protected void controlRender(RenderManager rm, ViewPort vp) {
     }
@@ -215,18 +267,26 @@ public class NavMeshAgent extends AbstractControl {
     }
     
     /**
-     * Calculate the corners for the path.
+     * Calculate the corners for the path. The vectors already in the list are
+     * reused, so that nothing is allocated once the list has held as many
+     * corners; the extra vectors are removed.
      * 
      * @param results List to store path corners.
      * @return The number of corners along the path - including start and end points.
      */
     public int getCornersNonAlloc(List<Vector3f> results) {
-        results.clear();
-        for (Waypoint waypoint : nav.getPath().getWaypoints()) {
-            Vector3f v = waypoint.getPosition().clone();
-            results.add(v);
-        }
-        return results.size();
+        return nav.getCornersNonAlloc(results);
+    }
+
+    /**
+     * Calculate the corners for the path, without allocating.
+     * 
+     * @param results Array to store the x, y, z of the path corners. The corners
+     * which don't fit are skipped.
+     * @return The number of corners along the path - including start and end points.
+     */
+    public int getCornersNonAlloc(float[] results) {
+        return nav.getCornersNonAlloc(results);
     }
     
     public float getSpeed() {
@@ -306,4 +366,24 @@ public class NavMeshAgent extends AbstractControl {
         return hasPath;
     }
 
+    public boolean pathPending() {
+        return pathPending;
+    }
+
+    public PathQueryScheduler getPathQueryScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Set the scheduler computing the paths of the agent within a budget per
+     * frame, shared by all the agents using it; the scheduler must be updated
+     * once per frame. If null, the paths are computed at once by
+     * {@link #setDestination(Vector3f)}.
+     * @param scheduler
+     */
+    public void setPathQueryScheduler(PathQueryScheduler scheduler) {
+        cancelPathRequest();
+        this.scheduler = scheduler;
+    }
+
 }
@@ -9,10 +9,9 @@ import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.jme3.ai.navmesh.FlatNavMesh;
+import com.jme3.ai.navmesh.IndexedNavMesh;
 import com.jme3.ai.navmesh.NavMesh;
-import com.jme3.ai.navmesh.NavMeshPathfinder;
-import com.jme3.ai.navmesh.Path;
-import com.jme3.ai.navmesh.Path.Waypoint;
 import com.jme3.bullet.control.BetterCharacterControl;
 import com.jme3.math.FastMath;
 import com.jme3.math.Quaternion;
@@ -32,14 +31,14 @@ public class NavMeshAgentMT extends AbstractControl {
     private static final Logger logger = Logger.getLogger(NavMeshAgentMT.class.getName());
 
     private PathViewer pathViewer;
-    private final NavMesh navMesh;
-    private final NavMeshPathfinder nav;
+    private final AgentPathfinder nav;
     private final ScheduledExecutorService executor;
     
     private BetterCharacterControl bcc;
     private Vector3f targetPos;
     private final Vector3f position2D = new Vector3f();
     private final Vector3f waypoint2D = new Vector3f();
+    private final Vector3f walkDirection = new Vector3f();
     private final Vector3f viewDirection = new Vector3f(0, 0, 1);
     private final Quaternion lookRotation = new Quaternion();
     private float radius = 1f;
@@ -60,13 +59,39 @@ public class NavMeshAgentMT extends AbstractControl {
     private boolean stopped = false;
 
     /**
-     * Instantiate a NavMeshAgent.
+     * Instantiate a NavMeshAgent with its own navmesh, searched by a
+     * {@link com.jme3.ai.navmesh.NavMeshPathfinder}. To share one navmesh
+     * between the agents of a mesh, use
+     * {@code new NavMeshAgentMT(FlatNavMesh.shared(mesh))} instead.
      * @param mesh
      */
     public NavMeshAgentMT(Mesh mesh) {
+        this(new IndexedNavMesh(mesh));
+    }
+
+    /**
+     * Instantiate a NavMeshAgent sharing a FlatNavMesh with any number of
+     * agents, without locking. The path corners are found by the funnel of
+     * {@link com.jme3.ai.navmesh.FlatNavMeshPathfinder}, so they may differ
+     * from the ones of a {@link com.jme3.ai.navmesh.NavMeshPathfinder}.
+     * @param navMesh
+     */
+    public NavMeshAgentMT(FlatNavMesh navMesh) {
+        this(new AgentPathfinder.Flat(navMesh));
+    }
+
+    /**
+     * Instantiate a NavMeshAgent sharing an existing NavMesh, e.g. a
+     * {@link com.jme3.ai.navmesh.TiledNavMesh} updated at runtime.
+     * @param navMesh
+     */
+    public NavMeshAgentMT(NavMesh navMesh) {
+        this(new AgentPathfinder.Cells(navMesh));
+    }
+
+    private NavMeshAgentMT(AgentPathfinder nav) {
         this.executor = Executors.newScheduledThreadPool(1);
-        this.navMesh = new NavMesh(mesh);
-        this.nav = new NavMeshPathfinder(navMesh);
+        this.nav = nav;
         this.nav.setEntityRadius(radius);
     }
 
@@ -107,21 +132,20 @@ public class NavMeshAgentMT extends AbstractControl {
     private void updateMovement(float tpf) {
         // getNextWayPoint will return always the same waypoint until we
         // manually advance to the next
-        Path.Waypoint wayPoint = nav.getNextWaypoint();
+        Vector3f wayPoint = nav.getNextWaypoint(waypoint2D);
 
         if (wayPoint != null) {
 
             position2D.set(spatial.getWorldTranslation());
             position2D.y = 0;
 
-            waypoint2D.set(wayPoint.getPosition());
             waypoint2D.y = 0;
 
             float remainingDistance = position2D.distance(waypoint2D);
 
             // Move the spatial to location while its not there
             if (remainingDistance > stoppingDistance) {
-                Vector3f dir = waypoint2D.subtract(position2D).normalizeLocal();
+                Vector3f dir = waypoint2D.subtract(position2D, walkDirection).normalizeLocal();
                 moveTo(dir, tpf);
 
             } // If at the final waypoint set at goal to true
@@ -158,11 +182,7 @@ public class NavMeshAgentMT extends AbstractControl {
         if (targetPos != null) {
             pathPending = true;
             
-            nav.clearPath();
-            nav.setPosition(spatial.getWorldTranslation());
-            nav.warpInside(targetPos);
-
-            hasPath = nav.computePath(targetPos);
+            hasPath = nav.computePath(spatial.getWorldTranslation(), targetPos);
             if (logger.isLoggable(Level.FINE)) {
                 logger.log(Level.FINE, "Path found: {0}", hasPath);
             }
@@ -244,18 +264,26 @@ public class NavMeshAgentMT extends AbstractControl {
     }
     
     /**
-     * Calculate the corners for the path.
+     * Calculate the corners for the path. The vectors already in the list are
+     * reused, so that nothing is allocated once the list has held as many
+     * corners; the extra vectors are removed.
      * 
      * @param results List to store path corners.
      * @return The number of corners along the path - including start and end points.
      */
     public int getCornersNonAlloc(List<Vector3f> results) {
-        results.clear();
-        for (Waypoint waypoint : nav.getPath().getWaypoints()) {
-            Vector3f v = waypoint.getPosition().clone();
-            results.add(v);
-        }
-        return results.size();
+        return nav.getCornersNonAlloc(results);
+    }
+
+    /**
+     * Calculate the corners for the path, without allocating.
+     * 
+     * @param results Array to store the x, y, z of the path corners. The corners
+     * which don't fit are skipped.
+     * @return The number of corners along the path - including start and end points.
+     */
+    public int getCornersNonAlloc(float[] results) {
+        return nav.getCornersNonAlloc(results);
     }
 
     /**
@@ -0,0 +1,259 @@
+package com.jme3.ai.navmesh;
+
+import java.util.function.IntConsumer;
+
+import com.jme3.math.Vector3f;
+
+/**
+ * A uniform grid over the bounding boxes of the cells of a navmesh on the
+ * xz-plane, shared by {@link NavMeshGrid} and {@link FlatNavMesh}. The cells
+ * are known by their index in the array of bounds: the tests on the triangle
+ * of a cell are left to the subclass.
+ * <p>
+ * Each cell is registered in all the buckets overlapped by its bounding box.
+ * The bucket size is chosen from the size of the cells, so that a bucket holds
+ * a few cells. The buckets are stored in two flat arrays, and the grid holds
+ * no state between the queries: it can be queried by several threads at once.
+ *
+ * @author capdevon
+ */
+abstract class CellGrid {
+
+    // the bounds of each cell on the xz-plane: minX, minZ, maxX, maxZ
+    private final float[] bounds;
+    private final float minX, minZ;
+    private final float bucketSize;
+    private final int columns, rows;
+    // the cells of bucket b are bucketCells[bucketStarts[b] .. bucketStarts[b + 1]]
+    private final int[] bucketStarts;
+    private final int[] bucketCells;
+
+    /**
+     * Instantiate a <code>CellGrid</code>
+     *
+     * @param bounds the bounds of each cell on the xz-plane: minX, minZ, maxX,
+     *               maxZ (not null, not copied)
+     */
+    CellGrid(float[] bounds) {
+        this.bounds = bounds;
+        int cellCount = bounds.length / 4;
+
+        float x0 = Float.POSITIVE_INFINITY, z0 = Float.POSITIVE_INFINITY;
+        float x1 = Float.NEGATIVE_INFINITY, z1 = Float.NEGATIVE_INFINITY;
+        double extent = 0;
+        for (int i = 0; i < cellCount; i++) {
+            extent += Math.max(bounds[i * 4 + 2] - bounds[i * 4], bounds[i * 4 + 3] - bounds[i * 4 + 1]);
+            x0 = Math.min(x0, bounds[i * 4]);
+            z0 = Math.min(z0, bounds[i * 4 + 1]);
+            x1 = Math.max(x1, bounds[i * 4 + 2]);
+            z1 = Math.max(z1, bounds[i * 4 + 3]);
+        }
+
+        if (cellCount == 0) {
+            x0 = z0 = x1 = z1 = 0;
+        }
+        // about one cell per bucket, but no more buckets than four per cell
+        float width = Math.max(x1 - x0, 1e-3f), depth = Math.max(z1 - z0, 1e-3f);
+        float size = (float) (extent / Math.max(1, cellCount));
+        size = Math.max(size, (float) Math.sqrt(width * depth / (4.0 * Math.max(1, cellCount))));
+        this.bucketSize = Math.max(size, 1e-3f);
+        this.minX = x0;
+        this.minZ = z0;
+        this.columns = Math.max(1, (int) Math.ceil(width / bucketSize));
+        this.rows = Math.max(1, (int) Math.ceil(depth / bucketSize));
+
+        // count the cells of each bucket, then fill the buckets
+        bucketStarts = new int[columns * rows + 1];
+        for (int i = 0; i < cellCount; i++) {
+            for (int r = row(bounds[i * 4 + 1]); r <= row(bounds[i * 4 + 3]); r++) {
+                for (int c = column(bounds[i * 4]); c <= column(bounds[i * 4 + 2]); c++) {
+                    bucketStarts[r * columns + c + 1]++;
+                }
+            }
+        }
+        for (int b = 0; b < columns * rows; b++) {
+            bucketStarts[b + 1] += bucketStarts[b];
+        }
+        bucketCells = new int[bucketStarts[columns * rows]];
+        int[] fill = new int[columns * rows];
+        for (int i = 0; i < cellCount; i++) {
+            for (int r = row(bounds[i * 4 + 1]); r <= row(bounds[i * 4 + 3]); r++) {
+                for (int c = column(bounds[i * 4]); c <= column(bounds[i * 4 + 2]); c++) {
+                    int b = r * columns + c;
+                    bucketCells[bucketStarts[b] + fill[b]++] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests whether a cell contains a point on the xz-plane.
+     *
+     * @param cell  the index of the cell
+     * @param point the point to test (not null, unaffected)
+     * @return the distance between the point and the height of the cell at
+     *         the point, or a negative value if the cell does not contain the
+     *         point
+     */
+    protected abstract float getHeightDistance(int cell, Vector3f point);
+
+    /**
+     * Computes the squared distance between a point and the nearest point of
+     * a cell.
+     *
+     * @param cell  the index of the cell
+     * @param point the point to test (not null, unaffected)
+     * @param temp  the vector passed to {@link #findClosestCell(Vector3f, Vector3f)},
+     *              free for the computation
+     * @return the squared distance (world units)
+     */
+    protected abstract float distanceSquared(int cell, Vector3f point, Vector3f temp);
+
+    private int column(float x) {
+        return clamp((int) Math.floor((x - minX) / bucketSize), columns);
+    }
+
+    private int row(float z) {
+        return clamp((int) Math.floor((z - minZ) / bucketSize), rows);
+    }
+
+    private static int clamp(int index, int count) {
+        return Math.max(0, Math.min(count - 1, index));
+    }
+
+    /**
+     * Finds the closest cell to a point: among the cells containing the point
+     * on the xz-plane, the one whose height is the closest to the point;
+     * otherwise, the nearest cell.
+     *
+     * @param point the point to test (not null, unaffected)
+     * @param temp  a vector for {@link #distanceSquared(int, Vector3f, Vector3f)},
+     *              or {@code null} if the subclass does not need one
+     * @return the index of the closest cell, or -1 if the grid is empty
+     */
+    int findClosestCell(Vector3f point, Vector3f temp) {
+        int inside = findContainingCell(point);
+        if (inside >= 0 || bucketCells.length == 0) {
+            return inside;
+        }
+
+        // after visiting a ring, the other cells are farther than (ring * bucketSize)
+        int column = column(point.x), row = row(point.z);
+        float outside = Math.max(Math.max(minX - point.x, point.x - (minX + columns * bucketSize)),
+                Math.max(minZ - point.z, point.z - (minZ + rows * bucketSize)));
+        int maxRing = Math.max(columns, rows);
+
+        int nearest = -1;
+        float nearestDist = Float.POSITIVE_INFINITY;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int r = row - ring; r <= row + ring; r++) {
+                if (r < 0 || r >= rows) {
+                    continue;
+                }
+                boolean edge = (r == row - ring || r == row + ring);
+                for (int c = column - ring; c <= column + ring; c += edge ? 1 : 2 * Math.max(1, ring)) {
+                    if (c < 0 || c >= columns) {
+                        continue;
+                    }
+                    int b = r * columns + c;
+                    for (int j = bucketStarts[b]; j < bucketStarts[b + 1]; j++) {
+                        int cell = bucketCells[j];
+                        float dist = distanceSquared(cell, point, temp);
+                        if (dist < nearestDist) {
+                            nearestDist = dist;
+                            nearest = cell;
+                        }
+                    }
+                }
+            }
+
+            float reach = Math.max(outside, ring * bucketSize);
+            if (nearest >= 0 && nearestDist <= reach * reach) {
+                break;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Finds the cell containing a point on the xz-plane. If several cells
+     * contain the point, the one whose height is the closest to the point is
+     * returned.
+     *
+     * @param point the point to test (not null, unaffected)
+     * @return the index of the cell, or -1 if no cell contains the point
+     */
+    int findContainingCell(Vector3f point) {
+        if (point.x < minX || point.z < minZ
+                || point.x > minX + columns * bucketSize || point.z > minZ + rows * bucketSize) {
+            return -1;
+        }
+        int b = row(point.z) * columns + column(point.x);
+        int inside = -1;
+        float insideDist = Float.POSITIVE_INFINITY;
+        for (int j = bucketStarts[b]; j < bucketStarts[b + 1]; j++) {
+            int cell = bucketCells[j];
+            if (point.x < bounds[cell * 4] || point.z < bounds[cell * 4 + 1]
+                    || point.x > bounds[cell * 4 + 2] || point.z > bounds[cell * 4 + 3]) {
+                continue;
+            }
+            float dist = getHeightDistance(cell, point);
+            if (dist >= 0 && dist < insideDist) {
+                insideDist = dist;
+                inside = cell;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Visits the cells whose bounding box overlaps a circle on the xz-plane.
+     * Each cell is visited once.
+     *
+     * @param center the center of the circle (not null, unaffected)
+     * @param radius the radius of the circle (world units)
+     * @param action called with the index of each cell
+     */
+    void findCells(Vector3f center, float radius, IntConsumer action) {
+        int c0 = column(center.x - radius), c1 = column(center.x + radius);
+        int r0 = row(center.z - radius), r1 = row(center.z + radius);
+        float radiusSq = radius * radius;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int b = r * columns + c;
+                for (int j = bucketStarts[b]; j < bucketStarts[b + 1]; j++) {
+                    int i = bucketCells[j];
+                    // the cell belongs to the bucket holding the nearest corner of its bounds
+                    float nx = Math.max(bounds[i * 4], Math.min(center.x, bounds[i * 4 + 2]));
+                    float nz = Math.max(bounds[i * 4 + 1], Math.min(center.z, bounds[i * 4 + 3]));
+                    if (column(nx) != c || row(nz) != r) {
+                        continue;
+                    }
+                    float dx = nx - center.x, dz = nz - center.z;
+                    if (dx * dx + dz * dz <= radiusSq) {
+                        action.accept(i);
+                    }
+                }
+            }
+        }
+    }
+
+    float getBucketSize() {
+        return bucketSize;
+    }
+
+    /**
+     * @return the size of the arrays of the buckets (bytes).
+     */
+    long getSizeInBytes() {
+        return 4L * (bucketStarts.length + bucketCells.length);
+    }
+
+    @Override
+    public String toString() {
+        return "buckets=" + columns + "x" + rows
+                + ", bucketSize=" + bucketSize
+                + ", entries=" + bucketCells.length;
+    }
+
+}
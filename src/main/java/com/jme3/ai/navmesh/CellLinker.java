@@ -0,0 +1,321 @@
+package com.jme3.ai.navmesh;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import com.jme3.math.Vector3f;
+
+/**
+ * Links the cells sharing an edge by hashing the edges, instead of testing every
+ * pair of cells as {@link NavMesh#linkCells()} does.
+ * <p>
+ * When the vertex indices of the cells are known, the edges are first matched
+ * by their pair of indices. The end points of the other edges are welded: the
+ * points closer than {@link #LINK_EPSILON} get the same id, found on a grid
+ * of twice that size by probing the 8 cells which can hold such a point, so
+ * that two points on either side of a grid line are still welded. The edges
+ * are then matched by their pair of welded ids, whatever the winding, and
+ * each match of two cells is confirmed by {@link Cell#requestLink}.
+ * <p>
+ * Both passes can run in parallel: the edges are split into shards by hash, so
+ * that the two sides of an edge always fall into the same shard, and each side
+ * of a cell is only written by the shard of its edge.
+ *
+ * @author capdevon
+ */
+final class CellLinker {
+
+    /**
+     * The same tolerance used by {@link NavMesh#linkCells()}.
+     */
+    static final float LINK_EPSILON = 0.001f;
+
+    // the size of the cells of the welding grid
+    private static final double WELD_CELL = 2.0 * LINK_EPSILON;
+
+    /**
+     * Called for each pair of matched edges (cell * 3 + side).
+     */
+    interface Connector {
+        void connect(int edge, int other);
+    }
+
+    private CellLinker() {}
+
+    /**
+     * Links the cells of the supplied array that share an edge. Links already
+     * set between two of these cells are left unchanged.
+     *
+     * @param cells the cells to link
+     * @param count the number of cells to consider
+     */
+    static void link(Cell[] cells, int count) {
+        link(cells, count, false);
+    }
+
+    /**
+     * Links the cells of the supplied array that share an edge, matching the
+     * edges by their end points.
+     *
+     * @param cells    the cells to link
+     * @param count    the number of cells to consider
+     * @param parallel {@code true} to use the common fork-join pool
+     */
+    static void link(Cell[] cells, int count, boolean parallel) {
+        linkByPosition(cells, allEdges(count), parallel);
+    }
+
+    /**
+     * Links the cells that share an edge, matching the edges by the indices of
+     * their vertices, then the remaining edges by their end points.
+     *
+     * @param cells    the cells to link
+     * @param corners  the vertex indices of each cell (3 per cell)
+     * @param parallel {@code true} to use the common fork-join pool
+     */
+    static void link(Cell[] cells, int[] corners, boolean parallel) {
+        int[] open = matchEdges(allEdges(cells.length), cornerEnds(corners), parallel,
+                (edge, other) -> connect(cells[edge / 3], edge % 3, cells[other / 3], other % 3));
+        linkByPosition(cells, open, parallel);
+    }
+
+    /**
+     * Links the triangles of flat arrays that share an edge, matching the
+     * edges by the indices of their vertices, then the remaining edges by
+     * their end points.
+     *
+     * @param positions the vertex positions (x, y, z)
+     * @param corners   the vertex indices of each triangle (3 per triangle)
+     * @param parallel  {@code true} to use the common fork-join pool
+     * @return the id of the triangle linked through each side AB, BC and CA
+     *         of each triangle, or -1 for a wall
+     */
+    static int[] link(float[] positions, int[] corners, boolean parallel) {
+        int[] links = new int[corners.length];
+        Arrays.fill(links, -1);
+        Connector connector = (edge, other) -> {
+            links[edge] = other / 3;
+            links[other] = edge / 3;
+        };
+
+        int[] open = matchEdges(allEdges(corners.length / 3), cornerEnds(corners), parallel, connector);
+        float[] points = new float[open.length * 6];
+        for (int i = 0; i < open.length; i++) {
+            int cell = open[i] / 3, side = open[i] % 3;
+            System.arraycopy(positions, corners[cell * 3 + side] * 3, points, i * 6, 3);
+            System.arraycopy(positions, corners[cell * 3 + (side + 1) % 3] * 3, points, i * 6 + 3, 3);
+        }
+        matchEdges(open, weld(points), parallel, connector);
+        return links;
+    }
+
+    private static int[] allEdges(int cellCount) {
+        int[] edges = new int[cellCount * 3];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = i;
+        }
+        return edges;
+    }
+
+    /**
+     * @return the vertex indices of the end points of each edge (2 per edge).
+     */
+    private static int[] cornerEnds(int[] corners) {
+        int[] ends = new int[corners.length * 2];
+        for (int edge = 0; edge < corners.length; edge++) {
+            int cell = edge / 3, side = edge % 3;
+            ends[edge * 2] = corners[cell * 3 + side];
+            ends[edge * 2 + 1] = corners[cell * 3 + (side + 1) % 3];
+        }
+        return ends;
+    }
+
+    /**
+     * Matches the edges by their welded end points.
+     *
+     * @param edges the edges to match (cell * 3 + side)
+     */
+    private static void linkByPosition(Cell[] cells, int[] edges, boolean parallel) {
+        float[] points = new float[edges.length * 6];
+        shardStream(edges.length, parallel).forEach(i -> {
+            Cell cell = cells[edges[i] / 3];
+            int side = edges[i] % 3;
+            Vector3f a = cell.getVertex(side), b = cell.getVertex((side + 1) % 3);
+            points[i * 6] = a.x;
+            points[i * 6 + 1] = a.y;
+            points[i * 6 + 2] = a.z;
+            points[i * 6 + 3] = b.x;
+            points[i * 6 + 4] = b.y;
+            points[i * 6 + 5] = b.z;
+        });
+        matchEdges(edges, weld(points), parallel,
+                (edge, other) -> connect(cells[edge / 3], edge % 3, cells[other / 3], other % 3));
+    }
+
+    /**
+     * Matches the edges by their pair of vertex ids, whatever their order.
+     *
+     * @param edges     the edges to match (cell * 3 + side)
+     * @param ends      the ids of the end points of each edge (2 per edge)
+     * @param parallel  {@code true} to use the common fork-join pool
+     * @param connector called for each pair of matched edges, by the shard
+     *                  of the edge
+     * @return the edges left unmatched.
+     */
+    static int[] matchEdges(int[] edges, int[] ends, boolean parallel, Connector connector) {
+        int shards = shardCount(edges.length / 3, parallel);
+        int[][] open = shardStream(shards, parallel)
+                .mapToObj(shard -> matchShard(edges, ends, shard, shards, connector))
+                .toArray(int[][]::new);
+        return concat(open);
+    }
+
+    private static int[] matchShard(int[] edges, int[] ends, int shard, int shards, Connector connector) {
+        // open addressing: -1 marks an edge already matched
+        int capacity = Integer.highestOneBit(Math.max(4, edges.length / shards) * 2) * 2;
+        long[] keys = new long[capacity];
+        int[] values = new int[capacity];
+        Arrays.fill(values, Integer.MIN_VALUE);
+
+        for (int i = 0; i < edges.length; i++) {
+            int edge = edges[i];
+            int a = ends[i * 2], b = ends[i * 2 + 1];
+            long key = ((long) Math.min(a, b) << 32) | (Math.max(a, b) & 0xffffffffL);
+            int hash = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+            if (Math.floorMod(hash, shards) != shard) {
+                continue;
+            }
+
+            int slot = hash & (capacity - 1);
+            while (values[slot] != Integer.MIN_VALUE && keys[slot] != key) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            int other = values[slot];
+            if (other == Integer.MIN_VALUE || other == -1) {
+                keys[slot] = key;
+                values[slot] = edge;
+            } else if (other / 3 != edge / 3) {
+                connector.connect(edge, other);
+                values[slot] = -1;
+            }
+        }
+
+        int count = 0;
+        for (int value : values) {
+            if (value >= 0) {
+                values[count++] = value;
+            }
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Welds the points closer than {@link #LINK_EPSILON}: each point gets the
+     * index of the first point it is welded to, or its own index.
+     *
+     * @param points the points (x, y, z)
+     * @return the id of each point
+     */
+    static int[] weld(float[] points) {
+        int count = points.length / 3;
+        int[] ids = new int[count];
+        // open addressing over the grid cells holding a point kept as id,
+        // each with the list of its points: head[slot], then next[point]
+        int capacity = Integer.highestOneBit(Math.max(4, count) * 2) * 2;
+        int[] cellX = new int[capacity], cellY = new int[capacity], cellZ = new int[capacity];
+        int[] head = new int[capacity];
+        int[] next = new int[count];
+        Arrays.fill(head, -1);
+        float epsilonSq = LINK_EPSILON * LINK_EPSILON;
+
+        for (int p = 0; p < count; p++) {
+            double gx = points[p * 3] / WELD_CELL, gy = points[p * 3 + 1] / WELD_CELL, gz = points[p * 3 + 2] / WELD_CELL;
+            int cx = (int) Math.floor(gx), cy = (int) Math.floor(gy), cz = (int) Math.floor(gz);
+            // a point closer than the epsilon lies in this cell or in the
+            // neighbour on the nearer side, along each axis
+            int dx = (gx - cx < 0.5) ? -1 : 1, dy = (gy - cy < 0.5) ? -1 : 1, dz = (gz - cz < 0.5) ? -1 : 1;
+
+            int id = -1;
+            for (int k = 0; k < 8 && id < 0; k++) {
+                int x = cx + ((k & 1) != 0 ? dx : 0), y = cy + ((k & 2) != 0 ? dy : 0), z = cz + ((k & 4) != 0 ? dz : 0);
+                int slot = find(cellX, cellY, cellZ, head, x, y, z);
+                for (int q = head[slot]; q >= 0; q = next[q]) {
+                    float ex = points[q * 3] - points[p * 3];
+                    float ey = points[q * 3 + 1] - points[p * 3 + 1];
+                    float ez = points[q * 3 + 2] - points[p * 3 + 2];
+                    if (ex * ex + ey * ey + ez * ez <= epsilonSq) {
+                        id = q;
+                        break;
+                    }
+                }
+            }
+
+            if (id < 0) {
+                id = p;
+                int slot = find(cellX, cellY, cellZ, head, cx, cy, cz);
+                cellX[slot] = cx;
+                cellY[slot] = cy;
+                cellZ[slot] = cz;
+                next[p] = head[slot];
+                head[slot] = p;
+            }
+            ids[p] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * @return the slot of the grid cell, or the empty slot where it belongs.
+     */
+    private static int find(int[] cellX, int[] cellY, int[] cellZ, int[] head, int x, int y, int z) {
+        int mask = head.length - 1;
+        int slot = mix(31 * (31 * x + y) + z) & mask;
+        while (head[slot] >= 0 && (cellX[slot] != x || cellY[slot] != y || cellZ[slot] != z)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int shardCount(int cellCount, boolean parallel) {
+        // below a few thousand cells, the tasks cost more than they save
+        return parallel && cellCount > 4096 ? ForkJoinPool.getCommonPoolParallelism() + 1 : 1;
+    }
+
+    private static IntStream shardStream(int count, boolean parallel) {
+        IntStream stream = IntStream.range(0, count);
+        return parallel ? stream.parallel() : stream;
+    }
+
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        return hash ^ (hash >>> 13);
+    }
+
+    private static int[] concat(int[][] arrays) {
+        int length = 0;
+        for (int[] array : arrays) {
+            length += array.length;
+        }
+        int[] result = new int[length];
+        int offset = 0;
+        for (int[] array : arrays) {
+            System.arraycopy(array, 0, result, offset, array.length);
+            offset += array.length;
+        }
+        return result;
+    }
+
+    /**
+     * Links two cells through their shared edge. Each cell is passed its own
+     * end points: {@link Cell#requestLink} compares one of them exactly.
+     */
+    static void connect(Cell cell, int side, Cell other, int otherSide) {
+        Vector3f a = other.getVertex(otherSide), b = other.getVertex((otherSide + 1) % 3);
+        if (other.requestLink(a, b, cell, LINK_EPSILON)) {
+            cell.requestLink(cell.getVertex(side), cell.getVertex((side + 1) % 3), other, LINK_EPSILON);
+        }
+    }
+
+}
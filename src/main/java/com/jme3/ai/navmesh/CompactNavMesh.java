@@ -0,0 +1,332 @@
+package com.jme3.ai.navmesh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jme3.math.Vector3f;
+
+/**
+ * A read-only, compact copy of a {@link NavMesh}, meant to keep many navmeshes
+ * in memory, for example on a server hosting many maps.
+ * <p>
+ * A {@link Cell} keeps its vertices, its center, its sides and its wall
+ * midpoints as separate objects, that is several hundred bytes per triangle.
+ * Here the vertices shared by the cells are stored once, and each cell is
+ * made of six integers: the indices of its three vertices and the indices of
+ * the neighbouring cells through the sides AB, BC and CA (-1 for a wall).
+ * <p>
+ * The vertices are grouped by square tiles on the xz-plane and quantized to
+ * 16 bits relative to the bounds of their tile, so that the precision depends
+ * on the tile size and not on the size of the world: with tiles of 64 world
+ * units, the error is below one millimetre. Vertices lying on a tile edge are
+ * restored exactly, so that the seams of a {@link TiledNavMesh} still match.
+ * <p>
+ * Use {@link #toNavMesh()} to get back a navmesh which can be queried, and
+ * {@link NavMeshFile} to store the compact navmesh on disk.
+ *
+ * @author capdevon
+ */
+public final class CompactNavMesh {
+
+    /**
+     * The tile size used to quantize the vertices of a navmesh which is not
+     * tiled.
+     */
+    public static final float DEFAULT_TILE_SIZE = 64;
+
+    private static final float QUANTUM = 65535f;
+
+    private final float tileSize;
+    private final boolean tiled;
+    // the column and the row of each tile
+    private final int[] tileCoords;
+    // the minimum and maximum height of the vertices of each tile
+    private final float[] tileHeights;
+    // the index of the first vertex of each tile, followed by the vertex count
+    private final int[] tileStarts;
+    // the quantized x, y, z of each vertex, as unsigned shorts
+    private final short[] vertices;
+    private final int[] cellVertices;
+    private final int[] cellLinks;
+
+    CompactNavMesh(float tileSize, boolean tiled, int[] tileCoords, float[] tileHeights, int[] tileStarts,
+            short[] vertices, int[] cellVertices, int[] cellLinks) {
+        this.tileSize = tileSize;
+        this.tiled = tiled;
+        this.tileCoords = tileCoords;
+        this.tileHeights = tileHeights;
+        this.tileStarts = tileStarts;
+        this.vertices = vertices;
+        this.cellVertices = cellVertices;
+        this.cellLinks = cellLinks;
+    }
+
+    /**
+     * Creates a compact copy of a navmesh. The vertices of a
+     * {@link TiledNavMesh} are quantized relative to its own tiles, the others
+     * relative to tiles of {@link #DEFAULT_TILE_SIZE}.
+     *
+     * @param navMesh the navmesh, whose cells are linked
+     * @return a new compact navmesh
+     */
+    public static CompactNavMesh fromNavMesh(NavMesh navMesh) {
+        return fromNavMesh(navMesh, navMesh instanceof TiledNavMesh
+                ? ((TiledNavMesh) navMesh).getTileSize()
+                : DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Creates a compact copy of a navmesh.
+     *
+     * @param navMesh  the navmesh, whose cells are linked
+     * @param tileSize the size of the tiles used to quantize the vertices
+     *                 (world units)
+     * @return a new compact navmesh
+     */
+    public static CompactNavMesh fromNavMesh(NavMesh navMesh, float tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize must be greater than zero: " + tileSize);
+        }
+
+        int cellCount = navMesh.getNumCells();
+        Cell[] cells = new Cell[cellCount];
+        Map<Cell, Integer> cellIndices = new IdentityHashMap<>(cellCount * 2);
+        for (int i = 0; i < cellCount; i++) {
+            cells[i] = navMesh.getCell(i);
+            cellIndices.put(cells[i], i);
+        }
+
+        // weld the corners shared by the cells
+        Map<Vector3f, Integer> vertexIndices = new HashMap<>(cellCount * 2);
+        List<Vector3f> welded = new ArrayList<>();
+        int[] corners = new int[cellCount * 3];
+        int[] links = new int[cellCount * 3];
+        for (int i = 0; i < cellCount; i++) {
+            for (int k = 0; k < 3; k++) {
+                Vector3f v = cells[i].getVertex(k);
+                Integer index = vertexIndices.get(v);
+                if (index == null) {
+                    index = welded.size();
+                    vertexIndices.put(v, index);
+                    welded.add(v);
+                }
+                corners[i * 3 + k] = index;
+
+                Integer link = cellIndices.get(cells[i].getLink(k));
+                links[i * 3 + k] = link != null ? link : -1;
+            }
+        }
+
+        // sort the vertices by tile
+        int vertexCount = welded.size();
+        long[] keys = new long[vertexCount];
+        Integer[] order = new Integer[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            Vector3f v = welded.get(i);
+            keys[i] = key(tileIndex(v.x, tileSize), tileIndex(v.z, tileSize));
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        int[] remap = new int[vertexCount];
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < vertexCount; i++) {
+            remap[order[i]] = i;
+            if (i == 0 || keys[order[i]] != keys[order[i - 1]]) {
+                starts.add(i);
+            }
+        }
+        int tileCount = starts.size();
+        starts.add(vertexCount);
+
+        int[] tileCoords = new int[tileCount * 2];
+        float[] tileHeights = new float[tileCount * 2];
+        int[] tileStarts = new int[tileCount + 1];
+        short[] quantized = new short[vertexCount * 3];
+        for (int t = 0; t < tileCount; t++) {
+            int start = starts.get(t), end = starts.get(t + 1);
+            tileStarts[t] = start;
+            long key = keys[order[start]];
+            int tileX = (int) (key >> 32), tileZ = (int) key;
+            tileCoords[t * 2] = tileX;
+            tileCoords[t * 2 + 1] = tileZ;
+
+            float minY = Float.POSITIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+            for (int i = start; i < end; i++) {
+                float y = welded.get(order[i]).y;
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+            }
+            tileHeights[t * 2] = minY;
+            tileHeights[t * 2 + 1] = maxY;
+
+            for (int i = start; i < end; i++) {
+                Vector3f v = welded.get(order[i]);
+                quantized[i * 3] = quantize(v.x - tileX * tileSize, tileSize);
+                quantized[i * 3 + 1] = quantize(v.y - minY, maxY - minY);
+                quantized[i * 3 + 2] = quantize(v.z - tileZ * tileSize, tileSize);
+            }
+        }
+        tileStarts[tileCount] = vertexCount;
+
+        for (int i = 0; i < corners.length; i++) {
+            corners[i] = remap[corners[i]];
+        }
+
+        return new CompactNavMesh(tileSize, navMesh instanceof TiledNavMesh,
+                tileCoords, tileHeights, tileStarts, quantized, corners, links);
+    }
+
+    private static short quantize(float offset, float range) {
+        if (range <= 0) {
+            return 0;
+        }
+        int q = Math.round(offset / range * QUANTUM);
+        return (short) Math.max(0, Math.min(0xffff, q));
+    }
+
+    private static float dequantize(short q, float range) {
+        return (q & 0xffff) * range / QUANTUM;
+    }
+
+    private static int tileIndex(float coord, float tileSize) {
+        return (int) Math.floor(coord / tileSize);
+    }
+
+    private static long key(int tileX, int tileZ) {
+        return ((long) tileX << 32) | (tileZ & 0xffffffffL);
+    }
+
+    /**
+     * Creates a navmesh with the cells of this compact navmesh, linked as
+     * they were in the source navmesh.
+     *
+     * @return a new {@link IndexedNavMesh}, or a {@link TiledNavMesh} if the
+     *         source navmesh was tiled
+     */
+    public NavMesh toNavMesh() {
+        float[] positions = new float[getVertexCount() * 3];
+        Vector3f store = new Vector3f();
+        for (int i = 0; i < getVertexCount(); i++) {
+            getVertex(i, store);
+            positions[i * 3] = store.x;
+            positions[i * 3 + 1] = store.y;
+            positions[i * 3 + 2] = store.z;
+        }
+        return NavMeshFile.createNavMesh(positions, cellVertices, cellLinks, tiled ? tileSize : 0);
+    }
+
+    /**
+     * Restores the position of a vertex.
+     *
+     * @param index the index of the vertex
+     * @param store storage for the result (not null)
+     * @return the position (the store)
+     */
+    public Vector3f getVertex(int index, Vector3f store) {
+        int t = findTile(index);
+        float minY = tileHeights[t * 2];
+        float rangeY = tileHeights[t * 2 + 1] - minY;
+        store.x = tileCoords[t * 2] * tileSize + dequantize(vertices[index * 3], tileSize);
+        store.y = minY + dequantize(vertices[index * 3 + 1], rangeY);
+        store.z = tileCoords[t * 2 + 1] * tileSize + dequantize(vertices[index * 3 + 2], tileSize);
+        return store;
+    }
+
+    /**
+     * @return the tile containing the vertex.
+     */
+    private int findTile(int vertex) {
+        // the tiles are never empty, so the starts are strictly increasing
+        int t = Arrays.binarySearch(tileStarts, vertex);
+        return t >= 0 ? t : -t - 2;
+    }
+
+    /**
+     * @param cell   the index of the cell
+     * @param corner the corner: 0 for A, 1 for B, 2 for C
+     * @return the index of the vertex of the cell.
+     */
+    public int getCellVertex(int cell, int corner) {
+        return cellVertices[cell * 3 + corner];
+    }
+
+    /**
+     * @param cell the index of the cell
+     * @param side the side: 0 for AB, 1 for BC, 2 for CA
+     * @return the index of the neighbouring cell through the side, or -1 if
+     *         the side is a wall.
+     */
+    public int getLink(int cell, int side) {
+        return cellLinks[cell * 3 + side];
+    }
+
+    public int getCellCount() {
+        return cellVertices.length / 3;
+    }
+
+    public int getVertexCount() {
+        return vertices.length / 3;
+    }
+
+    public int getTileCount() {
+        return tileCoords.length / 2;
+    }
+
+    public float getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * @return {@code true} if the source navmesh was a {@link TiledNavMesh}.
+     */
+    public boolean isTiled() {
+        return tiled;
+    }
+
+    /**
+     * @return the size of the arrays holding the navmesh (bytes).
+     */
+    public long getSizeInBytes() {
+        return 4L * (tileCoords.length + tileHeights.length + tileStarts.length
+                + cellVertices.length + cellLinks.length) + 2L * vertices.length;
+    }
+
+    int[] getTileCoords() {
+        return tileCoords;
+    }
+
+    float[] getTileHeights() {
+        return tileHeights;
+    }
+
+    int[] getTileStarts() {
+        return tileStarts;
+    }
+
+    short[] getQuantizedVertices() {
+        return vertices;
+    }
+
+    int[] getCellVertices() {
+        return cellVertices;
+    }
+
+    int[] getCellLinks() {
+        return cellLinks;
+    }
+
+    @Override
+    public String toString() {
+        return "CompactNavMesh [cells=" + getCellCount()
+                + ", vertices=" + getVertexCount()
+                + ", tiles=" + getTileCount()
+                + ", tileSize=" + tileSize
+                + ", bytes=" + getSizeInBytes() + "]";
+    }
+
+}
@@ -0,0 +1,531 @@
+package com.jme3.ai.navmesh;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+
+/**
+ * A read-only navmesh whose cells are stored in flat primitive arrays indexed
+ * by cell id, instead of one object graph per {@link Cell}.
+ * <p>
+ * For each cell, the arrays hold the indices of its three vertices, the plane
+ * of the triangle, its center, the ids of the neighbouring cells through the
+ * sides AB, BC and CA (-1 for a wall), the midpoints of the sides and the
+ * distances between them. That is about 120 bytes per cell in a few large
+ * arrays, instead of some twenty objects: the pathfinder reads contiguous
+ * memory, and the garbage collector has nothing to trace.
+ * <p>
+ * The navmesh is immutable: the search state of the pathfinding lives in a
+ * {@link NavMeshSearchState} per thread, shared by all the navmeshes, so one
+ * instance, for example the one returned by {@link #shared(Mesh)}, serves any
+ * number of agents and threads at once. The cells are only queried by id: use
+ * {@link FlatNavMeshPathfinder} to find paths.
+ * <p>
+ * For the code working with the {@link Cell} API, {@link #getCell(int)} and
+ * {@link #toNavMesh()} return a {@link NavMesh} view with the same cells, in
+ * the same order, built on the first call.
+ *
+ * @author capdevon
+ */
+public final class FlatNavMesh {
+
+    /**
+     * The same tolerance used by {@link Cell#contains(Vector3f)}.
+     */
+    private static final float CONTAINS_EPSILON = 1e-6f;
+
+    // the navmeshes created by shared(Mesh), released with their mesh
+    private static final Map<Mesh, FlatNavMesh> sharedNavMeshes = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final float[] vertices;
+    private final int[] cellVertices;
+    private final int[] links;
+    // the normal and the constant of the plane of each cell
+    private final float[] planes;
+    private final float[] centers;
+    // the midpoints of the sides AB, BC and CA of each cell (x, y, z)
+    private final float[] wallMidpoints;
+    // the distances between the midpoints AB-BC, BC-CA and CA-AB of each cell
+    private final float[] wallDistances;
+    // the bounds of each cell on the xz-plane: minX, minZ, maxX, maxZ
+    private final float[] bounds;
+    // the vertices on a side which is not linked to another cell
+    private final boolean[] boundaryVertices;
+
+    private final CellGrid grid;
+
+    private volatile NavMesh view;
+    private Map<Cell, Integer> viewIds;
+
+    FlatNavMesh(float[] vertices, int[] cellVertices, int[] links) {
+        this.vertices = vertices;
+        this.cellVertices = cellVertices;
+        this.links = links;
+
+        int cellCount = cellVertices.length / 3;
+        this.planes = new float[cellCount * 4];
+        this.centers = new float[cellCount * 3];
+        this.wallMidpoints = new float[cellCount * 9];
+        this.wallDistances = new float[cellCount * 3];
+        this.bounds = new float[cellCount * 4];
+        this.boundaryVertices = new boolean[vertices.length / 3];
+
+        for (int i = 0; i < cellCount; i++) {
+            computeCellData(i);
+            for (int side = 0; side < 3; side++) {
+                if (links[i * 3 + side] < 0) {
+                    boundaryVertices[cellVertices[i * 3 + side]] = true;
+                    boundaryVertices[cellVertices[i * 3 + (side + 1) % 3]] = true;
+                }
+            }
+        }
+
+        this.grid = new CellGrid(bounds) {
+            @Override
+            protected float getHeightDistance(int cell, Vector3f point) {
+                return contains(cell, point.x, point.z)
+                        ? Math.abs(getHeightOnCell(cell, point.x, point.z) - point.y) : -1;
+            }
+
+            @Override
+            protected float distanceSquared(int cell, Vector3f point, Vector3f temp) {
+                return FlatNavMesh.this.distanceSquared(cell, point);
+            }
+        };
+    }
+
+    /**
+     * Computes the same data as {@link Cell}: the plane, the center, the wall
+     * midpoints and the distances between them.
+     */
+    private void computeCellData(int cell) {
+        int a = cellVertices[cell * 3] * 3, b = cellVertices[cell * 3 + 1] * 3, c = cellVertices[cell * 3 + 2] * 3;
+        float ax = vertices[a], ay = vertices[a + 1], az = vertices[a + 2];
+        float bx = vertices[b], by = vertices[b + 1], bz = vertices[b + 2];
+        float cx = vertices[c], cy = vertices[c + 1], cz = vertices[c + 2];
+
+        // (b - a) x (c - a), as com.jme3.math.Plane#setPlanePoints
+        float e1x = bx - ax, e1y = by - ay, e1z = bz - az;
+        float e2x = cx - ax, e2y = cy - ay, e2z = cz - az;
+        float nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+        float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (length > 0) {
+            nx /= length;
+            ny /= length;
+            nz /= length;
+        }
+        planes[cell * 4] = nx;
+        planes[cell * 4 + 1] = ny;
+        planes[cell * 4 + 2] = nz;
+        planes[cell * 4 + 3] = nx * ax + ny * ay + nz * az;
+
+        centers[cell * 3] = (ax + bx + cx) / 3;
+        centers[cell * 3 + 1] = (ay + by + cy) / 3;
+        centers[cell * 3 + 2] = (az + bz + cz) / 3;
+
+        int m = cell * 9;
+        wallMidpoints[m] = (ax + bx) / 2;
+        wallMidpoints[m + 1] = (ay + by) / 2;
+        wallMidpoints[m + 2] = (az + bz) / 2;
+        wallMidpoints[m + 3] = (bx + cx) / 2;
+        wallMidpoints[m + 4] = (by + cy) / 2;
+        wallMidpoints[m + 5] = (bz + cz) / 2;
+        wallMidpoints[m + 6] = (cx + ax) / 2;
+        wallMidpoints[m + 7] = (cy + ay) / 2;
+        wallMidpoints[m + 8] = (cz + az) / 2;
+        for (int k = 0; k < 3; k++) {
+            int p = m + k * 3, q = m + ((k + 1) % 3) * 3;
+            float dx = wallMidpoints[p] - wallMidpoints[q];
+            float dy = wallMidpoints[p + 1] - wallMidpoints[q + 1];
+            float dz = wallMidpoints[p + 2] - wallMidpoints[q + 2];
+            wallDistances[cell * 3 + k] = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+
+        bounds[cell * 4] = Math.min(ax, Math.min(bx, cx));
+        bounds[cell * 4 + 1] = Math.min(az, Math.min(bz, cz));
+        bounds[cell * 4 + 2] = Math.max(ax, Math.max(bx, cx));
+        bounds[cell * 4 + 3] = Math.max(az, Math.max(bz, cz));
+    }
+
+    /**
+     * Creates a flat copy of a navmesh.
+     *
+     * @param navMesh the navmesh, whose cells are linked
+     * @return a new flat navmesh, whose cell ids are the indices of the cells
+     *         in the navmesh
+     */
+    public static FlatNavMesh fromNavMesh(NavMesh navMesh) {
+        int cellCount = navMesh.getNumCells();
+        Cell[] cells = new Cell[cellCount];
+        Map<Cell, Integer> cellIds = new IdentityHashMap<>(cellCount * 2);
+        for (int i = 0; i < cellCount; i++) {
+            cells[i] = navMesh.getCell(i);
+            cellIds.put(cells[i], i);
+        }
+
+        Map<Vector3f, Integer> vertexIds = new HashMap<>(cellCount * 2);
+        float[] positions = new float[cellCount * 9];
+        int[] corners = new int[cellCount * 3];
+        int[] links = new int[cellCount * 3];
+        for (int i = 0; i < cellCount; i++) {
+            for (int k = 0; k < 3; k++) {
+                Vector3f v = cells[i].getVertex(k);
+                Integer index = vertexIds.putIfAbsent(v, vertexIds.size());
+                if (index == null) {
+                    index = vertexIds.size() - 1;
+                    positions[index * 3] = v.x;
+                    positions[index * 3 + 1] = v.y;
+                    positions[index * 3 + 2] = v.z;
+                }
+                corners[i * 3 + k] = index;
+
+                Integer link = cellIds.get(cells[i].getLink(k));
+                links[i * 3 + k] = link != null ? link : -1;
+            }
+        }
+
+        float[] vertices = new float[vertexIds.size() * 3];
+        System.arraycopy(positions, 0, vertices, 0, vertices.length);
+        return new FlatNavMesh(vertices, corners, links);
+    }
+
+    /**
+     * Creates a flat navmesh from the triangles of a mesh, skipping the
+     * degenerate and the downward facing triangles, as
+     * {@link NavMesh#loadFromMesh(Mesh)} does. The edges are linked on the
+     * arrays, with the same tolerance as {@link NavMesh#linkCells()}: no
+     * {@link Cell} is created.
+     *
+     * @param mesh the navigation mesh
+     * @return a new flat navmesh
+     */
+    public static FlatNavMesh fromMesh(Mesh mesh) {
+        MeshTriangles triangles = MeshTriangles.of(mesh);
+        int[] links = CellLinker.link(triangles.positions, triangles.corners, false);
+
+        // keep the vertices of the kept triangles, in the order of the cells
+        int[] corners = triangles.corners;
+        int[] remap = new int[triangles.positions.length / 3];
+        Arrays.fill(remap, -1);
+        float[] positions = new float[triangles.positions.length];
+        int vertexCount = 0;
+        int[] cellVertices = new int[corners.length];
+        for (int i = 0; i < corners.length; i++) {
+            int index = corners[i];
+            if (remap[index] < 0) {
+                remap[index] = vertexCount;
+                System.arraycopy(triangles.positions, index * 3, positions, vertexCount * 3, 3);
+                vertexCount++;
+            }
+            cellVertices[i] = remap[index];
+        }
+        return new FlatNavMesh(Arrays.copyOf(positions, vertexCount * 3), cellVertices, links);
+    }
+
+    /**
+     * Returns the flat navmesh of a mesh, created on the first call and then
+     * shared by all the callers, until the mesh is garbage collected.
+     *
+     * @param mesh the navigation mesh, which must not be modified afterwards
+     * @return the shared flat navmesh
+     */
+    public static FlatNavMesh shared(Mesh mesh) {
+        // not computeIfAbsent: the map would be locked while the mesh is linked
+        FlatNavMesh navMesh = sharedNavMeshes.get(mesh);
+        if (navMesh == null) {
+            FlatNavMesh created = fromMesh(mesh);
+            navMesh = sharedNavMeshes.putIfAbsent(mesh, created);
+            if (navMesh == null) {
+                navMesh = created;
+            }
+        }
+        return navMesh;
+    }
+
+    /**
+     * Finds the closest cell to a point, as {@link NavMeshGrid#findClosestCell(Vector3f)}
+     * does: among the cells containing the point on the xz-plane, the one whose
+     * height is the closest to the point; otherwise, the nearest cell.
+     *
+     * @param point the point to test
+     * @return the id of the closest cell, or -1 if the navmesh is empty
+     */
+    public int findClosestCell(Vector3f point) {
+        return grid.findClosestCell(point, null);
+    }
+
+    /**
+     * Finds the cell containing a point on the xz-plane. If several cells
+     * contain the point, the one whose height is the closest to the point is
+     * returned.
+     *
+     * @param point the point to test
+     * @return the id of the cell, or -1 if no cell contains the point
+     */
+    public int findContainingCell(Vector3f point) {
+        return grid.findContainingCell(point);
+    }
+
+    /**
+     * @return the squared distance between the point and its projection on
+     *         the cell.
+     */
+    private float distanceSquared(int cell, Vector3f point) {
+        float x = point.x, z = point.z;
+        if (!contains(cell, x, z)) {
+            // the nearest point of the sides on the xz-plane
+            float best = Float.POSITIVE_INFINITY;
+            for (int side = 0; side < 3; side++) {
+                int a = cellVertices[cell * 3 + side] * 3, b = cellVertices[cell * 3 + (side + 1) % 3] * 3;
+                float ax = vertices[a], az = vertices[a + 2];
+                float ex = vertices[b] - ax, ez = vertices[b + 2] - az;
+                float lengthSq = ex * ex + ez * ez;
+                float t = lengthSq > 0 ? ((point.x - ax) * ex + (point.z - az) * ez) / lengthSq : 0;
+                t = Math.max(0, Math.min(1, t));
+                float px = ax + ex * t, pz = az + ez * t;
+                float dx = px - point.x, dz = pz - point.z;
+                float dist = dx * dx + dz * dz;
+                if (dist < best) {
+                    best = dist;
+                    x = px;
+                    z = pz;
+                }
+            }
+        }
+        float dx = x - point.x, dy = getHeightOnCell(cell, x, z) - point.y, dz = z - point.z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Tests whether a point lies in a cell on the xz-plane, with the same
+     * tolerance as {@link Cell#contains(Vector3f)}.
+     *
+     * @param cell the id of the cell
+     * @param x    the x coordinate of the point
+     * @param z    the z coordinate of the point
+     * @return {@code true} if the point is inside or on a side of the cell
+     */
+    public boolean contains(int cell, float x, float z) {
+        for (int side = 0; side < 3; side++) {
+            int a = cellVertices[cell * 3 + side] * 3, b = cellVertices[cell * 3 + (side + 1) % 3] * 3;
+            float ax = vertices[a], az = vertices[a + 2];
+            float cross = (vertices[b] - ax) * (z - az) - (vertices[b + 2] - az) * (x - ax);
+            if (cross > CONTAINS_EPSILON) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param cell the id of the cell
+     * @param x    the x coordinate of the point
+     * @param z    the z coordinate of the point
+     * @return the height of the plane of the cell at the point.
+     */
+    public float getHeightOnCell(int cell, float x, float z) {
+        float ny = planes[cell * 4 + 1];
+        if (ny == 0) {
+            return centers[cell * 3 + 1];
+        }
+        return -(planes[cell * 4] * x + planes[cell * 4 + 2] * z - planes[cell * 4 + 3]) / ny;
+    }
+
+    /**
+     * Moves a point onto a cell: inside the cell on the xz-plane, at the
+     * height of the cell.
+     *
+     * @param cell  the id of the cell
+     * @param point the point to move (modified)
+     * @return the point
+     */
+    public Vector3f snapToCell(int cell, Vector3f point) {
+        if (!contains(cell, point.x, point.z)) {
+            float best = Float.POSITIVE_INFINITY, x = point.x, z = point.z;
+            for (int side = 0; side < 3; side++) {
+                int a = cellVertices[cell * 3 + side] * 3, b = cellVertices[cell * 3 + (side + 1) % 3] * 3;
+                float ax = vertices[a], az = vertices[a + 2];
+                float ex = vertices[b] - ax, ez = vertices[b + 2] - az;
+                float lengthSq = ex * ex + ez * ez;
+                float t = lengthSq > 0 ? ((point.x - ax) * ex + (point.z - az) * ez) / lengthSq : 0;
+                t = Math.max(0, Math.min(1, t));
+                float dx = ax + ex * t - point.x, dz = az + ez * t - point.z;
+                if (dx * dx + dz * dz < best) {
+                    best = dx * dx + dz * dz;
+                    x = ax + ex * t;
+                    z = az + ez * t;
+                }
+            }
+            point.x = x;
+            point.z = z;
+        }
+        point.y = getHeightOnCell(cell, point.x, point.z);
+        return point;
+    }
+
+    /**
+     * @param cell   the id of the cell
+     * @param corner the corner: 0 for A, 1 for B, 2 for C
+     * @param store  storage for the result (not null)
+     * @return the position of the vertex (the store)
+     */
+    public Vector3f getVertex(int cell, int corner, Vector3f store) {
+        int v = cellVertices[cell * 3 + corner] * 3;
+        return store.set(vertices[v], vertices[v + 1], vertices[v + 2]);
+    }
+
+    /**
+     * @param cell   the id of the cell
+     * @param corner the corner: 0 for A, 1 for B, 2 for C
+     * @return {@code true} if the vertex is on a wall of the navmesh, a side
+     *         of some cell not linked to another cell.
+     */
+    public boolean isBoundaryVertex(int cell, int corner) {
+        return boundaryVertices[cellVertices[cell * 3 + corner]];
+    }
+
+    /**
+     * @param cell  the id of the cell
+     * @param store storage for the result (not null)
+     * @return the center of the cell (the store)
+     */
+    public Vector3f getCenter(int cell, Vector3f store) {
+        return store.set(centers[cell * 3], centers[cell * 3 + 1], centers[cell * 3 + 2]);
+    }
+
+    /**
+     * @param cell  the id of the cell
+     * @param side  the side: 0 for AB, 1 for BC, 2 for CA
+     * @param store storage for the result (not null)
+     * @return the midpoint of the side (the store)
+     */
+    public Vector3f getWallMidpoint(int cell, int side, Vector3f store) {
+        int m = cell * 9 + side * 3;
+        return store.set(wallMidpoints[m], wallMidpoints[m + 1], wallMidpoints[m + 2]);
+    }
+
+    /**
+     * @param cell the id of the cell
+     * @param from a side of the cell
+     * @param to   another side of the cell
+     * @return the distance between the midpoints of the two sides.
+     */
+    public float getWallDistance(int cell, int from, int to) {
+        // AB-BC = 0, BC-CA = 1, CA-AB = 2
+        int sum = from + to;
+        return wallDistances[cell * 3 + (sum == 1 ? 0 : sum == 3 ? 1 : 2)];
+    }
+
+    /**
+     * @param cell the id of the cell
+     * @param side the side: 0 for AB, 1 for BC, 2 for CA
+     * @return the id of the neighbouring cell through the side, or -1 if the
+     *         side is a wall.
+     */
+    public int getLink(int cell, int side) {
+        return links[cell * 3 + side];
+    }
+
+    /**
+     * @param cell  the id of the cell
+     * @param other the id of a neighbouring cell
+     * @return the side of the cell leading to the other cell, or -1 if they
+     *         are not linked.
+     */
+    public int getLinkSide(int cell, int other) {
+        for (int side = 0; side < 3; side++) {
+            if (links[cell * 3 + side] == other) {
+                return side;
+            }
+        }
+        return -1;
+    }
+
+    public int getCellCount() {
+        return cellVertices.length / 3;
+    }
+
+    public int getVertexCount() {
+        return vertices.length / 3;
+    }
+
+    /**
+     * @return the size of the arrays holding the navmesh (bytes).
+     */
+    public long getSizeInBytes() {
+        return 4L * (vertices.length + cellVertices.length + links.length + planes.length + centers.length
+                + wallMidpoints.length + wallDistances.length + bounds.length) + boundaryVertices.length
+                + grid.getSizeInBytes();
+    }
+
+    float[] getVertices() {
+        return vertices;
+    }
+
+    int[] getCellVertices() {
+        return cellVertices;
+    }
+
+    int[] getLinks() {
+        return links;
+    }
+
+    /**
+     * @param id the id of the cell
+     * @return the cell of the {@link NavMesh} view.
+     */
+    public Cell getCell(int id) {
+        return toNavMesh().getCell(id);
+    }
+
+    /**
+     * @param cell a cell of the {@link NavMesh} view
+     * @return the id of the cell, or -1 if it doesn't belong to the view.
+     */
+    public int getCellId(Cell cell) {
+        toNavMesh();
+        Integer id = viewIds.get(cell);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns a {@link NavMesh} with the same cells, in the same order and
+     * linked in the same way, for the code working with the {@link Cell} API.
+     * The view is built on the first call, then shared: it must not be
+     * modified.
+     *
+     * @return the navmesh view (an {@link IndexedNavMesh})
+     */
+    public NavMesh toNavMesh() {
+        NavMesh result = view;
+        if (result == null) {
+            synchronized (this) {
+                result = view;
+                if (result == null) {
+                    result = NavMeshFile.createNavMesh(vertices, cellVertices, links, 0);
+                    Map<Cell, Integer> ids = new IdentityHashMap<>(getCellCount() * 2);
+                    for (int i = 0; i < getCellCount(); i++) {
+                        ids.put(result.getCell(i), i);
+                    }
+                    viewIds = ids;
+                    view = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "FlatNavMesh [cells=" + getCellCount()
+                + ", vertices=" + getVertexCount()
+                + ", bytes=" + getSizeInBytes() + "]";
+    }
+
+}
@@ -0,0 +1,631 @@
+package com.jme3.ai.navmesh;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.jme3.math.Vector3f;
+
+/**
+ * Finds paths on a {@link FlatNavMesh}, with the same search as
+ * {@link NavMeshPathfinder}: an A* from the goal cell to the start cell, whose
+ * costs are the distances between the midpoints of the walls crossed. The
+ * corners are then found by pulling the string through the walls of the
+ * corridor (the funnel algorithm), in linear time, rather than by the
+ * line-of-sight tests of {@link Path#getFurthestVisibleWayPoint}.
+ * <p>
+ * The search state (arrival cost, heuristic, arrival wall) is kept in a
+ * {@link NavMeshSearchState}, by default the one of the calling thread: a
+ * query reads the navmesh without writing to it, so one navmesh serves any
+ * number of agents and threads at once. The pathfinder itself only holds the
+ * corridor and the corners of its path, in primitive arrays reused by the
+ * next queries: once they are large enough, a query allocates nothing, and
+ * the corners can be copied with {@link #getCorners(float[])} or
+ * {@link #getCornersNonAlloc(List)}.
+ * <p>
+ * A long query can also be split across frames:
+ * {@link #beginPath(Vector3f, NavMeshSearchState)} starts it with a search
+ * state of its own, and {@link #continuePath(int)} runs it for a number of
+ * cell expansions at a time, see {@link PathQueryScheduler}.
+ *
+ * @author capdevon
+ */
+public class FlatNavMeshPathfinder {
+
+    // the ends of a portal on a wall of the navmesh
+    private static final byte LEFT_WALL = 1, RIGHT_WALL = 2;
+
+    private final FlatNavMesh navMesh;
+    private float entityRadius;
+
+    private final Vector3f currentPos = new Vector3f();
+    private int currentCell = -1;
+    private final Vector3f goalPos = new Vector3f();
+    private int goalCell = -1;
+
+    // the state of the search, when it is not the one of the current thread
+    private final NavMeshSearchState searchState;
+    // the state of the query started by beginPath, until it ends
+    private NavMeshSearchState pendingState;
+
+    // the cells from the start cell to the goal cell
+    private int[] corridor = new int[64];
+    private int corridorLength;
+    // the corners of the path (x, y, z), from the start position to the goal
+    private float[] corners = new float[3 * 16];
+    private int[] cornerCells = new int[16];
+    private int cornerCount;
+    private int nextCorner;
+
+    // reused by each query, so that a query allocates nothing once the arrays are large enough
+    private float[] points = new float[6 * 64];
+    private int[] pointCells = new int[64];
+    private byte[] pointWalls = new byte[64];
+    private boolean lastCornerOnWall;
+    private final Vector3f midpoint = new Vector3f();
+    private final Vector3f wallA = new Vector3f();
+    private final Vector3f wallB = new Vector3f();
+    // the vectors removed from the lists of corners, added back to the next lists
+    private Vector3f[] vectorPool = new Vector3f[16];
+    private int vectorPoolSize;
+
+    /**
+     * Instantiate a <code>FlatNavMeshPathfinder</code> using the search state
+     * of the calling thread: the pathfinders of any number of agents share
+     * the navmesh, and a state per thread.
+     *
+     * @param navMesh the navmesh to search
+     */
+    public FlatNavMeshPathfinder(FlatNavMesh navMesh) {
+        this(navMesh, null);
+    }
+
+    /**
+     * Instantiate a <code>FlatNavMeshPathfinder</code> using its own search
+     * state.
+     *
+     * @param navMesh     the navmesh to search
+     * @param searchState the search state, or {@code null} to use the one of
+     *                    the calling thread
+     */
+    public FlatNavMeshPathfinder(FlatNavMesh navMesh, NavMeshSearchState searchState) {
+        this.navMesh = navMesh;
+        this.searchState = searchState;
+    }
+
+    /**
+     * Sets the position of the entity, and finds the cell it stands on.
+     *
+     * @param position the position of the entity
+     * @return {@code true} if the navmesh is not empty
+     */
+    public boolean setPosition(Vector3f position) {
+        currentPos.set(position);
+        currentCell = navMesh.findClosestCell(position);
+        return currentCell >= 0;
+    }
+
+    public Vector3f getPosition() {
+        return currentPos;
+    }
+
+    /**
+     * Moves a point onto the closest cell of the navmesh.
+     *
+     * @param point the point to move (modified)
+     * @return {@code true} if the point was moved onto a cell
+     */
+    public boolean warpInside(Vector3f point) {
+        int cell = navMesh.findClosestCell(point);
+        if (cell < 0) {
+            return false;
+        }
+        navMesh.snapToCell(cell, point);
+        return true;
+    }
+
+    /**
+     * Computes a path from the current position to the goal.
+     *
+     * @param goal the destination
+     * @return {@code true} if a path was found
+     */
+    public boolean computePath(Vector3f goal) {
+        NavMeshSearchState state = (searchState != null) ? searchState : NavMeshSearchState.ofCurrentThread();
+        if (!beginPath(goal, state)) {
+            return false;
+        }
+        continuePath(Integer.MAX_VALUE);
+        return hasPath();
+    }
+
+    /**
+     * Starts a path query from the current position to the goal, to be run by
+     * {@link #continuePath(int)}, a few cells at a time: the open list and the
+     * costs are kept in the search state between the calls, so the state
+     * must not be used by another search until the query ends: unlike
+     * {@link #computePath(Vector3f)}, the query can't use the state of the
+     * thread, shared by the other pathfinders.
+     *
+     * @param goal  the destination
+     * @param state the search state of the query
+     * @return {@code false} if the position or the goal is not on the navmesh
+     */
+    public boolean beginPath(Vector3f goal, NavMeshSearchState state) {
+        clearPath();
+        goalCell = navMesh.findClosestCell(goal);
+        if (currentCell < 0 || goalCell < 0) {
+            goalCell = -1;
+            return false;
+        }
+        goalPos.set(goal);
+        navMesh.snapToCell(goalCell, goalPos);
+
+        state.begin(navMesh.getCellCount());
+        state.open(goalCell, 0, 0, -1);
+        pendingState = state;
+        return true;
+    }
+
+    /**
+     * Runs the A* of the pending query for at most a number of cell
+     * expansions. When the search ends, the corners of the path are built and
+     * the query is no longer pending.
+     *
+     * @param maxExpansions the maximum number of cells to expand
+     * @return the number of cells expanded
+     */
+    public int continuePath(int maxExpansions) {
+        NavMeshSearchState state = pendingState;
+        if (state == null) {
+            return 0;
+        }
+        int expansions = 0;
+        while (expansions < maxExpansions) {
+            int cell = state.pollOpen();
+            if (cell < 0) {
+                pendingState = null;
+                goalCell = -1;
+                break;
+            }
+            if (cell == currentCell) {
+                pendingState = null;
+                buildCorridor(state);
+                buildCorners(state);
+                break;
+            }
+            expand(state, cell);
+            expansions++;
+        }
+        return expansions;
+    }
+
+    /**
+     * @return {@code true} if a query was started by
+     *         {@link #beginPath(Vector3f, NavMeshSearchState)} and has not
+     *         ended yet.
+     */
+    public boolean isPathPending() {
+        return pendingState != null;
+    }
+
+    /**
+     * @return {@code true} if the last query found a path.
+     */
+    public boolean hasPath() {
+        return cornerCount > 0;
+    }
+
+    /**
+     * Expands a cell of the A*, which runs from the goal cell to the current
+     * cell, so that the corridor is read by following the arrival walls from
+     * the current cell.
+     */
+    private void expand(NavMeshSearchState state, int cell) {
+        state.close(cell);
+
+        int arrivalWall = state.getArrivalWall(cell);
+        for (int side = 0; side < 3; side++) {
+            int next = navMesh.getLink(cell, side);
+            if (next < 0 || side == arrivalWall) {
+                continue;
+            }
+            navMesh.getWallMidpoint(cell, side, midpoint);
+            float arrivalCost = state.getArrivalCost(cell) + (arrivalWall < 0
+                    ? goalPos.distance(midpoint)
+                    : navMesh.getWallDistance(cell, arrivalWall, side));
+
+            if (!state.isVisited(next)) {
+                state.open(next, arrivalCost, currentPos.distance(midpoint), navMesh.getLinkSide(next, cell));
+
+            } else if (!state.isClosed(next) && arrivalCost < state.getArrivalCost(next)) {
+                state.update(next, arrivalCost, navMesh.getLinkSide(next, cell));
+            }
+        }
+    }
+
+    private void buildCorridor(NavMeshSearchState state) {
+        corridorLength = 0;
+        for (int cell = currentCell; ; cell = navMesh.getLink(cell, state.getArrivalWall(cell))) {
+            if (corridorLength == corridor.length) {
+                corridor = Arrays.copyOf(corridor, corridorLength * 2);
+            }
+            corridor[corridorLength++] = cell;
+            if (cell == goalCell) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Pulls the string through the portals of the corridor, the walls crossed
+     * shortened by the entity radius at the ends on a wall of the navmesh: a
+     * funnel is kept from the last corner to the left and right ends of the
+     * portals, and a corner is added where one side of the funnel crosses
+     * over the other. Each portal is visited a bounded number of times,
+     * instead of the walk through the cells of a line-of-sight test for each
+     * pair of waypoints.
+     */
+    private void buildCorners(NavMeshSearchState state) {
+        // portal 0 is the start position and portal corridorLength the goal
+        int count = corridorLength + 1;
+        if (pointCells.length < count) {
+            points = new float[count * 12];
+            pointCells = new int[count * 2];
+            pointWalls = new byte[count * 2];
+        }
+        float[] portals = this.points;
+        int[] cells = this.pointCells;
+        byte[] walls = this.pointWalls;
+        setPortal(portals, 0, currentPos.x, currentPos.y, currentPos.z, currentPos.x, currentPos.y, currentPos.z);
+        cells[0] = currentCell;
+        walls[0] = LEFT_WALL | RIGHT_WALL;
+
+        Vector3f a = wallA, b = wallB;
+        for (int i = 0; i < corridorLength - 1; i++) {
+            int cell = corridor[i];
+            int side = state.getArrivalWall(cell);
+            int left = side, right = (side + 1) % 3;
+            navMesh.getVertex(cell, left, a);
+            navMesh.getVertex(cell, right, b);
+            // the left end is on the left when walking out of the cell through the wall
+            navMesh.getCenter(cell, midpoint);
+            if (cross(a.x, a.z, b.x, b.z, midpoint.x, midpoint.z) > 0) {
+                navMesh.getVertex(cell, right, a);
+                navMesh.getVertex(cell, left, b);
+                left = right;
+                right = side;
+            }
+
+            // only the ends on a wall of the navmesh are moved away by the radius
+            float ex = b.x - a.x, ez = b.z - a.z;
+            float length = (float) Math.sqrt(ex * ex + ez * ez);
+            float inset = length > 0 ? Math.min(0.5f, entityRadius / length) : 0.5f;
+            boolean leftWall = navMesh.isBoundaryVertex(cell, left);
+            boolean rightWall = navMesh.isBoundaryVertex(cell, right);
+            float leftInset = leftWall ? inset : 0;
+            float rightInset = rightWall ? inset : 0;
+            float lx = a.x + ex * leftInset, lz = a.z + ez * leftInset;
+            float rx = b.x - ex * rightInset, rz = b.z - ez * rightInset;
+            setPortal(portals, i + 1,
+                    lx, navMesh.getHeightOnCell(cell, lx, lz), lz,
+                    rx, navMesh.getHeightOnCell(cell, rx, rz), rz);
+            cells[i + 1] = cell;
+            walls[i + 1] = (byte) ((leftWall ? LEFT_WALL : 0) | (rightWall ? RIGHT_WALL : 0));
+        }
+        setPortal(portals, corridorLength, goalPos.x, goalPos.y, goalPos.z, goalPos.x, goalPos.y, goalPos.z);
+        cells[corridorLength] = goalCell;
+        walls[corridorLength] = LEFT_WALL | RIGHT_WALL;
+
+        addCorner(portals, 0, cells[0], true);
+        int apex = 0, left = 0, right = 0;
+        for (int i = 1; i < count; i++) {
+            float ax = portals[apex * 6], az = portals[apex * 6 + 2];
+            int l = i * 6, r = i * 6 + 3;
+
+            // moves the right side of the funnel to the left
+            if (cross(ax, az, portals[right * 6 + 3], portals[right * 6 + 5], portals[r], portals[r + 2]) >= 0) {
+                if (isApex(portals, apex, right * 6 + 3)
+                        || cross(ax, az, portals[left * 6], portals[left * 6 + 2], portals[r], portals[r + 2]) < 0) {
+                    right = i;
+                } else {
+                    // the right side crosses over the left one: the left end is a corner
+                    apex = addApex(portals, left * 6, left, (walls[left] & LEFT_WALL) != 0);
+                    left = right = apex;
+                    i = apex;
+                    continue;
+                }
+            }
+
+            // moves the left side of the funnel to the right
+            if (cross(ax, az, portals[left * 6], portals[left * 6 + 2], portals[l], portals[l + 2]) <= 0) {
+                if (isApex(portals, apex, left * 6)
+                        || cross(ax, az, portals[right * 6 + 3], portals[right * 6 + 5], portals[l], portals[l + 2]) > 0) {
+                    left = i;
+                } else {
+                    // the left side crosses over the right one: the right end is a corner
+                    apex = addApex(portals, right * 6 + 3, right, (walls[right] & RIGHT_WALL) != 0);
+                    left = right = apex;
+                    i = apex;
+                }
+            }
+        }
+        addCorner(portals, corridorLength * 6, goalCell, true);
+    }
+
+    private static void setPortal(float[] portals, int index, float lx, float ly, float lz, float rx, float ry, float rz) {
+        int i = index * 6;
+        portals[i] = lx;
+        portals[i + 1] = ly;
+        portals[i + 2] = lz;
+        portals[i + 3] = rx;
+        portals[i + 4] = ry;
+        portals[i + 5] = rz;
+    }
+
+    /**
+     * Adds the end of a portal as a corner, and makes the portal the apex of
+     * the funnel: both of its ends are set to the corner.
+     *
+     * @return the index of the portal
+     */
+    private int addApex(float[] portals, int offset, int portal, boolean onWall) {
+        addCorner(portals, offset, pointCells[portal], onWall);
+        System.arraycopy(portals, offset, portals, portal * 6, 3);
+        System.arraycopy(portals, offset, portals, portal * 6 + 3, 3);
+        return portal;
+    }
+
+    /**
+     * @return {@code true} if the point at the offset is the apex of the funnel.
+     */
+    private static boolean isApex(float[] portals, int apex, int offset) {
+        float dx = portals[offset] - portals[apex * 6];
+        float dz = portals[offset + 2] - portals[apex * 6 + 2];
+        return dx * dx + dz * dz < 1e-12f;
+    }
+
+    /**
+     * @return the cross product of (a, b) and (a, p) on the xz-plane: positive
+     *         if p is on the left of the line from a to b.
+     */
+    private static float cross(float ax, float az, float bx, float bz, float px, float pz) {
+        return (bx - ax) * (pz - az) - (bz - az) * (px - ax);
+    }
+
+    /**
+     * Adds a corner. The funnel only finds the shortest path through the
+     * corridor of the A*, whose cells follow the midpoints of the walls: a
+     * corner on a vertex inside the navmesh only comes from the shape of the
+     * corridor, and it is removed if the new corner is in sight of the one
+     * before.
+     *
+     * @param onWall {@code true} if the corner is the end of a portal on a
+     *               wall of the navmesh, the start or the goal
+     */
+    private void addCorner(float[] points, int offset, int cell, boolean onWall) {
+        float x = points[offset], z = points[offset + 2];
+        if (cornerCount > 0 && x == corners[cornerCount * 3 - 3] && z == corners[cornerCount * 3 - 1]) {
+            // the goal reached as the apex of the funnel, or a start on a wall
+            return;
+        }
+        if (cornerCount > 1 && !lastCornerOnWall) {
+            int before = cornerCount - 2;
+            if (isInLineOfSight(cornerCells[before], corners[before * 3], corners[before * 3 + 2], x, z)) {
+                cornerCount--;
+            }
+        }
+        if (cornerCount == cornerCells.length) {
+            cornerCells = Arrays.copyOf(cornerCells, cornerCount * 2);
+            corners = Arrays.copyOf(corners, cornerCount * 6);
+        }
+        System.arraycopy(points, offset, corners, cornerCount * 3, 3);
+        cornerCells[cornerCount++] = cell;
+        lastCornerOnWall = onWall;
+    }
+
+    /**
+     * Walks the cells crossed by the segment between two points on the
+     * xz-plane, from the cell of the first point.
+     *
+     * @return {@code true} if the segment reaches the second point without
+     *         crossing a wall
+     */
+    private boolean isInLineOfSight(int cell, float fx, float fz, float tx, float tz) {
+        float dx = tx - fx, dz = tz - fz;
+        Vector3f a = wallA, b = wallB;
+        int previous = -1;
+
+        for (int steps = 0; steps < navMesh.getCellCount(); steps++) {
+            if (navMesh.contains(cell, tx, tz)) {
+                return true;
+            }
+            // the segment leaves the cell through the side it crosses last,
+            // other than the side it entered by: through a vertex, both are crossed at once
+            int exit = -1;
+            float exitT = Float.NEGATIVE_INFINITY;
+            for (int side = 0; side < 3; side++) {
+                if (previous >= 0 && navMesh.getLink(cell, side) == previous) {
+                    continue;
+                }
+                navMesh.getVertex(cell, side, a);
+                navMesh.getVertex(cell, (side + 1) % 3, b);
+                float ex = b.x - a.x, ez = b.z - a.z;
+                float denom = dx * ez - dz * ex;
+                if (denom == 0) {
+                    continue;
+                }
+                float t = ((a.x - fx) * ez - (a.z - fz) * ex) / denom;
+                float u = ((a.x - fx) * dz - (a.z - fz) * dx) / denom;
+                if (u >= -1e-4f && u <= 1 + 1e-4f && t > exitT) {
+                    exitT = t;
+                    exit = side;
+                }
+            }
+            if (exit < 0) {
+                return false;
+            }
+            previous = cell;
+            cell = navMesh.getLink(cell, exit);
+            if (cell < 0) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Clears the current path, and ends the pending query.
+     */
+    public void clearPath() {
+        pendingState = null;
+        corridorLength = 0;
+        cornerCount = 0;
+        nextCorner = 0;
+        goalCell = -1;
+    }
+
+    /**
+     * @return the number of corners of the path, including the start position
+     *         and the goal, or 0 if there is no path.
+     */
+    public int getCornerCount() {
+        return cornerCount;
+    }
+
+    /**
+     * @param index the index of the corner
+     * @param store storage for the result (not null)
+     * @return the position of the corner (the store)
+     */
+    public Vector3f getCorner(int index, Vector3f store) {
+        return store.set(corners[index * 3], corners[index * 3 + 1], corners[index * 3 + 2]);
+    }
+
+    /**
+     * @param index the index of the corner
+     * @return the id of the cell of the corner.
+     */
+    public int getCornerCell(int index) {
+        return cornerCells[index];
+    }
+
+    /**
+     * Copies the corners of the path into an array, without allocating.
+     *
+     * @param store the array to fill with the x, y, z of each corner; the
+     *              corners which don't fit are skipped
+     * @return the number of corners of the path, which may be greater than
+     *         the number of corners copied
+     */
+    public int getCorners(float[] store) {
+        System.arraycopy(corners, 0, store, 0, Math.min(store.length / 3, cornerCount) * 3);
+        return cornerCount;
+    }
+
+    /**
+     * Copies the corners of the path into a list, reusing the vectors already
+     * in the list. The extra vectors are removed from the list and kept by the
+     * pathfinder, to fill the lists of the next paths: once the longest path
+     * has been copied, nothing is allocated.
+     *
+     * @param results the list to fill (not null)
+     * @return the number of corners
+     */
+    public int getCornersNonAlloc(List<Vector3f> results) {
+        for (int i = 0; i < cornerCount; i++) {
+            if (i < results.size()) {
+                getCorner(i, results.get(i));
+            } else {
+                Vector3f store = (vectorPoolSize > 0) ? vectorPool[--vectorPoolSize] : new Vector3f();
+                results.add(getCorner(i, store));
+            }
+        }
+        while (results.size() > cornerCount) {
+            if (vectorPoolSize == vectorPool.length) {
+                vectorPool = Arrays.copyOf(vectorPool, vectorPoolSize * 2);
+            }
+            vectorPool[vectorPoolSize++] = results.remove(results.size() - 1);
+        }
+        return cornerCount;
+    }
+
+    /**
+     * @param store storage for the result (not null)
+     * @return the next corner to reach (the store), or {@code null} if there
+     *         is no path
+     */
+    public Vector3f getNextCorner(Vector3f store) {
+        return nextCorner < cornerCount ? getCorner(nextCorner, store) : null;
+    }
+
+    /**
+     * Moves on to the next corner of the path.
+     */
+    public void goToNextCorner() {
+        if (nextCorner < cornerCount - 1) {
+            nextCorner++;
+        }
+    }
+
+    /**
+     * @return {@code true} if the next corner is the goal.
+     */
+    public boolean isAtGoalCorner() {
+        return cornerCount > 0 && nextCorner == cornerCount - 1;
+    }
+
+    /**
+     * @return the number of cells crossed by the path, including the start
+     *         cell and the goal cell.
+     */
+    public int getCorridorLength() {
+        return corridorLength;
+    }
+
+    /**
+     * @param index the index in the corridor
+     * @return the id of the cell.
+     */
+    public int getCorridorCell(int index) {
+        return corridor[index];
+    }
+
+    /**
+     * Creates a {@link Path} with the corners of the current path, on the
+     * {@link NavMesh} view of the navmesh, for the code working with the
+     * {@link Cell} API.
+     *
+     * @return a new path, empty if there is no path
+     */
+    public Path getPath() {
+        Path path = new Path();
+        if (cornerCount == 0) {
+            return path;
+        }
+        NavMesh view = navMesh.toNavMesh();
+        path.initialize(view, getCorner(0, new Vector3f()), view.getCell(cornerCells[0]),
+                getCorner(cornerCount - 1, new Vector3f()), view.getCell(cornerCells[cornerCount - 1]));
+        for (int i = 1; i < cornerCount - 1; i++) {
+            path.addWaypoint(getCorner(i, new Vector3f()), view.getCell(cornerCells[i]));
+        }
+        path.finishPath();
+        return path;
+    }
+
+    public FlatNavMesh getNavMesh() {
+        return navMesh;
+    }
+
+    public float getEntityRadius() {
+        return entityRadius;
+    }
+
+    /**
+     * @param entityRadius the distance kept between the path and the ends of
+     *                     the walls it crosses
+     */
+    public void setEntityRadius(float entityRadius) {
+        this.entityRadius = entityRadius;
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.jme3.ai.navmesh;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jme3.export.JmeImporter;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+
+/**
+ * A {@link NavMesh} which finds the closest cell to a point with a
+ * {@link NavMeshGrid}, instead of testing every cell.
+ * <p>
+ * {@link NavMesh#findClosestCell(Vector3f)} is called by the pathfinder each
+ * time the position or the destination of an agent is set, and by
+ * {@link NavMesh#snapPointToMesh(Vector3f)}: on large meshes, it costs more than
+ * the path search itself. The grid is built when the mesh is loaded, and again
+ * on the first query after the cells are changed.
+ * <p>
+ * The cells are also linked in linear time, by hashing their edges with
+ * {@link CellLinker}, instead of comparing every pair of cells. The linking can
+ * run in parallel on the common fork-join pool.
+ *
+ * @author capdevon
+ */
+public class IndexedNavMesh extends NavMesh {
+
+    private volatile NavMeshGrid grid;
+    private boolean parallelLinking;
+
+    /**
+     * Instantiate an empty <code>IndexedNavMesh</code>
+     */
+    public IndexedNavMesh() {
+        super();
+    }
+
+    /**
+     * Instantiate an <code>IndexedNavMesh</code> from a mesh.
+     *
+     * @param mesh the navigation mesh
+     */
+    public IndexedNavMesh(Mesh mesh) {
+        this(mesh, false);
+    }
+
+    /**
+     * Instantiate an <code>IndexedNavMesh</code> from a mesh.
+     *
+     * @param mesh            the navigation mesh
+     * @param parallelLinking {@code true} to link the cells in parallel
+     */
+    public IndexedNavMesh(Mesh mesh, boolean parallelLinking) {
+        super();
+        this.parallelLinking = parallelLinking;
+        loadFromMesh(mesh);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        grid = null;
+    }
+
+    @Override
+    public void addCell(Vector3f pointA, Vector3f pointB, Vector3f pointC) {
+        super.addCell(pointA, pointB, pointC);
+        grid = null;
+    }
+
+    /**
+     * Loads the triangles of a mesh, skipping the degenerate and the downward
+     * facing triangles. The vertices sharing a position are welded, so that
+     * the cells are linked by the vertex indices of their edges; the other
+     * edges are matched by position, within the linking tolerance.
+     */
+    @Override
+    public void loadFromMesh(Mesh mesh) {
+        clear();
+        MeshTriangles triangles = MeshTriangles.of(mesh);
+        Cell[] cells = new Cell[triangles.getTriangleCount()];
+        for (int i = 0; i < cells.length; i++) {
+            super.addCell(triangles.getVertex(i * 3), triangles.getVertex(i * 3 + 1), triangles.getVertex(i * 3 + 2));
+            cells[i] = getCell(i);
+        }
+        CellLinker.link(cells, triangles.corners, parallelLinking);
+        getGrid();
+    }
+
+    /**
+     * Links the cells sharing an edge, in linear time.
+     */
+    @Override
+    public void linkCells() {
+        Cell[] cells = new Cell[getNumCells()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = getCell(i);
+        }
+        CellLinker.link(cells, cells.length, parallelLinking);
+    }
+
+    @Override
+    public void read(JmeImporter im) throws IOException {
+        super.read(im);
+        grid = null;
+        getGrid();
+    }
+
+    /**
+     * Finds the closest cell with the grid. The result is the same as the one
+     * of {@link NavMesh#findClosestCell(Vector3f)}, except that a point outside
+     * of the mesh is attached to the cell nearest to it, and not to the first
+     * cell crossed by the line from the cell centers to the point.
+     */
+    @Override
+    public Cell findClosestCell(Vector3f point) {
+        return getGrid().findClosestCell(point);
+    }
+
+    /**
+     * Finds the cell containing a point on the xz-plane.
+     *
+     * @param point the point to test
+     * @return the cell whose height is the closest to the point, or
+     *         {@code null} if no cell contains the point
+     */
+    public Cell findContainingCell(Vector3f point) {
+        return getGrid().findContainingCell(point);
+    }
+
+    /**
+     * Finds the cells whose bounding box overlaps a circle on the xz-plane.
+     *
+     * @param center the center of the circle
+     * @param radius the radius of the circle (world units)
+     * @return a new list of cells
+     */
+    public List<Cell> findCells(Vector3f center, float radius) {
+        return getGrid().findCells(center, radius, new ArrayList<>());
+    }
+
+    public boolean isParallelLinking() {
+        return parallelLinking;
+    }
+
+    /**
+     * @param parallelLinking {@code true} to link the cells on the common
+     *                        fork-join pool
+     */
+    public void setParallelLinking(boolean parallelLinking) {
+        this.parallelLinking = parallelLinking;
+    }
+
+    /**
+     * @return the spatial index of the cells, built if the cells have changed.
+     */
+    public NavMeshGrid getGrid() {
+        NavMeshGrid result = grid;
+        if (result == null) {
+            synchronized (this) {
+                result = grid;
+                if (result == null) {
+                    Cell[] cells = new Cell[getNumCells()];
+                    for (int i = 0; i < cells.length; i++) {
+                        cells[i] = getCell(i);
+                    }
+                    result = new NavMeshGrid(cells);
+                    grid = result;
+                }
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.jme3.ai.navmesh;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+
+/**
+ * The triangles of a navigation mesh which become cells, with the vertices
+ * sharing a position welded into one.
+ * <p>
+ * The degenerate and the downward facing triangles are skipped, as
+ * {@link NavMesh#loadFromMesh(Mesh)} does. The welded indices let
+ * {@link CellLinker} match most edges by their vertex indices, even when the
+ * mesh repeats its vertices.
+ *
+ * @author capdevon
+ */
+final class MeshTriangles {
+
+    /** The welded vertex positions (x, y, z). */
+    final float[] positions;
+    /** The welded vertex indices of the kept triangles. */
+    final int[] corners;
+
+    private MeshTriangles(float[] positions, int[] corners) {
+        this.positions = positions;
+        this.corners = corners;
+    }
+
+    static MeshTriangles of(Mesh mesh) {
+        float[] source = new float[mesh.getVertexCount() * 3];
+        mesh.getFloatBuffer(VertexBuffer.Type.Position).duplicate().clear().get(source);
+
+        // weld the vertices by position
+        Map<Vector3f, Integer> welded = new HashMap<>(source.length / 2);
+        int[] remap = new int[mesh.getVertexCount()];
+        float[] positions = new float[source.length];
+        for (int i = 0; i < remap.length; i++) {
+            Vector3f v = new Vector3f(source[i * 3], source[i * 3 + 1], source[i * 3 + 2]);
+            Integer index = welded.putIfAbsent(v, welded.size());
+            remap[i] = (index != null) ? index : welded.size() - 1;
+            System.arraycopy(source, i * 3, positions, remap[i] * 3, 3);
+        }
+
+        IndexBuffer ib = mesh.getIndexBuffer();
+        int[] corners = new int[mesh.getTriangleCount() * 3];
+        int count = 0;
+        for (int i = 0; i < corners.length; i += 3) {
+            int a = remap[ib.get(i)], b = remap[ib.get(i + 1)], c = remap[ib.get(i + 2)];
+            if (a == b || b == c || c == a) {
+                continue;
+            }
+            // (b - a) x (c - a) must point upwards
+            float abx = positions[b * 3] - positions[a * 3], abz = positions[b * 3 + 2] - positions[a * 3 + 2];
+            float acx = positions[c * 3] - positions[a * 3], acz = positions[c * 3 + 2] - positions[a * 3 + 2];
+            if (abz * acx - abx * acz <= 0) {
+                continue;
+            }
+            corners[count++] = a;
+            corners[count++] = b;
+            corners[count++] = c;
+        }
+
+        int[] kept = new int[count];
+        System.arraycopy(corners, 0, kept, 0, count);
+        float[] weldedPositions = new float[welded.size() * 3];
+        System.arraycopy(positions, 0, weldedPositions, 0, weldedPositions.length);
+        return new MeshTriangles(weldedPositions, kept);
+    }
+
+    int getTriangleCount() {
+        return corners.length / 3;
+    }
+
+    Vector3f getVertex(int corner) {
+        int index = corners[corner];
+        return new Vector3f(positions[index * 3], positions[index * 3 + 1], positions[index * 3 + 2]);
+    }
+
+}
@@ -0,0 +1,455 @@
+package com.jme3.ai.navmesh;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+
+/**
+ * A compact binary format for the {@link NavMesh}, which is loaded without
+ * linking the cells again.
+ * <p>
+ * Loading a navmesh saved as a j3o mesh runs {@link NavMesh#loadFromMesh(Mesh)},
+ * whose {@link NavMesh#linkCells()} compares every pair of cells. This format
+ * stores the links of each cell as the indices of its neighbours, so that a
+ * loaded navmesh is ready to be queried once its cells are created.
+ * <p>
+ * The file is made of (big-endian):
+ * <ul>
+ * <li>a header: magic, version, flags, tile size, vertex count, cell count;</li>
+ * <li>the welded vertex positions (x, y, z);</li>
+ * <li>for each cell: the indices of its vertices, the indices of the
+ * neighbouring cells through the sides AB, BC and CA (-1 for a wall), the
+ * plane (normal and constant) and the length of the sides;</li>
+ * <li>the CRC-32 of all the previous bytes.</li>
+ * </ul>
+ * The planes and the wall lengths make the file usable without jME, by the
+ * tools of the asset pipeline; {@link Cell} computes them again from the
+ * vertices, in constant time per cell.
+ * <p>
+ * A {@link CompactNavMesh} is written with the quantized flag: the vertices
+ * are preceded by the tiles used to quantize them (column, row, minimum and
+ * maximum height, first vertex), each vertex is made of three unsigned shorts,
+ * and each cell only of its vertex and neighbour indices.
+ *
+ * @author capdevon
+ */
+public final class NavMeshFile {
+
+    private static final int MAGIC = 0x4E4D4231; // "NMB1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int CELL_SIZE = 52;
+    private static final int FLAG_TILED = 1;
+    private static final int FLAG_QUANTIZED = 2;
+    private static final int TILE_SIZE = 20;
+    private static final int QUANTIZED_VERTEX_SIZE = 6;
+    private static final int QUANTIZED_CELL_SIZE = 24;
+
+    private NavMeshFile() {}
+
+    /**
+     * Writes a navmesh to a file.
+     *
+     * @param navMesh the navmesh, whose cells are linked
+     * @param file    the file to write
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(NavMesh navMesh, File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            write(navMesh, out);
+        }
+    }
+
+    /**
+     * Writes a navmesh to a stream. The stream is not closed.
+     *
+     * @param navMesh the navmesh, whose cells are linked
+     * @param out     the destination stream
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(NavMesh navMesh, OutputStream out) throws IOException {
+        int cellCount = navMesh.getNumCells();
+        Cell[] cells = new Cell[cellCount];
+        for (int i = 0; i < cellCount; i++) {
+            cells[i] = navMesh.getCell(i);
+        }
+        float tileSize = (navMesh instanceof TiledNavMesh) ? ((TiledNavMesh) navMesh).getTileSize() : 0;
+        write(cells, tileSize, out);
+    }
+
+    /**
+     * Writes the triangles of a mesh as a navmesh, skipping the degenerate
+     * and the downward facing triangles as {@link NavMesh#loadFromMesh(Mesh)}
+     * does. The cells are linked by hashing their edges, without building the
+     * {@link NavMesh}.
+     *
+     * @param mesh the navigation mesh
+     * @param file the file to write
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(Mesh mesh, File file) throws IOException {
+        MeshTriangles triangles = MeshTriangles.of(mesh);
+        Cell[] cells = new Cell[triangles.getTriangleCount()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new Cell();
+            cells[i].initialize(triangles.getVertex(i * 3), triangles.getVertex(i * 3 + 1),
+                    triangles.getVertex(i * 3 + 2));
+        }
+
+        CellLinker.link(cells, triangles.corners, false);
+        try (OutputStream out = new FileOutputStream(file)) {
+            write(cells, 0, out);
+        }
+    }
+
+    private static Vector3f getVertex(float[] positions, int index) {
+        return new Vector3f(positions[index * 3], positions[index * 3 + 1], positions[index * 3 + 2]);
+    }
+
+    /**
+     * Writes a compact navmesh to a file, keeping its quantized vertices.
+     *
+     * @param navMesh the compact navmesh
+     * @param file    the file to write
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(CompactNavMesh navMesh, File file) throws IOException {
+        try (OutputStream stream = new FileOutputStream(file)) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(
+                    new CheckedOutputStream(new BufferedOutputStream(stream, 1 << 16), crc));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(FLAG_QUANTIZED | (navMesh.isTiled() ? FLAG_TILED : 0));
+            out.writeFloat(navMesh.getTileSize());
+            out.writeInt(navMesh.getVertexCount());
+            out.writeInt(navMesh.getCellCount());
+
+            int[] tileCoords = navMesh.getTileCoords();
+            float[] tileHeights = navMesh.getTileHeights();
+            int[] tileStarts = navMesh.getTileStarts();
+            out.writeInt(navMesh.getTileCount());
+            for (int t = 0; t < navMesh.getTileCount(); t++) {
+                out.writeInt(tileCoords[t * 2]);
+                out.writeInt(tileCoords[t * 2 + 1]);
+                out.writeFloat(tileHeights[t * 2]);
+                out.writeFloat(tileHeights[t * 2 + 1]);
+                out.writeInt(tileStarts[t]);
+            }
+            for (short q : navMesh.getQuantizedVertices()) {
+                out.writeShort(q);
+            }
+            int[] corners = navMesh.getCellVertices();
+            int[] links = navMesh.getCellLinks();
+            for (int i = 0; i < corners.length; i += 3) {
+                for (int k = 0; k < 3; k++) {
+                    out.writeInt(corners[i + k]);
+                }
+                for (int side = 0; side < 3; side++) {
+                    out.writeInt(links[i + side]);
+                }
+            }
+
+            out.flush();
+            DataOutputStream trailer = new DataOutputStream(stream);
+            trailer.writeInt((int) crc.getValue());
+            trailer.flush();
+        }
+    }
+
+    private static void write(Cell[] cells, float tileSize, OutputStream stream) throws IOException {
+        Map<Cell, Integer> cellIndices = new IdentityHashMap<>(cells.length * 2);
+        for (int i = 0; i < cells.length; i++) {
+            cellIndices.put(cells[i], i);
+        }
+
+        // weld the corners shared by the cells
+        Map<Vector3f, Integer> vertexIndices = new HashMap<>(cells.length * 2);
+        List<Vector3f> vertices = new ArrayList<>();
+        int[] corners = new int[cells.length * 3];
+        for (int i = 0; i < cells.length; i++) {
+            for (int k = 0; k < 3; k++) {
+                Vector3f v = cells[i].getVertex(k);
+                Integer index = vertexIndices.get(v);
+                if (index == null) {
+                    index = vertices.size();
+                    vertexIndices.put(v, index);
+                    vertices.add(v);
+                }
+                corners[i * 3 + k] = index;
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(
+                new CheckedOutputStream(new BufferedOutputStream(stream, 1 << 16), crc));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(tileSize > 0 ? FLAG_TILED : 0);
+        out.writeFloat(tileSize);
+        out.writeInt(vertices.size());
+        out.writeInt(cells.length);
+
+        for (Vector3f v : vertices) {
+            out.writeFloat(v.x);
+            out.writeFloat(v.y);
+            out.writeFloat(v.z);
+        }
+
+        for (int i = 0; i < cells.length; i++) {
+            Cell cell = cells[i];
+            for (int k = 0; k < 3; k++) {
+                out.writeInt(corners[i * 3 + k]);
+            }
+            for (int side = 0; side < 3; side++) {
+                Integer link = cellIndices.get(cell.getLink(side));
+                out.writeInt(link != null ? link : -1);
+            }
+            Vector3f normal = cell.getNormal();
+            out.writeFloat(normal.x);
+            out.writeFloat(normal.y);
+            out.writeFloat(normal.z);
+            out.writeFloat(normal.dot(cell.getVertex(0)));
+            for (int side = 0; side < 3; side++) {
+                out.writeFloat(cell.getWallLength(side));
+            }
+        }
+
+        out.flush();
+        // the checksum itself is not part of the checksum
+        DataOutputStream trailer = new DataOutputStream(stream);
+        trailer.writeInt((int) crc.getValue());
+        trailer.flush();
+    }
+
+    /**
+     * Reads a navmesh from a file. The navmesh of a file holding a
+     * {@link CompactNavMesh} is built from the restored vertices.
+     *
+     * @param file the file to read
+     * @return a new {@link IndexedNavMesh}, or a {@link TiledNavMesh} if a tiled
+     *         navmesh was written
+     * @throws IOException if the file cannot be read, is not a navmesh file
+     *                     or is corrupted
+     */
+    public static NavMesh read(File file) throws IOException {
+        return read(ByteBuffer.wrap(Files.readAllBytes(file.toPath())), file.toString());
+    }
+
+    /**
+     * Reads a navmesh from a stream, up to its end. The stream is not closed.
+     *
+     * @param in the source stream
+     * @return a new {@link IndexedNavMesh}, or a {@link TiledNavMesh} if a tiled
+     *         navmesh was written
+     * @throws IOException if the stream cannot be read, does not hold a navmesh
+     *                     or is corrupted
+     */
+    public static NavMesh read(InputStream in) throws IOException {
+        return read(ByteBuffer.wrap(in.readAllBytes()), "stream");
+    }
+
+    /**
+     * Reads a compact navmesh from a file written by
+     * {@link #write(CompactNavMesh, File)}.
+     *
+     * @param file the file to read
+     * @return a new compact navmesh
+     * @throws IOException if the file cannot be read, does not hold a compact
+     *                     navmesh or is corrupted
+     */
+    public static CompactNavMesh readCompact(File file) throws IOException {
+        String source = file.toString();
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        int flags = checkHeader(buf, source);
+        if ((flags & FLAG_QUANTIZED) == 0) {
+            throw new IOException("Not a compact navmesh file: " + source);
+        }
+        return readCompact(buf, flags, source);
+    }
+
+    private static NavMesh read(ByteBuffer buf, String source) throws IOException {
+        int flags = checkHeader(buf, source);
+        if ((flags & FLAG_QUANTIZED) != 0) {
+            return readCompact(buf, flags, source).toNavMesh();
+        }
+
+        int length = buf.limit() - 4;
+        float tileSize = buf.getFloat(12);
+        int vertexCount = buf.getInt(16);
+        int cellCount = buf.getInt(20);
+        if (vertexCount < 0 || cellCount < 0
+                || HEADER_SIZE + 12L * vertexCount + (long) CELL_SIZE * cellCount != length) {
+            throw new IOException("Corrupted navmesh file (invalid size): " + source);
+        }
+
+        buf.position(HEADER_SIZE);
+        float[] positions = new float[vertexCount * 3];
+        buf.asFloatBuffer().get(positions);
+        buf.position(buf.position() + positions.length * 4);
+
+        int[] corners = new int[cellCount * 3];
+        int[] links = new int[cellCount * 3];
+        for (int i = 0; i < cellCount; i++) {
+            for (int k = 0; k < 3; k++) {
+                corners[i * 3 + k] = checkIndex(buf.getInt(), vertexCount, source);
+            }
+            for (int side = 0; side < 3; side++) {
+                links[i * 3 + side] = checkLink(buf.getInt(), cellCount, source);
+            }
+            // plane and wall lengths: computed again by the cell
+            buf.position(buf.position() + 28);
+        }
+
+        return createNavMesh(positions, corners, links, (flags & FLAG_TILED) != 0 ? tileSize : 0);
+    }
+
+    private static CompactNavMesh readCompact(ByteBuffer buf, int flags, String source) throws IOException {
+        int length = buf.limit() - 4;
+        float tileSize = buf.getFloat(12);
+        int vertexCount = buf.getInt(16);
+        int cellCount = buf.getInt(20);
+        int tileCount = length >= HEADER_SIZE + 4 ? buf.getInt(HEADER_SIZE) : -1;
+        if (vertexCount < 0 || cellCount < 0 || tileCount < 0 || !(tileSize > 0)
+                || HEADER_SIZE + 4 + (long) TILE_SIZE * tileCount + (long) QUANTIZED_VERTEX_SIZE * vertexCount
+                        + (long) QUANTIZED_CELL_SIZE * cellCount != length) {
+            throw new IOException("Corrupted navmesh file (invalid size): " + source);
+        }
+
+        buf.position(HEADER_SIZE + 4);
+        int[] tileCoords = new int[tileCount * 2];
+        float[] tileHeights = new float[tileCount * 2];
+        int[] tileStarts = new int[tileCount + 1];
+        for (int t = 0; t < tileCount; t++) {
+            tileCoords[t * 2] = buf.getInt();
+            tileCoords[t * 2 + 1] = buf.getInt();
+            tileHeights[t * 2] = buf.getFloat();
+            tileHeights[t * 2 + 1] = buf.getFloat();
+            tileStarts[t] = buf.getInt();
+            // the tiles are not empty and sorted by first vertex
+            int previous = (t == 0) ? -1 : tileStarts[t - 1];
+            if ((t == 0 && tileStarts[t] != 0) || tileStarts[t] <= previous || tileStarts[t] >= vertexCount) {
+                throw new IOException("Corrupted navmesh file (invalid tile): " + source);
+            }
+        }
+        tileStarts[tileCount] = vertexCount;
+        if ((tileCount == 0) != (vertexCount == 0)) {
+            throw new IOException("Corrupted navmesh file (invalid tile): " + source);
+        }
+
+        short[] vertices = new short[vertexCount * 3];
+        buf.asShortBuffer().get(vertices);
+        buf.position(buf.position() + vertices.length * 2);
+
+        int[] corners = new int[cellCount * 3];
+        int[] links = new int[cellCount * 3];
+        for (int i = 0; i < cellCount; i++) {
+            for (int k = 0; k < 3; k++) {
+                corners[i * 3 + k] = checkIndex(buf.getInt(), vertexCount, source);
+            }
+            for (int side = 0; side < 3; side++) {
+                links[i * 3 + side] = checkLink(buf.getInt(), cellCount, source);
+            }
+        }
+
+        return new CompactNavMesh(tileSize, (flags & FLAG_TILED) != 0,
+                tileCoords, tileHeights, tileStarts, vertices, corners, links);
+    }
+
+    /**
+     * Checks the magic, the version and the checksum of a file.
+     *
+     * @return the flags of the file
+     */
+    private static int checkHeader(ByteBuffer buf, String source) throws IOException {
+        if (buf.remaining() < HEADER_SIZE + 4 || buf.getInt(0) != MAGIC) {
+            throw new IOException("Invalid navmesh file: " + source);
+        }
+        int version = buf.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported navmesh file version " + version + ": " + source);
+        }
+
+        int length = buf.limit() - 4;
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, length);
+        if ((int) crc.getValue() != buf.getInt(length)) {
+            throw new IOException("Corrupted navmesh file (checksum mismatch): " + source);
+        }
+        return buf.getInt(8);
+    }
+
+    /**
+     * Creates the cells of a navmesh and links them, without comparing them.
+     *
+     * @param positions the vertex positions (x, y, z)
+     * @param corners   the vertex indices of each cell
+     * @param links     the neighbour indices of each cell, -1 for a wall
+     * @param tileSize  the tile size of a {@link TiledNavMesh}, or 0 for an
+     *                  {@link IndexedNavMesh}
+     * @return a new navmesh
+     */
+    static NavMesh createNavMesh(float[] positions, int[] corners, int[] links, float tileSize) {
+        boolean tiled = tileSize > 0;
+        NavMesh navMesh = tiled ? new TiledNavMesh(tileSize) : new IndexedNavMesh();
+
+        int cellCount = corners.length / 3;
+        Cell[] cells = new Cell[cellCount];
+        for (int i = 0; i < cellCount; i++) {
+            Vector3f a = getVertex(positions, corners[i * 3]);
+            Vector3f b = getVertex(positions, corners[i * 3 + 1]);
+            Vector3f c = getVertex(positions, corners[i * 3 + 2]);
+            if (tiled) {
+                cells[i] = new Cell();
+                cells[i].initialize(a, b, c);
+            } else {
+                navMesh.addCell(a, b, c);
+                cells[i] = navMesh.getCell(i);
+            }
+        }
+
+        for (int i = 0; i < cellCount; i++) {
+            Cell cell = cells[i];
+            for (int side = 0; side < 3; side++) {
+                int link = links[i * 3 + side];
+                if (link >= 0) {
+                    cell.requestLink(cell.getVertex(side), cell.getVertex((side + 1) % 3), cells[link],
+                            CellLinker.LINK_EPSILON);
+                }
+            }
+        }
+
+        if (tiled) {
+            ((TiledNavMesh) navMesh).addCells(cells);
+        }
+        return navMesh;
+    }
+
+    private static int checkLink(int link, int count, String source) throws IOException {
+        return link == -1 ? link : checkIndex(link, count, source);
+    }
+
+    private static int checkIndex(int index, int count, String source) throws IOException {
+        if (index < 0 || index >= count) {
+            throw new IOException("Corrupted navmesh file (index out of range): " + source);
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.jme3.ai.navmesh;
+
+import java.util.List;
+
+import com.jme3.math.Vector3f;
+
+/**
+ * A uniform grid over the cells of a navmesh on the xz-plane, used to find the
+ * cells near a point without testing every cell.
+ * <p>
+ * Each cell is registered in all the buckets overlapped by its bounding box.
+ * The bucket size is chosen from the size of the cells, so that a bucket holds
+ * a few cells: the queries test a constant number of cells, whatever the size
+ * of the mesh. The buckets are stored in two flat arrays, and the grid is not
+ * updated when the cells change: a new grid must be built instead. The
+ * buckets are those of {@link FlatNavMesh}, over the {@link Cell} objects.
+ *
+ * @author capdevon
+ */
+public class NavMeshGrid {
+
+    private final Cell[] cells;
+    private final CellGrid grid;
+
+    /**
+     * Instantiate a <code>NavMeshGrid</code>
+     *
+     * @param cells the cells to index
+     */
+    public NavMeshGrid(Cell[] cells) {
+        this.cells = cells;
+
+        // the bounds of each cell on the xz-plane: minX, minZ, maxX, maxZ
+        float[] bounds = new float[cells.length * 4];
+        for (int i = 0; i < cells.length; i++) {
+            float cx0 = Float.POSITIVE_INFINITY, cz0 = Float.POSITIVE_INFINITY;
+            float cx1 = Float.NEGATIVE_INFINITY, cz1 = Float.NEGATIVE_INFINITY;
+            for (int k = 0; k < 3; k++) {
+                Vector3f v = cells[i].getVertex(k);
+                cx0 = Math.min(cx0, v.x);
+                cz0 = Math.min(cz0, v.z);
+                cx1 = Math.max(cx1, v.x);
+                cz1 = Math.max(cz1, v.z);
+            }
+            bounds[i * 4] = cx0;
+            bounds[i * 4 + 1] = cz0;
+            bounds[i * 4 + 2] = cx1;
+            bounds[i * 4 + 3] = cz1;
+        }
+
+        this.grid = new CellGrid(bounds) {
+            @Override
+            protected float getHeightDistance(int cell, Vector3f point) {
+                Cell c = NavMeshGrid.this.cells[cell];
+                return c.contains(point) ? Math.abs(c.getHeightOnCell(point) - point.y) : -1;
+            }
+
+            @Override
+            protected float distanceSquared(int cell, Vector3f point, Vector3f temp) {
+                Cell c = NavMeshGrid.this.cells[cell];
+                temp.set(point);
+                c.forcePointToCellColumn(temp);
+                c.computeHeightOnCell(temp);
+                return temp.distanceSquared(point);
+            }
+        };
+    }
+
+    /**
+     * Finds the closest cell to a point, as {@link NavMesh#findClosestCell(Vector3f)}
+     * does: among the cells containing the point on the xz-plane, the one whose
+     * height is the closest to the point; otherwise, the nearest cell.
+     *
+     * @param point the point to test
+     * @return the closest cell, or {@code null} if the grid is empty
+     */
+    public Cell findClosestCell(Vector3f point) {
+        int cell = grid.findClosestCell(point, new Vector3f());
+        return cell >= 0 ? cells[cell] : null;
+    }
+
+    /**
+     * Finds the cell containing a point on the xz-plane. If several cells
+     * contain the point, the one whose height is the closest to the point is
+     * returned.
+     *
+     * @param point the point to test
+     * @return the cell, or {@code null} if no cell contains the point
+     */
+    public Cell findContainingCell(Vector3f point) {
+        int cell = grid.findContainingCell(point);
+        return cell >= 0 ? cells[cell] : null;
+    }
+
+    /**
+     * Collects the cells whose bounding box overlaps a circle on the
+     * xz-plane. Each cell is added once.
+     *
+     * @param center the center of the circle
+     * @param radius the radius of the circle (world units)
+     * @param store  the list to fill (not null)
+     * @return the store
+     */
+    public List<Cell> findCells(Vector3f center, float radius, List<Cell> store) {
+        grid.findCells(center, radius, cell -> store.add(cells[cell]));
+        return store;
+    }
+
+    public int getCellCount() {
+        return cells.length;
+    }
+
+    public float getBucketSize() {
+        return grid.getBucketSize();
+    }
+
+    @Override
+    public String toString() {
+        return "NavMeshGrid [cells=" + cells.length + ", " + grid + "]";
+    }
+
+}
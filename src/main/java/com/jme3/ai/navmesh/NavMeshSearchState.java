@@ -0,0 +1,151 @@
+package com.jme3.ai.navmesh;
+
+import java.util.Arrays;
+
+import com.jme3.ai.navmesh.util.IndexedMinHeap;
+
+/**
+ * The scratch state of a path search on a {@link FlatNavMesh}: the arrival
+ * cost, the heuristic and the arrival wall of each cell, in primitive arrays
+ * indexed by cell id, and the open list.
+ * <p>
+ * The navmesh itself is never written by a search, so it can be shared by any
+ * number of pathfinders and threads; only the search state must not be used
+ * by two searches at once. {@link #ofCurrentThread()} gives each thread a
+ * single state, shared by all the navmeshes and grown to the largest one
+ * searched: the memory depends on the number of threads, and neither on the
+ * number of agents nor on the navmeshes loaded over time.
+ *
+ * @author capdevon
+ */
+public final class NavMeshSearchState {
+
+    private static final ThreadLocal<NavMeshSearchState> threadStates =
+            ThreadLocal.withInitial(() -> new NavMeshSearchState(0));
+
+    private int sessionID;
+    private int[] sessions;
+    private boolean[] closed;
+    private float[] arrivalCosts;
+    private float[] heuristics;
+    private byte[] arrivalWalls;
+    // the open cells, keyed by their total cost
+    private IndexedMinHeap open;
+
+    /**
+     * Instantiate a <code>NavMeshSearchState</code>
+     *
+     * @param cellCount the number of cells of the navmesh to search
+     */
+    public NavMeshSearchState(int cellCount) {
+        sessions = new int[cellCount];
+        closed = new boolean[cellCount];
+        arrivalCosts = new float[cellCount];
+        heuristics = new float[cellCount];
+        arrivalWalls = new byte[cellCount];
+        open = new IndexedMinHeap(cellCount);
+    }
+
+    /**
+     * Returns the search state of the calling thread, created empty on the
+     * first call and grown by the searches as needed. It holds no reference
+     * to a navmesh, so it does not keep a navmesh alive after a reload.
+     *
+     * @return the state of the calling thread
+     */
+    public static NavMeshSearchState ofCurrentThread() {
+        return threadStates.get();
+    }
+
+    /**
+     * Starts a new search: the cells visited by the previous searches are
+     * forgotten, without clearing the arrays.
+     *
+     * @param cellCount the number of cells of the navmesh to search
+     */
+    void begin(int cellCount) {
+        if (sessions.length < cellCount) {
+            sessions = new int[cellCount];
+            closed = new boolean[cellCount];
+            arrivalCosts = new float[cellCount];
+            heuristics = new float[cellCount];
+            arrivalWalls = new byte[cellCount];
+            open = new IndexedMinHeap(cellCount);
+            sessionID = 0;
+        }
+        if (++sessionID == Integer.MAX_VALUE) {
+            Arrays.fill(sessions, 0);
+            sessionID = 1;
+        }
+        open.clear();
+    }
+
+    /**
+     * @return {@code true} if the cell was reached by the current search.
+     */
+    boolean isVisited(int cell) {
+        return sessions[cell] == sessionID;
+    }
+
+    /**
+     * Reaches a cell for the first time in the current search, and adds it to
+     * the open list.
+     */
+    void open(int cell, float arrivalCost, float heuristic, int arrivalWall) {
+        sessions[cell] = sessionID;
+        closed[cell] = false;
+        arrivalCosts[cell] = arrivalCost;
+        heuristics[cell] = heuristic;
+        arrivalWalls[cell] = (byte) arrivalWall;
+        open.add(cell, arrivalCost + heuristic);
+    }
+
+    /**
+     * Lowers the arrival cost of an open cell, in O(log n).
+     */
+    void update(int cell, float arrivalCost, int arrivalWall) {
+        arrivalCosts[cell] = arrivalCost;
+        arrivalWalls[cell] = (byte) arrivalWall;
+        open.decreaseKey(cell, arrivalCost + heuristics[cell]);
+    }
+
+    boolean isClosed(int cell) {
+        return closed[cell];
+    }
+
+    void close(int cell) {
+        closed[cell] = true;
+    }
+
+    float getArrivalCost(int cell) {
+        return arrivalCosts[cell];
+    }
+
+    int getArrivalWall(int cell) {
+        return arrivalWalls[cell];
+    }
+
+    /**
+     * Removes the open cell with the lowest total cost.
+     *
+     * @return the id of the cell, or -1 if the open list is empty
+     */
+    int pollOpen() {
+        return open.isEmpty() ? -1 : open.poll();
+    }
+
+    /**
+     * @return the number of cells the state can hold.
+     */
+    public int getCapacity() {
+        return sessions.length;
+    }
+
+    /**
+     * @return the size of the arrays (bytes).
+     */
+    public long getSizeInBytes() {
+        return 26L * sessions.length;
+    }
+
+}
@@ -0,0 +1,221 @@
+package com.jme3.ai.navmesh;
+
+import java.util.ArrayDeque;
+
+import com.jme3.math.Vector3f;
+
+/**
+ * Runs the path queries of any number of {@link FlatNavMeshPathfinder}s
+ * within a budget per frame, so that a long query is spread over several
+ * frames instead of causing a hitch.
+ * <p>
+ * The queries are run in the order of the requests, one at a time, by
+ * {@link #update()}, which must be called once per frame: it expands cells
+ * until the budget of cell expansions or of microseconds is spent, shared by
+ * all the queries of the frame, and the query in progress is resumed on the
+ * next frame. Since a single query is in progress at a time, one
+ * {@link NavMeshSearchState} serves all of them, whatever the navmesh.
+ * <p>
+ * The scheduler is not thread-safe: request the paths and call
+ * {@link #update()} from the same thread, e.g. the render thread.
+ *
+ * @author capdevon
+ */
+public class PathQueryScheduler {
+
+    /**
+     * Notified when the query of a path ends.
+     */
+    public interface Listener {
+
+        /**
+         * @param found {@code true} if a path was found: the corners can be
+         *              read from the pathfinder
+         */
+        void onPathComputed(boolean found);
+    }
+
+    // the number of cells expanded between two reads of the clock
+    private static final int EXPANSIONS_PER_CHECK = 64;
+
+    private static final class Request {
+        FlatNavMeshPathfinder pathfinder;
+        final Vector3f goal = new Vector3f();
+        Listener listener;
+    }
+
+    private final NavMeshSearchState searchState = new NavMeshSearchState(0);
+    private final ArrayDeque<Request> queue = new ArrayDeque<>();
+    private final ArrayDeque<Request> freeRequests = new ArrayDeque<>();
+    // the request whose query is in progress
+    private Request active;
+
+    private int maxExpansionsPerFrame = Integer.MAX_VALUE;
+    private long maxMicrosPerFrame = 1000;
+    private int lastExpansions;
+
+    /**
+     * Requests a path from the current position of the pathfinder (see
+     * {@link FlatNavMeshPathfinder#setPosition(Vector3f)}) to the goal. If the
+     * pathfinder already has a pending request, the request is updated, and
+     * its query is restarted if it was in progress.
+     *
+     * @param pathfinder the pathfinder
+     * @param goal       the destination (not null, unaffected)
+     * @param listener   notified when the query ends, or {@code null}
+     */
+    public void request(FlatNavMeshPathfinder pathfinder, Vector3f goal, Listener listener) {
+        Request request = find(pathfinder);
+        if (request == null) {
+            request = (freeRequests.isEmpty()) ? new Request() : freeRequests.poll();
+            request.pathfinder = pathfinder;
+            queue.add(request);
+
+        } else if (request == active) {
+            pathfinder.clearPath();
+            active = null;
+            queue.addFirst(request);
+        }
+        request.goal.set(goal);
+        request.listener = listener;
+    }
+
+    /**
+     * Removes the request of a pathfinder, and ends its query if it was in
+     * progress. The listener is not notified.
+     *
+     * @param pathfinder the pathfinder
+     */
+    public void cancel(FlatNavMeshPathfinder pathfinder) {
+        Request request = find(pathfinder);
+        if (request == null) {
+            return;
+        }
+        if (request == active) {
+            pathfinder.clearPath();
+            active = null;
+        } else {
+            queue.remove(request);
+        }
+        release(request);
+    }
+
+    /**
+     * @param pathfinder the pathfinder
+     * @return {@code true} if the pathfinder has a request whose query has
+     *         not ended yet.
+     */
+    public boolean isPending(FlatNavMeshPathfinder pathfinder) {
+        return find(pathfinder) != null;
+    }
+
+    /**
+     * Runs the queries for the budget of a frame.
+     */
+    public void update() {
+        long deadline = System.nanoTime() + maxMicrosPerFrame * 1000;
+        int budget = maxExpansionsPerFrame;
+        lastExpansions = 0;
+
+        while (budget > 0) {
+            if (active == null) {
+                active = queue.poll();
+                if (active == null) {
+                    break;
+                }
+                if (!active.pathfinder.beginPath(active.goal, searchState)) {
+                    complete(false);
+                    continue;
+                }
+            }
+
+            int expansions = active.pathfinder.continuePath(Math.min(budget, EXPANSIONS_PER_CHECK));
+            budget -= expansions;
+            lastExpansions += expansions;
+            if (!active.pathfinder.isPathPending()) {
+                complete(active.pathfinder.hasPath());
+            }
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+    }
+
+    private void complete(boolean found) {
+        Request request = active;
+        active = null;
+        Listener listener = request.listener;
+        release(request);
+        if (listener != null) {
+            listener.onPathComputed(found);
+        }
+    }
+
+    private Request find(FlatNavMeshPathfinder pathfinder) {
+        if (active != null && active.pathfinder == pathfinder) {
+            return active;
+        }
+        for (Request request : queue) {
+            if (request.pathfinder == pathfinder) {
+                return request;
+            }
+        }
+        return null;
+    }
+
+    private void release(Request request) {
+        request.pathfinder = null;
+        request.listener = null;
+        freeRequests.add(request);
+    }
+
+    /**
+     * @return the number of requests whose query has not ended yet.
+     */
+    public int getPendingCount() {
+        return queue.size() + (active != null ? 1 : 0);
+    }
+
+    /**
+     * @return the number of cells expanded by the last update.
+     */
+    public int getLastExpansions() {
+        return lastExpansions;
+    }
+
+    public int getMaxExpansionsPerFrame() {
+        return maxExpansionsPerFrame;
+    }
+
+    /**
+     * Sets the maximum number of cells expanded by an update, shared by all
+     * the queries.
+     *
+     * @param maxExpansionsPerFrame the number of cells (&gt;0)
+     */
+    public void setMaxExpansionsPerFrame(int maxExpansionsPerFrame) {
+        if (maxExpansionsPerFrame <= 0) {
+            throw new IllegalArgumentException("maxExpansionsPerFrame must be positive: " + maxExpansionsPerFrame);
+        }
+        this.maxExpansionsPerFrame = maxExpansionsPerFrame;
+    }
+
+    public long getMaxMicrosPerFrame() {
+        return maxMicrosPerFrame;
+    }
+
+    /**
+     * Sets the time an update may spend on the queries. The clock is read
+     * every few cells, so an update may exceed it by the time of a few cell
+     * expansions, or of the corners of a path found.
+     *
+     * @param maxMicrosPerFrame the time (microseconds, &gt;0)
+     */
+    public void setMaxMicrosPerFrame(long maxMicrosPerFrame) {
+        if (maxMicrosPerFrame <= 0) {
+            throw new IllegalArgumentException("maxMicrosPerFrame must be positive: " + maxMicrosPerFrame);
+        }
+        this.maxMicrosPerFrame = maxMicrosPerFrame;
+    }
+
+}
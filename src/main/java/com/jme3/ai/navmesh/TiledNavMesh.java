@@ -0,0 +1,388 @@
+package com.jme3.ai.navmesh;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+
+/**
+ * A {@link NavMesh} whose cells are grouped by square tiles on the xz-plane.
+ * <p>
+ * Single tiles can be replaced or removed at runtime with
+ * {@link #setTile(int, int, float[], int[])} and {@link #removeTile(int, int)}.
+ * Only the cells of the replaced tile are created again: the links inside the
+ * tile are rebuilt, and the cells of the neighbouring tiles are relinked only
+ * along the shared seams.
+ * <p>
+ * The tile grid is anchored at the world origin and must match the grid used to
+ * bake the tiles. Replacing a tile and computing a path must not happen at the
+ * same time: both operations should synchronize on this object.
+ *
+ * @author capdevon
+ */
+public class TiledNavMesh extends NavMesh {
+
+    private final Map<Long, List<Cell>> tiles = new HashMap<>();
+    private float tileSize;
+    private volatile Cell[] snapshot;
+
+    /**
+     * For serialization only. Do not use.
+     */
+    public TiledNavMesh() {
+        this(1);
+    }
+
+    /**
+     * Instantiate an empty <code>TiledNavMesh</code>
+     *
+     * @param tileSize the width and depth of a tile (world units)
+     */
+    public TiledNavMesh(float tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize must be greater than zero: " + tileSize);
+        }
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Instantiate a <code>TiledNavMesh</code> from a mesh. The triangles are
+     * assigned to the tile containing their center.
+     *
+     * @param mesh     the navigation mesh
+     * @param tileSize the width and depth of a tile (world units)
+     */
+    public TiledNavMesh(Mesh mesh, float tileSize) {
+        this(tileSize);
+        loadFromMesh(mesh);
+    }
+
+    public float getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * @return the number of tiles containing at least one cell.
+     */
+    public synchronized int getNumTiles() {
+        return tiles.size();
+    }
+
+    /**
+     * Replaces the cells of a tile. The triangles must lie inside the tile
+     * bounds, and their edges on the tile seams must match the edges of the
+     * neighbouring tiles.
+     *
+     * @param tileX    the column of the tile
+     * @param tileZ    the row of the tile
+     * @param vertices the vertex positions (x, y, z)
+     * @param indices  the triangle indices
+     */
+    public synchronized void setTile(int tileX, int tileZ, float[] vertices, int[] indices) {
+        List<Cell> cells = new ArrayList<>(indices.length / 3);
+        for (int i = 0; i < indices.length; i += 3) {
+            Vector3f a = getVertex(vertices, indices[i]);
+            Vector3f b = getVertex(vertices, indices[i + 1]);
+            Vector3f c = getVertex(vertices, indices[i + 2]);
+            if (a.equals(b) || b.equals(c) || c.equals(a)) {
+                continue;
+            }
+            Cell cell = new Cell();
+            cell.initialize(a, b, c);
+            cells.add(cell);
+        }
+
+        detachTile(tileX, tileZ);
+        if (!cells.isEmpty()) {
+            tiles.put(key(tileX, tileZ), cells);
+            CellLinker.link(cells.toArray(new Cell[0]), cells.size());
+            linkSeams(tileX, tileZ, cells);
+        }
+        snapshot = null;
+    }
+
+    /**
+     * Removes the cells of a tile, and unlinks the cells of the neighbouring
+     * tiles from them.
+     *
+     * @param tileX the column of the tile
+     * @param tileZ the row of the tile
+     */
+    public synchronized void removeTile(int tileX, int tileZ) {
+        detachTile(tileX, tileZ);
+        snapshot = null;
+    }
+
+    /**
+     * @return {@code true} if the tile contains at least one cell.
+     */
+    public synchronized boolean hasTile(int tileX, int tileZ) {
+        return tiles.containsKey(key(tileX, tileZ));
+    }
+
+    /**
+     * @return the number of cells of the tile (0 if the tile is empty).
+     */
+    public synchronized int getTileCellCount(int tileX, int tileZ) {
+        List<Cell> cells = tiles.get(key(tileX, tileZ));
+        return cells != null ? cells.size() : 0;
+    }
+
+    private void detachTile(int tileX, int tileZ) {
+        List<Cell> old = tiles.remove(key(tileX, tileZ));
+        if (old == null) {
+            return;
+        }
+        float minX = tileEdge(tileX), maxX = tileEdge(tileX + 1);
+        float minZ = tileEdge(tileZ), maxZ = tileEdge(tileZ + 1);
+        for (Cell cell : old) {
+            if (isOnBorder(cell, minX, minZ, maxX, maxZ)) {
+                for (int side = 0; side < 3; side++) {
+                    Cell link = cell.getLink(side);
+                    if (link != null) {
+                        link.unLink(cell);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Links the border cells of a tile with the cells of the four neighbouring
+     * tiles lying on the shared seams.
+     */
+    private void linkSeams(int tileX, int tileZ, List<Cell> cells) {
+        float minX = tileEdge(tileX), maxX = tileEdge(tileX + 1);
+        float minZ = tileEdge(tileZ), maxZ = tileEdge(tileZ + 1);
+
+        List<Cell> border = new ArrayList<>();
+        for (Cell cell : cells) {
+            if (isOnBorder(cell, minX, minZ, maxX, maxZ)) {
+                border.add(cell);
+            }
+        }
+        if (border.isEmpty()) {
+            return;
+        }
+
+        collectSeamCells(tiles.get(key(tileX - 1, tileZ)), 0, minX, border);
+        collectSeamCells(tiles.get(key(tileX + 1, tileZ)), 0, maxX, border);
+        collectSeamCells(tiles.get(key(tileX, tileZ - 1)), 2, minZ, border);
+        collectSeamCells(tiles.get(key(tileX, tileZ + 1)), 2, maxZ, border);
+
+        CellLinker.link(border.toArray(new Cell[0]), border.size());
+    }
+
+    private static void collectSeamCells(List<Cell> cells, int axis, float value, List<Cell> store) {
+        if (cells == null) {
+            return;
+        }
+        for (Cell cell : cells) {
+            if (hasEdgeOn(cell, axis, value)) {
+                store.add(cell);
+            }
+        }
+    }
+
+    private static boolean isOnBorder(Cell cell, float minX, float minZ, float maxX, float maxZ) {
+        return hasEdgeOn(cell, 0, minX) || hasEdgeOn(cell, 0, maxX)
+            || hasEdgeOn(cell, 2, minZ) || hasEdgeOn(cell, 2, maxZ);
+    }
+
+    /**
+     * @return {@code true} if the cell has an edge lying on the line
+     *         <code>coord[axis] == value</code>.
+     */
+    private static boolean hasEdgeOn(Cell cell, int axis, float value) {
+        int count = 0;
+        for (int i = 0; i < 3; i++) {
+            if (cell.getVertex(i).get(axis) == value) {
+                count++;
+            }
+        }
+        return count >= 2;
+    }
+
+    private static Vector3f getVertex(float[] vertices, int index) {
+        return new Vector3f(vertices[index * 3], vertices[index * 3 + 1], vertices[index * 3 + 2]);
+    }
+
+    private float tileEdge(int index) {
+        return index * tileSize;
+    }
+
+    private int tileIndex(float coord) {
+        return (int) Math.floor(coord / tileSize);
+    }
+
+    private static long key(int tileX, int tileZ) {
+        return ((long) tileX << 32) | (tileZ & 0xffffffffL);
+    }
+
+    @Override
+    public synchronized void clear() {
+        super.clear();
+        tiles.clear();
+        snapshot = null;
+    }
+
+    /**
+     * Adds a cell to the tile containing its center. The cell is not linked
+     * until {@link #linkCells()} is called.
+     */
+    @Override
+    public synchronized void addCell(Vector3f pointA, Vector3f pointB, Vector3f pointC) {
+        Cell cell = new Cell();
+        cell.initialize(pointA.clone(), pointB.clone(), pointC.clone());
+        addCells(cell);
+    }
+
+    /**
+     * Adds cells, already linked, to the tiles containing their center.
+     */
+    synchronized void addCells(Cell... cells) {
+        for (Cell cell : cells) {
+            Vector3f center = cell.getCenter();
+            long key = key(tileIndex(center.x), tileIndex(center.z));
+            tiles.computeIfAbsent(key, k -> new ArrayList<>()).add(cell);
+        }
+        snapshot = null;
+    }
+
+    @Override
+    public synchronized void linkCells() {
+        Cell[] cells = getCells();
+        CellLinker.link(cells, cells.length);
+    }
+
+    @Override
+    public int getNumCells() {
+        return getCells().length;
+    }
+
+    @Override
+    public Cell getCell(int index) {
+        return getCells()[index];
+    }
+
+    /**
+     * Finds the closest cell looking only at the tile containing the point and
+     * at the surrounding tiles. The whole mesh is searched only when these
+     * tiles are empty.
+     */
+    @Override
+    public synchronized Cell findClosestCell(Vector3f point) {
+        int tileX = tileIndex(point.x);
+        int tileZ = tileIndex(point.z);
+
+        ClosestCell result = new ClosestCell(point);
+        for (int dz = -1; dz <= 1; dz++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                List<Cell> cells = tiles.get(key(tileX + dx, tileZ + dz));
+                if (cells != null) {
+                    for (Cell cell : cells) {
+                        result.test(cell);
+                    }
+                }
+            }
+        }
+
+        if (result.get() == null) {
+            for (Cell cell : getCells()) {
+                result.test(cell);
+            }
+        }
+        return result.get();
+    }
+
+    private Cell[] getCells() {
+        Cell[] cells = snapshot;
+        if (cells == null) {
+            synchronized (this) {
+                cells = snapshot;
+                if (cells == null) {
+                    List<Cell> list = new ArrayList<>();
+                    for (List<Cell> tile : tiles.values()) {
+                        list.addAll(tile);
+                    }
+                    cells = list.toArray(new Cell[0]);
+                    snapshot = cells;
+                }
+            }
+        }
+        return cells;
+    }
+
+    @Override
+    public void write(JmeExporter ex) throws IOException {
+        OutputCapsule oc = ex.getCapsule(this);
+        oc.writeSavableArrayList(new ArrayList<>(Arrays.asList(getCells())), "cellarray", null);
+        oc.write(tileSize, "tileSize", 1);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized void read(JmeImporter im) throws IOException {
+        InputCapsule ic = im.getCapsule(this);
+        tileSize = ic.readFloat("tileSize", 1);
+        List<Cell> cells = ic.readSavableArrayList("cellarray", new ArrayList<>());
+
+        tiles.clear();
+        for (Cell cell : cells) {
+            Vector3f center = cell.getCenter();
+            tiles.computeIfAbsent(key(tileIndex(center.x), tileIndex(center.z)), k -> new ArrayList<>()).add(cell);
+        }
+        snapshot = null;
+    }
+
+    /**
+     * Keeps track of the closest cell to a point: cells containing the point
+     * on the xz-plane are preferred, then the nearest cell.
+     */
+    private static class ClosestCell {
+
+        private final Vector3f point;
+        private final Vector3f snapped = new Vector3f();
+        private Cell inside, nearest;
+        private float insideDist = Float.MAX_VALUE, nearestDist = Float.MAX_VALUE;
+
+        ClosestCell(Vector3f point) {
+            this.point = point;
+        }
+
+        void test(Cell cell) {
+            if (cell.contains(point)) {
+                float dist = Math.abs(cell.getHeightOnCell(point) - point.y);
+                if (dist < insideDist) {
+                    insideDist = dist;
+                    inside = cell;
+                }
+            } else if (inside == null) {
+                snapped.set(point);
+                if (!cell.contains(snapped)) {
+                    cell.forcePointToCellColumn(snapped);
+                }
+                cell.computeHeightOnCell(snapped);
+                float dist = snapped.distanceSquared(point);
+                if (dist < nearestDist) {
+                    nearestDist = dist;
+                    nearest = cell;
+                }
+            }
+        }
+
+        Cell get() {
+            return inside != null ? inside : nearest;
+        }
+    }
+
+}
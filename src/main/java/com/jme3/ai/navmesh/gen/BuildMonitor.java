@@ -0,0 +1,119 @@
+package com.jme3.ai.navmesh.gen;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks a navigation mesh build: forwards the progress to the listener,
+ * measures the stages for the {@link NavMeshBuildReport} and stops the build
+ * between two stages once it has been cancelled.
+ * <p>
+ * nmgen cannot be interrupted while a stage is running, so
+ * {@link Future#cancel(boolean)} alone leaves the worker busy until the end of
+ * the build. The stages call {@link #stage(NavMeshBuildStage, float)} instead,
+ * which throws a {@link CancellationException} as soon as the future is
+ * cancelled or the worker thread is interrupted.
+ * <p>
+ * A monitor measures one stage at a time, so each thread must use its own
+ * monitor: see {@link #silent()}.
+ *
+ * @author capdevon
+ */
+final class BuildMonitor {
+
+    private final Future<?> future;
+    private final NavMeshBuildListener listener;
+    private final NavMeshBuildReport report;
+    private final AtomicInteger tilesDone = new AtomicInteger();
+    private long stageStart;
+    private long stageAllocated;
+
+    /**
+     * @param future   the future of the build, or {@code null}
+     * @param listener the listener to notify, or {@code null}
+     * @param report   the report to fill, or {@code null}
+     */
+    BuildMonitor(Future<?> future, NavMeshBuildListener listener, NavMeshBuildReport report) {
+        this.future = future;
+        this.listener = listener;
+        this.report = report;
+    }
+
+    /**
+     * @return a monitor of the same build which does not report the progress
+     *         to the listener, used by the tiles baked concurrently.
+     */
+    BuildMonitor silent() {
+        return new BuildMonitor(future, null, report);
+    }
+
+    /**
+     * @return {@code true} if the stages are measured.
+     */
+    boolean isReporting() {
+        return report != null;
+    }
+
+    /**
+     * Checks that the build is still running, then reports the new stage.
+     *
+     * @param stage    the stage about to start
+     * @param progress the overall progress of the build, between 0 and 1
+     * @throws CancellationException if the build has been cancelled
+     */
+    void stage(NavMeshBuildStage stage, float progress) {
+        checkCancelled();
+        if (listener != null) {
+            listener.onProgress(stage, progress);
+        }
+        if (report != null) {
+            stageStart = System.nanoTime();
+            stageAllocated = NavMeshBuildReport.getAllocatedBytes();
+        }
+    }
+
+    /**
+     * Records the time and the memory spent since the last call to
+     * {@link #stage(NavMeshBuildStage, float)}.
+     *
+     * @param stage the completed stage
+     */
+    void record(NavMeshBuildStage stage) {
+        if (report != null) {
+            long allocated = NavMeshBuildReport.getAllocatedBytes();
+            report.addTime(stage, System.nanoTime() - stageStart,
+                    (allocated < 0 || stageAllocated < 0) ? -1 : allocated - stageAllocated);
+        }
+    }
+
+    /**
+     * Adds an element count to a stage of the report.
+     */
+    void count(NavMeshBuildStage stage, String key, long count) {
+        if (report != null) {
+            report.addCount(stage, key, count);
+        }
+    }
+
+    /**
+     * Reports a baked tile. The tiles account for the progress from
+     * <code>start</code> to <code>end</code>.
+     */
+    void tileCompleted(int tileCount, float start, float end) {
+        int done = tilesDone.incrementAndGet();
+        if (listener != null) {
+            listener.onProgress(NavMeshBuildStage.TILES, start + (end - start) * done / tileCount);
+        }
+    }
+
+    /**
+     * @throws CancellationException if the build has been cancelled
+     */
+    void checkCancelled() {
+        if ((future != null && future.isCancelled()) || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("NavMesh build cancelled.");
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.jme3.ai.navmesh.gen;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jme3.bullet.collision.shapes.CollisionShape;
+import com.jme3.bullet.collision.shapes.CompoundCollisionShape;
+import com.jme3.bullet.collision.shapes.infos.ChildCollisionShape;
+import com.jme3.bullet.control.RigidBodyControl;
+import com.jme3.bullet.util.DebugShapeFactory;
+import com.jme3.math.Transform;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+
+/**
+ * Converts the collision shapes of the rigid bodies into source geometries,
+ * so that the navmesh matches what the physics collides with.
+ * <p>
+ * Each shape is tessellated once, at the low resolution of the Minie debug
+ * meshes, in scaled shape coordinates. The bodies and the compound children
+ * using the same shape become the instances of a single
+ * {@link SharedMeshGeometry}, placed with the physics location and rotation
+ * of the body.
+ *
+ * @author capdevon
+ */
+final class CollisionShapeConverter {
+
+    private final Map<CollisionShape, SharedMeshGeometry> shapes = new IdentityHashMap<>();
+    private final List<Geometry> results = new ArrayList<>();
+
+    /**
+     * Adds the collision shape of a rigid body.
+     *
+     * @param name the name of the geometries created for the body
+     * @param body the rigid body
+     */
+    void addBody(String name, RigidBodyControl body) {
+        Transform transform = new Transform(
+                body.getPhysicsLocation(null), body.getPhysicsRotation(null));
+        addShape(name, body.getCollisionShape(), transform);
+    }
+
+    private void addShape(String name, CollisionShape shape, Transform transform) {
+        if (shape instanceof CompoundCollisionShape) {
+            for (ChildCollisionShape child : ((CompoundCollisionShape) shape).listChildren()) {
+                Transform childTransform = new Transform(child.copyOffset(null), child.copyRotation(null));
+                addShape(name, child.getShape(), childTransform.combineWithParent(transform));
+            }
+            return;
+        }
+
+        SharedMeshGeometry geom = shapes.get(shape);
+        if (geom == null) {
+            Mesh mesh = createMesh(shape);
+            if (mesh == null) {
+                return;
+            }
+            geom = new SharedMeshGeometry(name + "-" + shape.getClass().getSimpleName(), mesh);
+            shapes.put(shape, geom);
+            results.add(geom);
+        }
+        geom.addInstance(transform.toTransformMatrix(), geom.getMesh().getBound().transform(transform, null));
+    }
+
+    /**
+     * @return the triangles of the shape, or {@code null} if the shape has none.
+     */
+    private static Mesh createMesh(CollisionShape shape) {
+        FloatBuffer positions = DebugShapeFactory.getDebugTriangles(shape, DebugShapeFactory.lowResolution);
+        if (positions == null || positions.limit() == 0) {
+            return null;
+        }
+
+        // a triangle list without indices
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(VertexBuffer.Type.Position, 3, positions);
+        mesh.updateBound();
+        mesh.updateCounts();
+        return mesh;
+    }
+
+    /**
+     * @return the geometries created from the shapes added so far.
+     */
+    List<Geometry> getResults() {
+        return results;
+    }
+
+}
@@ -0,0 +1,274 @@
+package com.jme3.ai.navmesh.gen;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.critterai.nmgen.TriangleMesh;
+
+import com.jme3.math.Matrix4f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+
+/**
+ * Extracts the triangles of the source geometries, in world space, directly
+ * into the primitive arrays processed by the
+ * {@link org.critterai.nmgen.NavmeshGenerator}.
+ * <p>
+ * The arrays are allocated once, sized from the vertex and index counts of the
+ * meshes, and each geometry writes its own range of the arrays in parallel. No
+ * merged {@link Mesh} is created. The mesh of a {@link SharedMeshGeometry} is
+ * read once for each of its instances.
+ *
+ * @author capdevon
+ */
+final class GeometryExtractor {
+
+    private static final Logger logger = Logger.getLogger(GeometryExtractor.class.getName());
+
+    private GeometryExtractor() {}
+
+    /**
+     * @param sources  the source geometries
+     * @param executor the executor used to copy the geometries
+     * @return the triangles of all the geometries
+     * @throws InterruptedException if the current thread was interrupted
+     * @throws ExecutionException   if a copy task failed
+     */
+    static TriangleMesh extract(List<Geometry> sources, ExecutorService executor)
+            throws InterruptedException, ExecutionException {
+
+        List<Source> list = resolve(sources);
+        int vertCount = 0;
+        int indexCount = 0;
+        for (Source source : list) {
+            source.vertOffset = vertCount;
+            source.indexOffset = indexCount;
+            vertCount += source.vertCount;
+            indexCount += source.indexCount;
+        }
+
+        TriangleMesh result = new TriangleMesh();
+        result.vertices = new float[vertCount * 3];
+        result.indices = new int[indexCount];
+
+        List<Callable<Void>> tasks = new ArrayList<>(list.size());
+        for (Source source : list) {
+            tasks.add(() -> {
+                source.copyTo(result.vertices, result.indices);
+                return null;
+            });
+        }
+        invokeAll(executor, tasks);
+
+        return result;
+    }
+
+    /**
+     * Extracts only the triangles overlapping a rectangle on the xz-plane, so
+     * that the memory allocated is bounded by the area of the rectangle rather
+     * than by the size of the source meshes. The triangles are counted in a
+     * first pass over the sources, then copied with their own three vertices
+     * each, without the temporary index remapping a whole mesh would need.
+     * Triangles crossing the rectangle are kept whole.
+     *
+     * @param sources  the source geometries
+     * @param executor the executor used to copy the geometries
+     * @param minX     the minimum x bound
+     * @param minZ     the minimum z bound
+     * @param maxX     the maximum x bound
+     * @param maxZ     the maximum z bound
+     * @return the triangles of all the geometries overlapping the rectangle
+     * @throws InterruptedException if the current thread was interrupted
+     * @throws ExecutionException   if a copy task failed
+     */
+    static TriangleMesh extract(List<Geometry> sources, ExecutorService executor,
+            float minX, float minZ, float maxX, float maxZ) throws InterruptedException, ExecutionException {
+
+        List<Source> list = resolve(sources);
+
+        List<Callable<Void>> tasks = new ArrayList<>(list.size());
+        for (Source source : list) {
+            tasks.add(() -> {
+                source.clippedCount = source.clip(null, null, 0, minX, minZ, maxX, maxZ);
+                return null;
+            });
+        }
+        invokeAll(executor, tasks);
+
+        int triCount = 0;
+        for (Source source : list) {
+            source.indexOffset = triCount * 3;
+            triCount += source.clippedCount;
+        }
+
+        TriangleMesh result = new TriangleMesh();
+        result.vertices = new float[triCount * 9];
+        result.indices = new int[triCount * 3];
+
+        tasks.clear();
+        for (Source source : list) {
+            if (source.clippedCount > 0) {
+                tasks.add(() -> {
+                    source.clip(result.vertices, result.indices, source.indexOffset, minX, minZ, maxX, maxZ);
+                    return null;
+                });
+            }
+        }
+        invokeAll(executor, tasks);
+
+        return result;
+    }
+
+    /**
+     * Resolves the meshes and the world matrices of the geometries, on the
+     * calling thread, since they may update the state of the spatials.
+     */
+    private static List<Source> resolve(List<Geometry> sources) {
+        List<Source> list = new ArrayList<>(sources.size());
+        for (Geometry geom : sources) {
+            Mesh mesh = geom.getMesh();
+            if (!isTriangleMode(mesh.getMode())) {
+                logger.log(Level.WARNING, "Skipping {0}: unsupported mesh mode {1}", new Object[] { geom, mesh.getMode() });
+                continue;
+            }
+            VertexBuffer vb = mesh.getBuffer(VertexBuffer.Type.Position);
+            if (vb == null) {
+                continue;
+            }
+
+            FloatBuffer positions = (FloatBuffer) vb.getData();
+            IndexBuffer indices = mesh.getIndicesAsList();
+
+            List<Matrix4f> transforms;
+            if (geom instanceof SharedMeshGeometry) {
+                transforms = ((SharedMeshGeometry) geom).getTransforms();
+            } else {
+                transforms = Collections.singletonList(geom.isIgnoreTransform() ? null : geom.getWorldMatrix().clone());
+            }
+
+            // the instances of a shared mesh read the same buffers
+            for (Matrix4f transform : transforms) {
+                Source source = new Source();
+                source.positions = positions;
+                source.indices = indices;
+                source.transform = transform;
+                source.vertCount = vb.getNumElements();
+                source.indexCount = indices.size();
+                list.add(source);
+            }
+        }
+        return list;
+    }
+
+    private static void invokeAll(ExecutorService executor, List<Callable<Void>> tasks)
+            throws InterruptedException, ExecutionException {
+        for (Future<Void> future : executor.invokeAll(tasks)) {
+            future.get();
+        }
+    }
+
+    private static boolean isTriangleMode(Mesh.Mode mode) {
+        return mode == Mesh.Mode.Triangles || mode == Mesh.Mode.TriangleStrip || mode == Mesh.Mode.TriangleFan;
+    }
+
+    /**
+     * The data of a geometry and the range of the output arrays it fills.
+     */
+    private static class Source {
+
+        FloatBuffer positions;
+        IndexBuffer indices;
+        Matrix4f transform;
+        int vertCount;
+        int indexCount;
+        int vertOffset;
+        int indexOffset;
+        int clippedCount;
+
+        /**
+         * Copies the vertices and the indices, using absolute reads only, so that
+         * several geometries sharing the same mesh can be copied concurrently.
+         */
+        void copyTo(float[] vertices, int[] out) {
+            int v = vertOffset * 3;
+            Matrix4f m = transform;
+            for (int i = 0; i < vertCount; i++) {
+                float x = positions.get(i * 3);
+                float y = positions.get(i * 3 + 1);
+                float z = positions.get(i * 3 + 2);
+                if (m != null) {
+                    vertices[v++] = m.m00 * x + m.m01 * y + m.m02 * z + m.m03;
+                    vertices[v++] = m.m10 * x + m.m11 * y + m.m12 * z + m.m13;
+                    vertices[v++] = m.m20 * x + m.m21 * y + m.m22 * z + m.m23;
+                } else {
+                    vertices[v++] = x;
+                    vertices[v++] = y;
+                    vertices[v++] = z;
+                }
+            }
+
+            for (int i = 0; i < indexCount; i++) {
+                out[indexOffset + i] = indices.get(i) + vertOffset;
+            }
+        }
+
+        /**
+         * Copies the triangles overlapping the rectangle, each with its own
+         * three vertices, from the supplied index on, or only counts them if
+         * the output arrays are {@code null}.
+         *
+         * @return the number of triangles overlapping the rectangle
+         */
+        int clip(float[] vertices, int[] out, int index, float minX, float minZ, float maxX, float maxZ) {
+            float[] tri = new float[9];
+            int count = 0;
+            for (int i = 0; i < indexCount; i += 3) {
+                for (int k = 0; k < 3; k++) {
+                    transform(indices.get(i + k), tri, k * 3);
+                }
+                if (Math.max(tri[0], Math.max(tri[3], tri[6])) < minX
+                        || Math.min(tri[0], Math.min(tri[3], tri[6])) > maxX
+                        || Math.max(tri[2], Math.max(tri[5], tri[8])) < minZ
+                        || Math.min(tri[2], Math.min(tri[5], tri[8])) > maxZ) {
+                    continue;
+                }
+                if (vertices != null) {
+                    System.arraycopy(tri, 0, vertices, index * 3, 9);
+                    out[index] = index;
+                    out[index + 1] = index + 1;
+                    out[index + 2] = index + 2;
+                    index += 3;
+                }
+                count++;
+            }
+            return count;
+        }
+
+        private void transform(int vertex, float[] store, int offset) {
+            float x = positions.get(vertex * 3);
+            float y = positions.get(vertex * 3 + 1);
+            float z = positions.get(vertex * 3 + 2);
+            Matrix4f m = transform;
+            if (m != null) {
+                store[offset] = m.m00 * x + m.m01 * y + m.m02 * z + m.m03;
+                store[offset + 1] = m.m10 * x + m.m11 * y + m.m12 * z + m.m13;
+                store[offset + 2] = m.m20 * x + m.m21 * y + m.m22 * z + m.m23;
+            } else {
+                store[offset] = x;
+                store[offset + 1] = y;
+                store[offset + 2] = z;
+            }
+        }
+    }
+
+}
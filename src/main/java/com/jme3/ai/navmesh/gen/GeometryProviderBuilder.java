@@ -1,13 +1,20 @@
 package com.jme3.ai.navmesh.gen;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.bullet.collision.shapes.HeightfieldCollisionShape;
+import com.jme3.bullet.control.RigidBodyControl;
 import com.jme3.scene.Geometry;
 import com.jme3.scene.Mesh;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
+import com.jme3.scene.instancing.InstancedGeometry;
 import com.jme3.terrain.Terrain;
 
 /**
@@ -30,7 +37,7 @@ public class GeometryProviderBuilder {
      * @return
      */
     public static List<Geometry> collectSources(Node node) {
-        return collectSources(node, new ArrayList<>(), DefaultFilter);
+        return collectSources(node, DefaultFilter, null);
     }
 
     /**
@@ -42,19 +49,133 @@ public class GeometryProviderBuilder {
      * @return
      */
     public static List<Geometry> collectSources(Node node, Predicate<Spatial> filter) {
-        return collectSources(node, new ArrayList<>(), filter);
+        return collectSources(node, filter, null);
+    }
+
+    /**
+     * Performs a search in the SceneGraph to collect the geometries of the
+     * supplied node overlapping the build volume. It uses the default filter.
+     * 
+     * @param node
+     * @param buildVolume the area to bake, or {@code null} to collect everything
+     * @return
+     */
+    public static List<Geometry> collectSources(Node node, BoundingBox buildVolume) {
+        return collectSources(node, DefaultFilter, buildVolume);
+    }
+
+    /**
+     * Performs a search in the SceneGraph to collect the geometries of the
+     * supplied node overlapping the build volume.
+     * <p>
+     * The {@link InstancedGeometry} batches are skipped, since they only render
+     * the geometries of their {@link com.jme3.scene.instancing.InstancedNode},
+     * which are collected instead. The geometries sharing the same
+     * {@link Mesh} are returned as a single {@link SharedMeshGeometry}, so that
+     * the mesh is processed once with the list of the instance transforms.
+     * 
+     * @param node
+     * @param filter
+     * @param buildVolume the area to bake, or {@code null} to collect everything
+     * @return
+     */
+    public static List<Geometry> collectSources(Node node, Predicate<Spatial> filter, BoundingBox buildVolume) {
+        List<Geometry> geometries = collectSources(node, new ArrayList<>(), filter, buildVolume);
+
+        // group the geometries by mesh, in the order of their first occurrence
+        Map<Mesh, List<Geometry>> groups = new IdentityHashMap<>();
+        for (Geometry geom : geometries) {
+            if (!(geom instanceof HeightfieldGeometry) && !geom.isIgnoreTransform()) {
+                groups.computeIfAbsent(geom.getMesh(), k -> new ArrayList<>()).add(geom);
+            }
+        }
+
+        List<Geometry> results = new ArrayList<>(geometries.size());
+        for (Geometry geom : geometries) {
+            List<Geometry> group = groups.get(geom.getMesh());
+            if (group == null || group.size() == 1 || geom instanceof HeightfieldGeometry || geom.isIgnoreTransform()) {
+                results.add(geom);
+
+            } else if (group.get(0) == geom) {
+                SharedMeshGeometry shared = new SharedMeshGeometry(geom.getName(), geom.getMesh());
+                for (Geometry instance : group) {
+                    shared.addInstance(instance.getWorldMatrix(), instance.getWorldBound());
+                }
+                results.add(shared);
+            }
+        }
+        return results;
     }
     
+    /**
+     * Builds the sources from the collision shapes of the {@link RigidBodyControl}s
+     * found in the supplied node, instead of the render meshes. It uses the
+     * default filter.
+     * 
+     * @param node
+     * @return
+     */
+    public static List<Geometry> collectPhysicsSources(Node node) {
+        return collectPhysicsSources(node, DefaultFilter, null);
+    }
+
+    /**
+     * Builds the sources from the collision shapes of the {@link RigidBodyControl}s
+     * found in the supplied node, instead of the render meshes.
+     * <p>
+     * The shapes (box, capsule, hull, mesh, compound...) are tessellated at low
+     * resolution, so the navmesh matches what the physics collides with, from
+     * far fewer triangles. A Terrain with a {@link HeightfieldCollisionShape}
+     * is added as a {@link HeightfieldGeometry}, which holds the same samples.
+     * The search does not descend below a spatial with a rigid body, whose
+     * shape already covers its children; the spatials without a rigid body
+     * are ignored.
+     * 
+     * @param node
+     * @param filter
+     * @param buildVolume the area to bake, or {@code null} to collect everything
+     * @return
+     */
+    public static List<Geometry> collectPhysicsSources(Node node, Predicate<Spatial> filter, BoundingBox buildVolume) {
+        CollisionShapeConverter converter = new CollisionShapeConverter();
+        List<Geometry> results = new ArrayList<>();
+        collectPhysicsSources(node, converter, results, filter, buildVolume);
+        results.addAll(converter.getResults());
+        return results;
+    }
+
+    private static void collectPhysicsSources(Node node, CollisionShapeConverter converter, List<Geometry> results,
+            Predicate<Spatial> filter, BoundingBox buildVolume) {
+        for (Spatial spatial : node.getChildren()) {
+            if (!filter.test(spatial) || !overlaps(spatial, buildVolume)) {
+                continue;
+            }
+
+            RigidBodyControl body = spatial.getControl(RigidBodyControl.class);
+            if (body != null && body.isEnabled()) {
+                if (spatial instanceof Terrain && body.getCollisionShape() instanceof HeightfieldCollisionShape) {
+                    results.add(HeightfieldGeometry.fromTerrain((Terrain) spatial));
+                } else {
+                    converter.addBody(spatial.getName(), body);
+                }
+
+            } else if (spatial instanceof Node) {
+                collectPhysicsSources((Node) spatial, converter, results, filter, buildVolume);
+            }
+        }
+    }
+
     /**
      * Gathers all geometries in supplied node into supplied List.
      * 
-     * Uses {@link com.jme3.ai.navmesh.gen.TerrainMeshConverter} to merge found
-     * Terrain meshes into one geometry prior to adding. Scales and sets translation
-     * of merged geometry.
+     * Found Terrains are added as a {@link HeightfieldGeometry} built from
+     * their heightmap, scaled and translated, so that the samples are
+     * voxelized directly instead of being triangulated.
      */
-    private static List<Geometry> collectSources(Node node, List<Geometry> results, Predicate<Spatial> filter) {
+    private static List<Geometry> collectSources(Node node, List<Geometry> results, Predicate<Spatial> filter,
+            BoundingBox buildVolume) {
         for (Spatial spatial : node.getChildren()) {
-            if (!filter.test(spatial)) {
+            if (!filter.test(spatial) || spatial instanceof InstancedGeometry || !overlaps(spatial, buildVolume)) {
                 continue;
             }
 
@@ -62,16 +183,21 @@ public class GeometryProviderBuilder {
                 results.add((Geometry) spatial);
 
             } else if (spatial instanceof Terrain) {
-                Mesh merged = TerrainMeshConverter.convert((Terrain) spatial);
-                Geometry geom = new Geometry("mergedTerrain");
-                geom.setMesh(merged);
-                results.add(geom);
+                results.add(HeightfieldGeometry.fromTerrain((Terrain) spatial));
 
             } else if (spatial instanceof Node) {
-                collectSources((Node) spatial, results, filter);
+                collectSources((Node) spatial, results, filter, buildVolume);
             }
         }
         return results;
     }
+
+    private static boolean overlaps(Spatial spatial, BoundingBox buildVolume) {
+        if (buildVolume == null) {
+            return true;
+        }
+        BoundingVolume bv = spatial.getWorldBound();
+        return bv == null || buildVolume.intersects(bv);
+    }
     
 }
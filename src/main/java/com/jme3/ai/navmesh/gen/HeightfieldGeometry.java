@@ -0,0 +1,269 @@
+package com.jme3.ai.navmesh.gen;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.terrain.Terrain;
+
+/**
+ * A regular grid of height samples, in world space, used as source for the
+ * navmesh generation.
+ * <p>
+ * When the {@link NavMeshBuilder} finds a <code>HeightfieldGeometry</code>
+ * among the sources, the samples are written straight into the span columns
+ * of the solid heightfield, instead of being triangulated and rasterized
+ * triangle by triangle. The geometry carries no vertex data: its mesh only
+ * holds the bounds of the samples. Use {@link #createMesh()} to obtain the
+ * equivalent triangle mesh.
+ *
+ * @author capdevon
+ */
+public class HeightfieldGeometry extends Geometry {
+
+    private final float[] heights;
+    private final int size;
+    private final float originX;
+    private final float originZ;
+    private final float stepX;
+    private final float stepZ;
+    private float minY = Float.POSITIVE_INFINITY;
+    private float maxY = Float.NEGATIVE_INFINITY;
+
+    /**
+     * Instantiate a <code>HeightfieldGeometry</code>
+     *
+     * @param name    the name of the geometry
+     * @param heights the world-space heights, row by row along the z axis
+     *                (<code>heights[z * size + x]</code>)
+     * @param size    the number of samples per row and per column
+     * @param originX the world x coordinate of the first sample
+     * @param originZ the world z coordinate of the first sample
+     * @param stepX   the distance between two samples along the x axis
+     * @param stepZ   the distance between two samples along the z axis
+     */
+    public HeightfieldGeometry(String name, float[] heights, int size,
+            float originX, float originZ, float stepX, float stepZ) {
+        super(name, new Mesh());
+        if (size < 2 || heights.length != size * size) {
+            throw new IllegalArgumentException("Invalid heightfield size: " + size);
+        }
+        this.heights = heights;
+        this.size = size;
+        this.originX = originX;
+        this.originZ = originZ;
+        this.stepX = stepX;
+        this.stepZ = stepZ;
+
+        for (float h : heights) {
+            minY = Math.min(minY, h);
+            maxY = Math.max(maxY, h);
+        }
+        getMesh().setBound(new BoundingBox(
+                new Vector3f(getMinX(), minY, getMinZ()),
+                new Vector3f(getMaxX(), maxY, getMaxZ())));
+    }
+
+    /**
+     * Creates a heightfield from the heightmap of a Terrain. The world
+     * translation and scale of the terrain are applied; the rotation is not
+     * supported.
+     *
+     * @param terrain the terrain
+     * @return a new heightfield
+     */
+    public static HeightfieldGeometry fromTerrain(Terrain terrain) {
+        float[] heightMap = terrain.getHeightMap();
+        int size = (int) Math.sqrt(heightMap.length);
+
+        Spatial spatial = (Spatial) terrain;
+        Vector3f scale = spatial.getWorldScale();
+        Vector3f trans = spatial.getWorldTranslation();
+
+        // the terrain is centered on its origin
+        float half = (size - 1) / 2f;
+        float[] heights = new float[heightMap.length];
+        for (int i = 0; i < heights.length; i++) {
+            heights[i] = trans.y + heightMap[i] * scale.y;
+        }
+
+        return new HeightfieldGeometry(spatial.getName() + "-heightfield", heights, size,
+                trans.x - half * scale.x, trans.z - half * scale.z, scale.x, scale.z);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public float getOriginX() {
+        return originX;
+    }
+
+    public float getOriginZ() {
+        return originZ;
+    }
+
+    public float getStepX() {
+        return stepX;
+    }
+
+    public float getStepZ() {
+        return stepZ;
+    }
+
+    public float getMinX() {
+        return originX;
+    }
+
+    public float getMinZ() {
+        return originZ;
+    }
+
+    public float getMaxX() {
+        return originX + (size - 1) * stepX;
+    }
+
+    public float getMaxZ() {
+        return originZ + (size - 1) * stepZ;
+    }
+
+    public float getMinY() {
+        return minY;
+    }
+
+    public float getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * @return the world-space height of the sample (x, z).
+     */
+    public float getSample(int x, int z) {
+        return heights[z * size + x];
+    }
+
+    /**
+     * Returns the height of the surface at the supplied world position. The
+     * surface is the one of {@link #createMesh()}: every grid quad is split
+     * into two triangles along the diagonal (x, z) - (x + 1, z + 1).
+     *
+     * @param x the world x coordinate
+     * @param z the world z coordinate
+     * @return the height, or {@link Float#NaN} if the position is outside the
+     *         heightfield
+     */
+    public float getHeight(float x, float z) {
+        float gx = (x - originX) / stepX;
+        float gz = (z - originZ) / stepZ;
+        if (gx < 0 || gz < 0 || gx > size - 1 || gz > size - 1) {
+            return Float.NaN;
+        }
+
+        int ix = Math.min((int) gx, size - 2);
+        int iz = Math.min((int) gz, size - 2);
+        float fx = gx - ix;
+        float fz = gz - iz;
+
+        float h00 = heights[iz * size + ix];
+        float h01 = heights[iz * size + ix + 1];
+        float h10 = heights[(iz + 1) * size + ix];
+        float h11 = heights[(iz + 1) * size + ix + 1];
+
+        if (fz >= fx) {
+            return h00 + (h11 - h10) * fx + (h10 - h00) * fz;
+        }
+        return h00 + (h01 - h00) * fx + (h11 - h01) * fz;
+    }
+
+    /**
+     * Returns the y component of the unit normal of the surface at the supplied
+     * world position, which must be inside the heightfield.
+     */
+    float getNormalY(float x, float z) {
+        float gx = (x - originX) / stepX;
+        float gz = (z - originZ) / stepZ;
+        int ix = Math.max(0, Math.min((int) gx, size - 2));
+        int iz = Math.max(0, Math.min((int) gz, size - 2));
+        float fx = gx - ix;
+        float fz = gz - iz;
+
+        float h00 = heights[iz * size + ix];
+        float h01 = heights[iz * size + ix + 1];
+        float h10 = heights[(iz + 1) * size + ix];
+        float h11 = heights[(iz + 1) * size + ix + 1];
+
+        float dx, dz;
+        if (fz >= fx) {
+            dx = (h11 - h10) / stepX;
+            dz = (h10 - h00) / stepZ;
+        } else {
+            dx = (h01 - h00) / stepX;
+            dz = (h11 - h01) / stepZ;
+        }
+        return (float) (1 / Math.sqrt(1 + dx * dx + dz * dz));
+    }
+
+    /**
+     * Creates the triangle mesh equivalent to this heightfield, with
+     * (size - 1)&sup2; &middot; 2 triangles.
+     *
+     * @return a new mesh, in world space
+     */
+    public Mesh createMesh() {
+        float[] vertices = new float[size * size * 3];
+        int[] indices = new int[(size - 1) * (size - 1) * 6];
+
+        int i = 0;
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                vertices[i++] = originX + x * stepX;
+                vertices[i++] = heights[z * size + x];
+                vertices[i++] = originZ + z * stepZ;
+            }
+        }
+
+        i = 0;
+        for (int z = 0; z < size - 1; z++) {
+            for (int x = 0; x < size - 1; x++) {
+                // triangle 1
+                indices[i++] = z * size + x;
+                indices[i++] = (z + 1) * size + x;
+                indices[i++] = (z + 1) * size + x + 1;
+                // triangle 2
+                indices[i++] = z * size + x;
+                indices[i++] = (z + 1) * size + x + 1;
+                indices[i++] = z * size + x + 1;
+            }
+        }
+
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(Type.Position, 3, vertices);
+        mesh.setBuffer(Type.Index, 3, indices);
+        mesh.updateBound();
+        mesh.updateCounts();
+        return mesh;
+    }
+
+    /**
+     * @return a geometry holding the triangle mesh of this heightfield.
+     */
+    Geometry toTriangleGeometry() {
+        return new Geometry(getName(), createMesh());
+    }
+
+    /**
+     * Feeds the samples and the layout of the heightfield to a digest.
+     */
+    void digest(MessageDigest md) {
+        ByteBuffer buf = ByteBuffer.allocate(4 * (5 + heights.length));
+        buf.putInt(size).putFloat(originX).putFloat(originZ).putFloat(stepX).putFloat(stepZ);
+        buf.asFloatBuffer().put(heights);
+        md.update(buf.array());
+    }
+
+}
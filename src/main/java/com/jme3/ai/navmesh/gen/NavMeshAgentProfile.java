@@ -0,0 +1,83 @@
+package com.jme3.ai.navmesh.gen;
+
+/**
+ * The size and the climbing abilities of a kind of agent, used to bake one
+ * navigation mesh per kind of agent from the same sources with
+ * {@link NavMeshBuilder#buildNavMeshes(java.util.List, NavMeshBuildSettings, java.util.List)}.
+ * <p>
+ * A profile replaces the agent fields of the {@link NavMeshBuildSettings}:
+ * the radius is the {@link NavMeshBuildSettings#getTraversableAreaBorderSize()},
+ * the height the {@link NavMeshBuildSettings#getMinTraversableHeight()}, and
+ * so on. The other settings, such as the cell size, are shared by all the
+ * profiles.
+ *
+ * @author capdevon
+ */
+public class NavMeshAgentProfile {
+
+    private final String name;
+    private final float radius;
+    private final float height;
+    private final float maxStep;
+    private final float maxSlope;
+
+    /**
+     * Instantiate a <code>NavMeshAgentProfile</code>
+     *
+     * @param name     the name of the profile
+     * @param radius   the radius of the agent, that is the distance kept from
+     *                 the obstructions
+     * @param height   the minimum height of the free space above the floor
+     * @param maxStep  the maximum height of the ledges the agent can step up
+     * @param maxSlope the maximum slope the agent can walk on (in degrees)
+     */
+    public NavMeshAgentProfile(String name, float radius, float height, float maxStep, float maxSlope) {
+        this.name = name;
+        this.radius = radius;
+        this.height = height;
+        this.maxStep = maxStep;
+        this.maxSlope = maxSlope;
+    }
+
+    /**
+     * @return a copy of the settings, with the agent fields of this profile.
+     */
+    NavMeshBuildSettings applyTo(NavMeshBuildSettings settings) {
+        NavMeshBuildSettings result = settings.clone();
+        result.setTraversableAreaBorderSize(radius);
+        result.setMinTraversableHeight(height);
+        result.setMaxTraversableStep(maxStep);
+        result.setMaxTraversableSlope(maxSlope);
+        return result;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public float getRadius() {
+        return radius;
+    }
+
+    public float getHeight() {
+        return height;
+    }
+
+    public float getMaxStep() {
+        return maxStep;
+    }
+
+    public float getMaxSlope() {
+        return maxSlope;
+    }
+
+    @Override
+    public String toString() {
+        return "NavMeshAgentProfile [name=" + name
+                + ", radius=" + radius
+                + ", height=" + height
+                + ", maxStep=" + maxStep
+                + ", maxSlope=" + maxSlope + "]";
+    }
+
+}
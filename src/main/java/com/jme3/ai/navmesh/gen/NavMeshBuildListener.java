@@ -0,0 +1,25 @@
+package com.jme3.ai.navmesh.gen;
+
+/**
+ * Receives the progress of an asynchronous navigation mesh build.
+ * <p>
+ * Apart from the first one, the notifications are sent from the build
+ * threads: use
+ * {@link com.jme3.app.Application#enqueue(Runnable)} to update the scene or the
+ * GUI.
+ *
+ * @author capdevon
+ */
+@FunctionalInterface
+public interface NavMeshBuildListener {
+
+    /**
+     * Invoked when the build enters a new stage and, when tiling is enabled,
+     * each time a tile is baked.
+     *
+     * @param stage    the current stage
+     * @param progress the overall progress of the build, between 0 and 1
+     */
+    void onProgress(NavMeshBuildStage stage, float progress);
+
+}
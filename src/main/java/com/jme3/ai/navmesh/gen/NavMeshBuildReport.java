@@ -0,0 +1,263 @@
+package com.jme3.ai.navmesh.gen;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The metrics of a navigation mesh build: wall time, allocated bytes and
+ * element counts of each {@link NavMeshBuildStage}.
+ * <p>
+ * Pass a report to {@link NavMeshBuilder#setBuildReport(NavMeshBuildReport)};
+ * it is reset at the start of each build. When tiling is enabled, the metrics
+ * of the stages run for each tile are summed over the tiles, while the
+ * {@link NavMeshBuildStage#TILES} stage measures the wall time of the whole
+ * parallel bake. The allocated bytes are measured on the thread running the
+ * stage, and are reported as -1 when the JVM does not support it.
+ * <p>
+ * The report can be saved as JSON with {@link #save(File)}, to track the
+ * build performance across versions and scenes.
+ *
+ * @author capdevon
+ */
+public class NavMeshBuildReport {
+
+    private static final Logger logger = Logger.getLogger(NavMeshBuildReport.class.getName());
+
+    private final String name;
+    private final Map<NavMeshBuildStage, StageMetrics> stages = new EnumMap<>(NavMeshBuildStage.class);
+    private long startTime;
+    private long totalTime;
+
+    /**
+     * Instantiate a <code>NavMeshBuildReport</code>
+     *
+     * @param name the name of the report, such as the name of the scene
+     */
+    public NavMeshBuildReport(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the wall time of the whole build (in nanoseconds).
+     */
+    public synchronized long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * @return the metrics of the stage, or {@code null} if the stage did not run.
+     */
+    public synchronized StageMetrics getStage(NavMeshBuildStage stage) {
+        return stages.get(stage);
+    }
+
+    /**
+     * @return the metrics of the stages that ran, in execution order.
+     */
+    public synchronized List<StageMetrics> getStages() {
+        List<StageMetrics> list = new ArrayList<>();
+        for (StageMetrics metrics : stages.values()) {
+            list.add(metrics.copy());
+        }
+        return list;
+    }
+
+    synchronized void start() {
+        stages.clear();
+        totalTime = 0;
+        startTime = System.nanoTime();
+    }
+
+    synchronized void finish() {
+        totalTime = System.nanoTime() - startTime;
+    }
+
+    synchronized void addTime(NavMeshBuildStage stage, long wallTime, long allocatedBytes) {
+        StageMetrics metrics = stages.computeIfAbsent(stage, StageMetrics::new);
+        metrics.invocations++;
+        metrics.wallTime += wallTime;
+        if (allocatedBytes < 0 || metrics.allocatedBytes < 0) {
+            metrics.allocatedBytes = -1;
+        } else {
+            metrics.allocatedBytes += allocatedBytes;
+        }
+    }
+
+    synchronized void addCount(NavMeshBuildStage stage, String key, long count) {
+        StageMetrics metrics = stages.computeIfAbsent(stage, StageMetrics::new);
+        metrics.counts.merge(key, count, Long::sum);
+    }
+
+    /**
+     * @return the bytes allocated so far by the current thread, or -1 if the
+     *         JVM does not measure it.
+     */
+    static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the report as a JSON object.
+     *
+     * @param out the writer to use
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized void writeJson(Writer out) throws IOException {
+        out.write("{\n");
+        out.write("  \"name\": " + quote(name) + ",\n");
+        out.write("  \"totalTimeNanos\": " + totalTime + ",\n");
+        out.write("  \"stages\": [");
+        String separator = "\n";
+        for (StageMetrics metrics : stages.values()) {
+            out.write(separator);
+            out.write("    { \"stage\": " + quote(metrics.stage.name()));
+            out.write(", \"invocations\": " + metrics.invocations);
+            out.write(", \"wallTimeNanos\": " + metrics.wallTime);
+            out.write(", \"allocatedBytes\": " + metrics.allocatedBytes);
+            out.write(", \"counts\": {");
+            String countSeparator = " ";
+            for (Map.Entry<String, Long> entry : metrics.counts.entrySet()) {
+                out.write(countSeparator + quote(entry.getKey()) + ": " + entry.getValue());
+                countSeparator = ", ";
+            }
+            out.write(" } }");
+            separator = ",\n";
+        }
+        out.write("\n  ]\n}\n");
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Export the report to a JSON file.
+     *
+     * @param file the destination file
+     */
+    public void save(File file) {
+        logger.log(Level.INFO, "Saving File={0}", file.getAbsolutePath());
+
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writeJson(out);
+
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Error: Failed to save NavMeshBuildReport!", ex);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("NavMeshBuildReport [name=").append(name)
+            .append(", totalTime=").append(totalTime / 1_000_000).append(" ms]");
+        for (StageMetrics metrics : stages.values()) {
+            sb.append("\n  ").append(metrics);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The metrics of a single stage.
+     */
+    public static class StageMetrics {
+
+        private final NavMeshBuildStage stage;
+        private int invocations;
+        private long wallTime;
+        private long allocatedBytes;
+        private final Map<String, Long> counts = new LinkedHashMap<>();
+
+        private StageMetrics(NavMeshBuildStage stage) {
+            this.stage = stage;
+        }
+
+        private StageMetrics copy() {
+            StageMetrics copy = new StageMetrics(stage);
+            copy.invocations = invocations;
+            copy.wallTime = wallTime;
+            copy.allocatedBytes = allocatedBytes;
+            copy.counts.putAll(counts);
+            return copy;
+        }
+
+        public NavMeshBuildStage getStage() {
+            return stage;
+        }
+
+        /**
+         * @return the number of times the stage ran, one per tile when tiling
+         *         is enabled.
+         */
+        public int getInvocations() {
+            return invocations;
+        }
+
+        /**
+         * @return the wall time of the stage (in nanoseconds).
+         */
+        public long getWallTime() {
+            return wallTime;
+        }
+
+        /**
+         * @return the bytes allocated during the stage, or -1 if unknown.
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * @return the element counts produced by the stage, such as the number
+         *         of spans, regions or polygons.
+         */
+        public Map<String, Long> getCounts() {
+            return Collections.unmodifiableMap(counts);
+        }
+
+        @Override
+        public String toString() {
+            return stage + " [invocations=" + invocations
+                    + ", wallTime=" + (wallTime / 1_000_000) + " ms"
+                    + ", allocatedBytes=" + allocatedBytes
+                    + ", counts=" + counts + "]";
+        }
+    }
+
+}
@@ -1,6 +1,8 @@
 package com.jme3.ai.navmesh.gen;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
 
 import com.jme3.export.InputCapsule;
 import com.jme3.export.JmeExporter;
@@ -16,7 +18,7 @@ import com.jme3.export.Savable;
  *
  * @author capdevon
  */
-public class NavMeshBuildSettings implements Savable {
+public class NavMeshBuildSettings implements Savable, Cloneable {
 
     protected float cellSize = 1f;
     protected float cellHeight = 1.5f;
@@ -34,6 +36,8 @@ public class NavMeshBuildSettings implements Savable {
     protected int maxVertsPerPoly = 6;
     protected float contourSampleDistance = 25;
     protected float contourMaxDeviation = 25;
+    protected float tileSize = 0;
+    protected int parallelism = 0;
 
     @Override
     public void write(JmeExporter ex) throws IOException {
@@ -54,6 +58,8 @@ public class NavMeshBuildSettings implements Savable {
         oc.write(maxVertsPerPoly,           "maxVertsPerPoly", 6);
         oc.write(contourSampleDistance,     "contourSampleDistance", 25);
         oc.write(contourMaxDeviation,       "contourMaxDeviation", 25);
+        oc.write(tileSize,                  "tileSize", 0);
+        oc.write(parallelism,               "parallelism", 0);
     }
 
     @Override
@@ -75,6 +81,45 @@ public class NavMeshBuildSettings implements Savable {
         maxVertsPerPoly             = ic.readInt("maxVertsPerPoly", 6);
         contourSampleDistance       = ic.readFloat("contourSampleDistance", 25);
         contourMaxDeviation         = ic.readFloat("contourMaxDeviation", 25);
+        tileSize                    = ic.readFloat("tileSize", 0);
+        parallelism                 = ic.readInt("parallelism", 0);
+    }
+
+    @Override
+    public NavMeshBuildSettings clone() {
+        try {
+            return (NavMeshBuildSettings) super.clone();
+        } catch (CloneNotSupportedException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    /**
+     * Feeds the settings affecting the generated mesh to the supplied digest.
+     * The parallelism is left out, since it does not change the result.
+     *
+     * @param md the digest to update
+     */
+    void digest(MessageDigest md) {
+        ByteBuffer buf = ByteBuffer.allocate(64);
+        buf.putFloat(cellSize);
+        buf.putFloat(cellHeight);
+        buf.putFloat(minTraversableHeight);
+        buf.putFloat(maxTraversableStep);
+        buf.putFloat(maxTraversableSlope);
+        buf.put((byte) (clipLedges ? 1 : 0));
+        buf.putFloat(traversableAreaBorderSize);
+        buf.putInt(smoothingThreshold);
+        buf.put((byte) (useConservativeExpansion ? 1 : 0));
+        buf.putInt(minUnconnectedRegionSize);
+        buf.putInt(mergeRegionSize);
+        buf.putFloat(maxEdgeLength);
+        buf.putFloat(edgeMaxDeviation);
+        buf.putInt(maxVertsPerPoly);
+        buf.putFloat(contourSampleDistance);
+        buf.putFloat(contourMaxDeviation);
+        buf.putFloat(tileSize);
+        md.update(buf.array(), 0, buf.position());
     }
 
     /**
@@ -439,4 +484,49 @@ public class NavMeshBuildSettings implements Savable {
     public void setUseConservativeExpansion(boolean useConservativeExpansion) {
         this.useConservativeExpansion = useConservativeExpansion;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return The width and depth of a single tile, or 0 if tiling is disabled.
+     */
+    public float getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * The width and depth (in world units) of the square tiles the source
+     * geometry is split into. Each tile is baked independently, with a border
+     * overlap, and the results are stitched into a single navmesh. Tiles are
+     * processed in parallel, so this is the main knob to use all available
+     * cores on large worlds. A value of zero disables tiling and bakes the
+     * whole world in one pass. The value must be greater than or equal to 0.
+     *
+     * @param tileSize The tile size.
+     */
+    public void setTileSize(float tileSize) {
+        this.tileSize = tileSize;
+        if (this.tileSize < 0) {
+            this.tileSize = 0;
+        }
+    }
+
+    /**
+     * @return The maximum number of tiles baked at the same time.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * The maximum number of tiles baked at the same time when tiling is
+     * enabled. A value of zero uses one thread per available processor. The
+     * value must be greater than or equal to 0.
+     *
+     * @param parallelism The number of worker threads.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        if (this.parallelism < 0) {
+            this.parallelism = 0;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.jme3.ai.navmesh.gen;
+
+/**
+ * The stages of a navigation mesh build, reported to a
+ * {@link NavMeshBuildListener}.
+ *
+ * @author capdevon
+ */
+public enum NavMeshBuildStage {
+
+    /** The triangles of the source geometries are copied in world space. */
+    EXTRACTION,
+    /** The sources are voxelized into a solid heightfield. */
+    VOXELIZATION,
+    /** The open heightfield is created from the solid heightfield. */
+    OPEN_HEIGHTFIELD,
+    /** The open heightfield is split into regions. */
+    REGIONS,
+    /** The contours of the regions are traced. */
+    CONTOURS,
+    /** The contours are triangulated into convex polygons. */
+    POLYGONS,
+    /** The height detail is added to the polygons. */
+    DETAIL_MESH,
+    /** The tiles are baked, when tiling is enabled. */
+    TILES,
+    /** The tiles are stitched together. */
+    STITCHING,
+    /** The triangles are welded and merged, when an optimizer is set. */
+    OPTIMIZATION,
+    /** The navigation mesh is ready. */
+    COMPLETED
+
+}
@@ -1,10 +1,19 @@
 package com.jme3.ai.navmesh.gen;
 
-import java.nio.FloatBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -15,24 +24,54 @@ import org.critterai.nmgen.IntermediateData;
 import org.critterai.nmgen.NavmeshGenerator;
 import org.critterai.nmgen.TriangleMesh;
 
+import com.jme3.ai.navmesh.TiledNavMesh;
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.Vector3f;
 import com.jme3.scene.Geometry;
 import com.jme3.scene.Mesh;
 import com.jme3.scene.VertexBuffer;
-import com.jme3.scene.mesh.IndexBuffer;
-
-import jme3tools.optimize.GeometryBatchFactory;
 
 /**
  * Generates the navigation mesh using the
  * {@link org.critterai.nmgen.NavmeshGenerator} class.
+ * <p>
+ * When {@link NavMeshBuildSettings#getTileSize()} is greater than zero, the
+ * source geometry is split into square tiles with a border overlap. The tiles
+ * are baked in parallel and stitched together into a single navmesh. The tiles
+ * can also be kept in a {@link NavMeshTileSet} and rebaked individually when
+ * the scene geometry changes.
+ * <p>
+ * The samples of a {@link HeightfieldGeometry} are written directly into the
+ * solid heightfield, instead of being triangulated and rasterized.
+ * <p>
+ * Use {@link #buildNavMeshAsync(List, NavMeshBuildSettings, NavMeshBuildListener)}
+ * to bake without blocking the render thread, and apply the result with
+ * {@link com.jme3.app.Application#enqueue(Runnable)}:
+ *
+ * <pre>
+ * builder.buildNavMeshAsync(sources, settings, listener)
+ *         .thenAcceptAsync(mesh -&gt; ..., app::enqueue);
+ * </pre>
  */
 public class NavMeshBuilder {
 
     private static final Logger logger = Logger.getLogger(NavMeshBuilder.class.getName());
 
+    /**
+     * The estimated peak memory used by the generation stages for each column
+     * of a tile: the solid and open spans of a single layer column, plus the
+     * temporary region and contour data.
+     */
+    private static final long BYTES_PER_COLUMN = 512;
+
     private final ExecutorService executor;
-    private NavmeshGenerator nmgen;
+    private ExecutorService tileExecutor;
+    private NavMeshCache cache;
     private IntermediateData intermediateData;
+    private NavMeshBuildReport buildReport;
+    private NavMeshOptimizer optimizer;
+    private long memoryBudget = 256L * 1024 * 1024;
     private long timeout = 60;
     private TimeUnit timeUnit = TimeUnit.SECONDS;
 
@@ -42,15 +81,712 @@ public class NavMeshBuilder {
 
     /**
      * Takes a list of geometries and builds a navigation mesh from them.
-     * The geometries are first merged into a single mesh, and then this mesh
-     * is processed by the {@link org.critterai.nmgen.NavmeshGenerator}.
+     * The triangles of the geometries are first copied, in world space, into a
+     * single vertex array and a single index array, which are then processed
+     * by the {@link org.critterai.nmgen.NavmeshGenerator}.
+     * <p>
+     * This method blocks until the build completes or times out. A build that
+     * times out is cancelled, and stops at the end of its current stage.
      *
      * @param sources  A list of Geometry objects to use as source for the navmesh.
      * @param settings The settings to use for the navigation mesh generation.
      * @return An optimized Mesh to be used for pathfinding, or {@code null} if generation fails.
      */
     public Mesh buildNavMesh(List<Geometry> sources, NavMeshBuildSettings settings) {
-        nmgen = new NavmeshGenerator(
+        CompletableFuture<Mesh> future = buildNavMeshAsync(sources, settings, null);
+
+        try {
+            return future.get(timeout, timeUnit);
+
+        } catch (TimeoutException ex) {
+            logger.log(Level.SEVERE, "Task timed out.", ex);
+            future.cancel(true);
+
+        } catch (CancellationException | InterruptedException | ExecutionException ex) {
+            logger.log(Level.SEVERE, "Task execution interrupted or failed.", ex);
+            future.cancel(true);
+        }
+
+        return null;
+    }
+
+    /**
+     * Builds a navigation mesh without blocking the caller. The triangles of
+     * the source geometries are copied on the calling thread, which must be
+     * the render thread; the generation runs on the internal executor.
+     * <p>
+     * Cancelling the returned future stops the build at the end of its current
+     * stage, so that the executor is free for the next build. The future
+     * completes with {@code null} if no walkable area is found, and
+     * exceptionally if the generation fails. The timeout set with
+     * {@link #setTimeout(long, TimeUnit)} only applies to the blocking methods
+     * and to the tiles.
+     * <p>
+     * The settings are copied, so they can be edited while the build runs.
+     *
+     * @param sources  A list of Geometry objects to use as source for the navmesh.
+     * @param settings The settings to use for the navigation mesh generation.
+     * @param listener the listener notified of the progress, or {@code null}
+     * @return the future navigation mesh
+     */
+    public CompletableFuture<Mesh> buildNavMeshAsync(List<Geometry> sources, NavMeshBuildSettings settings,
+            NavMeshBuildListener listener) {
+
+        NavMeshBuildSettings snapshot = settings.clone();
+        CompletableFuture<Mesh> result = new CompletableFuture<>();
+        NavMeshBuildReport report = startReport();
+        BuildMonitor monitor = new BuildMonitor(result, listener, report);
+        IntermediateData data = intermediateData;
+        NavMeshOptimizer optimizer = this.optimizer;
+
+        Sources input = extractSources(sources, snapshot, monitor);
+        if (input == null) {
+            result.completeExceptionally(new IllegalStateException("Source extraction failed."));
+            return result;
+        }
+
+        executor.execute(() -> {
+            try {
+                TriangleMesh triMesh;
+                if (snapshot.tileSize > 0) {
+                    triMesh = generateTiledNavMesh(input, snapshot, data, monitor);
+                } else {
+                    triMesh = generateCachedNavMesh(input, snapshot, data, monitor);
+                }
+                if (triMesh != null && optimizer != null) {
+                    triMesh = optimize(optimizer, triMesh, monitor);
+                }
+                evictCache();
+                finishReport(report);
+
+                if (triMesh != null) {
+                    monitor.stage(NavMeshBuildStage.COMPLETED, 1f);
+                    logger.log(Level.INFO, "NavMesh generation completed successfully.");
+                    result.complete(createMesh(triMesh));
+                } else {
+                    logger.log(Level.WARNING, "NavMesh generation failed.");
+                    result.complete(null);
+                }
+
+            } catch (CancellationException ex) {
+                logger.log(Level.INFO, "NavMesh generation cancelled.");
+                result.cancel(false);
+
+            } catch (RuntimeException | Error ex) {
+                logger.log(Level.SEVERE, "NavMesh generation failed.", ex);
+                result.completeExceptionally(ex);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Takes a list of geometries and builds one navigation mesh for each
+     * agent profile, sharing the voxelization of the sources between the
+     * profiles. This method blocks until the builds complete or time out.
+     *
+     * @param sources  A list of Geometry objects to use as source for the navmeshes.
+     * @param settings The settings shared by the profiles.
+     * @param profiles the agent profiles
+     * @return the navigation mesh of each profile, in the order of the
+     *         profiles, or {@code null} if generation fails.
+     * @see #buildNavMeshesAsync(List, NavMeshBuildSettings, List, NavMeshBuildListener)
+     */
+    public List<Mesh> buildNavMeshes(List<Geometry> sources, NavMeshBuildSettings settings,
+            List<NavMeshAgentProfile> profiles) {
+        CompletableFuture<List<Mesh>> future = buildNavMeshesAsync(sources, settings, profiles, null);
+
+        try {
+            return future.get(timeout, timeUnit);
+
+        } catch (TimeoutException ex) {
+            logger.log(Level.SEVERE, "Task timed out.", ex);
+            future.cancel(true);
+
+        } catch (CancellationException | InterruptedException | ExecutionException ex) {
+            logger.log(Level.SEVERE, "Task execution interrupted or failed.", ex);
+            future.cancel(true);
+        }
+
+        return null;
+    }
+
+    /**
+     * Builds one navigation mesh for each agent profile without blocking the
+     * caller. The profiles replace the agent fields of the settings (radius,
+     * height, step and slope), so that the agents of different sizes each get
+     * their own navmesh.
+     * <p>
+     * The sources are extracted once, and voxelized once for each group of
+     * {@value NavMeshPipeline#MAX_PROFILES} profiles; only the stages
+     * following the voxelization, from the erosion of the walkable area to
+     * the detail mesh, run once per profile. When tiling is enabled, each tile is baked
+     * for all the profiles at once, with the border of the largest profile,
+     * and the tiles of each profile are stitched separately. The optimizer,
+     * if any, is run on each mesh; the cache is not used.
+     * <p>
+     * The future completes with a list holding the mesh of each profile, in
+     * the order of the profiles, or {@code null} for the profiles without any
+     * walkable area.
+     *
+     * @param sources  A list of Geometry objects to use as source for the navmeshes.
+     * @param settings The settings shared by the profiles.
+     * @param profiles the agent profiles, at least one
+     * @param listener the listener notified of the progress, or {@code null}
+     * @return the future navigation meshes
+     */
+    public CompletableFuture<List<Mesh>> buildNavMeshesAsync(List<Geometry> sources, NavMeshBuildSettings settings,
+            List<NavMeshAgentProfile> profiles, NavMeshBuildListener listener) {
+
+        if (profiles.isEmpty()) {
+            throw new IllegalArgumentException("No profiles.");
+        }
+        List<NavMeshBuildSettings> snapshots = new ArrayList<>(profiles.size());
+        for (NavMeshAgentProfile profile : profiles) {
+            snapshots.add(profile.applyTo(settings));
+        }
+
+        CompletableFuture<List<Mesh>> result = new CompletableFuture<>();
+        NavMeshBuildReport report = startReport();
+        BuildMonitor monitor = new BuildMonitor(result, listener, report);
+        NavMeshOptimizer optimizer = this.optimizer;
+
+        Sources input = extractSources(sources, snapshots.get(0), monitor);
+        if (input == null) {
+            result.completeExceptionally(new IllegalStateException("Source extraction failed."));
+            return result;
+        }
+
+        executor.execute(() -> {
+            try {
+                TriangleMesh[] triMeshes;
+                if (snapshots.get(0).tileSize > 0) {
+                    triMeshes = generateTiledNavMeshes(input, snapshots, monitor);
+                } else {
+                    triMeshes = generateNavMeshes(input.triangles.vertices, input.triangles.indices,
+                            input.heightfields, null, snapshots, monitor);
+                }
+
+                List<Mesh> meshes = new ArrayList<>(triMeshes.length);
+                for (int i = 0; i < triMeshes.length; i++) {
+                    TriangleMesh triMesh = triMeshes[i];
+                    if (triMesh != null && optimizer != null) {
+                        triMesh = optimize(optimizer, triMesh, monitor);
+                    }
+                    if (triMesh == null) {
+                        logger.log(Level.WARNING, "NavMesh generation failed: {0}", profiles.get(i));
+                    }
+                    meshes.add(triMesh != null ? createMesh(triMesh) : null);
+                }
+                finishReport(report);
+
+                monitor.stage(NavMeshBuildStage.COMPLETED, 1f);
+                logger.log(Level.INFO, "NavMesh generation completed: {0} profiles.", profiles.size());
+                result.complete(meshes);
+
+            } catch (CancellationException ex) {
+                logger.log(Level.INFO, "NavMesh generation cancelled.");
+                result.cancel(false);
+
+            } catch (RuntimeException | Error ex) {
+                logger.log(Level.SEVERE, "NavMesh generation failed.", ex);
+                result.completeExceptionally(ex);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Bakes the navigation mesh tile by tile and keeps the tiles, so that they
+     * can be rebaked later with
+     * {@link #updateNavMesh(TiledNavMesh, NavMeshTileSet, List, BoundingBox)}.
+     * Use {@link NavMeshTileSet#createNavMesh()} to obtain a navmesh whose
+     * tiles can be replaced at runtime.
+     *
+     * @param sources  A list of Geometry objects to use as source for the navmesh.
+     * @param settings The settings to use for the navigation mesh generation.
+     *                 The tile size must be greater than zero.
+     * @return the baked tiles, or {@code null} if generation fails.
+     */
+    public NavMeshTileSet buildTileSet(List<Geometry> sources, NavMeshBuildSettings settings) {
+        if (settings.tileSize <= 0) {
+            throw new IllegalArgumentException("Tiling is disabled: tileSize=" + settings.tileSize);
+        }
+
+        NavMeshBuildReport report = startReport();
+        BuildMonitor monitor = new BuildMonitor(null, null, report);
+
+        Sources input = extractSources(sources, settings, monitor);
+        if (input == null) {
+            logger.log(Level.WARNING, "NavMesh generation failed.");
+            return null;
+        }
+        List<NavMeshTile> tiles = NavMeshTiler.createTiles(
+                input.triangles.vertices, input.heightfields, settings.tileSize);
+
+        logger.log(Level.INFO, "Starting tiled NavMesh generation: {0} tiles.", tiles.size());
+        if (!bakeTiles(tiles, input, settings, monitor, 0f, 1f)) {
+            logger.log(Level.WARNING, "NavMesh generation failed.");
+            return null;
+        }
+
+        evictCache();
+        finishReport(report);
+
+        NavMeshTileSet tileSet = new NavMeshTileSet(settings);
+        tileSet.putTiles(tiles);
+        logger.log(Level.INFO, "NavMesh generation completed successfully.");
+        return tileSet;
+    }
+
+    /**
+     * Rebakes the tiles affected by a change of the scene geometry, and swaps
+     * them into the navmesh. The tiles overlapping the dirty area, plus the
+     * border used when baking, are rebaked in parallel; only the source
+     * geometries overlapping these tiles are processed. The navmesh is locked
+     * only while the new cells replace the old ones, so agents can keep
+     * computing paths while the tiles are rebaked.
+     * <p>
+     * The dirty area should cover both the old and the new bounds of the
+     * geometries that moved or changed. The height of the area is ignored.
+     *
+     * @param navMesh     the navmesh created by {@link NavMeshTileSet#createNavMesh()}
+     * @param tileSet     the tiles created by {@link #buildTileSet(List, NavMeshBuildSettings)}
+     * @param sources     the current source geometries of the whole scene
+     * @param dirtyBounds the area where the scene geometry changed
+     * @return the rebaked tiles, or {@code null} if generation fails, in which
+     *         case the navmesh is left unchanged.
+     */
+    public List<NavMeshTile> updateNavMesh(TiledNavMesh navMesh, NavMeshTileSet tileSet,
+            List<Geometry> sources, BoundingBox dirtyBounds) {
+
+        NavMeshBuildSettings settings = tileSet.getSettings();
+        float tileSize = tileSet.getTileSize();
+        float border = getTileBorderSize(settings);
+
+        Vector3f min = dirtyBounds.getMin(null);
+        Vector3f max = dirtyBounds.getMax(null);
+
+        // a change affects every tile whose input, extended by the border, overlaps it
+        List<NavMeshTile> tiles = NavMeshTiler.createTiles(
+                min.x - border, min.z - border, max.x + border, max.z + border, tileSize);
+        NavMeshTile first = tiles.get(0);
+        NavMeshTile last = tiles.get(tiles.size() - 1);
+
+        List<Geometry> affected = new ArrayList<>();
+        for (Geometry geom : sources) {
+            if (overlaps(geom.getWorldBound(), first.getMinX() - border, first.getMinZ() - border,
+                    last.getMaxX() + border, last.getMaxZ() + border)) {
+                affected.add(geom);
+            }
+        }
+
+        logger.log(Level.INFO, "Rebuilding {0} tiles from {1} geometries.",
+                new Object[] { tiles.size(), affected.size() });
+
+        NavMeshBuildReport report = startReport();
+        BuildMonitor monitor = new BuildMonitor(null, null, report);
+
+        Sources input = extractSources(affected, settings, monitor);
+        if (input == null || !bakeTiles(tiles, input, settings, monitor, 0f, 1f)) {
+            logger.log(Level.WARNING, "NavMesh update failed.");
+            return null;
+        }
+
+        evictCache();
+        finishReport(report);
+
+        tileSet.putTiles(tiles);
+        tileSet.publish(navMesh, tiles);
+        return tiles;
+    }
+
+    /**
+     * Bakes the navigation mesh with every combination of settings of the
+     * sweep, and measures the results. The source geometries are extracted
+     * once, on the calling thread, which must be the render thread; the
+     * combinations are then baked concurrently on a pool of
+     * <code>poolSize</code> threads, created for the sweep. When tiling is
+     * enabled, the tiles of each combination are baked one at a time, unless a
+     * tile executor is set, so that the number of threads stays bounded.
+     * <p>
+     * The untiled builds bypass the cache set with {@link #setCache(NavMeshCache)};
+     * remove the cache before sweeping tiled settings, so that the build times
+     * can be compared. Cancelling the returned future stops the remaining
+     * builds at the end of their current stage.
+     *
+     * @param sources  A list of Geometry objects to use as source for the navmesh.
+     * @param sweep    the settings to try
+     * @param poolSize the number of builds running at once
+     * @return the future results, in the order of the combinations
+     */
+    public CompletableFuture<List<NavMeshSettingsSweep.Result>> sweepSettingsAsync(List<Geometry> sources,
+            NavMeshSettingsSweep sweep, int poolSize) {
+
+        List<NavMeshSettingsSweep.Combination> combinations = sweep.getCombinations();
+        CompletableFuture<List<NavMeshSettingsSweep.Result>> result = new CompletableFuture<>();
+
+        Sources input = extractSources(sources, combinations.get(0).settings, new BuildMonitor(result, null, null));
+        if (input == null) {
+            result.completeExceptionally(new IllegalStateException("Source extraction failed."));
+            return result;
+        }
+
+        logger.log(Level.INFO, "Starting settings sweep: {0} builds, {1} at once.",
+                new Object[] { combinations.size(), poolSize });
+
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+        List<CompletableFuture<NavMeshSettingsSweep.Result>> builds = new ArrayList<>(combinations.size());
+        for (NavMeshSettingsSweep.Combination combination : combinations) {
+            builds.add(CompletableFuture.supplyAsync(() -> sweepBuild(input, combination, result), pool));
+        }
+
+        CompletableFuture.allOf(builds.toArray(new CompletableFuture<?>[0])).whenComplete((v, error) -> {
+            pool.shutdown();
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            List<NavMeshSettingsSweep.Result> list = new ArrayList<>(builds.size());
+            for (CompletableFuture<NavMeshSettingsSweep.Result> build : builds) {
+                list.add(build.join());
+            }
+            logger.log(Level.INFO, "Settings sweep completed.");
+            result.complete(list);
+        });
+
+        return result;
+    }
+
+    /**
+     * Bakes a single combination of a settings sweep.
+     */
+    private NavMeshSettingsSweep.Result sweepBuild(Sources input, NavMeshSettingsSweep.Combination combination,
+            Future<?> sweep) {
+
+        // a copy, so that the settings of the combination stay as requested
+        NavMeshBuildSettings settings = combination.settings.clone();
+        if (tileExecutor == null) {
+            settings.parallelism = 1;
+        }
+
+        NavMeshBuildReport report = new NavMeshBuildReport(combination.values.toString());
+        BuildMonitor monitor = new BuildMonitor(sweep, null, report);
+        report.start();
+
+        TriangleMesh triMesh;
+        if (settings.tileSize > 0) {
+            triMesh = generateTiledNavMesh(input, settings, null, monitor);
+        } else {
+            triMesh = generateNavMesh(input.triangles.vertices, input.triangles.indices, input.heightfields,
+                    null, settings, null, monitor);
+        }
+        report.finish();
+
+        if (triMesh == null) {
+            return new NavMeshSettingsSweep.Result(combination, report, 0, 0);
+        }
+        return new NavMeshSettingsSweep.Result(combination, report,
+                triMesh.indices.length / 3, triMesh.vertices.length / 3);
+    }
+
+    /**
+     * Bakes the navigation mesh of a large world with a bounded amount of
+     * memory, and writes the tiles to a file instead of keeping them.
+     * <p>
+     * The world is processed in batches of consecutive tiles of the same row.
+     * For each batch, only the source triangles overlapping it are copied, the
+     * tiles are baked in parallel, written to the file and released, so that
+     * the memory used by the build does not grow with the size of the world,
+     * even when a single mesh covers the whole world. The tile size and the
+     * number of tiles baked at once are reduced until the estimated memory
+     * of the generation stages fits the budget set with
+     * {@link #setMemoryBudget(long)}. The source geometries themselves are not
+     * accounted for.
+     * <p>
+     * The resulting file can be loaded, entirely or tile by tile, with
+     * {@link NavMeshTileFile}.
+     *
+     * @param sources  A list of Geometry objects to use as source for the navmesh.
+     * @param settings The settings to use for the navigation mesh generation.
+     *                 A tile size greater than zero sets the maximum tile size.
+     * @param file     the file to write
+     * @return the written file, open for reading, or {@code null} if generation fails.
+     * @throws IllegalArgumentException if the budget is too small for a single
+     *                                  tile of 16 cells
+     */
+    public NavMeshTileFile buildNavMeshToFile(List<Geometry> sources, NavMeshBuildSettings settings, File file) {
+        NavMeshBuildSettings snapshot = settings.clone();
+        configureChunks(snapshot);
+        float border = getTileBorderSize(snapshot);
+        int batchSize = snapshot.parallelism;
+
+        // the extent of the world, from the bounds of the geometries
+        float minX = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (Geometry geom : sources) {
+            BoundingVolume bv = geom.getWorldBound();
+            if (bv instanceof BoundingBox) {
+                BoundingBox bbox = (BoundingBox) bv;
+                Vector3f center = bbox.getCenter();
+                minX = Math.min(minX, center.x - bbox.getXExtent());
+                minZ = Math.min(minZ, center.z - bbox.getZExtent());
+                maxX = Math.max(maxX, center.x + bbox.getXExtent());
+                maxZ = Math.max(maxZ, center.z + bbox.getZExtent());
+            }
+        }
+        if (minX > maxX) {
+            logger.log(Level.WARNING, "NavMesh generation failed: no bounded source geometry.");
+            return null;
+        }
+
+        List<NavMeshTile> tiles = NavMeshTiler.createTiles(minX, minZ, maxX, maxZ, snapshot.tileSize);
+        logger.log(Level.INFO, "Starting streaming NavMesh generation: {0} tiles of {1}, {2} at once.",
+                new Object[] { tiles.size(), snapshot.tileSize, batchSize });
+
+        NavMeshBuildReport report = startReport();
+        BuildMonitor monitor = new BuildMonitor(null, null, report);
+        float maxHeightDelta = snapshot.maxTraversableStep + snapshot.cellHeight;
+        boolean completed = false;
+
+        // a single temporary pool for all the batches, if no executor is set
+        boolean ownExecutor = (tileExecutor == null);
+        ExecutorService pool = ownExecutor ? createTileExecutor(snapshot) : tileExecutor;
+
+        try (NavMeshTileFile.Writer writer = new NavMeshTileFile.Writer(file, snapshot.tileSize, maxHeightDelta)) {
+            // the tiles are ordered by row: a batch is a strip of consecutive
+            // tiles of a single row, so that its rectangle stays as small as
+            // the tiles it holds
+            for (int i = 0, end; i < tiles.size(); i = end) {
+                int row = tiles.get(i).getTileZ();
+                for (end = i + 1; end < tiles.size() && end - i < batchSize; end++) {
+                    if (tiles.get(end).getTileZ() != row) {
+                        break;
+                    }
+                }
+                List<NavMeshTile> batch = tiles.subList(i, end);
+                float batchMinX = Float.POSITIVE_INFINITY, batchMinZ = Float.POSITIVE_INFINITY;
+                float batchMaxX = Float.NEGATIVE_INFINITY, batchMaxZ = Float.NEGATIVE_INFINITY;
+                for (NavMeshTile tile : batch) {
+                    batchMinX = Math.min(batchMinX, tile.getMinX() - border);
+                    batchMinZ = Math.min(batchMinZ, tile.getMinZ() - border);
+                    batchMaxX = Math.max(batchMaxX, tile.getMaxX() + border);
+                    batchMaxZ = Math.max(batchMaxZ, tile.getMaxZ() + border);
+                }
+
+                List<Geometry> affected = new ArrayList<>();
+                for (Geometry geom : sources) {
+                    if (overlaps(geom.getWorldBound(), batchMinX, batchMinZ, batchMaxX, batchMaxZ)) {
+                        affected.add(geom);
+                    }
+                }
+
+                // only the triangles of the batch are copied, however large the source meshes
+                Sources input = extractSources(affected, snapshot, monitor, pool,
+                        new float[] { batchMinX, batchMinZ, batchMaxX, batchMaxZ });
+                if (input == null || !bakeTiles(batch, input, snapshot, monitor, pool, 0f, 1f)) {
+                    logger.log(Level.WARNING, "NavMesh generation failed.");
+                    return null;
+                }
+
+                for (NavMeshTile tile : batch) {
+                    writer.write(tile);
+                    tile.setMesh(null);
+                }
+            }
+            completed = true;
+
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Failed to write " + file, ex);
+            return null;
+
+        } finally {
+            if (ownExecutor) {
+                pool.shutdownNow();
+            }
+            if (!completed) {
+                file.delete();
+            }
+        }
+
+        evictCache();
+        finishReport(report);
+
+        try {
+            NavMeshTileFile result = NavMeshTileFile.open(file);
+            logger.log(Level.INFO, "NavMesh generation completed successfully: {0}", result);
+            return result;
+
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Failed to read " + file, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Chooses the tile size and the number of tiles baked at once, so that the
+     * estimated memory of the tiles being baked, border included, fits the
+     * memory budget.
+     */
+    private void configureChunks(NavMeshBuildSettings settings) {
+        float border = getTileBorderSize(settings);
+        float minTileSize = settings.cellSize * 16;
+        int parallelism = settings.parallelism > 0 ? settings.parallelism : Runtime.getRuntime().availableProcessors();
+
+        for (; parallelism >= 1; parallelism--) {
+            double columns = (double) memoryBudget / parallelism / BYTES_PER_COLUMN;
+            float tileSize = (float) Math.sqrt(columns) * settings.cellSize - 2 * border;
+            if (settings.tileSize > 0) {
+                tileSize = Math.min(tileSize, settings.tileSize);
+            }
+            // whole cells, so that the tile edges fall on the same cells in every tile
+            tileSize = (float) Math.floor(tileSize / settings.cellSize) * settings.cellSize;
+
+            if (tileSize >= minTileSize) {
+                settings.tileSize = tileSize;
+                settings.parallelism = parallelism;
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Memory budget too small: " + memoryBudget + " bytes");
+    }
+
+    /**
+     * Tests whether a bounding volume overlaps the supplied rectangle on the
+     * xz-plane. Volumes other than boxes are always considered overlapping.
+     */
+    private static boolean overlaps(BoundingVolume bv, float minX, float minZ, float maxX, float maxZ) {
+        if (!(bv instanceof BoundingBox)) {
+            return true;
+        }
+        BoundingBox bbox = (BoundingBox) bv;
+        Vector3f center = bbox.getCenter();
+        return center.x - bbox.getXExtent() <= maxX && center.x + bbox.getXExtent() >= minX
+            && center.z - bbox.getZExtent() <= maxZ && center.z + bbox.getZExtent() >= minZ;
+    }
+
+    /**
+     * Extracts the triangles of the source geometries, in world space, using
+     * the tile executor, or a temporary pool if none is set. The heightfields
+     * are kept apart, unless the installed nmgen version does not allow to
+     * voxelize them directly.
+     *
+     * @return the sources, or {@code null} if the extraction fails
+     */
+    private Sources extractSources(List<Geometry> sources, NavMeshBuildSettings settings, BuildMonitor monitor) {
+        return extractSources(sources, settings, monitor, tileExecutor, null);
+    }
+
+    /**
+     * Extracts the triangles of the source geometries, in world space, using
+     * the supplied executor, or a temporary pool if it is {@code null}.
+     *
+     * @param clip the rectangle (minX, minZ, maxX, maxZ) out of which the
+     *             triangles are dropped, or {@code null} to keep them all
+     * @return the sources, or {@code null} if the extraction fails
+     */
+    private Sources extractSources(List<Geometry> sources, NavMeshBuildSettings settings, BuildMonitor monitor,
+            ExecutorService executor, float[] clip) {
+        monitor.stage(NavMeshBuildStage.EXTRACTION, 0f);
+        Sources input = new Sources();
+        List<Geometry> geometries = new ArrayList<>(sources.size());
+        for (Geometry geom : sources) {
+            if (geom instanceof HeightfieldGeometry) {
+                HeightfieldGeometry hf = (HeightfieldGeometry) geom;
+                if (NavMeshPipeline.isSupported()) {
+                    input.heightfields.add(hf);
+                    if (cache != null) {
+                        input.digests.put(hf, NavMeshCache.digest(hf));
+                    }
+                } else {
+                    logger.log(Level.WARNING, "Triangulating {0}: direct voxelization is not supported.", hf);
+                    geometries.add(hf.toTriangleGeometry());
+                }
+            } else {
+                geometries.add(geom);
+            }
+        }
+
+        boolean ownExecutor = (executor == null);
+        ExecutorService pool = ownExecutor ? createTileExecutor(settings) : executor;
+
+        try {
+            input.triangles = (clip == null) ? GeometryExtractor.extract(geometries, pool)
+                    : GeometryExtractor.extract(geometries, pool, clip[0], clip[1], clip[2], clip[3]);
+
+            monitor.record(NavMeshBuildStage.EXTRACTION);
+            monitor.count(NavMeshBuildStage.EXTRACTION, "geometries", geometries.size());
+            monitor.count(NavMeshBuildStage.EXTRACTION, "heightfields", input.heightfields.size());
+            monitor.count(NavMeshBuildStage.EXTRACTION, "vertices", input.triangles.vertices.length / 3);
+            monitor.count(NavMeshBuildStage.EXTRACTION, "triangles", input.triangles.indices.length / 3);
+            return input;
+
+        } catch (InterruptedException | ExecutionException ex) {
+            logger.log(Level.SEVERE, "Source extraction interrupted or failed.", ex);
+
+        } finally {
+            if (ownExecutor) {
+                pool.shutdownNow();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Simplifies the generated triangles, and records the before/after
+     * statistics in the report.
+     */
+    private TriangleMesh optimize(NavMeshOptimizer optimizer, TriangleMesh triMesh, BuildMonitor monitor) {
+        monitor.stage(NavMeshBuildStage.OPTIMIZATION, 0.97f);
+        NavMeshOptimizer.Result result = optimizer.optimize(triMesh);
+        monitor.record(NavMeshBuildStage.OPTIMIZATION);
+
+        monitor.count(NavMeshBuildStage.OPTIMIZATION, "trianglesBefore", result.getTrianglesBefore());
+        monitor.count(NavMeshBuildStage.OPTIMIZATION, "trianglesAfter", result.getTrianglesAfter());
+        monitor.count(NavMeshBuildStage.OPTIMIZATION, "weldedVertices", result.getWeldedVertices());
+        monitor.count(NavMeshBuildStage.OPTIMIZATION, "degenerateTriangles", result.getDegenerateTriangles());
+        monitor.count(NavMeshBuildStage.OPTIMIZATION, "collapsedSlivers", result.getCollapsedSlivers());
+        monitor.count(NavMeshBuildStage.OPTIMIZATION, "mergedRegions", result.getMergedRegions());
+        if (result.getSampledQueries() > 0) {
+            monitor.count(NavMeshBuildStage.OPTIMIZATION, "expansionsBefore", Math.round(result.getExpansionsBefore()));
+            monitor.count(NavMeshBuildStage.OPTIMIZATION, "expansionsAfter", Math.round(result.getExpansionsAfter()));
+        }
+        logger.log(Level.INFO, "{0}", result);
+        return result.getMesh();
+    }
+
+    /**
+     * @return the report of the build about to start, or {@code null}
+     */
+    private NavMeshBuildReport startReport() {
+        NavMeshBuildReport report = buildReport;
+        if (report != null) {
+            report.start();
+        }
+        return report;
+    }
+
+    private void finishReport(NavMeshBuildReport report) {
+        if (report != null) {
+            report.finish();
+            logger.log(Level.INFO, "{0}", report);
+        }
+    }
+
+    static Mesh createMesh(TriangleMesh triMesh) {
+        Mesh navMesh = new Mesh();
+        navMesh.setBuffer(VertexBuffer.Type.Position, 3, triMesh.vertices);
+        navMesh.setBuffer(VertexBuffer.Type.Index, 3, triMesh.indices);
+        navMesh.updateBound();
+        navMesh.updateCounts();
+        return navMesh;
+    }
+
+    private NavmeshGenerator createGenerator(NavMeshBuildSettings settings) {
+        return new NavmeshGenerator(
                 settings.cellSize,
                 settings.cellHeight,
                 settings.minTraversableHeight,
@@ -67,65 +803,415 @@ public class NavMeshBuilder {
                 settings.maxVertsPerPoly,
                 settings.contourSampleDistance,
                 settings.contourMaxDeviation);
+    }
 
-        Mesh mesh = new Mesh();
-        GeometryBatchFactory.mergeGeometries(sources, mesh);
-
-        FloatBuffer pb = mesh.getFloatBuffer(VertexBuffer.Type.Position);
-        IndexBuffer ib = mesh.getIndexBuffer();
+    /**
+     * Looks up the navigation mesh in the cache before generating it. The cache
+     * is bypassed when intermediate data is collected.
+     */
+    private TriangleMesh generateCachedNavMesh(Sources input, NavMeshBuildSettings settings,
+            IntermediateData data, BuildMonitor monitor) {
 
-        // copy positions to float array
-        float[] positions = new float[pb.capacity()];
-        pb.clear();
-        pb.get(positions);
+        float[] positions = input.triangles.vertices;
+        int[] indices = input.triangles.indices;
+        if (cache == null || data != null) {
+            return generateNavMesh(positions, indices, input.heightfields, null, settings, data, monitor);
+        }
 
-        // generate int array of indices
-        int[] indices = new int[ib.size()];
-        for (int i = 0; i < indices.length; i++) {
-            indices[i] = ib.get(i);
+        String key = cache.computeKey(positions, indices, input.getDigests(input.heightfields), settings, null);
+        TriangleMesh triMesh = cache.load(key);
+        if (triMesh != null) {
+            logger.log(Level.INFO, "NavMesh loaded from cache: {0}", key);
+            return triMesh;
         }
 
-        TriangleMesh triMesh = generateNavMesh(positions, indices);
+        triMesh = generateNavMesh(positions, indices, input.heightfields, null, settings, null, monitor);
         if (triMesh != null) {
-            logger.log(Level.INFO, "NavMesh generation completed successfully.");
-            Mesh navMesh = new Mesh();
-            navMesh.setBuffer(VertexBuffer.Type.Position, 3, triMesh.vertices);
-            navMesh.setBuffer(VertexBuffer.Type.Index, 3, triMesh.indices);
-            navMesh.updateBound();
-            navMesh.updateCounts();
+            cache.store(key, triMesh);
+        }
+        return triMesh;
+    }
+
+    private void evictCache() {
+        if (cache != null) {
+            cache.evict();
+        }
+    }
+
+    /**
+     * Generates a navigation mesh (TriangleMesh) using the provided vertex
+     * positions, mesh indices and heightfields, on the calling thread. The
+     * build is split into stages, so that it can be cancelled, unless the
+     * installed nmgen version only allows to run the
+     * {@link org.critterai.nmgen.NavmeshGenerator} as a whole.
+     *
+     * @param positions    an array of vertex positions
+     * @param indices      an array of mesh indices
+     * @param heightfields the heightfields to voxelize directly
+     * @param area         the tile whose area, extended by the border, is
+     *                     built, or {@code null} to build everything
+     * @param settings     the settings to use for the navigation mesh generation
+     * @param data         the intermediate data to collect, or {@code null}
+     * @param monitor      the monitor of the build
+     * @return the generated {@link org.critterai.nmgen.TriangleMesh}, or {@code null} if no walkable area is found
+     */
+    private TriangleMesh generateNavMesh(float[] positions, int[] indices, List<HeightfieldGeometry> heightfields,
+            NavMeshTile area, NavMeshBuildSettings settings, IntermediateData data, BuildMonitor monitor) {
 
-            return navMesh;
+        if (!NavMeshPipeline.isSupported()) {
+            monitor.stage(NavMeshBuildStage.VOXELIZATION, 0.05f);
+            return createGenerator(settings).build(positions, indices, data);
         }
 
-        logger.log(Level.WARNING, "NavMesh generation failed.");
+        float minX = Float.NEGATIVE_INFINITY, minZ = Float.NEGATIVE_INFINITY;
+        float maxX = Float.POSITIVE_INFINITY, maxZ = Float.POSITIVE_INFINITY;
+        if (area != null) {
+            float border = getTileBorderSize(settings);
+            minX = area.getMinX() - border;
+            minZ = area.getMinZ() - border;
+            maxX = area.getMaxX() + border;
+            maxZ = area.getMaxZ() + border;
+        }
+        return new NavMeshPipeline(settings).build(positions, indices, heightfields,
+                minX, minZ, maxX, maxZ, data, monitor);
+    }
+
+    /**
+     * Generates the navigation meshes of several profiles, on the calling
+     * thread, voxelizing the sources once. Falls back to one build per profile
+     * if the installed nmgen version only allows to run the
+     * {@link org.critterai.nmgen.NavmeshGenerator} as a whole.
+     *
+     * @param area     the tile whose area, extended by the largest border, is
+     *                 built, or {@code null} to build everything
+     * @param profiles the settings of each profile
+     * @return the generated mesh of each profile, {@code null} where no walkable area is found
+     */
+    private TriangleMesh[] generateNavMeshes(float[] positions, int[] indices, List<HeightfieldGeometry> heightfields,
+            NavMeshTile area, List<NavMeshBuildSettings> profiles, BuildMonitor monitor) {
+
+        if (!NavMeshPipeline.isSupported()) {
+            TriangleMesh[] meshes = new TriangleMesh[profiles.size()];
+            for (int i = 0; i < meshes.length; i++) {
+                meshes[i] = generateNavMesh(positions, indices, heightfields, area, profiles.get(i), null, monitor);
+            }
+            return meshes;
+        }
+
+        float minX = Float.NEGATIVE_INFINITY, minZ = Float.NEGATIVE_INFINITY;
+        float maxX = Float.POSITIVE_INFINITY, maxZ = Float.POSITIVE_INFINITY;
+        if (area != null) {
+            float border = getTileBorderSize(profiles);
+            minX = area.getMinX() - border;
+            minZ = area.getMinZ() - border;
+            maxX = area.getMaxX() + border;
+            maxZ = area.getMaxZ() + border;
+        }
+
+        NavMeshPipeline[] pipelines = new NavMeshPipeline[profiles.size()];
+        for (int i = 0; i < pipelines.length; i++) {
+            pipelines[i] = new NavMeshPipeline(profiles.get(i));
+        }
+        return NavMeshPipeline.buildProfiles(pipelines, positions, indices, heightfields,
+                minX, minZ, maxX, maxZ, monitor);
+    }
+
+    /**
+     * Generates the navigation mesh one tile at a time. Each tile receives the
+     * source triangles overlapping its bounds plus a border, so that the
+     * erosion of the walkable area along the tile seams matches the one of a
+     * single pass build. The results are clipped back to the tile bounds and
+     * stitched together.
+     *
+     * @param input    the source triangles and heightfields
+     * @param settings the settings to use for the navigation mesh generation
+     * @param data     the intermediate data, which is not collected for tiles
+     * @param monitor  the monitor of the build
+     * @return the stitched {@link org.critterai.nmgen.TriangleMesh}, or {@code null} if the generation fails or times out
+     */
+    private TriangleMesh generateTiledNavMesh(Sources input, NavMeshBuildSettings settings,
+            IntermediateData data, BuildMonitor monitor) {
+        List<NavMeshTile> tiles = NavMeshTiler.createTiles(
+                input.triangles.vertices, input.heightfields, settings.tileSize);
+
+        logger.log(Level.INFO, "Starting tiled NavMesh generation: {0} tiles.", tiles.size());
+        if (data != null) {
+            logger.log(Level.WARNING, "IntermediateData is not collected when tiling is enabled.");
+        }
+
+        if (bakeTiles(tiles, input, settings, monitor, 0.05f, 0.95f)) {
+            monitor.stage(NavMeshBuildStage.STITCHING, 0.95f);
+            float maxHeightDelta = settings.maxTraversableStep + settings.cellHeight;
+            TriangleMesh triMesh = NavMeshTileStitcher.stitch(tiles, maxHeightDelta);
+            monitor.record(NavMeshBuildStage.STITCHING);
+            if (triMesh != null) {
+                monitor.count(NavMeshBuildStage.STITCHING, "triangles", triMesh.indices.length / 3);
+            }
+            return triMesh;
+        }
         return null;
     }
 
     /**
-     * Generates a navigation mesh (TriangleMesh) using the provided vertex
-     * positions and mesh indices. The generation is performed on a separate
-     * thread to prevent blocking the main application thread.
+     * Generates the navigation meshes of several profiles one tile at a time.
+     * Each tile is baked for all the profiles at once, then the tiles of each
+     * profile are stitched together.
+     *
+     * @return the stitched mesh of each profile, {@code null} where no walkable area is found
+     * @throws IllegalStateException if the generation fails or times out
+     */
+    private TriangleMesh[] generateTiledNavMeshes(Sources input, List<NavMeshBuildSettings> profiles,
+            BuildMonitor monitor) {
+        NavMeshBuildSettings settings = profiles.get(0);
+        List<List<NavMeshTile>> profileTiles = new ArrayList<>(profiles.size());
+        for (int i = 0; i < profiles.size(); i++) {
+            profileTiles.add(NavMeshTiler.createTiles(input.triangles.vertices, input.heightfields, settings.tileSize));
+        }
+        int tileCount = profileTiles.get(0).size();
+        float border = getTileBorderSize(profiles);
+
+        logger.log(Level.INFO, "Starting tiled NavMesh generation: {0} tiles, {1} profiles.",
+                new Object[] { tileCount, profiles.size() });
+        monitor.stage(NavMeshBuildStage.TILES, 0.05f);
+        monitor.count(NavMeshBuildStage.TILES, "tiles", tileCount);
+
+        List<Callable<NavMeshTile>> tasks = new ArrayList<>(tileCount);
+        for (int t = 0; t < tileCount; t++) {
+            int index = t;
+            tasks.add(() -> {
+                List<NavMeshTile> tiles = new ArrayList<>(profiles.size());
+                for (List<NavMeshTile> list : profileTiles) {
+                    tiles.add(list.get(index));
+                }
+                bakeTileProfiles(tiles, input, border, profiles, monitor.silent());
+                monitor.tileCompleted(tileCount, 0.05f, 0.95f);
+                return tiles.get(0);
+            });
+        }
+        if (!runTiles(tasks, settings, monitor, tileExecutor)) {
+            throw new IllegalStateException("Tiled NavMesh generation failed.");
+        }
+
+        monitor.stage(NavMeshBuildStage.STITCHING, 0.95f);
+        TriangleMesh[] meshes = new TriangleMesh[profiles.size()];
+        for (int i = 0; i < meshes.length; i++) {
+            float maxHeightDelta = profiles.get(i).maxTraversableStep + settings.cellHeight;
+            meshes[i] = NavMeshTileStitcher.stitch(profileTiles.get(i), maxHeightDelta);
+            if (meshes[i] != null) {
+                monitor.count(NavMeshBuildStage.STITCHING, "triangles", meshes[i].indices.length / 3);
+            }
+        }
+        monitor.record(NavMeshBuildStage.STITCHING);
+        return meshes;
+    }
+
+    /**
+     * Bakes the supplied tiles in parallel. The tiles account for the progress
+     * of the build from <code>start</code> to <code>end</code>.
      *
-     * @param positions an array of vertex positions
-     * @param indices   an array of mesh indices
-     * @return the generated {@link org.critterai.nmgen.TriangleMesh}, or {@code null} if the generation fails or times out
+     * @return {@code true} if all the tiles were baked
+     * @throws CancellationException if the build is cancelled
      */
-    private TriangleMesh generateNavMesh(float[] positions, int[] indices) {
-        logger.log(Level.INFO, "Starting NavMesh generation task.");
-        Future<TriangleMesh> future = executor.submit(() -> nmgen.build(positions, indices, intermediateData));
+    private boolean bakeTiles(List<NavMeshTile> tiles, Sources input, NavMeshBuildSettings settings,
+            BuildMonitor monitor, float start, float end) {
+        return bakeTiles(tiles, input, settings, monitor, tileExecutor, start, end);
+    }
+
+    /**
+     * Bakes the supplied tiles in parallel on the supplied executor, or on a
+     * temporary pool if it is {@code null}.
+     */
+    private boolean bakeTiles(List<NavMeshTile> tiles, Sources input, NavMeshBuildSettings settings,
+            BuildMonitor monitor, ExecutorService executor, float start, float end) {
+        float border = getTileBorderSize(settings);
+        monitor.stage(NavMeshBuildStage.TILES, start);
+        monitor.count(NavMeshBuildStage.TILES, "tiles", tiles.size());
+
+        List<Callable<NavMeshTile>> tasks = new ArrayList<>(tiles.size());
+        for (NavMeshTile tile : tiles) {
+            tasks.add(() -> {
+                bakeTile(tile, input, border, settings, monitor.silent());
+                monitor.tileCompleted(tiles.size(), start, end);
+                return tile;
+            });
+        }
+        return runTiles(tasks, settings, monitor, executor);
+    }
+
+    /**
+     * Runs the tile tasks on the supplied executor, or on a temporary pool if
+     * it is {@code null}, within the timeout.
+     *
+     * @return {@code true} if all the tasks completed
+     * @throws CancellationException if the build is cancelled
+     */
+    private boolean runTiles(List<Callable<NavMeshTile>> tasks, NavMeshBuildSettings settings,
+            BuildMonitor monitor, ExecutorService executor) {
+        boolean ownExecutor = (executor == null);
+        ExecutorService pool = ownExecutor ? createTileExecutor(settings) : executor;
 
         try {
-            return future.get(timeout, timeUnit);
+            for (Future<NavMeshTile> future : pool.invokeAll(tasks, timeout, timeUnit)) {
+                future.get();
+            }
+            monitor.record(NavMeshBuildStage.TILES);
+            return true;
 
-        } catch (TimeoutException ex) {
+        } catch (CancellationException ex) {
+            monitor.checkCancelled();
             logger.log(Level.SEVERE, "Task timed out.", ex);
-            future.cancel(true);
 
-        } catch (InterruptedException | ExecutionException ex) {
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof CancellationException) {
+                monitor.checkCancelled();
+            }
+            logger.log(Level.SEVERE, "Task execution interrupted or failed.", ex);
+
+        } catch (InterruptedException ex) {
             logger.log(Level.SEVERE, "Task execution interrupted or failed.", ex);
+
+        } finally {
+            if (ownExecutor) {
+                pool.shutdownNow();
+            }
         }
 
-        return null;
+        return false;
+    }
+
+    /**
+     * Bakes the same tile for several profiles, voxelizing its sources once.
+     */
+    private void bakeTileProfiles(List<NavMeshTile> tiles, Sources sources, float border,
+            List<NavMeshBuildSettings> profiles, BuildMonitor monitor) {
+
+        NavMeshTile area = tiles.get(0);
+        float minX = area.getMinX() - border;
+        float minZ = area.getMinZ() - border;
+        float maxX = area.getMaxX() + border;
+        float maxZ = area.getMaxZ() + border;
+
+        TriangleMesh input = NavMeshTiler.clip(sources.triangles.vertices, sources.triangles.indices,
+                minX, minZ, maxX, maxZ, false);
+        List<HeightfieldGeometry> heightfields = sources.getHeightfields(minX, minZ, maxX, maxZ);
+
+        if (input.indices.length == 0 && heightfields.isEmpty()) {
+            return;
+        }
+
+        TriangleMesh[] outputs = generateNavMeshes(input.vertices, input.indices, heightfields,
+                area, profiles, monitor);
+        for (int i = 0; i < outputs.length; i++) {
+            if (outputs[i] != null) {
+                NavMeshTile tile = tiles.get(i);
+                tile.setMesh(NavMeshTiler.clip(outputs[i].vertices, outputs[i].indices,
+                        tile.getMinX(), tile.getMinZ(), tile.getMaxX(), tile.getMaxZ(), true));
+            }
+        }
+    }
+
+    /**
+     * Bakes a single tile. A new generator is created for each tile, so that
+     * tiles can be processed concurrently.
+     */
+    private NavMeshTile bakeTile(NavMeshTile tile, Sources sources,
+            float border, NavMeshBuildSettings settings, BuildMonitor monitor) {
+
+        float minX = tile.getMinX() - border;
+        float minZ = tile.getMinZ() - border;
+        float maxX = tile.getMaxX() + border;
+        float maxZ = tile.getMaxZ() + border;
+
+        TriangleMesh input = NavMeshTiler.clip(sources.triangles.vertices, sources.triangles.indices,
+                minX, minZ, maxX, maxZ, false);
+        List<HeightfieldGeometry> heightfields = sources.getHeightfields(minX, minZ, maxX, maxZ);
+
+        if (input.indices.length == 0 && heightfields.isEmpty()) {
+            return tile;
+        }
+
+        String key = null;
+        if (cache != null) {
+            key = cache.computeKey(input.vertices, input.indices, sources.getDigests(heightfields), settings, tile);
+            TriangleMesh cached = cache.load(key);
+            if (cached != null) {
+                monitor.count(NavMeshBuildStage.TILES, "cacheHits", 1);
+                tile.setMesh(cached);
+                return tile;
+            }
+        }
+
+        TriangleMesh output = generateNavMesh(input.vertices, input.indices, heightfields,
+                tile, settings, null, monitor);
+        if (output != null) {
+            tile.setMesh(NavMeshTiler.clip(output.vertices, output.indices,
+                    tile.getMinX(), tile.getMinZ(), tile.getMaxX(), tile.getMaxZ(), true));
+        }
+
+        if (cache != null) {
+            cache.store(key, tile.getMesh());
+        }
+
+        return tile;
+    }
+
+    /**
+     * The border must be wide enough to contain the eroded area along the tile
+     * seams plus a few cells for the region and contour stages.
+     */
+    private float getTileBorderSize(NavMeshBuildSettings settings) {
+        return settings.traversableAreaBorderSize + settings.cellSize * 3;
+    }
+
+    /**
+     * @return the border of the largest profile.
+     */
+    private float getTileBorderSize(List<NavMeshBuildSettings> profiles) {
+        float border = 0;
+        for (NavMeshBuildSettings settings : profiles) {
+            border = Math.max(border, getTileBorderSize(settings));
+        }
+        return border;
+    }
+
+    /**
+     * The source geometries of a build: the triangles, in world space, and the
+     * heightfields voxelized directly.
+     */
+    private static class Sources {
+
+        TriangleMesh triangles;
+        final List<HeightfieldGeometry> heightfields = new ArrayList<>();
+        final Map<HeightfieldGeometry, byte[]> digests = new IdentityHashMap<>();
+
+        /**
+         * @return the heightfields overlapping the supplied rectangle on the xz-plane.
+         */
+        List<HeightfieldGeometry> getHeightfields(float minX, float minZ, float maxX, float maxZ) {
+            if (heightfields.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<HeightfieldGeometry> list = new ArrayList<>();
+            for (HeightfieldGeometry hf : heightfields) {
+                if (hf.getMinX() <= maxX && hf.getMaxX() >= minX && hf.getMinZ() <= maxZ && hf.getMaxZ() >= minZ) {
+                    list.add(hf);
+                }
+            }
+            return list;
+        }
+
+        List<byte[]> getDigests(List<HeightfieldGeometry> list) {
+            List<byte[]> result = new ArrayList<>(list.size());
+            for (HeightfieldGeometry hf : list) {
+                result.add(digests.get(hf));
+            }
+            return result;
+        }
+    }
+
+    private ExecutorService createTileExecutor(NavMeshBuildSettings settings) {
+        int parallelism = settings.parallelism > 0 ? settings.parallelism : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(parallelism);
     }
 
     /**
@@ -156,6 +1242,63 @@ public class NavMeshBuilder {
         this.intermediateData = intermediateData;
     }
 
+    /**
+     * Sets the report filled with the metrics of each stage of the following
+     * builds. The report is reset at the start of each build, and should not
+     * be shared by concurrent builds.
+     *
+     * @param buildReport the report to fill, or {@code null} to disable the metrics
+     */
+    public void setBuildReport(NavMeshBuildReport buildReport) {
+        this.buildReport = buildReport;
+    }
+
+    /**
+     * Sets the executor used to extract the source geometries and, when tiling
+     * is enabled, to bake the tiles. If no executor is set, a
+     * {@link java.util.concurrent.ForkJoinPool} with the parallelism defined in
+     * the {@link NavMeshBuildSettings} is created for each build. The supplied
+     * executor is not shut down by this builder.
+     *
+     * @param tileExecutor the executor to use, or {@code null} for the default
+     */
+    public void setTileExecutor(ExecutorService tileExecutor) {
+        this.tileExecutor = tileExecutor;
+    }
+
+    /**
+     * Sets the cache used to reuse the results of previous builds. When tiling
+     * is enabled, each tile is cached separately.
+     *
+     * @param cache the cache to use, or {@code null} to disable caching
+     */
+    public void setCache(NavMeshCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Sets the memory budget of
+     * {@link #buildNavMeshToFile(List, NavMeshBuildSettings, File)}.
+     *
+     * @param memoryBudget the maximum memory used by the tiles being baked (in bytes)
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Sets the optimizer which simplifies the navigation mesh built by
+     * {@link #buildNavMeshAsync(List, NavMeshBuildSettings, NavMeshBuildListener)},
+     * once the tiles are stitched. The tiles of a {@link NavMeshTileSet} or of
+     * a {@link NavMeshTileFile} are not optimized, since their seams must
+     * match.
+     *
+     * @param optimizer the optimizer to use, or {@code null} to disable it
+     */
+    public void setOptimizer(NavMeshOptimizer optimizer) {
+        this.optimizer = optimizer;
+    }
+
     /**
      * Sets the timeout duration for the navigation mesh generation task.
      *
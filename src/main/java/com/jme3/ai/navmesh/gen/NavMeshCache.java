@@ -0,0 +1,276 @@
+package com.jme3.ai.navmesh.gen;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.critterai.nmgen.TriangleMesh;
+
+/**
+ * A content-addressed cache of baked navigation meshes, stored in a local
+ * directory.
+ * <p>
+ * The key of an entry is the SHA-256 hash of the source triangles, in world
+ * space, of the source heightfields and of all the
+ * {@link NavMeshBuildSettings} affecting the result, along with the version of
+ * the baking pipeline, so a cached mesh is reused only when neither the scene
+ * nor the settings changed.
+ * When tiling is enabled, each tile is cached separately: a change in the scene
+ * only invalidates the tiles it touches.
+ * <p>
+ * Entries are evicted, least recently used first, when the total size of the
+ * directory exceeds the configured limit.
+ *
+ * @author capdevon
+ */
+public class NavMeshCache {
+
+    private static final Logger logger = Logger.getLogger(NavMeshCache.class.getName());
+
+    private static final int MAGIC = 0x4E4D4331; // "NMC1"
+    private static final String EXTENSION = ".nmc";
+    // part of every key: increment it whenever a change to the baking
+    // pipeline or to the format of the entries makes older entries stale
+    private static final int VERSION = 1;
+
+    private final File directory;
+    private final long maxSize;
+
+    /**
+     * Instantiate a <code>NavMeshCache</code>
+     *
+     * @param directory the cache directory, created if missing
+     * @param maxSize   the maximum total size of the entries (in bytes)
+     */
+    public NavMeshCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Computes the key of a build.
+     *
+     * @param vertices the source vertex positions (x, y, z)
+     * @param indices      the source triangle indices
+     * @param heightfields the digests of the source heightfields, see
+     *                     {@link #digest(HeightfieldGeometry)}
+     * @param settings     the build settings
+     * @param tile         the tile being baked, or {@code null} for a single pass build
+     * @return the key, as a hexadecimal string
+     */
+    String computeKey(float[] vertices, int[] indices, List<byte[]> heightfields,
+            NavMeshBuildSettings settings, NavMeshTile tile) {
+        MessageDigest md = createDigest();
+
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        buf.putInt(MAGIC).putInt(VERSION);
+        if (tile != null) {
+            buf.putInt(tile.getTileX()).putInt(tile.getTileZ());
+        }
+        buf.putInt(vertices.length);
+        for (float v : vertices) {
+            if (buf.remaining() < 4) {
+                flush(md, buf);
+            }
+            buf.putFloat(v);
+        }
+        flush(md, buf);
+        buf.putInt(indices.length);
+        for (int i : indices) {
+            if (buf.remaining() < 4) {
+                flush(md, buf);
+            }
+            buf.putInt(i);
+        }
+        flush(md, buf);
+        for (byte[] hf : heightfields) {
+            md.update(hf);
+        }
+        settings.digest(md);
+
+        StringBuilder sb = new StringBuilder(64);
+        for (byte b : md.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Computes the digest of a heightfield once, so that it can be combined
+     * into the key of each tile it overlaps.
+     */
+    static byte[] digest(HeightfieldGeometry hf) {
+        MessageDigest md = createDigest();
+        hf.digest(md);
+        return md.digest();
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void flush(MessageDigest md, ByteBuffer buf) {
+        md.update(buf.array(), 0, buf.position());
+        buf.clear();
+    }
+
+    /**
+     * Loads a cached mesh, and marks it as recently used.
+     *
+     * @param key the key of the entry
+     * @return the cached mesh, with no triangles if the build produced none, or
+     *         {@code null} if the entry is missing or unreadable.
+     */
+    TriangleMesh load(String key) {
+        File file = new File(directory, key + EXTENSION);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Invalid cache entry: " + file);
+            }
+            TriangleMesh mesh = new TriangleMesh();
+            mesh.vertices = new float[in.readInt()];
+            for (int i = 0; i < mesh.vertices.length; i++) {
+                mesh.vertices[i] = in.readFloat();
+            }
+            mesh.indices = new int[in.readInt()];
+            for (int i = 0; i < mesh.indices.length; i++) {
+                mesh.indices[i] = in.readInt();
+            }
+
+            file.setLastModified(System.currentTimeMillis());
+            return mesh;
+
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to read cache entry " + file, ex);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Stores a mesh. The entry is written to a temporary file first, so that
+     * concurrent builds never read a partial entry.
+     *
+     * @param key  the key of the entry
+     * @param mesh the mesh to store, or {@code null} if the build produced no
+     *             triangles
+     */
+    void store(String key, TriangleMesh mesh) {
+        float[] vertices = (mesh != null) ? mesh.vertices : new float[0];
+        int[] indices = (mesh != null) ? mesh.indices : new int[0];
+
+        File file = new File(directory, key + EXTENSION);
+        File tmp = null;
+        try {
+            Files.createDirectories(directory.toPath());
+            tmp = File.createTempFile(key, ".tmp", directory);
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(vertices.length);
+                for (float v : vertices) {
+                    out.writeFloat(v);
+                }
+                out.writeInt(indices.length);
+                for (int i : indices) {
+                    out.writeInt(i);
+                }
+            }
+
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to write cache entry " + file, ex);
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the total size of the
+     * cache is within the limit.
+     */
+    public synchronized void evict() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null) {
+            return;
+        }
+
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= maxSize) {
+            return;
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (total <= maxSize) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+                logger.log(Level.FINE, "Evicted cache entry {0}", file.getName());
+            }
+        }
+    }
+
+    /**
+     * Deletes all the entries of the cache.
+     */
+    public synchronized void clear() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "NavMeshCache [directory=" + directory + ", maxSize=" + maxSize + "]";
+    }
+
+}
@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.jme3.ai.navmesh.NavMeshFile;
 import com.jme3.asset.AssetManager;
 import com.jme3.export.binary.BinaryExporter;
 import com.jme3.export.binary.BinaryImporter;
@@ -73,6 +74,23 @@ public class NavMeshExporter {
         exportNavMesh(geo, file);
     }
     
+    /**
+     * Export the NavMesh to a file in the binary format of {@link NavMeshFile},
+     * which is loaded without linking the cells again.
+     * 
+     * @param mesh The mesh to export
+     * @param file The file to export to
+     */
+    public void saveBinary(Mesh mesh, File file) {
+        try {
+            logger.log(Level.INFO, "Saving File={0}", file.getAbsolutePath());
+            NavMeshFile.write(mesh, file);
+
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Error: Failed to save NavMesh!", ex);
+        }
+    }
+    
     private static Geometry makeGeometry(AssetManager assetManager, Mesh mesh) {
         Geometry geo = new Geometry("NavMesh", mesh);
         Material mat = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
@@ -0,0 +1,1214 @@
+package com.jme3.ai.navmesh.gen;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.critterai.nmgen.TriangleMesh;
+
+import com.jme3.ai.navmesh.util.IndexedMinHeap;
+
+/**
+ * Simplifies the triangles generated by nmgen before they become the cells of
+ * the runtime navmesh, so that the pathfinder has fewer and fatter cells to
+ * expand.
+ * <p>
+ * The optimization runs in four passes:
+ * <ol>
+ * <li>the vertices closer than the weld tolerance are welded, using a spatial
+ * hash;</li>
+ * <li>the degenerate triangles, whose apex lies on the opposite edge, are
+ * removed, and the shortest edge of the needle triangles is collapsed when the
+ * outline and the orientation of the neighbours are preserved;</li>
+ * <li>the adjacent triangles lying on the same plane, within the angle and
+ * height tolerances, are grouped into regions;</li>
+ * <li>each region bounded by a single simple loop is re-triangulated from its
+ * outline: the interior vertices and the collinear outline vertices are
+ * dropped, and the fattest ears are clipped first.</li>
+ * </ol>
+ * An outline vertex is dropped only when the regions on both sides drop it, so
+ * the re-triangulated regions still share whole edges and the cells stay
+ * linked.
+ *
+ * @author capdevon
+ */
+public class NavMeshOptimizer {
+
+    /**
+     * The number of vertices above which the ears are clipped in order,
+     * instead of picking the fattest one.
+     */
+    private static final int MAX_BEST_EAR_VERTS = 64;
+
+    private float weldTolerance = 0.01f;
+    private float maxDeviation = 0.05f;
+    private float maxNormalAngle = 5f;
+    private float sliverRatio = 0.1f;
+    private int sampleQueries = 0;
+
+    /**
+     * Optimizes a triangle mesh. The input mesh is not modified.
+     *
+     * @param input the triangles generated by nmgen
+     * @return the optimized mesh and the before/after statistics
+     */
+    public Result optimize(TriangleMesh input) {
+        Result result = new Result();
+        result.trianglesBefore = input.indices.length / 3;
+        result.verticesBefore = input.vertices.length / 3;
+
+        float[] verts = input.vertices.clone();
+        int[] welded = weld(verts, input.indices.clone(), result);
+        int[] tris = removeDegenerates(verts, welded, result);
+        tris = collapseNeedles(verts, tris, result);
+        tris = mergeRegions(verts, tris, result);
+
+        TriangleMesh output = compact(verts, tris);
+        result.mesh = output;
+        result.trianglesAfter = output.indices.length / 3;
+        result.verticesAfter = output.vertices.length / 3;
+
+        if (sampleQueries > 0) {
+            // the cells of the runtime navmesh are linked by position, like the welded triangles
+            TriangleMesh before = new TriangleMesh();
+            before.vertices = verts;
+            before.indices = welded;
+            measureExpansions(before, output, result);
+        }
+        return result;
+    }
+
+    /**
+     * Welds the vertices closer than the weld tolerance. The vertices are
+     * hashed into cells as large as the tolerance, so that each vertex is only
+     * compared with the vertices of the 27 surrounding cells.
+     */
+    private int[] weld(float[] verts, int[] tris, Result result) {
+        int vertCount = verts.length / 3;
+        float cell = Math.max(weldTolerance, 1e-6f);
+        float tolSq = weldTolerance * weldTolerance;
+
+        Map<Long, Integer> heads = new HashMap<>(vertCount * 2);
+        int[] next = new int[vertCount];
+        int[] remap = new int[vertCount];
+
+        for (int v = 0; v < vertCount; v++) {
+            int cx = (int) Math.floor(verts[v * 3] / cell);
+            int cy = (int) Math.floor(verts[v * 3 + 1] / cell);
+            int cz = (int) Math.floor(verts[v * 3 + 2] / cell);
+
+            int found = -1;
+            search:
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dz = -1; dz <= 1; dz++) {
+                        Integer head = heads.get(cellKey(cx + dx, cy + dy, cz + dz));
+                        for (int u = head == null ? -1 : head; u >= 0; u = next[u]) {
+                            if (distanceSq(verts, u, v) <= tolSq) {
+                                found = u;
+                                break search;
+                            }
+                        }
+                    }
+                }
+            }
+
+            if (found >= 0) {
+                remap[v] = found;
+                result.weldedVertices++;
+            } else {
+                remap[v] = v;
+                long key = cellKey(cx, cy, cz);
+                Integer head = heads.get(key);
+                next[v] = head == null ? -1 : head;
+                heads.put(key, v);
+            }
+        }
+
+        for (int i = 0; i < tris.length; i++) {
+            tris[i] = remap[tris[i]];
+        }
+        return tris;
+    }
+
+    private static long cellKey(int x, int y, int z) {
+        return ((long) (x & 0x1FFFFF) << 42) | ((long) (y & 0x1FFFFF) << 21) | (z & 0x1FFFFF);
+    }
+
+    /**
+     * Removes the triangles with repeated vertices, or whose apex lies within
+     * the weld tolerance of the longest edge.
+     */
+    private int[] removeDegenerates(float[] verts, int[] tris, Result result) {
+        IntArray out = new IntArray(tris.length);
+        for (int t = 0; t < tris.length; t += 3) {
+            int a = tris[t], b = tris[t + 1], c = tris[t + 2];
+            if (a == b || b == c || c == a || altitude(verts, a, b, c) < weldTolerance) {
+                result.degenerateTriangles++;
+                continue;
+            }
+            out.add(a, b, c);
+        }
+        return out.toArray();
+    }
+
+    /**
+     * Collapses the shortest edge of the needle triangles, whose shortest edge
+     * is shorter than <code>sliverRatio</code> times the longest one. An edge is
+     * collapsed by moving one of its vertices onto the other, only when the
+     * moved vertex is not on the outline of the mesh, and when none of the
+     * remaining triangles around it degenerates or flips.
+     */
+    private int[] collapseNeedles(float[] verts, int[] tris, Result result) {
+        for (int pass = 0; pass < 4; pass++) {
+            int vertCount = verts.length / 3;
+            int[][] vertTris = buildVertexTriangles(tris, vertCount);
+            boolean[] outline = findOutlineVertices(tris, vertCount);
+            boolean[] locked = new boolean[vertCount];
+            boolean[] removed = new boolean[tris.length / 3];
+            boolean changed = false;
+
+            for (int t = 0; t < tris.length / 3; t++) {
+                if (removed[t]) {
+                    continue;
+                }
+                int[] edge = findNeedleEdge(verts, tris, t);
+                if (edge == null) {
+                    continue;
+                }
+                // keep the vertex on the outline, move the other one
+                int keep = edge[0], move = edge[1];
+                if (outline[move]) {
+                    keep = edge[1];
+                    move = edge[0];
+                }
+                if (outline[move] || locked[keep] || locked[move]) {
+                    continue;
+                }
+                if (!canCollapse(verts, tris, vertTris, removed, move, keep)) {
+                    continue;
+                }
+
+                for (int n : vertTris[move]) {
+                    if (removed[n]) {
+                        continue;
+                    }
+                    for (int k = 0; k < 3; k++) {
+                        locked[tris[n * 3 + k]] = true;
+                    }
+                    if (contains(tris, n, keep)) {
+                        removed[n] = true;
+                    } else {
+                        replace(tris, n, move, keep);
+                    }
+                }
+                result.collapsedSlivers++;
+                changed = true;
+            }
+
+            if (!changed) {
+                break;
+            }
+            IntArray out = new IntArray(tris.length);
+            for (int t = 0; t < tris.length / 3; t++) {
+                if (!removed[t]) {
+                    out.add(tris[t * 3], tris[t * 3 + 1], tris[t * 3 + 2]);
+                }
+            }
+            tris = out.toArray();
+        }
+        return tris;
+    }
+
+    /**
+     * @return the end points of the shortest edge, if the triangle is a needle.
+     */
+    private int[] findNeedleEdge(float[] verts, int[] tris, int t) {
+        float shortest = Float.POSITIVE_INFINITY, longest = 0;
+        int[] edge = null;
+        for (int k = 0; k < 3; k++) {
+            int a = tris[t * 3 + k];
+            int b = tris[t * 3 + (k + 1) % 3];
+            float len = (float) Math.sqrt(distanceSq(verts, a, b));
+            longest = Math.max(longest, len);
+            if (len < shortest) {
+                shortest = len;
+                edge = new int[] { a, b };
+            }
+        }
+        return shortest < sliverRatio * longest ? edge : null;
+    }
+
+    private boolean canCollapse(float[] verts, int[] tris, int[][] vertTris, boolean[] removed, int move, int keep) {
+        // the vertices adjacent to both ends must be the apexes of the
+        // triangles of the edge, or the collapse would fold the mesh
+        Set<Integer> keepNeighbours = new HashSet<>();
+        for (int n : vertTris[keep]) {
+            if (!removed[n]) {
+                for (int k = 0; k < 3; k++) {
+                    keepNeighbours.add(tris[n * 3 + k]);
+                }
+            }
+        }
+        Set<Integer> common = new HashSet<>();
+        int edgeTris = 0;
+        for (int n : vertTris[move]) {
+            if (removed[n]) {
+                continue;
+            }
+            if (contains(tris, n, keep)) {
+                edgeTris++;
+            }
+            for (int k = 0; k < 3; k++) {
+                int v = tris[n * 3 + k];
+                if (v != keep && v != move && keepNeighbours.contains(v)) {
+                    common.add(v);
+                }
+            }
+        }
+        if (common.size() != edgeTris) {
+            return false;
+        }
+
+        for (int n : vertTris[move]) {
+            if (removed[n] || contains(tris, n, keep)) {
+                continue;
+            }
+            int[] tri = { tris[n * 3], tris[n * 3 + 1], tris[n * 3 + 2] };
+            float before = signedAreaXZ(verts, tri[0], tri[1], tri[2]);
+            for (int k = 0; k < 3; k++) {
+                if (tri[k] == move) {
+                    tri[k] = keep;
+                }
+            }
+            float after = signedAreaXZ(verts, tri[0], tri[1], tri[2]);
+            if (Math.signum(before) != Math.signum(after)
+                    || altitude(verts, tri[0], tri[1], tri[2]) < weldTolerance) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Groups the coplanar triangles into regions and re-triangulates the
+     * regions from their outline. A region that cannot be re-triangulated is
+     * frozen, which keeps its triangles and the vertices of its outline, and
+     * the other regions are processed again.
+     */
+    private int[] mergeRegions(float[] verts, int[] tris, Result result) {
+        int triCount = tris.length / 3;
+        int vertCount = verts.length / 3;
+        EdgeMap edges = new EdgeMap(tris);
+        int[] region = growRegions(verts, tris, edges);
+        int regionCount = 0;
+        for (int r : region) {
+            regionCount = Math.max(regionCount, r + 1);
+        }
+
+        int[][] regionTris = new int[regionCount][];
+        int[] sizes = new int[regionCount];
+        for (int t = 0; t < triCount; t++) {
+            sizes[region[t]]++;
+        }
+        for (int r = 0; r < regionCount; r++) {
+            regionTris[r] = new int[sizes[r]];
+            sizes[r] = 0;
+        }
+        for (int t = 0; t < triCount; t++) {
+            regionTris[region[t]][sizes[region[t]]++] = t;
+        }
+
+        // single triangles have nothing to merge
+        boolean[] frozen = new boolean[regionCount];
+        for (int r = 0; r < regionCount; r++) {
+            frozen[r] = regionTris[r].length < 2;
+        }
+
+        // freezing a region keeps its outline vertices, which changes the
+        // outline of its neighbours: repeat until no region is frozen
+        int[][] polygons = new int[regionCount][];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            boolean[] keep = findKeptVertices(verts, tris, edges, region, frozen, vertCount);
+
+            for (int r = 0; r < regionCount; r++) {
+                polygons[r] = null;
+                if (frozen[r]) {
+                    continue;
+                }
+                int[] triangles = triangulateRegion(verts, tris, edges, region, r, regionTris[r], keep);
+                if (triangles == null || triangles.length / 3 >= regionTris[r].length) {
+                    frozen[r] = true;
+                    changed = true;
+                } else {
+                    polygons[r] = triangles;
+                }
+            }
+        }
+
+        IntArray out = new IntArray(tris.length);
+        for (int r = 0; r < regionCount; r++) {
+            if (polygons[r] != null) {
+                out.addAll(polygons[r]);
+                result.mergedRegions++;
+            } else {
+                for (int t : regionTris[r]) {
+                    out.add(tris[t * 3], tris[t * 3 + 1], tris[t * 3 + 2]);
+                }
+            }
+        }
+        return out.toArray();
+    }
+
+    /**
+     * Grows the regions of adjacent triangles whose normal is within the angle
+     * tolerance, and whose vertices are within the height tolerance, of the
+     * plane of the first triangle of the region.
+     *
+     * @return the region of each triangle
+     */
+    private int[] growRegions(float[] verts, int[] tris, EdgeMap edges) {
+        int triCount = tris.length / 3;
+        float[] normals = new float[triCount * 3];
+        for (int t = 0; t < triCount; t++) {
+            normal(verts, tris[t * 3], tris[t * 3 + 1], tris[t * 3 + 2], normals, t * 3);
+        }
+
+        float minDot = (float) Math.cos(Math.toRadians(maxNormalAngle));
+        int[] region = new int[triCount];
+        Arrays.fill(region, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        int regionCount = 0;
+
+        for (int seed = 0; seed < triCount; seed++) {
+            if (region[seed] >= 0) {
+                continue;
+            }
+            int r = regionCount++;
+            float nx = normals[seed * 3], ny = normals[seed * 3 + 1], nz = normals[seed * 3 + 2];
+            int p = tris[seed * 3];
+            float d = -(nx * verts[p * 3] + ny * verts[p * 3 + 1] + nz * verts[p * 3 + 2]);
+
+            region[seed] = r;
+            queue.add(seed);
+            while (!queue.isEmpty()) {
+                int t = queue.poll();
+                for (int k = 0; k < 3; k++) {
+                    int n = edges.getNeighbour(tris[t * 3 + k], tris[t * 3 + (k + 1) % 3], t);
+                    if (n < 0 || region[n] >= 0) {
+                        continue;
+                    }
+                    float dot = nx * normals[n * 3] + ny * normals[n * 3 + 1] + nz * normals[n * 3 + 2];
+                    if (dot < minDot) {
+                        continue;
+                    }
+                    boolean onPlane = true;
+                    for (int j = 0; j < 3 && onPlane; j++) {
+                        int v = tris[n * 3 + j];
+                        float dist = nx * verts[v * 3] + ny * verts[v * 3 + 1] + nz * verts[v * 3 + 2] + d;
+                        onPlane = Math.abs(dist) <= maxDeviation;
+                    }
+                    if (onPlane) {
+                        region[n] = r;
+                        queue.add(n);
+                    }
+                }
+            }
+        }
+        return region;
+    }
+
+    /**
+     * Finds the vertices that must be kept by the re-triangulation: the
+     * vertices of the frozen regions, the corners of the region outlines, and
+     * the outline vertices deviating from the line through their two
+     * neighbours.
+     */
+    private boolean[] findKeptVertices(float[] verts, int[] tris, EdgeMap edges, int[] region, boolean[] frozen,
+            int vertCount) {
+        boolean[] keep = new boolean[vertCount];
+        int[] outlineEdges = new int[vertCount];
+        int[][] outlineNeighbours = new int[vertCount][2];
+
+        for (int t = 0; t < tris.length / 3; t++) {
+            for (int k = 0; k < 3; k++) {
+                int a = tris[t * 3 + k];
+                int b = tris[t * 3 + (k + 1) % 3];
+                if (frozen[region[t]]) {
+                    keep[a] = true;
+                }
+                int n = edges.getNeighbour(a, b, t);
+                boolean outline = n < 0 || region[n] != region[t];
+                // count the edges shared by two regions once
+                if (outline && (n < 0 || t < n)) {
+                    addOutlineEdge(outlineEdges, outlineNeighbours, a, b);
+                    addOutlineEdge(outlineEdges, outlineNeighbours, b, a);
+                }
+            }
+        }
+
+        for (int v = 0; v < vertCount; v++) {
+            if (keep[v] || outlineEdges[v] == 0) {
+                continue;
+            }
+            if (outlineEdges[v] != 2) {
+                keep[v] = true;
+                continue;
+            }
+            int p = outlineNeighbours[v][0];
+            int q = outlineNeighbours[v][1];
+            keep[v] = p == q || distanceToSegment(verts, v, p, q) > maxDeviation;
+        }
+        return keep;
+    }
+
+    private static void addOutlineEdge(int[] counts, int[][] neighbours, int v, int other) {
+        if (counts[v] < 2) {
+            neighbours[v][counts[v]] = other;
+        }
+        counts[v]++;
+    }
+
+    /**
+     * Re-triangulates a region from its outline.
+     *
+     * @return the new triangles, or {@code null} if the outline is not a single
+     *         simple loop
+     */
+    private int[] triangulateRegion(float[] verts, int[] tris, EdgeMap edges, int[] region, int r, int[] members,
+            boolean[] keep) {
+        // the directed outline edges, in the winding of the triangles
+        Map<Integer, Integer> next = new HashMap<>();
+        float area = 0;
+        for (int t : members) {
+            area += signedAreaXZ(verts, tris[t * 3], tris[t * 3 + 1], tris[t * 3 + 2]);
+            for (int k = 0; k < 3; k++) {
+                int a = tris[t * 3 + k];
+                int b = tris[t * 3 + (k + 1) % 3];
+                int n = edges.getNeighbour(a, b, t);
+                if (n < 0 || region[n] != r) {
+                    if (next.put(a, b) != null) {
+                        return null; // pinched outline
+                    }
+                }
+            }
+        }
+        if (next.isEmpty()) {
+            return null;
+        }
+
+        // follow the loop, which must visit every outline edge
+        IntArray loop = new IntArray(next.size());
+        int start = next.keySet().iterator().next();
+        int v = start;
+        int visited = 0;
+        do {
+            if (keep[v]) {
+                loop.add(v);
+            }
+            Integer w = next.get(v);
+            if (w == null) {
+                return null;
+            }
+            v = w;
+            visited++;
+        } while (v != start && visited <= next.size());
+
+        if (visited != next.size() || loop.size() < 3) {
+            return null; // holes or several loops
+        }
+
+        return clipEars(verts, loop.toArray(), Math.signum(area));
+    }
+
+    /**
+     * Triangulates a simple polygon on the xz-plane by ear clipping.
+     *
+     * @param polygon     the vertex indices of the polygon
+     * @param orientation the sign of the area of the polygon, which is also the
+     *                    orientation of the output triangles
+     * @return the triangles, or {@code null} if the polygon is not simple
+     */
+    private int[] clipEars(float[] verts, int[] polygon, float orientation) {
+        int n = polygon.length;
+        float polyArea = 0;
+        for (int i = 0; i < n; i++) {
+            int a = polygon[i], b = polygon[(i + 1) % n];
+            polyArea += verts[a * 3] * verts[b * 3 + 2] - verts[b * 3] * verts[a * 3 + 2];
+        }
+        if (orientation == 0 || Math.signum(polyArea) != orientation) {
+            return null;
+        }
+
+        List<Integer> poly = new ArrayList<>(n);
+        for (int v : polygon) {
+            poly.add(v);
+        }
+
+        IntArray out = new IntArray((n - 2) * 3);
+        int cursor = 0;
+        while (poly.size() > 3) {
+            int size = poly.size();
+            int best = -1;
+            float bestQuality = -1;
+            for (int step = 0; step < size; step++) {
+                int i = (cursor + step) % size;
+                int p = poly.get((i + size - 1) % size);
+                int c = poly.get(i);
+                int q = poly.get((i + 1) % size);
+                if (!isEar(verts, poly, p, c, q, orientation)) {
+                    continue;
+                }
+                float quality = quality(verts, p, c, q);
+                if (quality > bestQuality) {
+                    best = i;
+                    bestQuality = quality;
+                }
+                if (size > MAX_BEST_EAR_VERTS) {
+                    break;
+                }
+            }
+            if (best < 0) {
+                return null;
+            }
+            out.add(poly.get((best + size - 1) % size), poly.get(best), poly.get((best + 1) % size));
+            poly.remove(best);
+            cursor = best % poly.size();
+        }
+        out.add(poly.get(0), poly.get(1), poly.get(2));
+        return out.toArray();
+    }
+
+    private boolean isEar(float[] verts, List<Integer> poly, int p, int c, int q, float orientation) {
+        float area = signedAreaXZ(verts, p, c, q);
+        if (area * orientation <= 0 || altitude(verts, p, c, q) < weldTolerance) {
+            return false; // reflex or flat corner
+        }
+        for (int v : poly) {
+            if (v == p || v == c || v == q) {
+                continue;
+            }
+            if (insideOrOnXZ(verts, v, p, c, q, orientation)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return twice the area of the triangle over the sum of its squared edges,
+     *         which is highest for equilateral triangles.
+     */
+    private static float quality(float[] verts, int a, int b, int c) {
+        float sum = distanceSq(verts, a, b) + distanceSq(verts, b, c) + distanceSq(verts, c, a);
+        return Math.abs(signedAreaXZ(verts, a, b, c)) / sum;
+    }
+
+    /**
+     * Runs the same A* queries, between the centroids of random triangles of
+     * the input mesh, on both meshes, and records the average number of
+     * expanded nodes.
+     */
+    private void measureExpansions(TriangleMesh before, TriangleMesh after, Result result) {
+        int triCount = before.indices.length / 3;
+        if (triCount < 2 || after.indices.length == 0) {
+            return;
+        }
+        EdgeMap beforeEdges = new EdgeMap(before.indices);
+        int[] components = findComponents(before.indices, beforeEdges);
+        Search beforeSearch = new Search(before.vertices, before.indices, beforeEdges);
+        Search afterSearch = new Search(after.vertices, after.indices, new EdgeMap(after.indices));
+        Random random = new Random(42);
+
+        long expandedBefore = 0, expandedAfter = 0;
+        int queries = 0;
+        for (int attempt = 0; attempt < sampleQueries * 4 && queries < sampleQueries; attempt++) {
+            int s = random.nextInt(triCount);
+            int g = random.nextInt(triCount);
+            if (s == g || components[s] != components[g]) {
+                continue;
+            }
+            float[] start = centroid(before.vertices, before.indices, s);
+            float[] goal = centroid(before.vertices, before.indices, g);
+            int s2 = locate(after.vertices, after.indices, start);
+            int g2 = locate(after.vertices, after.indices, goal);
+            if (s2 < 0 || g2 < 0) {
+                continue;
+            }
+            int e1 = beforeSearch.run(s, g);
+            int e2 = afterSearch.run(s2, g2);
+            if (e1 < 0 || e2 < 0) {
+                continue;
+            }
+            expandedBefore += e1;
+            expandedAfter += e2;
+            queries++;
+        }
+
+        if (queries > 0) {
+            result.sampledQueries = queries;
+            result.expansionsBefore = (float) expandedBefore / queries;
+            result.expansionsAfter = (float) expandedAfter / queries;
+        }
+    }
+
+    private static int[] findComponents(int[] tris, EdgeMap edges) {
+        int triCount = tris.length / 3;
+        int[] component = new int[triCount];
+        Arrays.fill(component, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        int count = 0;
+        for (int seed = 0; seed < triCount; seed++) {
+            if (component[seed] >= 0) {
+                continue;
+            }
+            component[seed] = count;
+            queue.add(seed);
+            while (!queue.isEmpty()) {
+                int t = queue.poll();
+                for (int k = 0; k < 3; k++) {
+                    int n = edges.getNeighbour(tris[t * 3 + k], tris[t * 3 + (k + 1) % 3], t);
+                    if (n >= 0 && component[n] < 0) {
+                        component[n] = count;
+                        queue.add(n);
+                    }
+                }
+            }
+            count++;
+        }
+        return component;
+    }
+
+    /**
+     * @return the triangle containing the point on the xz-plane, closest in
+     *         height, or -1
+     */
+    private static int locate(float[] verts, int[] tris, float[] point) {
+        int best = -1;
+        float bestDist = Float.POSITIVE_INFINITY;
+        for (int t = 0; t < tris.length / 3; t++) {
+            int a = tris[t * 3], b = tris[t * 3 + 1], c = tris[t * 3 + 2];
+            float area = signedAreaXZ(verts, a, b, c);
+            if (area == 0) {
+                continue;
+            }
+            float w0 = cross(verts, b, c, point) / area;
+            float w1 = cross(verts, c, a, point) / area;
+            float w2 = 1 - w0 - w1;
+            float eps = -1e-4f;
+            if (w0 < eps || w1 < eps || w2 < eps) {
+                continue;
+            }
+            float y = w0 * verts[a * 3 + 1] + w1 * verts[b * 3 + 1] + w2 * verts[c * 3 + 1];
+            float dist = Math.abs(y - point[1]);
+            if (dist < bestDist) {
+                best = t;
+                bestDist = dist;
+            }
+        }
+        return best;
+    }
+
+    private static TriangleMesh compact(float[] verts, int[] tris) {
+        int[] remap = new int[verts.length / 3];
+        Arrays.fill(remap, -1);
+        FloatArray outVerts = new FloatArray(verts.length);
+        int[] outTris = new int[tris.length];
+        int count = 0;
+        for (int i = 0; i < tris.length; i++) {
+            int v = tris[i];
+            if (remap[v] < 0) {
+                remap[v] = count++;
+                outVerts.add(verts[v * 3], verts[v * 3 + 1], verts[v * 3 + 2]);
+            }
+            outTris[i] = remap[v];
+        }
+        TriangleMesh mesh = new TriangleMesh();
+        mesh.vertices = outVerts.toArray();
+        mesh.indices = outTris;
+        return mesh;
+    }
+
+    private static int[][] buildVertexTriangles(int[] tris, int vertCount) {
+        int[] counts = new int[vertCount];
+        for (int v : tris) {
+            counts[v]++;
+        }
+        int[][] result = new int[vertCount][];
+        for (int v = 0; v < vertCount; v++) {
+            result[v] = new int[counts[v]];
+            counts[v] = 0;
+        }
+        for (int i = 0; i < tris.length; i++) {
+            int v = tris[i];
+            result[v][counts[v]++] = i / 3;
+        }
+        return result;
+    }
+
+    /**
+     * @return the vertices of the edges used by a single triangle, or by more
+     *         than two.
+     */
+    private static boolean[] findOutlineVertices(int[] tris, int vertCount) {
+        EdgeMap edges = new EdgeMap(tris);
+        boolean[] outline = new boolean[vertCount];
+        for (int t = 0; t < tris.length / 3; t++) {
+            for (int k = 0; k < 3; k++) {
+                int a = tris[t * 3 + k];
+                int b = tris[t * 3 + (k + 1) % 3];
+                if (edges.getNeighbour(a, b, t) < 0) {
+                    outline[a] = true;
+                    outline[b] = true;
+                }
+            }
+        }
+        return outline;
+    }
+
+    private static boolean contains(int[] tris, int t, int v) {
+        return tris[t * 3] == v || tris[t * 3 + 1] == v || tris[t * 3 + 2] == v;
+    }
+
+    private static void replace(int[] tris, int t, int from, int to) {
+        for (int k = 0; k < 3; k++) {
+            if (tris[t * 3 + k] == from) {
+                tris[t * 3 + k] = to;
+            }
+        }
+    }
+
+    private static float distanceSq(float[] verts, int a, int b) {
+        float dx = verts[a * 3] - verts[b * 3];
+        float dy = verts[a * 3 + 1] - verts[b * 3 + 1];
+        float dz = verts[a * 3 + 2] - verts[b * 3 + 2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * @return the 3D distance of the vertex from the segment (p, q).
+     */
+    private static float distanceToSegment(float[] verts, int v, int p, int q) {
+        float ex = verts[q * 3] - verts[p * 3];
+        float ey = verts[q * 3 + 1] - verts[p * 3 + 1];
+        float ez = verts[q * 3 + 2] - verts[p * 3 + 2];
+        float wx = verts[v * 3] - verts[p * 3];
+        float wy = verts[v * 3 + 1] - verts[p * 3 + 1];
+        float wz = verts[v * 3 + 2] - verts[p * 3 + 2];
+        float lenSq = ex * ex + ey * ey + ez * ez;
+        float s = lenSq == 0 ? 0 : Math.max(0, Math.min(1, (wx * ex + wy * ey + wz * ez) / lenSq));
+        float dx = wx - s * ex, dy = wy - s * ey, dz = wz - s * ez;
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * @return the distance of the vertex opposite to the longest edge from
+     *         that edge, in 3D.
+     */
+    private static float altitude(float[] verts, int a, int b, int c) {
+        float ab = distanceSq(verts, a, b), bc = distanceSq(verts, b, c), ca = distanceSq(verts, c, a);
+        float longest = Math.max(ab, Math.max(bc, ca));
+        if (longest == 0) {
+            return 0;
+        }
+        float ux = verts[b * 3] - verts[a * 3], uy = verts[b * 3 + 1] - verts[a * 3 + 1], uz = verts[b * 3 + 2] - verts[a * 3 + 2];
+        float vx = verts[c * 3] - verts[a * 3], vy = verts[c * 3 + 1] - verts[a * 3 + 1], vz = verts[c * 3 + 2] - verts[a * 3 + 2];
+        float cx = uy * vz - uz * vy, cy = uz * vx - ux * vz, cz = ux * vy - uy * vx;
+        return (float) (Math.sqrt(cx * cx + cy * cy + cz * cz) / Math.sqrt(longest));
+    }
+
+    private static void normal(float[] verts, int a, int b, int c, float[] store, int offset) {
+        float ux = verts[b * 3] - verts[a * 3], uy = verts[b * 3 + 1] - verts[a * 3 + 1], uz = verts[b * 3 + 2] - verts[a * 3 + 2];
+        float vx = verts[c * 3] - verts[a * 3], vy = verts[c * 3 + 1] - verts[a * 3 + 1], vz = verts[c * 3 + 2] - verts[a * 3 + 2];
+        float nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+        float len = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (len > 0) {
+            nx /= len;
+            ny /= len;
+            nz /= len;
+        }
+        store[offset] = nx;
+        store[offset + 1] = ny;
+        store[offset + 2] = nz;
+    }
+
+    /**
+     * @return twice the signed area of the triangle projected on the xz-plane.
+     */
+    private static float signedAreaXZ(float[] verts, int a, int b, int c) {
+        return (verts[b * 3] - verts[a * 3]) * (verts[c * 3 + 2] - verts[a * 3 + 2])
+                - (verts[c * 3] - verts[a * 3]) * (verts[b * 3 + 2] - verts[a * 3 + 2]);
+    }
+
+    private static float cross(float[] verts, int a, int b, float[] p) {
+        return (verts[b * 3] - verts[a * 3]) * (p[2] - verts[a * 3 + 2])
+                - (p[0] - verts[a * 3]) * (verts[b * 3 + 2] - verts[a * 3 + 2]);
+    }
+
+    private static boolean insideOrOnXZ(float[] verts, int v, int a, int b, int c, float orientation) {
+        float[] p = { verts[v * 3], verts[v * 3 + 1], verts[v * 3 + 2] };
+        return cross(verts, a, b, p) * orientation >= 0
+                && cross(verts, b, c, p) * orientation >= 0
+                && cross(verts, c, a, p) * orientation >= 0;
+    }
+
+    private static float[] centroid(float[] verts, int[] tris, int t) {
+        int a = tris[t * 3], b = tris[t * 3 + 1], c = tris[t * 3 + 2];
+        return new float[] {
+            (verts[a * 3] + verts[b * 3] + verts[c * 3]) / 3,
+            (verts[a * 3 + 1] + verts[b * 3 + 1] + verts[c * 3 + 1]) / 3,
+            (verts[a * 3 + 2] + verts[b * 3 + 2] + verts[c * 3 + 2]) / 3 };
+    }
+
+    public float getWeldTolerance() {
+        return weldTolerance;
+    }
+
+    /**
+     * @param weldTolerance the distance below which two vertices are welded
+     *                      (default 0.01)
+     */
+    public void setWeldTolerance(float weldTolerance) {
+        this.weldTolerance = weldTolerance;
+    }
+
+    public float getMaxDeviation() {
+        return maxDeviation;
+    }
+
+    /**
+     * @param maxDeviation the maximum distance of a merged vertex from the
+     *                     plane of its region, and of a dropped outline vertex
+     *                     from the outline (default 0.05)
+     */
+    public void setMaxDeviation(float maxDeviation) {
+        this.maxDeviation = maxDeviation;
+    }
+
+    public float getMaxNormalAngle() {
+        return maxNormalAngle;
+    }
+
+    /**
+     * @param maxNormalAngle the maximum angle between the normals of two
+     *                       triangles of the same region, in degrees (default 5)
+     */
+    public void setMaxNormalAngle(float maxNormalAngle) {
+        this.maxNormalAngle = maxNormalAngle;
+    }
+
+    public float getSliverRatio() {
+        return sliverRatio;
+    }
+
+    /**
+     * @param sliverRatio the ratio between the shortest and the longest edge
+     *                    below which a triangle is a needle (default 0.1)
+     */
+    public void setSliverRatio(float sliverRatio) {
+        this.sliverRatio = sliverRatio;
+    }
+
+    public int getSampleQueries() {
+        return sampleQueries;
+    }
+
+    /**
+     * @param sampleQueries the number of A* queries used to compare the node
+     *                      expansions before and after, or 0 to skip the
+     *                      measure (default 0). Each query runs a search on
+     *                      both meshes, so the measure adds to the build time.
+     */
+    public void setSampleQueries(int sampleQueries) {
+        this.sampleQueries = sampleQueries;
+    }
+
+    /**
+     * The optimized mesh, and what the optimization changed.
+     */
+    public static class Result {
+
+        private TriangleMesh mesh;
+        private int trianglesBefore;
+        private int trianglesAfter;
+        private int verticesBefore;
+        private int verticesAfter;
+        private int weldedVertices;
+        private int degenerateTriangles;
+        private int collapsedSlivers;
+        private int mergedRegions;
+        private int sampledQueries;
+        private float expansionsBefore;
+        private float expansionsAfter;
+
+        public TriangleMesh getMesh() {
+            return mesh;
+        }
+
+        public int getTrianglesBefore() {
+            return trianglesBefore;
+        }
+
+        /**
+         * @return the number of triangles, and so of cells, of the optimized mesh.
+         */
+        public int getTrianglesAfter() {
+            return trianglesAfter;
+        }
+
+        public int getVerticesBefore() {
+            return verticesBefore;
+        }
+
+        public int getVerticesAfter() {
+            return verticesAfter;
+        }
+
+        public int getWeldedVertices() {
+            return weldedVertices;
+        }
+
+        public int getDegenerateTriangles() {
+            return degenerateTriangles;
+        }
+
+        public int getCollapsedSlivers() {
+            return collapsedSlivers;
+        }
+
+        /**
+         * @return the number of coplanar regions re-triangulated.
+         */
+        public int getMergedRegions() {
+            return mergedRegions;
+        }
+
+        /**
+         * @return the number of A* queries used to measure the expansions.
+         */
+        public int getSampledQueries() {
+            return sampledQueries;
+        }
+
+        /**
+         * @return the average number of nodes expanded by A* on the input mesh.
+         */
+        public float getExpansionsBefore() {
+            return expansionsBefore;
+        }
+
+        /**
+         * @return the average number of nodes expanded by A* on the optimized mesh.
+         */
+        public float getExpansionsAfter() {
+            return expansionsAfter;
+        }
+
+        @Override
+        public String toString() {
+            return "NavMeshOptimizer.Result [triangles=" + trianglesBefore + " -> " + trianglesAfter
+                    + ", vertices=" + verticesBefore + " -> " + verticesAfter
+                    + ", welded=" + weldedVertices
+                    + ", degenerate=" + degenerateTriangles
+                    + ", slivers=" + collapsedSlivers
+                    + ", regions=" + mergedRegions
+                    + String.format(", expansions=%.1f -> %.1f (%d queries)]",
+                            expansionsBefore, expansionsAfter, sampledQueries);
+        }
+    }
+
+    /**
+     * A* over the triangles sharing an edge, from centroid to centroid. The
+     * centroids, the neighbours and the search arrays are computed once per
+     * mesh and reused by every query.
+     */
+    private static class Search {
+
+        private final float[] centroids;
+        private final int[] neighbours;
+        private final float[] cost;
+        // the query in which the cost of each triangle was set, or closed
+        private final int[] visited;
+        private final int[] closed;
+        private final IndexedMinHeap open;
+        private int query;
+
+        Search(float[] verts, int[] tris, EdgeMap edges) {
+            int triCount = tris.length / 3;
+            centroids = new float[triCount * 3];
+            neighbours = new int[triCount * 3];
+            for (int t = 0; t < triCount; t++) {
+                System.arraycopy(centroid(verts, tris, t), 0, centroids, t * 3, 3);
+                for (int k = 0; k < 3; k++) {
+                    neighbours[t * 3 + k] = edges.getNeighbour(tris[t * 3 + k], tris[t * 3 + (k + 1) % 3], t);
+                }
+            }
+            cost = new float[triCount];
+            visited = new int[triCount];
+            closed = new int[triCount];
+            open = new IndexedMinHeap(triCount);
+        }
+
+        /**
+         * @return the number of expanded triangles, or -1 if the goal is unreachable
+         */
+        int run(int start, int goal) {
+            query++;
+            open.clear();
+            cost[start] = 0;
+            visited[start] = query;
+            open.add(start, distance(start, goal));
+            int expanded = 0;
+
+            while (!open.isEmpty()) {
+                int t = open.poll();
+                closed[t] = query;
+                expanded++;
+                if (t == goal) {
+                    return expanded;
+                }
+                for (int k = 0; k < 3; k++) {
+                    int n = neighbours[t * 3 + k];
+                    if (n < 0 || closed[n] == query) {
+                        continue;
+                    }
+                    float g = cost[t] + distance(t, n);
+                    if (visited[n] != query) {
+                        visited[n] = query;
+                        cost[n] = g;
+                        open.add(n, g + distance(n, goal));
+                    } else if (g < cost[n]) {
+                        cost[n] = g;
+                        open.decreaseKey(n, g + distance(n, goal));
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private float distance(int a, int b) {
+            float dx = centroids[a * 3] - centroids[b * 3];
+            float dy = centroids[a * 3 + 1] - centroids[b * 3 + 1];
+            float dz = centroids[a * 3 + 2] - centroids[b * 3 + 2];
+            return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+    }
+
+    /**
+     * The triangles on each side of the edges, keyed by the undirected edge.
+     */
+    private static class EdgeMap {
+
+        private final Map<Long, int[]> edges;
+
+        EdgeMap(int[] tris) {
+            edges = new HashMap<>(tris.length * 2);
+            for (int t = 0; t < tris.length / 3; t++) {
+                for (int k = 0; k < 3; k++) {
+                    long key = key(tris[t * 3 + k], tris[t * 3 + (k + 1) % 3]);
+                    int[] sides = edges.get(key);
+                    if (sides == null) {
+                        edges.put(key, new int[] { t, -1, 1 });
+                    } else {
+                        if (sides[2] == 1) {
+                            sides[1] = t;
+                        }
+                        sides[2]++;
+                    }
+                }
+            }
+        }
+
+        private static long key(int a, int b) {
+            return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+        }
+
+        /**
+         * @return the other triangle of the edge, or -1 if the edge is on the
+         *         outline or shared by more than two triangles.
+         */
+        int getNeighbour(int a, int b, int t) {
+            int[] sides = edges.get(key(a, b));
+            if (sides == null || sides[2] != 2) {
+                return -1;
+            }
+            return sides[0] == t ? sides[1] : sides[0];
+        }
+
+    }
+
+    /**
+     * A growable array of ints.
+     */
+    private static class IntArray {
+
+        private int[] data;
+        private int size;
+
+        IntArray(int capacity) {
+            data = new int[Math.max(capacity, 4)];
+        }
+
+        void add(int v) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = v;
+        }
+
+        void add(int a, int b, int c) {
+            add(a);
+            add(b);
+            add(c);
+        }
+
+        void addAll(int[] values) {
+            for (int v : values) {
+                add(v);
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    /**
+     * A growable array of floats.
+     */
+    private static class FloatArray {
+
+        private float[] data;
+        private int size;
+
+        FloatArray(int capacity) {
+            data = new float[Math.max(capacity, 4)];
+        }
+
+        void add(float x, float y, float z) {
+            if (size + 3 > data.length) {
+                data = Arrays.copyOf(data, Math.max(size + 3, size * 2));
+            }
+            data[size++] = x;
+            data[size++] = y;
+            data[size++] = z;
+        }
+
+        float[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+}
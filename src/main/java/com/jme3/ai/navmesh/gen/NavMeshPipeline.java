@@ -0,0 +1,584 @@
+package com.jme3.ai.navmesh.gen;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.critterai.nmgen.BoundedField;
+import org.critterai.nmgen.CleanNullRegionBorders;
+import org.critterai.nmgen.ContourSet;
+import org.critterai.nmgen.ContourSetBuilder;
+import org.critterai.nmgen.DetailMeshBuilder;
+import org.critterai.nmgen.FilterOutSmallRegions;
+import org.critterai.nmgen.HeightSpan;
+import org.critterai.nmgen.IContourAlgorithm;
+import org.critterai.nmgen.IOpenHeightFieldAlgorithm;
+import org.critterai.nmgen.IntermediateData;
+import org.critterai.nmgen.MatchNullRegionEdges;
+import org.critterai.nmgen.NullRegionMaxEdge;
+import org.critterai.nmgen.OpenHeightfield;
+import org.critterai.nmgen.OpenHeightfieldBuilder;
+import org.critterai.nmgen.PolyMeshField;
+import org.critterai.nmgen.PolyMeshFieldBuilder;
+import org.critterai.nmgen.SolidHeightfield;
+import org.critterai.nmgen.SolidHeightfieldBuilder;
+import org.critterai.nmgen.SpanFlags;
+import org.critterai.nmgen.TriangleMesh;
+
+/**
+ * The stages of the {@link org.critterai.nmgen.NavmeshGenerator}, run one by
+ * one, so that the solid heightfield can be filled from other sources than a
+ * triangle mesh.
+ * <p>
+ * The stage builders are configured exactly as the generator configures them.
+ * Between two stages, the pipeline reports the progress to a
+ * {@link BuildMonitor}, which stops the build once it has been cancelled.
+ * The solid heightfield stage is opened up with reflection, since nmgen keeps
+ * the bounds setter and the per-triangle rasterization private: use
+ * {@link #isSupported()} before creating a pipeline.
+ *
+ * @author capdevon
+ */
+final class NavMeshPipeline {
+
+    private static final Logger logger = Logger.getLogger(NavMeshPipeline.class.getName());
+
+    private static final MethodHandle SET_BOUNDS;
+    private static final MethodHandle MARK_WALKABLE;
+    private static final MethodHandle VOXELIZE_TRIANGLE;
+    private static final MethodHandle MARK_LOW_HEIGHT;
+    private static final MethodHandle MARK_LEDGES;
+
+    /**
+     * The maximum number of pipelines sharing a voxelization, one per bit of
+     * the span flags. nmgen merges the flags of two spans ending at the same
+     * height into a byte, so only the bits 0 to 6 survive unchanged.
+     */
+    static final int MAX_PROFILES = 7;
+
+    static {
+        MethodHandle setBounds = null, markWalkable = null, voxelize = null, markLow = null, markLedges = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            setBounds = lookup.unreflect(accessible(BoundedField.class
+                    .getDeclaredMethod("setBounds", float[].class, float[].class)));
+            markWalkable = lookup.unreflect(accessible(SolidHeightfieldBuilder.class
+                    .getDeclaredMethod("markInputMeshWalkableFlags", float[].class, int[].class)));
+            voxelize = lookup.unreflect(accessible(SolidHeightfieldBuilder.class
+                    .getDeclaredMethod("voxelizeTriangle", int.class, float[].class, int[].class,
+                            int.class, float.class, float.class, SolidHeightfield.class)));
+            markLow = lookup.unreflect(accessible(SolidHeightfieldBuilder.class
+                    .getDeclaredMethod("markLowHeightSpans", SolidHeightfield.class)));
+            markLedges = lookup.unreflect(accessible(SolidHeightfieldBuilder.class
+                    .getDeclaredMethod("markLedgeSpans", SolidHeightfield.class)));
+
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Staged navmesh generation is not supported by this nmgen version.", ex);
+            setBounds = null;
+        }
+        SET_BOUNDS = setBounds;
+        MARK_WALKABLE = markWalkable;
+        VOXELIZE_TRIANGLE = voxelize;
+        MARK_LOW_HEIGHT = markLow;
+        MARK_LEDGES = markLedges;
+    }
+
+    private static Method accessible(Method method) {
+        method.setAccessible(true);
+        return method;
+    }
+
+    /**
+     * @return {@code true} if the solid heightfield stage could be opened up.
+     */
+    static boolean isSupported() {
+        return SET_BOUNDS != null;
+    }
+
+    private final float cellSize;
+    private final float cellHeight;
+    private final float minNormalY;
+    private final boolean clipLedges;
+
+    private final SolidHeightfieldBuilder solidBuilder;
+    private final OpenHeightfieldBuilder openBuilder;
+    private final ContourSetBuilder contourBuilder;
+    private final PolyMeshFieldBuilder polyMeshBuilder;
+    private final DetailMeshBuilder detailMeshBuilder;
+
+    /**
+     * Configures the stages as
+     * {@link org.critterai.nmgen.NavmeshGenerator#NavmeshGenerator(float, float, float, float, float, boolean, float, int, boolean, int, int, float, float, int, float, float)}
+     * does.
+     */
+    NavMeshPipeline(NavMeshBuildSettings settings) {
+        this.cellSize = settings.cellSize;
+        this.cellHeight = settings.cellHeight;
+        this.clipLedges = settings.clipLedges;
+        float slope = Math.min(85f, Math.max(0f, settings.maxTraversableSlope));
+        this.minNormalY = (float) Math.cos(Math.abs(slope) / 180 * Math.PI);
+
+        int minTraversableHeight = toVoxels(settings.minTraversableHeight, cellHeight, 1);
+        int maxTraversableStep = toVoxels(settings.maxTraversableStep, cellHeight, 0);
+        int traversableAreaBorderSize = toVoxels(settings.traversableAreaBorderSize, cellSize, 0);
+        int maxEdgeLength = toVoxels(settings.maxEdgeLength, cellSize, 0);
+
+        solidBuilder = new SolidHeightfieldBuilder(cellSize, cellHeight,
+                minTraversableHeight, maxTraversableStep, settings.maxTraversableSlope, clipLedges);
+
+        ArrayList<IOpenHeightFieldAlgorithm> regionAlgorithms = new ArrayList<>();
+        regionAlgorithms.add(new CleanNullRegionBorders(traversableAreaBorderSize > 0));
+        regionAlgorithms.add(new FilterOutSmallRegions(settings.minUnconnectedRegionSize, settings.mergeRegionSize));
+        openBuilder = new OpenHeightfieldBuilder(minTraversableHeight, maxTraversableStep,
+                traversableAreaBorderSize, settings.smoothingThreshold, SpanFlags.WALKABLE,
+                settings.useConservativeExpansion, regionAlgorithms);
+
+        ArrayList<IContourAlgorithm> contourAlgorithms = new ArrayList<>();
+        contourAlgorithms.add(new MatchNullRegionEdges(settings.edgeMaxDeviation / cellSize));
+        contourAlgorithms.add(new NullRegionMaxEdge(maxEdgeLength));
+        contourBuilder = new ContourSetBuilder(contourAlgorithms);
+
+        polyMeshBuilder = new PolyMeshFieldBuilder(settings.maxVertsPerPoly);
+        detailMeshBuilder = new DetailMeshBuilder(settings.contourSampleDistance, settings.contourMaxDeviation);
+    }
+
+    private static int toVoxels(float value, float cell, int defaultValue) {
+        if (value == 0) {
+            return defaultValue;
+        }
+        return (int) Math.ceil(Math.max(Float.MIN_VALUE, value) / Math.max(Float.MIN_VALUE, cell));
+    }
+
+    /**
+     * Builds the navigation mesh of the supplied triangles and heightfields,
+     * restricted to a rectangle on the xz-plane.
+     *
+     * @param vertices     the triangle vertices (x, y, z)
+     * @param indices      the triangle indices
+     * @param heightfields the heightfields
+     * @param minX         the minimum x bound of the build area
+     * @param minZ         the minimum z bound of the build area
+     * @param maxX         the maximum x bound of the build area
+     * @param maxZ         the maximum z bound of the build area
+     * @param data         the intermediate data to collect, or {@code null}
+     * @param monitor      the monitor of the build
+     * @return the navigation mesh, or {@code null} if nothing is walkable
+     * @throws java.util.concurrent.CancellationException if the build is cancelled
+     */
+    TriangleMesh build(float[] vertices, int[] indices, List<HeightfieldGeometry> heightfields,
+            float minX, float minZ, float maxX, float maxZ, IntermediateData data, BuildMonitor monitor) {
+
+        if (data != null) {
+            data.reset();
+        }
+        monitor.stage(NavMeshBuildStage.VOXELIZATION, 0.05f);
+        long timerStart = (data != null) ? System.nanoTime() : 0;
+
+        SolidHeightfield solidField = buildSolidHeightfield(vertices, indices, heightfields, minX, minZ, maxX, maxZ);
+        monitor.record(NavMeshBuildStage.VOXELIZATION);
+        if (solidField == null || !solidField.hasSpans()) {
+            return null;
+        }
+        if (data != null) {
+            data.voxelizationTime = System.nanoTime() - timerStart;
+            data.setSolidHeightfield(solidField);
+        }
+        if (monitor.isReporting()) {
+            monitor.count(NavMeshBuildStage.VOXELIZATION, "spans", countSpans(solidField));
+        }
+
+        return buildFromSolid(solidField, data, monitor);
+    }
+
+    /**
+     * Runs the stages following the voxelization.
+     */
+    TriangleMesh buildFromSolid(SolidHeightfield solidField, IntermediateData data, BuildMonitor monitor) {
+        monitor.stage(NavMeshBuildStage.OPEN_HEIGHTFIELD, 0.2f);
+        long timerStart = (data != null) ? System.nanoTime() : 0;
+
+        OpenHeightfield openField = openBuilder.build(solidField, false);
+        monitor.record(NavMeshBuildStage.OPEN_HEIGHTFIELD);
+        if (openField == null) {
+            return null;
+        }
+        if (data != null) {
+            data.setOpenHeightfield(openField);
+        }
+        monitor.count(NavMeshBuildStage.OPEN_HEIGHTFIELD, "spans", openField.spanCount());
+
+        monitor.stage(NavMeshBuildStage.REGIONS, 0.3f);
+        openBuilder.generateNeighborLinks(openField);
+        openBuilder.generateDistanceField(openField);
+        openBuilder.blurDistanceField(openField);
+        openBuilder.generateRegions(openField);
+        monitor.record(NavMeshBuildStage.REGIONS);
+        monitor.count(NavMeshBuildStage.REGIONS, "regions", openField.regionCount());
+
+        if (data != null) {
+            data.regionGenTime = System.nanoTime() - timerStart;
+        }
+
+        monitor.stage(NavMeshBuildStage.CONTOURS, 0.6f);
+        timerStart = System.nanoTime();
+        ContourSet contours = contourBuilder.build(openField);
+        monitor.record(NavMeshBuildStage.CONTOURS);
+        if (contours == null) {
+            return null;
+        }
+        if (data != null) {
+            data.contourGenTime = System.nanoTime() - timerStart;
+            data.setContours(contours);
+        }
+        monitor.count(NavMeshBuildStage.CONTOURS, "contours", contours.size());
+
+        monitor.stage(NavMeshBuildStage.POLYGONS, 0.75f);
+        timerStart = System.nanoTime();
+        PolyMeshField polyMesh = polyMeshBuilder.build(contours);
+        monitor.record(NavMeshBuildStage.POLYGONS);
+        if (polyMesh == null) {
+            return null;
+        }
+        if (data != null) {
+            data.polyGenTime = System.nanoTime() - timerStart;
+            data.setPolyMesh(polyMesh);
+        }
+        monitor.count(NavMeshBuildStage.POLYGONS, "polygons", polyMesh.polyCount());
+        monitor.count(NavMeshBuildStage.POLYGONS, "vertices", polyMesh.vertCount());
+
+        monitor.stage(NavMeshBuildStage.DETAIL_MESH, 0.85f);
+        timerStart = System.nanoTime();
+        TriangleMesh mesh = detailMeshBuilder.build(polyMesh, openField);
+        monitor.record(NavMeshBuildStage.DETAIL_MESH);
+        if (mesh != null) {
+            if (data != null) {
+                data.finalMeshGenTime = System.nanoTime() - timerStart;
+            }
+            monitor.count(NavMeshBuildStage.DETAIL_MESH, "triangles", mesh.indices.length / 3);
+            monitor.count(NavMeshBuildStage.DETAIL_MESH, "vertices", mesh.vertCount());
+        }
+        return mesh;
+    }
+
+    private static long countSpans(SolidHeightfield solidField) {
+        long count = 0;
+        for (int depthIndex = 0; depthIndex < solidField.depth(); depthIndex++) {
+            for (int widthIndex = 0; widthIndex < solidField.width(); widthIndex++) {
+                for (HeightSpan span = solidField.getData(widthIndex, depthIndex); span != null; span = span.next()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Voxelizes the triangles and the heightfields into a single solid
+     * heightfield, then flags the low height and the ledge spans as the
+     * {@link SolidHeightfieldBuilder} does.
+     *
+     * @return the solid heightfield, or {@code null} if the sources do not
+     *         overlap the build area
+     */
+    SolidHeightfield buildSolidHeightfield(float[] vertices, int[] indices, List<HeightfieldGeometry> heightfields,
+            float minX, float minZ, float maxX, float maxZ) {
+
+        // with a single pipeline, the walkable bit is the WALKABLE flag itself
+        SolidHeightfield solidField = voxelize(new NavMeshPipeline[] { this },
+                vertices, indices, heightfields, minX, minZ, maxX, maxZ);
+        if (solidField != null) {
+            markSpans(solidField);
+        }
+        return solidField;
+    }
+
+    /**
+     * Builds the navigation meshes of several pipelines, which differ only by
+     * the agent settings, from the same sources. The sources are voxelized
+     * once for each group of {@value #MAX_PROFILES} pipelines: the flags of
+     * each span hold one walkable bit per pipeline of the group, set with the
+     * slope of that pipeline. The spans are then flagged again for each
+     * pipeline, which runs its own low height and ledge passes and the stages
+     * following the voxelization. Since these stages do not modify the solid
+     * heightfield, it is shared by all the pipelines of the group.
+     *
+     * @param pipelines    the pipelines, with the same cell size and cell height
+     * @param vertices     the triangle vertices (x, y, z)
+     * @param indices      the triangle indices
+     * @param heightfields the heightfields
+     * @param minX         the minimum x bound of the build area
+     * @param minZ         the minimum z bound of the build area
+     * @param maxX         the maximum x bound of the build area
+     * @param maxZ         the maximum z bound of the build area
+     * @param monitor      the monitor of the build
+     * @return the navigation mesh of each pipeline, {@code null} where nothing
+     *         is walkable
+     * @throws java.util.concurrent.CancellationException if the build is cancelled
+     */
+    static TriangleMesh[] buildProfiles(NavMeshPipeline[] pipelines, float[] vertices, int[] indices,
+            List<HeightfieldGeometry> heightfields, float minX, float minZ, float maxX, float maxZ,
+            BuildMonitor monitor) {
+
+        for (NavMeshPipeline pipeline : pipelines) {
+            if (pipeline.cellSize != pipelines[0].cellSize || pipeline.cellHeight != pipelines[0].cellHeight) {
+                throw new IllegalArgumentException("The profiles must share the cell size and the cell height.");
+            }
+        }
+
+        TriangleMesh[] meshes = new TriangleMesh[pipelines.length];
+        for (int first = 0; first < pipelines.length; first += MAX_PROFILES) {
+            NavMeshPipeline[] group = Arrays.copyOfRange(pipelines, first,
+                    Math.min(first + MAX_PROFILES, pipelines.length));
+            TriangleMesh[] groupMeshes = buildGroup(group, vertices, indices, heightfields,
+                    minX, minZ, maxX, maxZ, monitor);
+            System.arraycopy(groupMeshes, 0, meshes, first, group.length);
+        }
+        return meshes;
+    }
+
+    /**
+     * Builds the navigation meshes of at most {@value #MAX_PROFILES}
+     * pipelines from a single voxelization.
+     */
+    private static TriangleMesh[] buildGroup(NavMeshPipeline[] pipelines, float[] vertices, int[] indices,
+            List<HeightfieldGeometry> heightfields, float minX, float minZ, float maxX, float maxZ,
+            BuildMonitor monitor) {
+
+        TriangleMesh[] meshes = new TriangleMesh[pipelines.length];
+        monitor.stage(NavMeshBuildStage.VOXELIZATION, 0.05f);
+        SolidHeightfield solidField = voxelize(pipelines, vertices, indices, heightfields, minX, minZ, maxX, maxZ);
+        monitor.record(NavMeshBuildStage.VOXELIZATION);
+        if (solidField == null || !solidField.hasSpans()) {
+            return meshes;
+        }
+
+        int[] masks = saveFlags(solidField);
+        if (monitor.isReporting()) {
+            monitor.count(NavMeshBuildStage.VOXELIZATION, "spans", masks.length);
+        }
+
+        for (int p = 0; p < pipelines.length; p++) {
+            restoreFlags(solidField, masks, p);
+            pipelines[p].markSpans(solidField);
+            meshes[p] = pipelines[p].buildFromSolid(solidField, null, monitor);
+        }
+        return meshes;
+    }
+
+    /**
+     * Writes the sources into a new solid heightfield. The bit <code>p</code>
+     * of the span flags is set if the surface is walkable with the slope of
+     * the pipeline <code>p</code>; nmgen merges the flags of the overlapping
+     * spans bit by bit, so each bit ends up as if the pipeline had voxelized
+     * the sources alone, as long as there are at most
+     * {@value #MAX_PROFILES} pipelines.
+     *
+     * @return the solid heightfield, or {@code null} if the sources do not
+     *         overlap the build area
+     */
+    private static SolidHeightfield voxelize(NavMeshPipeline[] pipelines, float[] vertices, int[] indices,
+            List<HeightfieldGeometry> heightfields, float minX, float minZ, float maxX, float maxZ) {
+
+        float[] boundsMin = { Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY };
+        float[] boundsMax = { Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY };
+
+        for (int i = 0; i < vertices.length; i += 3) {
+            for (int k = 0; k < 3; k++) {
+                boundsMin[k] = Math.min(boundsMin[k], vertices[i + k]);
+                boundsMax[k] = Math.max(boundsMax[k], vertices[i + k]);
+            }
+        }
+        for (HeightfieldGeometry hf : heightfields) {
+            boundsMin[0] = Math.min(boundsMin[0], hf.getMinX());
+            boundsMin[1] = Math.min(boundsMin[1], hf.getMinY());
+            boundsMin[2] = Math.min(boundsMin[2], hf.getMinZ());
+            boundsMax[0] = Math.max(boundsMax[0], hf.getMaxX());
+            boundsMax[1] = Math.max(boundsMax[1], hf.getMaxY());
+            boundsMax[2] = Math.max(boundsMax[2], hf.getMaxZ());
+        }
+
+        boundsMin[0] = Math.max(boundsMin[0], minX);
+        boundsMin[2] = Math.max(boundsMin[2], minZ);
+        boundsMax[0] = Math.min(boundsMax[0], maxX);
+        boundsMax[2] = Math.min(boundsMax[2], maxZ);
+        if (boundsMin[0] >= boundsMax[0] || boundsMin[2] >= boundsMax[2] || boundsMin[1] > boundsMax[1]) {
+            return null;
+        }
+
+        SolidHeightfield solidField = new SolidHeightfield(pipelines[0].cellSize, pipelines[0].cellHeight);
+        try {
+            SET_BOUNDS.invokeExact((BoundedField) solidField, boundsMin, boundsMax);
+
+            if (indices.length > 0) {
+                int triangleCount = indices.length / 3;
+                int[] areaFlags = new int[triangleCount];
+                for (int p = 0; p < pipelines.length; p++) {
+                    int[] walkable = (int[]) MARK_WALKABLE.invokeExact(pipelines[p].solidBuilder, vertices, indices);
+                    for (int t = 0; t < triangleCount; t++) {
+                        if (walkable[t] == SpanFlags.WALKABLE) {
+                            areaFlags[t] |= 1 << p;
+                        }
+                    }
+                }
+
+                float inverseCellSize = 1 / solidField.cellSize();
+                float inverseCellHeight = 1 / solidField.cellHeight();
+                for (int t = 0; t < triangleCount; t++) {
+                    VOXELIZE_TRIANGLE.invokeExact(t, vertices, indices, areaFlags[t],
+                            inverseCellSize, inverseCellHeight, solidField);
+                }
+            }
+
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        float[] minNormalY = new float[pipelines.length];
+        for (int p = 0; p < pipelines.length; p++) {
+            minNormalY[p] = pipelines[p].minNormalY;
+        }
+        for (HeightfieldGeometry hf : heightfields) {
+            voxelize(hf, minNormalY, solidField);
+        }
+
+        return solidField;
+    }
+
+    /**
+     * Clears the walkable flag of the spans too low for the agent, and of the
+     * ledges if enabled.
+     */
+    private void markSpans(SolidHeightfield solidField) {
+        try {
+            MARK_LOW_HEIGHT.invokeExact(solidBuilder, solidField);
+            if (clipLedges) {
+                MARK_LEDGES.invokeExact(solidBuilder, solidField);
+            }
+
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * @return the flags of the spans, column by column.
+     */
+    private static int[] saveFlags(SolidHeightfield solidField) {
+        int[] flags = new int[(int) countSpans(solidField)];
+        int i = 0;
+        for (int depthIndex = 0; depthIndex < solidField.depth(); depthIndex++) {
+            for (int widthIndex = 0; widthIndex < solidField.width(); widthIndex++) {
+                for (HeightSpan span = solidField.getData(widthIndex, depthIndex); span != null; span = span.next()) {
+                    flags[i++] = span.flags();
+                }
+            }
+        }
+        return flags;
+    }
+
+    /**
+     * Flags the spans walkable for the pipeline <code>p</code>, using the
+     * flags saved by {@link #saveFlags(SolidHeightfield)}.
+     */
+    private static void restoreFlags(SolidHeightfield solidField, int[] masks, int p) {
+        int i = 0;
+        for (int depthIndex = 0; depthIndex < solidField.depth(); depthIndex++) {
+            for (int widthIndex = 0; widthIndex < solidField.width(); widthIndex++) {
+                for (HeightSpan span = solidField.getData(widthIndex, depthIndex); span != null; span = span.next()) {
+                    span.setFlags(((masks[i++] >>> p) & 1) != 0 ? SpanFlags.WALKABLE : 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a heightfield into the span columns of the solid heightfield.
+     * For each column, the span covers the heights of the surface at the
+     * corners of the column and at the heightfield samples inside the column,
+     * which are the extremes of the surface when a column is not larger than a
+     * heightfield cell. The bit <code>p</code> of the span flags is set if the
+     * slope at the center of the column is walkable for the pipeline
+     * <code>p</code>.
+     */
+    private static void voxelize(HeightfieldGeometry hf, float[] minNormalY, SolidHeightfield solidField) {
+        float[] boundsMin = solidField.boundsMin();
+        float[] boundsMax = solidField.boundsMax();
+        float cs = solidField.cellSize();
+        float inverseCellHeight = 1 / solidField.cellHeight();
+        float maxHeight = boundsMax[1] - boundsMin[1];
+
+        int x0 = Math.max(0, (int) Math.floor((hf.getMinX() - boundsMin[0]) / cs));
+        int x1 = Math.min(solidField.width() - 1, (int) Math.floor((hf.getMaxX() - boundsMin[0]) / cs));
+        int z0 = Math.max(0, (int) Math.floor((hf.getMinZ() - boundsMin[2]) / cs));
+        int z1 = Math.min(solidField.depth() - 1, (int) Math.floor((hf.getMaxZ() - boundsMin[2]) / cs));
+
+        for (int depthIndex = z0; depthIndex <= z1; depthIndex++) {
+            float cellMinZ = Math.max(boundsMin[2] + depthIndex * cs, hf.getMinZ());
+            float cellMaxZ = Math.min(boundsMin[2] + (depthIndex + 1) * cs, hf.getMaxZ());
+            if (cellMinZ >= cellMaxZ) {
+                continue;
+            }
+
+            for (int widthIndex = x0; widthIndex <= x1; widthIndex++) {
+                float cellMinX = Math.max(boundsMin[0] + widthIndex * cs, hf.getMinX());
+                float cellMaxX = Math.min(boundsMin[0] + (widthIndex + 1) * cs, hf.getMaxX());
+                if (cellMinX >= cellMaxX) {
+                    continue;
+                }
+
+                float h0 = hf.getHeight(cellMinX, cellMinZ);
+                float h1 = hf.getHeight(cellMaxX, cellMinZ);
+                float h2 = hf.getHeight(cellMinX, cellMaxZ);
+                float h3 = hf.getHeight(cellMaxX, cellMaxZ);
+                float minY = Math.min(Math.min(h0, h1), Math.min(h2, h3));
+                float maxY = Math.max(Math.max(h0, h1), Math.max(h2, h3));
+
+                // samples strictly inside the column
+                int sx0 = (int) Math.floor((cellMinX - hf.getOriginX()) / hf.getStepX()) + 1;
+                int sx1 = (int) Math.ceil((cellMaxX - hf.getOriginX()) / hf.getStepX()) - 1;
+                int sz0 = (int) Math.floor((cellMinZ - hf.getOriginZ()) / hf.getStepZ()) + 1;
+                int sz1 = (int) Math.ceil((cellMaxZ - hf.getOriginZ()) / hf.getStepZ()) - 1;
+                for (int sz = Math.max(sz0, 0); sz <= Math.min(sz1, hf.getSize() - 1); sz++) {
+                    for (int sx = Math.max(sx0, 0); sx <= Math.min(sx1, hf.getSize() - 1); sx++) {
+                        float h = hf.getSample(sx, sz);
+                        minY = Math.min(minY, h);
+                        maxY = Math.max(maxY, h);
+                    }
+                }
+
+                minY -= boundsMin[1];
+                maxY -= boundsMin[1];
+                if (maxY < 0 || minY > maxHeight) {
+                    continue;
+                }
+
+                int spanMin = clamp((int) Math.floor(Math.max(minY, 0) * inverseCellHeight), 0, Short.MAX_VALUE);
+                int spanMax = clamp((int) Math.ceil(Math.min(maxY, maxHeight) * inverseCellHeight), 0, Short.MAX_VALUE);
+
+                float normalY = hf.getNormalY((cellMinX + cellMaxX) / 2, (cellMinZ + cellMaxZ) / 2);
+                int flags = 0;
+                for (int p = 0; p < minNormalY.length; p++) {
+                    if (normalY > minNormalY[p]) {
+                        flags |= 1 << p;
+                    }
+                }
+
+                solidField.addData(widthIndex, depthIndex, spanMin, spanMax, flags);
+            }
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return (value < min) ? min : (value > max) ? max : value;
+    }
+
+}
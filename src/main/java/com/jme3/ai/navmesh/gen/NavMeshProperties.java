@@ -105,6 +105,8 @@ public class NavMeshProperties {
         settings.maxVertsPerPoly            = getInteger(prop, "maxVertsPerPoly");
         settings.contourSampleDistance      = getFloat(prop, "contourSampleDistance");
         settings.contourMaxDeviation        = getFloat(prop, "contourMaxDeviation");
+        settings.tileSize                   = getFloat(prop, "tileSize", 0);
+        settings.parallelism                = getInteger(prop, "parallelism", 0);
         
         return settings;
     }
@@ -113,10 +115,20 @@ public class NavMeshProperties {
         return Float.parseFloat(prop.getProperty(key));
     }
     
+    private static float getFloat(Properties prop, String key, float defaultValue) {
+        String value = prop.getProperty(key);
+        return (value != null) ? Float.parseFloat(value) : defaultValue;
+    }
+    
     private static int getInteger(Properties prop, String key) {
         return Integer.parseInt(prop.getProperty(key));
     }
     
+    private static int getInteger(Properties prop, String key, int defaultValue) {
+        String value = prop.getProperty(key);
+        return (value != null) ? Integer.parseInt(value) : defaultValue;
+    }
+    
     private static boolean getBoolean(Properties prop, String key) {
         return Boolean.parseBoolean(prop.getProperty(key));
     }
@@ -0,0 +1,230 @@
+package com.jme3.ai.navmesh.gen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * A set of values to try for some of the {@link NavMeshBuildSettings}. Every
+ * combination of the values is baked by
+ * {@link NavMeshBuilder#sweepSettingsAsync(java.util.List, NavMeshSettingsSweep, int)},
+ * and measured, so that the cheapest settings meeting the path quality
+ * requirements can be picked.
+ *
+ * <pre>
+ * NavMeshSettingsSweep sweep = new NavMeshSettingsSweep(settings);
+ * sweep.addRange("cellSize", NavMeshBuildSettings::setCellSize, 0.25f, 1f, 0.25f);
+ * sweep.addValues("maxEdgeLength", NavMeshBuildSettings::setMaxEdgeLength, 0, 8, 16);
+ * </pre>
+ *
+ * @author capdevon
+ */
+public class NavMeshSettingsSweep {
+
+    private final NavMeshBuildSettings baseSettings;
+    private final Map<String, Parameter> parameters = new LinkedHashMap<>();
+
+    /**
+     * Instantiate a <code>NavMeshSettingsSweep</code>
+     *
+     * @param baseSettings the settings of the fields not swept, which are copied
+     */
+    public NavMeshSettingsSweep(NavMeshBuildSettings baseSettings) {
+        this.baseSettings = baseSettings.clone();
+    }
+
+    /**
+     * Sweeps a field over a range of values.
+     *
+     * @param name   the name of the field, used in the results
+     * @param setter the setter of the field
+     * @param from   the first value
+     * @param to     the last value (inclusive)
+     * @param step   the increment between two values
+     * @return this sweep, for chaining
+     */
+    public NavMeshSettingsSweep addRange(String name, BiConsumer<NavMeshBuildSettings, Float> setter,
+            float from, float to, float step) {
+        if (step <= 0 || to < from) {
+            throw new IllegalArgumentException("Invalid range for " + name + ": " + from + ".." + to + " step " + step);
+        }
+        int count = (int) Math.floor((to - from) / step + 1e-4) + 1;
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = from + i * step;
+        }
+        return addValues(name, setter, values);
+    }
+
+    /**
+     * Sweeps a field over a list of values.
+     *
+     * @param name   the name of the field, used in the results
+     * @param setter the setter of the field
+     * @param values the values to try
+     * @return this sweep, for chaining
+     */
+    public NavMeshSettingsSweep addValues(String name, BiConsumer<NavMeshBuildSettings, Float> setter,
+            float... values) {
+        if (values.length == 0) {
+            throw new IllegalArgumentException("No values for " + name);
+        }
+        parameters.put(name, new Parameter(setter, values.clone()));
+        return this;
+    }
+
+    /**
+     * @return the number of combinations, that is the number of builds.
+     */
+    public int size() {
+        int size = 1;
+        for (Parameter param : parameters.values()) {
+            size *= param.values.length;
+        }
+        return size;
+    }
+
+    /**
+     * @return the settings of every combination, the last parameter varying
+     *         fastest.
+     */
+    List<Combination> getCombinations() {
+        List<Combination> list = new ArrayList<>(size());
+        int[] counters = new int[parameters.size()];
+        List<String> names = new ArrayList<>(parameters.keySet());
+
+        for (int n = size(); n > 0; n--) {
+            NavMeshBuildSettings settings = baseSettings.clone();
+            Map<String, Float> values = new LinkedHashMap<>();
+            for (int i = 0; i < counters.length; i++) {
+                Parameter param = parameters.get(names.get(i));
+                float value = param.values[counters[i]];
+                param.setter.accept(settings, value);
+                values.put(names.get(i), value);
+            }
+            list.add(new Combination(settings, values));
+
+            // next combination
+            for (int i = counters.length - 1; i >= 0; i--) {
+                if (++counters[i] < parameters.get(names.get(i)).values.length) {
+                    break;
+                }
+                counters[i] = 0;
+            }
+        }
+        return list;
+    }
+
+    private static class Parameter {
+
+        final BiConsumer<NavMeshBuildSettings, Float> setter;
+        final float[] values;
+
+        Parameter(BiConsumer<NavMeshBuildSettings, Float> setter, float[] values) {
+            this.setter = setter;
+            this.values = values;
+        }
+    }
+
+    /**
+     * The settings of one build of the sweep.
+     */
+    static class Combination {
+
+        final NavMeshBuildSettings settings;
+        final Map<String, Float> values;
+
+        Combination(NavMeshBuildSettings settings, Map<String, Float> values) {
+            this.settings = settings;
+            this.values = values;
+        }
+    }
+
+    /**
+     * The measures of the navigation mesh baked with one combination.
+     */
+    public static class Result {
+
+        private final NavMeshBuildSettings settings;
+        private final Map<String, Float> values;
+        private final NavMeshBuildReport report;
+        private final int cellCount;
+        private final int vertexCount;
+        private final long memoryBytes;
+
+        Result(Combination combination, NavMeshBuildReport report, int cellCount, int vertexCount) {
+            this.settings = combination.settings;
+            this.values = combination.values;
+            this.report = report;
+            this.cellCount = cellCount;
+            this.vertexCount = vertexCount;
+            this.memoryBytes = 4L * (vertexCount * 3 + cellCount * 3);
+        }
+
+        /**
+         * @return the complete settings of the build.
+         */
+        public NavMeshBuildSettings getSettings() {
+            return settings;
+        }
+
+        /**
+         * @return the values of the swept fields, by name.
+         */
+        public Map<String, Float> getValues() {
+            return Collections.unmodifiableMap(values);
+        }
+
+        /**
+         * @return the metrics of the build stages.
+         */
+        public NavMeshBuildReport getReport() {
+            return report;
+        }
+
+        /**
+         * @return the wall time of the build (in nanoseconds).
+         */
+        public long getBuildTime() {
+            return report.getTotalTime();
+        }
+
+        /**
+         * @return {@code true} if a navigation mesh was generated.
+         */
+        public boolean hasMesh() {
+            return cellCount > 0;
+        }
+
+        /**
+         * @return the number of cells of the navmesh, one for each triangle.
+         */
+        public int getCellCount() {
+            return cellCount;
+        }
+
+        public int getVertexCount() {
+            return vertexCount;
+        }
+
+        /**
+         * @return the size of the position and index buffers of the mesh (in bytes).
+         */
+        public long getMemoryBytes() {
+            return memoryBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Result " + values
+                    + " [buildTime=" + (getBuildTime() / 1_000_000) + " ms"
+                    + ", cells=" + cellCount
+                    + ", vertices=" + vertexCount
+                    + ", memory=" + memoryBytes + " bytes]";
+        }
+    }
+
+}
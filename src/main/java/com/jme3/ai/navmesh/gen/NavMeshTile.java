@@ -0,0 +1,114 @@
+package com.jme3.ai.navmesh.gen;
+
+import org.critterai.nmgen.TriangleMesh;
+
+/**
+ * A square portion of the world baked independently by the
+ * {@link NavMeshBuilder} when tiling is enabled. The tile keeps the triangles
+ * generated for its area, already clipped to its bounds, so that they can be
+ * stitched together with the neighbouring tiles.
+ *
+ * @author capdevon
+ */
+public class NavMeshTile {
+
+    private final int tileX;
+    private final int tileZ;
+    private final float minX;
+    private final float minZ;
+    private final float maxX;
+    private final float maxZ;
+    private TriangleMesh mesh;
+
+    /**
+     * Instantiate a <code>NavMeshTile</code>
+     *
+     * @param tileX the column of the tile in the tile grid
+     * @param tileZ the row of the tile in the tile grid
+     * @param minX  the minimum x bound of the tile (world units)
+     * @param minZ  the minimum z bound of the tile (world units)
+     * @param maxX  the maximum x bound of the tile (world units)
+     * @param maxZ  the maximum z bound of the tile (world units)
+     */
+    public NavMeshTile(int tileX, int tileZ, float minX, float minZ, float maxX, float maxZ) {
+        this.tileX = tileX;
+        this.tileZ = tileZ;
+        this.minX = minX;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxZ = maxZ;
+    }
+
+    public int getTileX() {
+        return tileX;
+    }
+
+    public int getTileZ() {
+        return tileZ;
+    }
+
+    /**
+     * @return the key identifying this tile in the tile grid.
+     */
+    public long getKey() {
+        return key(tileX, tileZ);
+    }
+
+    /**
+     * @return the key identifying the tile at the supplied grid position.
+     */
+    public static long key(int tileX, int tileZ) {
+        return ((long) tileX << 32) | (tileZ & 0xffffffffL);
+    }
+
+    public float getMinX() {
+        return minX;
+    }
+
+    public float getMinZ() {
+        return minZ;
+    }
+
+    public float getMaxX() {
+        return maxX;
+    }
+
+    public float getMaxZ() {
+        return maxZ;
+    }
+
+    /**
+     * @return the triangles generated for this tile, or {@code null} if the
+     *         tile contains no walkable surface.
+     */
+    public TriangleMesh getMesh() {
+        return mesh;
+    }
+
+    void setMesh(TriangleMesh mesh) {
+        this.mesh = mesh;
+    }
+
+    /**
+     * @return {@code true} if the tile contains at least one triangle.
+     */
+    public boolean hasMesh() {
+        return mesh != null && mesh.indices != null && mesh.indices.length > 0;
+    }
+
+    /**
+     * Tests whether the tile bounds, expanded by the given border, overlap the
+     * supplied rectangle on the xz-plane.
+     */
+    boolean overlaps(float rMinX, float rMinZ, float rMaxX, float rMaxZ, float border) {
+        return rMinX <= maxX + border && rMaxX >= minX - border
+            && rMinZ <= maxZ + border && rMaxZ >= minZ - border;
+    }
+
+    @Override
+    public String toString() {
+        return "NavMeshTile [tileX=" + tileX + ", tileZ=" + tileZ
+                + ", triangles=" + (hasMesh() ? mesh.indices.length / 3 : 0) + "]";
+    }
+
+}
@@ -0,0 +1,348 @@
+package com.jme3.ai.navmesh.gen;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.critterai.nmgen.TriangleMesh;
+
+import com.jme3.ai.navmesh.TiledNavMesh;
+
+/**
+ * The tiles written to disk by
+ * {@link NavMeshBuilder#buildNavMeshToFile(List, NavMeshBuildSettings, File)}.
+ * <p>
+ * The file holds the clipped triangles of each tile, followed by an index of
+ * the tiles, so that a single tile can be read without loading the others.
+ * The file is mapped in memory and read with {@link FileChannel#map}, so that
+ * the tiles are paged in by the operating system and not copied on the heap.
+ * The tiles are stitched when they are loaded into a {@link TiledNavMesh}:
+ * {@link #createNavMesh()} keeps at most three rows of tiles in memory, and
+ * {@link #loadTile(TiledNavMesh, int, int)} can be used to stream the navmesh
+ * together with the world, as {@link PagedNavMesh} does.
+ *
+ * @author capdevon
+ */
+public class NavMeshTileFile implements Closeable {
+
+    private static final int MAGIC = 0x4E4D5431; // "NMT1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int TRAILER_SIZE = 12;
+
+    /**
+     * The distance between the start of two mapped windows. Each window is
+     * twice as long, so that any read shorter than this distance fits in the
+     * window where it starts.
+     */
+    private static final long WINDOW_STEP = 1L << 29;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] windows;
+    private final float tileSize;
+    private final float maxHeightDelta;
+    private final Map<Long, Long> offsets = new LinkedHashMap<>();
+
+    private NavMeshTileFile(File file) throws IOException {
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "r");
+        this.channel = raf.getChannel();
+
+        try {
+            long size = channel.size();
+            windows = new MappedByteBuffer[(int) ((size + WINDOW_STEP - 1) / WINDOW_STEP)];
+            for (int i = 0; i < windows.length; i++) {
+                long start = i * WINDOW_STEP;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(2 * WINDOW_STEP, size - start));
+            }
+
+            ByteBuffer header = read(0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Invalid tile file: " + file);
+            }
+            tileSize = header.getFloat();
+            maxHeightDelta = header.getFloat();
+
+            ByteBuffer trailer = read(channel.size() - TRAILER_SIZE, TRAILER_SIZE);
+            long indexOffset = trailer.getLong();
+            if (trailer.getInt() != MAGIC) {
+                throw new IOException("Truncated tile file: " + file);
+            }
+
+            int count = read(indexOffset, 4).getInt();
+            ByteBuffer index = read(indexOffset + 4, count * 16);
+            for (int i = 0; i < count; i++) {
+                long key = NavMeshTile.key(index.getInt(), index.getInt());
+                offsets.put(key, index.getLong());
+            }
+
+        } catch (IOException | RuntimeException ex) {
+            raf.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Opens a tile file for reading.
+     *
+     * @param file the file to open
+     * @return the opened file
+     * @throws IOException if the file cannot be read or is not a tile file
+     */
+    public static NavMeshTileFile open(File file) throws IOException {
+        return new NavMeshTileFile(file);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public float getTileSize() {
+        return tileSize;
+    }
+
+    public int getTileCount() {
+        return offsets.size();
+    }
+
+    /**
+     * @return {@code true} if the file contains a tile at the supplied grid
+     *         position.
+     */
+    public boolean hasTile(int tileX, int tileZ) {
+        return offsets.containsKey(NavMeshTile.key(tileX, tileZ));
+    }
+
+    /**
+     * Reads a single tile.
+     *
+     * @return the tile, or {@code null} if the file does not contain it
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized NavMeshTile readTile(int tileX, int tileZ) throws IOException {
+        Long offset = offsets.get(NavMeshTile.key(tileX, tileZ));
+        if (offset == null) {
+            return null;
+        }
+
+        ByteBuffer header = read(offset, 12);
+        header.getInt();
+        header.getInt();
+        int vertLength = header.getInt();
+        TriangleMesh mesh = new TriangleMesh();
+        mesh.vertices = new float[vertLength];
+        read(offset + 12, vertLength * 4).asFloatBuffer().get(mesh.vertices);
+
+        long indexStart = offset + 12 + vertLength * 4L;
+        int indexLength = read(indexStart, 4).getInt();
+        mesh.indices = new int[indexLength];
+        read(indexStart + 4, indexLength * 4).asIntBuffer().get(mesh.indices);
+
+        NavMeshTile tile = new NavMeshTile(tileX, tileZ,
+                NavMeshTiler.tileEdge(tileX, tileSize), NavMeshTiler.tileEdge(tileZ, tileSize),
+                NavMeshTiler.tileEdge(tileX + 1, tileSize), NavMeshTiler.tileEdge(tileZ + 1, tileSize));
+        tile.setMesh(mesh);
+        return tile;
+    }
+
+    /**
+     * @return a view of the mapped file, which does not copy the bytes.
+     */
+    private ByteBuffer read(long position, int length) throws IOException {
+        if (position < 0 || length > WINDOW_STEP || position + length > channel.size()) {
+            throw new IOException("Unexpected end of tile file: " + file);
+        }
+        ByteBuffer window = windows[(int) (position / WINDOW_STEP)].duplicate();
+        int start = (int) (position % WINDOW_STEP);
+        window.position(start);
+        window.limit(start + length);
+        return window.slice();
+    }
+
+    /**
+     * Stitches a tile with its neighbours and puts it into the navmesh. The
+     * neighbours already in the navmesh are linked to the new tile.
+     *
+     * @param navMesh the navmesh to update
+     * @return {@code true} if the file contains the tile
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean loadTile(TiledNavMesh navMesh, int tileX, int tileZ) throws IOException {
+        NavMeshTile tile = readTile(tileX, tileZ);
+        if (tile == null) {
+            return false;
+        }
+
+        Map<Long, NavMeshTile> window = new HashMap<>();
+        window.put(tile.getKey(), tile);
+        int[][] neighbours = { { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 } };
+        for (int[] n : neighbours) {
+            NavMeshTile neighbour = readTile(tileX + n[0], tileZ + n[1]);
+            if (neighbour != null) {
+                window.put(neighbour.getKey(), neighbour);
+            }
+        }
+
+        setTile(navMesh, tile, window);
+        return true;
+    }
+
+    /**
+     * Creates a {@link TiledNavMesh} containing all the tiles of the file. The
+     * tiles are read row by row, so that only three rows are in memory at once.
+     *
+     * @return a new navmesh
+     * @throws IOException if an I/O error occurs
+     */
+    public TiledNavMesh createNavMesh() throws IOException {
+        TiledNavMesh navMesh = new TiledNavMesh(tileSize);
+
+        // group the tiles by row, sorted by column
+        Map<Integer, List<Integer>> rows = new HashMap<>();
+        for (long key : offsets.keySet()) {
+            rows.computeIfAbsent((int) key, z -> new ArrayList<>()).add((int) (key >> 32));
+        }
+        List<Integer> rowIndices = new ArrayList<>(rows.keySet());
+        Collections.sort(rowIndices);
+
+        Map<Long, NavMeshTile> window = new HashMap<>();
+        for (int tileZ : rowIndices) {
+            // drop the rows no longer adjacent, then read the next one
+            for (Iterator<NavMeshTile> it = window.values().iterator(); it.hasNext();) {
+                if (it.next().getTileZ() < tileZ - 1) {
+                    it.remove();
+                }
+            }
+            loadRow(rows, tileZ, window);
+            loadRow(rows, tileZ + 1, window);
+
+            List<Integer> columns = rows.get(tileZ);
+            Collections.sort(columns);
+            for (int tileX : columns) {
+                setTile(navMesh, window.get(NavMeshTile.key(tileX, tileZ)), window);
+            }
+        }
+        return navMesh;
+    }
+
+    private void loadRow(Map<Integer, List<Integer>> rows, int tileZ, Map<Long, NavMeshTile> window)
+            throws IOException {
+        List<Integer> columns = rows.get(tileZ);
+        if (columns == null) {
+            return;
+        }
+        for (int tileX : columns) {
+            long key = NavMeshTile.key(tileX, tileZ);
+            if (!window.containsKey(key)) {
+                window.put(key, readTile(tileX, tileZ));
+            }
+        }
+    }
+
+    private void setTile(TiledNavMesh navMesh, NavMeshTile tile, Map<Long, NavMeshTile> window) {
+        TriangleMesh mesh = NavMeshTileStitcher.stitchTile(tile, window, maxHeightDelta);
+        synchronized (navMesh) {
+            if (mesh != null) {
+                navMesh.setTile(tile.getTileX(), tile.getTileZ(), mesh.vertices, mesh.indices);
+            } else {
+                navMesh.removeTile(tile.getTileX(), tile.getTileZ());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+
+    @Override
+    public String toString() {
+        return "NavMeshTileFile [file=" + file + ", tileSize=" + tileSize + ", tiles=" + offsets.size() + "]";
+    }
+
+    /**
+     * Appends the baked tiles to a new tile file. Only the index of the tiles
+     * is kept in memory.
+     */
+    static class Writer implements Closeable {
+
+        private final DataOutputStream out;
+        private final Map<Long, Long> offsets = new LinkedHashMap<>();
+        private long position;
+
+        /**
+         * @param file           the file to create
+         * @param tileSize       the size of the tiles
+         * @param maxHeightDelta the tolerance used to stitch the tiles
+         */
+        Writer(File file, float tileSize, float maxHeightDelta) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeFloat(tileSize);
+            out.writeFloat(maxHeightDelta);
+            position = HEADER_SIZE;
+        }
+
+        /**
+         * Writes a tile. Tiles without triangles are skipped.
+         */
+        void write(NavMeshTile tile) throws IOException {
+            if (!tile.hasMesh()) {
+                return;
+            }
+            TriangleMesh mesh = tile.getMesh();
+            offsets.put(tile.getKey(), position);
+
+            out.writeInt(tile.getTileX());
+            out.writeInt(tile.getTileZ());
+            out.writeInt(mesh.vertices.length);
+            for (float v : mesh.vertices) {
+                out.writeFloat(v);
+            }
+            out.writeInt(mesh.indices.length);
+            for (int i : mesh.indices) {
+                out.writeInt(i);
+            }
+            position += 16 + 4L * (mesh.vertices.length + mesh.indices.length);
+        }
+
+        /**
+         * Writes the index and closes the file.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                long indexOffset = position;
+                out.writeInt(offsets.size());
+                for (Map.Entry<Long, Long> entry : offsets.entrySet()) {
+                    long key = entry.getKey();
+                    out.writeInt((int) (key >> 32));
+                    out.writeInt((int) key);
+                    out.writeLong(entry.getValue());
+                }
+                out.writeLong(indexOffset);
+                out.writeInt(MAGIC);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,173 @@
+package com.jme3.ai.navmesh.gen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.critterai.nmgen.TriangleMesh;
+
+import com.jme3.ai.navmesh.TiledNavMesh;
+import com.jme3.scene.Mesh;
+
+/**
+ * The tiles baked by the {@link NavMeshBuilder}, kept after the build so that
+ * single tiles can be rebaked when the scene geometry changes.
+ * <p>
+ * The tile set remembers the triangles sent to each {@link TiledNavMesh}
+ * created by {@link #createNavMesh()}, so that a neighbouring tile is replaced
+ * only when its seam actually changed. Several navmeshes created from the same
+ * tile set can be updated independently; the triangles of a navmesh are
+ * forgotten once it is no longer referenced.
+ *
+ * @author capdevon
+ */
+public class NavMeshTileSet {
+
+    private final NavMeshBuildSettings settings;
+    private final float tileSize;
+    private final Map<Long, NavMeshTile> tiles = new HashMap<>();
+    // the triangles sent to each navmesh, by tile key
+    private final Map<TiledNavMesh, Map<Long, TriangleMesh>> published = new WeakHashMap<>();
+
+    /**
+     * Instantiate an empty <code>NavMeshTileSet</code>
+     *
+     * @param settings the settings used to bake the tiles (copied)
+     */
+    NavMeshTileSet(NavMeshBuildSettings settings) {
+        this.settings = settings.clone();
+        this.tileSize = settings.tileSize;
+    }
+
+    /**
+     * @return a copy of the settings used to bake the tiles. Changing it does
+     *         not affect this tile set.
+     */
+    public NavMeshBuildSettings getSettings() {
+        return settings.clone();
+    }
+
+    /**
+     * @return the tile size at the time of the first build. Later changes to
+     *         the settings do not affect this tile set.
+     */
+    public float getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * @return the tile at the supplied grid position, or {@code null}.
+     */
+    public synchronized NavMeshTile getTile(int tileX, int tileZ) {
+        return tiles.get(NavMeshTile.key(tileX, tileZ));
+    }
+
+    /**
+     * @return a copy of the tiles in this set.
+     */
+    public synchronized List<NavMeshTile> getTiles() {
+        return new ArrayList<>(tiles.values());
+    }
+
+    synchronized void putTiles(Collection<NavMeshTile> baked) {
+        for (NavMeshTile tile : baked) {
+            tiles.put(tile.getKey(), tile);
+        }
+    }
+
+    float getMaxHeightDelta() {
+        return settings.maxTraversableStep + settings.cellHeight;
+    }
+
+    /**
+     * Stitches all the tiles into a single mesh.
+     *
+     * @return the navigation mesh, or {@code null} if no tile contains triangles
+     */
+    public synchronized Mesh createMesh() {
+        TriangleMesh triMesh = NavMeshTileStitcher.stitch(new ArrayList<>(tiles.values()), getMaxHeightDelta());
+        return (triMesh != null) ? NavMeshBuilder.createMesh(triMesh) : null;
+    }
+
+    /**
+     * Creates a {@link TiledNavMesh} containing all the tiles. The returned
+     * navmesh can be updated with
+     * {@link NavMeshBuilder#updateNavMesh(TiledNavMesh, NavMeshTileSet, List, com.jme3.bounding.BoundingBox)}.
+     *
+     * @return a new navmesh
+     */
+    public synchronized TiledNavMesh createNavMesh() {
+        TiledNavMesh navMesh = new TiledNavMesh(tileSize);
+        publishKeys(navMesh, tiles.keySet());
+        return navMesh;
+    }
+
+    /**
+     * Sends the supplied tiles and their four neighbours to the navmesh. The
+     * neighbours are stitched again, since their seam vertices may have
+     * changed, but they are replaced only if their triangles differ.
+     */
+    synchronized void publish(TiledNavMesh navMesh, Collection<NavMeshTile> changed) {
+        Set<Long> keys = new LinkedHashSet<>();
+        for (NavMeshTile tile : changed) {
+            int x = tile.getTileX(), z = tile.getTileZ();
+            keys.add(NavMeshTile.key(x, z));
+            keys.add(NavMeshTile.key(x - 1, z));
+            keys.add(NavMeshTile.key(x + 1, z));
+            keys.add(NavMeshTile.key(x, z - 1));
+            keys.add(NavMeshTile.key(x, z + 1));
+        }
+        publishKeys(navMesh, keys);
+    }
+
+    private void publishKeys(TiledNavMesh navMesh, Collection<Long> keys) {
+        float maxHeightDelta = getMaxHeightDelta();
+        Map<Long, TriangleMesh> sent = published.computeIfAbsent(navMesh, k -> new HashMap<>());
+        Map<Long, TriangleMesh> stitched = new HashMap<>();
+
+        // stitch everything first, so that the navmesh is locked only while
+        // the cells are replaced
+        for (long key : keys) {
+            NavMeshTile tile = tiles.get(key);
+            TriangleMesh mesh = (tile != null) ? NavMeshTileStitcher.stitchTile(tile, tiles, maxHeightDelta) : null;
+            if (!isSame(mesh, sent.get(key))) {
+                stitched.put(key, mesh);
+            }
+        }
+
+        synchronized (navMesh) {
+            for (Map.Entry<Long, TriangleMesh> entry : stitched.entrySet()) {
+                long key = entry.getKey();
+                int tileX = (int) (key >> 32);
+                int tileZ = (int) key;
+                TriangleMesh mesh = entry.getValue();
+                if (mesh != null) {
+                    navMesh.setTile(tileX, tileZ, mesh.vertices, mesh.indices);
+                    sent.put(key, mesh);
+                } else {
+                    navMesh.removeTile(tileX, tileZ);
+                    sent.remove(key);
+                }
+            }
+        }
+    }
+
+    private static boolean isSame(TriangleMesh a, TriangleMesh b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return Arrays.equals(a.indices, b.indices) && Arrays.equals(a.vertices, b.vertices);
+    }
+
+    @Override
+    public String toString() {
+        return "NavMeshTileSet [tileSize=" + tileSize + ", tiles=" + tiles.size() + "]";
+    }
+
+}
@@ -0,0 +1,388 @@
+package com.jme3.ai.navmesh.gen;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.critterai.nmgen.TriangleMesh;
+
+import com.jme3.ai.navmesh.gen.NavMeshTiler.FloatArray;
+import com.jme3.ai.navmesh.gen.NavMeshTiler.IntArray;
+
+/**
+ * Stitches the triangles of independently baked tiles together.
+ * <p>
+ * Each tile is stitched on its own: the T-junctions along its four seams are
+ * removed by splitting the seam edges at the vertices of the neighbouring
+ * tiles. After stitching, cells on both sides of a seam share their edges
+ * exactly, so {@link com.jme3.ai.navmesh.NavMesh#linkCells()} can connect
+ * them, and a single tile can be stitched again when one of its neighbours is
+ * rebuilt.
+ *
+ * @author capdevon
+ */
+final class NavMeshTileStitcher {
+
+    private static final float WELD_TOLERANCE = 1e-4f;
+
+    private NavMeshTileStitcher() {}
+
+    /**
+     * Stitches all the tiles into a single mesh, welding the vertices shared by
+     * several tiles.
+     *
+     * @param tiles          the baked tiles
+     * @param maxHeightDelta the maximum height difference between a seam edge
+     *                       and a vertex of the neighbouring tile for the
+     *                       vertex to be inserted into the edge
+     * @return the stitched mesh, or {@code null} if no tile contains triangles
+     */
+    static TriangleMesh stitch(List<NavMeshTile> tiles, float maxHeightDelta) {
+        Map<Long, NavMeshTile> index = new HashMap<>();
+        for (NavMeshTile tile : tiles) {
+            index.put(tile.getKey(), tile);
+        }
+
+        FloatArray verts = new FloatArray(1024);
+        IntArray tris = new IntArray(1024);
+        Map<VertexKey, Integer> welded = new HashMap<>();
+
+        for (NavMeshTile tile : tiles) {
+            TriangleMesh mesh = stitchTile(tile, index, maxHeightDelta);
+            if (mesh != null) {
+                append(mesh, verts, tris, welded);
+            }
+        }
+
+        if (tris.size() == 0) {
+            return null;
+        }
+
+        TriangleMesh result = new TriangleMesh();
+        result.vertices = verts.toArray();
+        result.indices = tris.toArray();
+        return result;
+    }
+
+    /**
+     * Stitches a single tile with its four neighbours. The neighbours are not
+     * modified.
+     *
+     * @param tile           the tile to stitch
+     * @param tiles          all the tiles, by {@link NavMeshTile#getKey()}
+     * @param maxHeightDelta the maximum height difference between a seam edge
+     *                       and a vertex of the neighbouring tile for the
+     *                       vertex to be inserted into the edge
+     * @return the stitched triangles of the tile, or {@code null} if the tile
+     *         contains no triangles
+     */
+    static TriangleMesh stitchTile(NavMeshTile tile, Map<Long, NavMeshTile> tiles, float maxHeightDelta) {
+        if (!tile.hasMesh()) {
+            return null;
+        }
+
+        FloatArray verts = new FloatArray(tile.getMesh().vertices.length);
+        IntArray tris = new IntArray(tile.getMesh().indices.length);
+        Map<VertexKey, Integer> welded = new HashMap<>();
+        append(tile.getMesh(), verts, tris, welded);
+
+        int tileX = tile.getTileX(), tileZ = tile.getTileZ();
+        Seam[] seams = {
+            new Seam(0, tile.getMinX(), tile.getMinZ(), tile.getMaxZ()),
+            new Seam(0, tile.getMaxX(), tile.getMinZ(), tile.getMaxZ()),
+            new Seam(2, tile.getMinZ(), tile.getMinX(), tile.getMaxX()),
+            new Seam(2, tile.getMaxZ(), tile.getMinX(), tile.getMaxX())
+        };
+        NavMeshTile[] neighbours = {
+            tiles.get(NavMeshTile.key(tileX - 1, tileZ)),
+            tiles.get(NavMeshTile.key(tileX + 1, tileZ)),
+            tiles.get(NavMeshTile.key(tileX, tileZ - 1)),
+            tiles.get(NavMeshTile.key(tileX, tileZ + 1))
+        };
+
+        // the seam vertices of the neighbours are appended to the vertex list,
+        // unused ones are removed by compact()
+        for (int i = 0; i < 4; i++) {
+            NavMeshTile neighbour = neighbours[i];
+            if (neighbour != null && neighbour.hasMesh()) {
+                addSeamVertices(neighbour.getMesh(), seams[i], verts, welded);
+            }
+        }
+
+        float[] vertices = verts.toArray();
+        for (Seam seam : seams) {
+            seam.collect(vertices);
+        }
+
+        int[] indices = removeSeamJunctions(vertices, tris.toArray(), seams, maxHeightDelta);
+        return compact(vertices, indices);
+    }
+
+    /**
+     * Appends the triangles of a mesh, welding its vertices with the ones
+     * already stored. Triangles collapsed by the welding are discarded.
+     */
+    private static void append(TriangleMesh mesh, FloatArray verts, IntArray tris, Map<VertexKey, Integer> welded) {
+        int[] remap = new int[mesh.vertCount()];
+        for (int i = 0; i < remap.length; i++) {
+            remap[i] = weld(mesh.vertices[i * 3], mesh.vertices[i * 3 + 1], mesh.vertices[i * 3 + 2], verts, welded);
+        }
+        for (int i = 0; i < mesh.indices.length; i += 3) {
+            int a = remap[mesh.indices[i]];
+            int b = remap[mesh.indices[i + 1]];
+            int c = remap[mesh.indices[i + 2]];
+            if (a != b && b != c && c != a) {
+                tris.add(a);
+                tris.add(b);
+                tris.add(c);
+            }
+        }
+    }
+
+    private static int weld(float x, float y, float z, FloatArray verts, Map<VertexKey, Integer> welded) {
+        VertexKey key = new VertexKey(x, y, z);
+        Integer index = welded.get(key);
+        if (index == null) {
+            index = verts.size() / 3;
+            verts.add(x);
+            verts.add(y);
+            verts.add(z);
+            welded.put(key, index);
+        }
+        return index;
+    }
+
+    private static void addSeamVertices(TriangleMesh mesh, Seam seam, FloatArray verts, Map<VertexKey, Integer> welded) {
+        for (int i = 0; i < mesh.vertCount(); i++) {
+            if (seam.contains(mesh.vertices, i)) {
+                weld(mesh.vertices[i * 3], mesh.vertices[i * 3 + 1], mesh.vertices[i * 3 + 2], verts, welded);
+            }
+        }
+    }
+
+    /**
+     * Splits every triangle edge lying on a seam at the seam vertices found
+     * strictly inside the edge.
+     */
+    private static int[] removeSeamJunctions(float[] vertices, int[] indices, Seam[] seams, float maxHeightDelta) {
+
+        IntArray out = new IntArray(indices.length);
+        IntArray polygon = new IntArray(16);
+        List<Integer> inserts = new ArrayList<>();
+
+        for (int t = 0; t < indices.length; t += 3) {
+            polygon.clear();
+            boolean split = false;
+
+            for (int e = 0; e < 3; e++) {
+                int a = indices[t + e];
+                int b = indices[t + (e + 1) % 3];
+                polygon.add(a);
+
+                inserts.clear();
+                for (Seam seam : seams) {
+                    if (seam.contains(vertices, a) && seam.contains(vertices, b)) {
+                        findSeamVertices(vertices, a, b, seam, maxHeightDelta, inserts);
+                        break;
+                    }
+                }
+                for (int v : inserts) {
+                    polygon.add(v);
+                    split = true;
+                }
+            }
+
+            if (split) {
+                triangulate(vertices, polygon, out);
+            } else {
+                out.add(indices[t]);
+                out.add(indices[t + 1]);
+                out.add(indices[t + 2]);
+            }
+        }
+
+        return out.toArray();
+    }
+
+    /**
+     * Collects, ordered from a to b, the seam vertices lying strictly inside the
+     * edge (a, b).
+     */
+    private static void findSeamVertices(float[] vertices, int a, int b, Seam seam,
+            float maxHeightDelta, List<Integer> store) {
+
+        int along = seam.along;
+        float start = vertices[a * 3 + along];
+        float end = vertices[b * 3 + along];
+        float lo = Math.min(start, end);
+        float hi = Math.max(start, end);
+        float length = end - start;
+
+        int first = store.size();
+        for (int v : seam.vertices) {
+            float s = vertices[v * 3 + along];
+            if (s <= lo) {
+                continue;
+            }
+            if (s >= hi) {
+                break;
+            }
+            if (v == a || v == b) {
+                continue;
+            }
+            // skip vertices belonging to another floor crossing the same seam
+            float t = (s - start) / length;
+            float y = vertices[a * 3 + 1] + (vertices[b * 3 + 1] - vertices[a * 3 + 1]) * t;
+            if (Math.abs(vertices[v * 3 + 1] - y) <= maxHeightDelta) {
+                store.add(v);
+            }
+        }
+
+        if (start > end) {
+            // candidates are sorted by ascending coordinate
+            for (int i = first, j = store.size() - 1; i < j; i++, j--) {
+                Integer tmp = store.get(i);
+                store.set(i, store.get(j));
+                store.set(j, tmp);
+            }
+        }
+    }
+
+    /**
+     * Ear clipping of a convex polygon that may contain collinear vertices.
+     * The winding of the resulting triangles matches the winding of the polygon.
+     */
+    private static void triangulate(float[] vertices, IntArray polygon, IntArray out) {
+        List<Integer> poly = new ArrayList<>(polygon.size());
+        for (int i = 0; i < polygon.size(); i++) {
+            poly.add(polygon.get(i));
+        }
+
+        float winding = 0;
+        for (int i = 1; i < poly.size() - 1; i++) {
+            winding += NavMeshTiler.signedAreaXZ(vertices, poly.get(0), poly.get(i), poly.get(i + 1));
+        }
+        float sign = Math.signum(winding);
+
+        while (poly.size() > 3) {
+            int n = poly.size();
+            int ear = -1;
+            for (int i = 0; i < n; i++) {
+                int prev = poly.get((i + n - 1) % n);
+                int next = poly.get((i + 1) % n);
+                float area = NavMeshTiler.signedAreaXZ(vertices, prev, poly.get(i), next);
+                if (area * sign > 1e-7f) {
+                    ear = i;
+                    break;
+                }
+            }
+            if (ear < 0) {
+                // only collinear vertices left
+                return;
+            }
+            out.add(poly.get((ear + n - 1) % n));
+            out.add(poly.get(ear));
+            out.add(poly.get((ear + 1) % n));
+            poly.remove(ear);
+        }
+
+        out.add(poly.get(0));
+        out.add(poly.get(1));
+        out.add(poly.get(2));
+    }
+
+    /**
+     * Removes the vertices not referenced by any triangle.
+     */
+    private static TriangleMesh compact(float[] vertices, int[] indices) {
+        int[] remap = new int[vertices.length / 3];
+        FloatArray verts = new FloatArray(vertices.length);
+        for (int i = 0; i < indices.length; i++) {
+            int v = indices[i];
+            if (remap[v] == 0) {
+                verts.add(vertices[v * 3]);
+                verts.add(vertices[v * 3 + 1]);
+                verts.add(vertices[v * 3 + 2]);
+                remap[v] = verts.size() / 3;
+            }
+            indices[i] = remap[v] - 1;
+        }
+
+        TriangleMesh result = new TriangleMesh();
+        result.vertices = verts.toArray();
+        result.indices = indices;
+        return result;
+    }
+
+    /**
+     * One of the four sides of a tile: the segment where
+     * <code>coord[axis] == value</code> and <code>min &lt;= coord[along] &lt;= max</code>.
+     */
+    private static final class Seam {
+
+        final int axis;
+        final int along;
+        final float value;
+        final float min;
+        final float max;
+        // the seam vertices, sorted along the seam
+        int[] vertices;
+
+        Seam(int axis, float value, float min, float max) {
+            this.axis = axis;
+            this.along = (axis == 0) ? 2 : 0;
+            this.value = value;
+            this.min = min;
+            this.max = max;
+        }
+
+        boolean contains(float[] v, int i) {
+            float s = v[i * 3 + along];
+            return v[i * 3 + axis] == value && s >= min && s <= max;
+        }
+
+        void collect(float[] v) {
+            List<Integer> list = new ArrayList<>();
+            for (int i = 0; i < v.length / 3; i++) {
+                if (contains(v, i)) {
+                    list.add(i);
+                }
+            }
+            list.sort((i, j) -> Float.compare(v[i * 3 + along], v[j * 3 + along]));
+            vertices = list.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Quantized vertex position used to weld vertices shared by several tiles.
+     */
+    private static final class VertexKey {
+
+        private final int x, y, z;
+
+        VertexKey(float x, float y, float z) {
+            this.x = Math.round(x / WELD_TOLERANCE);
+            this.y = Math.round(y / WELD_TOLERANCE);
+            this.z = Math.round(z / WELD_TOLERANCE);
+        }
+
+        @Override
+        public int hashCode() {
+            return (x * 73856093) ^ (y * 19349663) ^ (z * 83492791);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof VertexKey)) {
+                return false;
+            }
+            VertexKey other = (VertexKey) obj;
+            return x == other.x && y == other.y && z == other.z;
+        }
+    }
+
+}
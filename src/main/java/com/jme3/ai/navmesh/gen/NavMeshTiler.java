@@ -0,0 +1,330 @@
+package com.jme3.ai.navmesh.gen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.critterai.nmgen.TriangleMesh;
+
+/**
+ * Splits triangle soups into the square tiles used by the tiled build mode of
+ * the {@link NavMeshBuilder}, and clips triangles to tile bounds on the
+ * xz-plane.
+ * <p>
+ * The tile grid is anchored at the world origin, so a tile always covers the
+ * same area regardless of the extent of the source geometry. This keeps tile
+ * seams stable between builds.
+ *
+ * @author capdevon
+ */
+final class NavMeshTiler {
+
+    private NavMeshTiler() {}
+
+    /**
+     * Creates the tiles needed to cover the xz-extent of the supplied vertices.
+     *
+     * @param positions the vertex positions (x, y, z)
+     * @param tileSize  the width and depth of a tile
+     * @return the list of tiles, ordered by row then column
+     */
+    static List<NavMeshTile> createTiles(float[] positions, float tileSize) {
+        return createTiles(positions, Collections.emptyList(), tileSize);
+    }
+
+    /**
+     * Creates the tiles needed to cover the xz-extent of the supplied vertices
+     * and heightfields.
+     *
+     * @param positions    the vertex positions (x, y, z)
+     * @param heightfields the heightfields
+     * @param tileSize     the width and depth of a tile
+     * @return the list of tiles, ordered by row then column
+     */
+    static List<NavMeshTile> createTiles(float[] positions, List<HeightfieldGeometry> heightfields, float tileSize) {
+        if (positions.length < 3 && heightfields.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        float minX = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < positions.length; i += 3) {
+            minX = Math.min(minX, positions[i]);
+            maxX = Math.max(maxX, positions[i]);
+            minZ = Math.min(minZ, positions[i + 2]);
+            maxZ = Math.max(maxZ, positions[i + 2]);
+        }
+        for (HeightfieldGeometry hf : heightfields) {
+            minX = Math.min(minX, hf.getMinX());
+            maxX = Math.max(maxX, hf.getMaxX());
+            minZ = Math.min(minZ, hf.getMinZ());
+            maxZ = Math.max(maxZ, hf.getMaxZ());
+        }
+
+        return createTiles(minX, minZ, maxX, maxZ, tileSize);
+    }
+
+    /**
+     * Creates the tiles needed to cover the supplied rectangle on the xz-plane.
+     */
+    static List<NavMeshTile> createTiles(float minX, float minZ, float maxX, float maxZ, float tileSize) {
+        List<NavMeshTile> tiles = new ArrayList<>();
+        int tMinX = tileIndex(minX, tileSize);
+        int tMaxX = tileIndex(maxX, tileSize);
+        int tMinZ = tileIndex(minZ, tileSize);
+        int tMaxZ = tileIndex(maxZ, tileSize);
+
+        for (int tz = tMinZ; tz <= tMaxZ; tz++) {
+            for (int tx = tMinX; tx <= tMaxX; tx++) {
+                tiles.add(new NavMeshTile(tx, tz,
+                        tileEdge(tx, tileSize), tileEdge(tz, tileSize),
+                        tileEdge(tx + 1, tileSize), tileEdge(tz + 1, tileSize)));
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * @return the index of the tile containing the supplied coordinate.
+     */
+    static int tileIndex(float coord, float tileSize) {
+        return (int) Math.floor(coord / tileSize);
+    }
+
+    /**
+     * Returns the world coordinate of a tile edge. Every tile computes its
+     * bounds with this method, so two neighbouring tiles always share exactly
+     * the same float value on their common seam.
+     */
+    static float tileEdge(int index, float tileSize) {
+        return index * tileSize;
+    }
+
+    /**
+     * Clips a triangle soup to the supplied rectangle on the xz-plane. Triangles
+     * entirely inside the rectangle are copied as they are; triangles crossing
+     * the rectangle are clipped and re-triangulated; triangles outside are
+     * discarded. Vertices created by the clipping lie exactly on the rectangle
+     * edges.
+     *
+     * @param vertices      the vertex positions (x, y, z)
+     * @param indices       the triangle indices
+     * @param minX          the minimum x bound
+     * @param minZ          the minimum z bound
+     * @param maxX          the maximum x bound
+     * @param maxZ          the maximum z bound
+     * @param dropFlat      if {@code true}, triangles with no area on the
+     *                      xz-plane are discarded
+     * @return the clipped triangles
+     */
+    static TriangleMesh clip(float[] vertices, int[] indices,
+            float minX, float minZ, float maxX, float maxZ, boolean dropFlat) {
+
+        FloatArray outVerts = new FloatArray(indices.length);
+        IntArray outIndices = new IntArray(indices.length);
+
+        // vertices copied unchanged keep their index, so shared vertices stay shared
+        int[] remap = new int[vertices.length / 3];
+        Arrays.fill(remap, -1);
+
+        float[] poly = new float[3 * 8];
+        float[] scratch = new float[3 * 8];
+
+        for (int t = 0; t < indices.length; t += 3) {
+            int a = indices[t], b = indices[t + 1], c = indices[t + 2];
+
+            float triMinX = Math.min(vertices[a * 3], Math.min(vertices[b * 3], vertices[c * 3]));
+            float triMaxX = Math.max(vertices[a * 3], Math.max(vertices[b * 3], vertices[c * 3]));
+            float triMinZ = Math.min(vertices[a * 3 + 2], Math.min(vertices[b * 3 + 2], vertices[c * 3 + 2]));
+            float triMaxZ = Math.max(vertices[a * 3 + 2], Math.max(vertices[b * 3 + 2], vertices[c * 3 + 2]));
+
+            if (triMaxX < minX || triMinX > maxX || triMaxZ < minZ || triMinZ > maxZ) {
+                continue;
+            }
+
+            if (dropFlat && isFlat(vertices, a, b, c)) {
+                continue;
+            }
+
+            if (triMinX >= minX && triMaxX <= maxX && triMinZ >= minZ && triMaxZ <= maxZ) {
+                outIndices.add(remap(a, vertices, remap, outVerts));
+                outIndices.add(remap(b, vertices, remap, outVerts));
+                outIndices.add(remap(c, vertices, remap, outVerts));
+                continue;
+            }
+
+            System.arraycopy(vertices, a * 3, poly, 0, 3);
+            System.arraycopy(vertices, b * 3, poly, 3, 3);
+            System.arraycopy(vertices, c * 3, poly, 6, 3);
+
+            int n = 3;
+            n = clipPlane(poly, n, scratch, 0, minX, true);
+            n = clipPlane(scratch, n, poly, 0, maxX, false);
+            n = clipPlane(poly, n, scratch, 2, minZ, true);
+            n = clipPlane(scratch, n, poly, 2, maxZ, false);
+
+            if (n < 3) {
+                continue;
+            }
+
+            int base = outVerts.size() / 3;
+            outVerts.add(poly, n * 3);
+            for (int i = 1; i < n - 1; i++) {
+                if (dropFlat && isFlat(poly, 0, i, i + 1)) {
+                    continue;
+                }
+                outIndices.add(base);
+                outIndices.add(base + i);
+                outIndices.add(base + i + 1);
+            }
+        }
+
+        TriangleMesh result = new TriangleMesh();
+        result.vertices = outVerts.toArray();
+        result.indices = outIndices.toArray();
+        return result;
+    }
+
+    private static int remap(int index, float[] vertices, int[] remap, FloatArray outVerts) {
+        if (remap[index] < 0) {
+            remap[index] = outVerts.size() / 3;
+            outVerts.add(vertices[index * 3]);
+            outVerts.add(vertices[index * 3 + 1]);
+            outVerts.add(vertices[index * 3 + 2]);
+        }
+        return remap[index];
+    }
+
+    /**
+     * Sutherland-Hodgman clipping of a convex polygon against an axis aligned
+     * plane. Intersection points are snapped exactly onto the plane.
+     *
+     * @param in     the input polygon (x, y, z)
+     * @param n      the number of vertices of the input polygon
+     * @param out    the output polygon
+     * @param axis   0 for the x axis, 2 for the z axis
+     * @param value  the plane position along the axis
+     * @param keepAbove {@code true} to keep the side where coord &gt;= value
+     * @return the number of vertices of the output polygon
+     */
+    private static int clipPlane(float[] in, int n, float[] out, int axis, float value, boolean keepAbove) {
+        int m = 0;
+        for (int i = 0, j = n - 1; i < n; j = i, i++) {
+            float dj = keepAbove ? in[j * 3 + axis] - value : value - in[j * 3 + axis];
+            float di = keepAbove ? in[i * 3 + axis] - value : value - in[i * 3 + axis];
+            boolean insideJ = dj >= 0;
+            boolean insideI = di >= 0;
+
+            if (insideJ != insideI) {
+                float s = dj / (dj - di);
+                out[m * 3]     = in[j * 3]     + (in[i * 3]     - in[j * 3])     * s;
+                out[m * 3 + 1] = in[j * 3 + 1] + (in[i * 3 + 1] - in[j * 3 + 1]) * s;
+                out[m * 3 + 2] = in[j * 3 + 2] + (in[i * 3 + 2] - in[j * 3 + 2]) * s;
+                out[m * 3 + axis] = value;
+                m++;
+            }
+            if (insideI) {
+                out[m * 3]     = in[i * 3];
+                out[m * 3 + 1] = in[i * 3 + 1];
+                out[m * 3 + 2] = in[i * 3 + 2];
+                m++;
+            }
+        }
+        return m;
+    }
+
+    /**
+     * @return twice the signed area of the triangle projected on the xz-plane.
+     */
+    static float signedAreaXZ(float[] v, int a, int b, int c) {
+        float abx = v[b * 3] - v[a * 3];
+        float abz = v[b * 3 + 2] - v[a * 3 + 2];
+        float acx = v[c * 3] - v[a * 3];
+        float acz = v[c * 3 + 2] - v[a * 3 + 2];
+        return acx * abz - abx * acz;
+    }
+
+    private static boolean isFlat(float[] v, int a, int b, int c) {
+        return Math.abs(signedAreaXZ(v, a, b, c)) < 1e-6f;
+    }
+
+    /**
+     * A minimal growable float array.
+     */
+    static final class FloatArray {
+
+        private float[] data;
+        private int size;
+
+        FloatArray(int capacity) {
+            data = new float[Math.max(capacity, 16)];
+        }
+
+        void add(float value) {
+            ensureCapacity(size + 1);
+            data[size++] = value;
+        }
+
+        void add(float[] values, int count) {
+            ensureCapacity(size + count);
+            System.arraycopy(values, 0, data, size, count);
+            size += count;
+        }
+
+        float get(int index) {
+            return data[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        float[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > data.length) {
+                data = Arrays.copyOf(data, Math.max(capacity, data.length * 2));
+            }
+        }
+    }
+
+    /**
+     * A minimal growable int array.
+     */
+    static final class IntArray {
+
+        private int[] data;
+        private int size;
+
+        IntArray(int capacity) {
+            data = new int[Math.max(capacity, 16)];
+        }
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size++] = value;
+        }
+
+        int get(int index) {
+            return data[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+}
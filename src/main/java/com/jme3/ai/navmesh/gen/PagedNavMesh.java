@@ -0,0 +1,229 @@
+package com.jme3.ai.navmesh.gen;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.jme3.ai.navmesh.Cell;
+import com.jme3.ai.navmesh.TiledNavMesh;
+import com.jme3.math.Vector3f;
+
+/**
+ * A {@link TiledNavMesh} whose tiles are read from a {@link NavMeshTileFile}
+ * when they are touched, and dropped when they are no longer used, so that the
+ * memory used by the navmesh depends on the active area and not on the size of
+ * the world.
+ * <p>
+ * A tile is loaded by {@link #findClosestCell(Vector3f)}, together with the
+ * surrounding tiles, and by {@link #loadArea(float, float, float, float)} or
+ * {@link #loadCorridor(Vector3f, Vector3f, float)}. The links between two
+ * tiles are created when both tiles are resident, and removed when one of them
+ * is evicted. The pathfinder only walks the resident tiles: before computing a
+ * long path, the corridor between the start and the goal should be loaded.
+ * <p>
+ * When the estimated size of the resident tiles exceeds the memory budget, the
+ * least recently used tiles are evicted. The tiles requested by the current
+ * call are never evicted, so the budget may be exceeded by a single large
+ * request. The tiles around the previous closest cell lookup are not evicted
+ * either: a pathfinder resolves the start of a path, then its goal, and the
+ * tiles loaded for the goal must not evict the tiles around the start.
+ *
+ * @author capdevon
+ */
+public class PagedNavMesh extends TiledNavMesh {
+
+    private static final Logger logger = Logger.getLogger(PagedNavMesh.class.getName());
+
+    /**
+     * The estimated heap size of a cell: the cell itself, its three vertices,
+     * its plane, its three sides and the pathfinding state.
+     */
+    public static final long BYTES_PER_CELL = 640;
+
+    private final NavMeshTileFile file;
+    // the resident tiles, in access order, with their estimated size
+    private final LinkedHashMap<Long, Long> resident = new LinkedHashMap<>(16, 0.75f, true);
+    // the tiles loaded around the point of the last closest cell lookup
+    private Set<Long> lastLookup = new HashSet<>();
+    private long memoryBudget;
+    private long residentBytes;
+
+    /**
+     * Instantiate an empty <code>PagedNavMesh</code>
+     *
+     * @param file         the tile file, which must stay open while the navmesh
+     *                     is used
+     * @param memoryBudget the maximum estimated size of the resident tiles
+     *                     (bytes)
+     */
+    public PagedNavMesh(NavMeshTileFile file, long memoryBudget) {
+        super(file.getTileSize());
+        this.file = file;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Loads the tiles overlapping a rectangle of the xz-plane.
+     *
+     * @param minX the minimum x coordinate (world units)
+     * @param minZ the minimum z coordinate (world units)
+     * @param maxX the maximum x coordinate (world units)
+     * @param maxZ the maximum z coordinate (world units)
+     * @return the number of tiles read from the file
+     * @throws IOException if a tile cannot be read
+     */
+    public synchronized int loadArea(float minX, float minZ, float maxX, float maxZ) throws IOException {
+        return loadTiles(tileIndex(minX), tileIndex(minZ), tileIndex(maxX), tileIndex(maxZ),
+                new HashSet<>(), new HashSet<>());
+    }
+
+    /**
+     * Loads the tiles between two points, so that a path between them can be
+     * found.
+     *
+     * @param start  the start of the path
+     * @param goal   the goal of the path
+     * @param margin the distance around the straight line where the path may
+     *               pass (world units)
+     * @return the number of tiles read from the file
+     * @throws IOException if a tile cannot be read
+     */
+    public synchronized int loadCorridor(Vector3f start, Vector3f goal, float margin) throws IOException {
+        return loadArea(Math.min(start.x, goal.x) - margin, Math.min(start.z, goal.z) - margin,
+                Math.max(start.x, goal.x) + margin, Math.max(start.z, goal.z) + margin);
+    }
+
+    /**
+     * Loads the tile containing the point and the surrounding tiles before
+     * searching the closest cell. The tiles of the previous lookup stay
+     * resident, so that the start of a path is not evicted while its goal is
+     * resolved. If a tile cannot be read, only the resident tiles are
+     * searched.
+     */
+    @Override
+    public synchronized Cell findClosestCell(Vector3f point) {
+        int tileX = tileIndex(point.x);
+        int tileZ = tileIndex(point.z);
+        Set<Long> requested = new HashSet<>();
+        try {
+            loadTiles(tileX - 1, tileZ - 1, tileX + 1, tileZ + 1, requested, lastLookup);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to load the tiles around " + point, ex);
+        }
+        lastLookup = requested;
+        return super.findClosestCell(point);
+    }
+
+    /**
+     * Loads the tiles of a range, then evicts the least recently used tiles,
+     * except the requested and the pinned ones.
+     *
+     * @param requested filled with the tiles of the range
+     * @param pinned    the other tiles which must stay resident
+     */
+    private int loadTiles(int minTileX, int minTileZ, int maxTileX, int maxTileZ,
+            Set<Long> requested, Set<Long> pinned) throws IOException {
+        int count = 0;
+        for (int tileZ = minTileZ; tileZ <= maxTileZ; tileZ++) {
+            for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                if (!file.hasTile(tileX, tileZ)) {
+                    continue;
+                }
+                long key = NavMeshTile.key(tileX, tileZ);
+                requested.add(key);
+                // get() also moves a resident tile to the end of the LRU order
+                if (resident.get(key) == null) {
+                    file.loadTile(this, tileX, tileZ);
+                    long bytes = getTileCellCount(tileX, tileZ) * BYTES_PER_CELL;
+                    resident.put(key, bytes);
+                    residentBytes += bytes;
+                    count++;
+                }
+            }
+        }
+        evict(requested, pinned);
+        return count;
+    }
+
+    /**
+     * Evicts the least recently used tiles until the resident tiles fit in the
+     * memory budget.
+     *
+     * @param requested the tiles of the current request, which must stay resident
+     * @param pinned    the other tiles which must stay resident
+     */
+    private void evict(Set<Long> requested, Set<Long> pinned) {
+        for (Iterator<Map.Entry<Long, Long>> it = resident.entrySet().iterator(); it.hasNext();) {
+            if (residentBytes <= memoryBudget) {
+                break;
+            }
+            Map.Entry<Long, Long> entry = it.next();
+            long key = entry.getKey();
+            if (!requested.contains(key) && !pinned.contains(key)) {
+                removeTile((int) (key >> 32), (int) key);
+                residentBytes -= entry.getValue();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Evicts all the tiles. They are read again from the file when touched.
+     */
+    @Override
+    public synchronized void clear() {
+        super.clear();
+        resident.clear();
+        residentBytes = 0;
+        lastLookup = new HashSet<>();
+    }
+
+    private int tileIndex(float coord) {
+        return (int) Math.floor(coord / getTileSize());
+    }
+
+    public NavMeshTileFile getFile() {
+        return file;
+    }
+
+    public synchronized long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Sets the maximum estimated size of the resident tiles. The least
+     * recently used tiles are evicted if they no longer fit.
+     *
+     * @param memoryBudget the budget (bytes)
+     */
+    public synchronized void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        evict(new HashSet<>(), new HashSet<>());
+    }
+
+    /**
+     * @return the number of tiles read from the file and not evicted yet.
+     */
+    public synchronized int getResidentTileCount() {
+        return resident.size();
+    }
+
+    /**
+     * @return the estimated size of the resident tiles (bytes).
+     */
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "PagedNavMesh [file=" + file.getFile() + ", tiles=" + getResidentTileCount()
+                + ", bytes=" + getResidentBytes() + ", budget=" + getMemoryBudget() + "]";
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.jme3.ai.navmesh.gen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.Matrix4f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+
+/**
+ * A mesh placed several times in the scene, used as source for the navmesh
+ * generation.
+ * <p>
+ * {@link GeometryProviderBuilder} replaces the geometries sharing the same
+ * {@link Mesh}, such as the clones placed under an
+ * {@link com.jme3.scene.instancing.InstancedNode}, with a single
+ * <code>SharedMeshGeometry</code> holding the mesh once and the world matrix
+ * of each instance. The mesh is read once per instance while the triangles
+ * are extracted, and is never copied or merged.
+ *
+ * @author capdevon
+ */
+public class SharedMeshGeometry extends Geometry {
+
+    private final List<Matrix4f> transforms = new ArrayList<>();
+    private BoundingVolume worldBound;
+
+    /**
+     * Instantiate a <code>SharedMeshGeometry</code>
+     *
+     * @param name the name of the geometry
+     * @param mesh the mesh shared by the instances
+     */
+    public SharedMeshGeometry(String name, Mesh mesh) {
+        super(name, mesh);
+    }
+
+    /**
+     * Adds an instance of the mesh.
+     *
+     * @param transform  the world matrix of the instance, which is copied
+     * @param worldBound the world bound of the instance, or {@code null}
+     */
+    public void addInstance(Matrix4f transform, BoundingVolume worldBound) {
+        transforms.add(transform.clone());
+        if (worldBound != null) {
+            if (this.worldBound == null) {
+                this.worldBound = worldBound.clone(null);
+            } else {
+                this.worldBound.mergeLocal(worldBound);
+            }
+        }
+    }
+
+    /**
+     * @return the world matrices of the instances.
+     */
+    public List<Matrix4f> getTransforms() {
+        return Collections.unmodifiableList(transforms);
+    }
+
+    public int getInstanceCount() {
+        return transforms.size();
+    }
+
+    /**
+     * @return the union of the world bounds of the instances.
+     */
+    @Override
+    public BoundingVolume getWorldBound() {
+        return worldBound;
+    }
+
+    @Override
+    public String toString() {
+        return getName() + " (SharedMeshGeometry, " + transforms.size() + " instances)";
+    }
+
+}
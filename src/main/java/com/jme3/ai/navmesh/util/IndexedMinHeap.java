@@ -0,0 +1,185 @@
+package com.jme3.ai.navmesh.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A binary min-heap of integer ids in {@code [0, capacity)}, keyed by a float,
+ * which knows the position of each id in the heap.
+ * <p>
+ * Unlike {@link MinHeap}, which stores objects in a synchronized
+ * {@link java.util.Vector} and must be searched and sorted again when a key
+ * changes, the ids and the keys are stored in primitive arrays, and
+ * {@link #decreaseKey(int, float)} moves the id up in O(log n). Nothing is
+ * allocated after the construction, and the heap is not thread-safe.
+ *
+ * @author capdevon
+ */
+public class IndexedMinHeap {
+
+    // the ids, in heap order
+    private final int[] heap;
+    // the key of each id
+    private final float[] keys;
+    // the position of each id in the heap, or -1
+    private final int[] positions;
+    private int size;
+
+    /**
+     * Instantiate an <code>IndexedMinHeap</code>
+     *
+     * @param capacity the number of ids (the ids range from 0 to capacity - 1)
+     */
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        keys = new float[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * Adds an id to the heap.
+     *
+     * @param id  the id, not already in the heap
+     * @param key the key of the id
+     */
+    public void add(int id, float key) {
+        if (positions[id] >= 0) {
+            throw new IllegalArgumentException("id already in the heap: " + id);
+        }
+        keys[id] = key;
+        heap[size] = id;
+        positions[id] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Lowers the key of an id in the heap. A greater key is ignored.
+     *
+     * @param id  the id, in the heap
+     * @param key the new key of the id
+     */
+    public void decreaseKey(int id, float key) {
+        int position = positions[id];
+        if (position < 0) {
+            throw new IllegalArgumentException("id not in the heap: " + id);
+        }
+        if (key < keys[id]) {
+            keys[id] = key;
+            siftUp(position);
+        }
+    }
+
+    /**
+     * Removes the id with the lowest key.
+     *
+     * @return the id
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public int poll() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        int top = heap[0];
+        positions[top] = -1;
+        if (--size > 0) {
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * @return the id with the lowest key, without removing it.
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public int peek() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return heap[0];
+    }
+
+    /**
+     * @param id the id
+     * @return {@code true} if the id is in the heap.
+     */
+    public boolean contains(int id) {
+        return positions[id] >= 0;
+    }
+
+    /**
+     * @param id an id, in the heap
+     * @return the key of the id.
+     */
+    public float getKey(int id) {
+        return keys[id];
+    }
+
+    /**
+     * Removes all the ids, in O(size).
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of ids the heap can hold.
+     */
+    public int getCapacity() {
+        return positions.length;
+    }
+
+    private void siftUp(int position) {
+        int id = heap[position];
+        float key = keys[id];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            int parentId = heap[parent];
+            if (keys[parentId] <= key) {
+                break;
+            }
+            heap[position] = parentId;
+            positions[parentId] = position;
+            position = parent;
+        }
+        heap[position] = id;
+        positions[id] = position;
+    }
+
+    private void siftDown(int position) {
+        int id = heap[position];
+        float key = keys[id];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) {
+                child++;
+            }
+            int childId = heap[child];
+            if (key <= keys[childId]) {
+                break;
+            }
+            heap[position] = childId;
+            positions[childId] = position;
+            position = child;
+        }
+        heap[position] = id;
+        positions[id] = position;
+    }
+
+}
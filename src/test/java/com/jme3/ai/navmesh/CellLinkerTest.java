@@ -0,0 +1,73 @@
+package com.jme3.ai.navmesh;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import com.jme3.math.Vector3f;
+
+/**
+ * Checks the linking of the cells by {@link CellLinker}.
+ *
+ * @author capdevon
+ */
+public class CellLinkerTest {
+
+    // on either side of a multiple of half a millimeter
+    private static final float LEFT = 0.0004999f, RIGHT = 0.0005001f;
+
+    /**
+     * Two cells whose shared edge is a fraction of the epsilon apart, across
+     * a grid line of the welding: the edge must be linked.
+     */
+    @Test
+    public void testLinkEdgeAcrossGridLine() {
+        NavMesh navMesh = new NavMesh();
+        navMesh.addCell(new Vector3f(LEFT, 0, 0), new Vector3f(LEFT, 0, 1), new Vector3f(-1, 0, 0.5f));
+        navMesh.addCell(new Vector3f(RIGHT, 0, 1), new Vector3f(RIGHT, 0, 0), new Vector3f(1, 0, 0.5f));
+        Cell left = navMesh.getCell(0), right = navMesh.getCell(1);
+
+        CellLinker.link(new Cell[] { left, right }, 2);
+        assertEquals(1, countLinks(left, right));
+        assertEquals(1, countLinks(right, left));
+    }
+
+    /**
+     * @return the number of sides of the cell linked to the other cell.
+     */
+    private static int countLinks(Cell cell, Cell other) {
+        int count = 0;
+        for (int side = 0; side < 3; side++) {
+            if (cell.getLink(side) == other) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The same cells as flat arrays, whose vertices are not shared.
+     */
+    @Test
+    public void testLinkFlatEdgeAcrossGridLine() {
+        float[] positions = {
+            LEFT, 0, 0, LEFT, 0, 1, -1, 0, 0.5f,
+            RIGHT, 0, 1, RIGHT, 0, 0, 1, 0, 0.5f };
+        int[] corners = { 0, 1, 2, 3, 4, 5 };
+
+        int[] links = CellLinker.link(positions, corners, false);
+        assertArrayEquals(new int[] { 1, -1, -1, 0, -1, -1 }, links);
+    }
+
+    /**
+     * Points farther apart than the epsilon are not welded.
+     */
+    @Test
+    public void testWeldWithinEpsilon() {
+        float e = CellLinker.LINK_EPSILON;
+        float[] points = { LEFT, 0, 0, RIGHT, 0, 0, LEFT + e * 1.5f, 0, 0, RIGHT, e * 0.2f, -e * 0.2f };
+        assertArrayEquals(new int[] { 0, 0, 2, 0 }, CellLinker.weld(points));
+    }
+
+}
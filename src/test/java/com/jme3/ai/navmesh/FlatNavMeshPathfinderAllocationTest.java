@@ -0,0 +1,109 @@
+package com.jme3.ai.navmesh;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.jme3.math.Vector3f;
+
+/**
+ * Checks that a path query of {@link FlatNavMeshPathfinder} allocates nothing
+ * once warmed up: {@link FlatNavMeshPathfinder#computePath(Vector3f)} followed
+ * by the copy of the corners into a reused array and a reused list.
+ * <p>
+ * The bytes are measured by the thread MXBean of the JVM: the test is skipped
+ * if it does not measure them.
+ *
+ * @author capdevon
+ */
+public class FlatNavMeshPathfinderAllocationTest {
+
+    private static final int SIZE = 60;
+    private static final int QUERIES = 200;
+
+    @Test
+    public void testComputePathWithoutAllocation() {
+        ThreadMXBean mxBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(mxBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) mxBean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        FlatNavMeshPathfinder pathfinder = new FlatNavMeshPathfinder(createTerrain());
+        pathfinder.setEntityRadius(0.25f);
+
+        Random random = new Random(42);
+        Vector3f[] starts = new Vector3f[QUERIES], goals = new Vector3f[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            starts[i] = new Vector3f(random.nextFloat() * SIZE, 0, random.nextFloat() * SIZE);
+            goals[i] = new Vector3f(random.nextFloat() * SIZE, 0, random.nextFloat() * SIZE);
+        }
+        float[] corners = new float[3 * 256];
+        List<Vector3f> cornerList = new ArrayList<>();
+        Vector3f goal = new Vector3f();
+
+        // the first rounds warm up the JIT and grow the buffers to the longest path
+        for (int round = 0; round < 3; round++) {
+            runQueries(pathfinder, starts, goals, goal, corners, cornerList);
+        }
+
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        int cornerCount = runQueries(pathfinder, starts, goals, goal, corners, cornerList);
+        bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+        // the paths go round the holes
+        assertTrue(cornerCount > 2 * QUERIES);
+        assertEquals(0L, bytes, "bytes allocated by " + QUERIES + " queries");
+    }
+
+    /**
+     * @return the total number of corners of the paths found.
+     */
+    private static int runQueries(FlatNavMeshPathfinder pathfinder, Vector3f[] starts, Vector3f[] goals,
+            Vector3f goal, float[] corners, List<Vector3f> cornerList) {
+        int cornerCount = 0;
+        for (int i = 0; i < starts.length; i++) {
+            pathfinder.setPosition(starts[i]);
+            if (pathfinder.computePath(goal.set(goals[i]))) {
+                cornerCount += pathfinder.getCorners(corners);
+                pathfinder.getCornersNonAlloc(cornerList);
+            }
+        }
+        return cornerCount;
+    }
+
+    /**
+     * A grid of quads of one world unit on rolling hills, with walls of holes,
+     * so that the paths have corners.
+     */
+    private static FlatNavMesh createTerrain() {
+        NavMesh navMesh = new IndexedNavMesh();
+        for (int z = 0; z < SIZE; z++) {
+            for (int x = 0; x < SIZE; x++) {
+                if (x % 10 == 5 && z % 20 < 17) {
+                    continue;
+                }
+                Vector3f a = vertex(x, z), b = vertex(x, z + 1);
+                Vector3f c = vertex(x + 1, z + 1), d = vertex(x + 1, z);
+                navMesh.addCell(a, b, c);
+                navMesh.addCell(a, c, d);
+            }
+        }
+        navMesh.linkCells();
+        return FlatNavMesh.fromNavMesh(navMesh);
+    }
+
+    private static Vector3f vertex(int x, int z) {
+        return new Vector3f(x, (float) (Math.sin(x * 0.1) * 3 + Math.cos(z * 0.07) * 2), z);
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.jme3.ai.navmesh.gen;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.critterai.nmgen.TriangleMesh;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the profiles sharing a voxelization get the same navmesh as if
+ * each profile was built alone.
+ *
+ * @author capdevon
+ */
+public class NavMeshPipelineTest {
+
+    private static final int SIZE = 64;
+
+    /**
+     * More profiles than the bits surviving the merge of the span flags by
+     * nmgen, on a terrain crossed by a flat deck, so that the spans of the
+     * overlapping triangles are merged. The slopes are not ordered, so that a
+     * lost or sign-extended bit changes the walkable area of a profile.
+     */
+    @Test
+    public void testManyProfilesOnOverlappingGeometry() {
+        assumeTrue(NavMeshPipeline.isSupported());
+
+        float[] slopes = { 20, 25, 30, 35, 40, 45, 50, 60, 10, 15 };
+        NavMeshBuildSettings settings = new NavMeshBuildSettings();
+        settings.setCellSize(0.5f);
+        settings.setCellHeight(0.25f);
+        settings.setClipLedges(true);
+
+        NavMeshPipeline[] pipelines = new NavMeshPipeline[slopes.length];
+        for (int p = 0; p < pipelines.length; p++) {
+            NavMeshAgentProfile profile = new NavMeshAgentProfile("p" + p, 0.3f + 0.1f * p, 1.8f, 0.5f, slopes[p]);
+            pipelines[p] = new NavMeshPipeline(profile.applyTo(settings));
+        }
+
+        TriangleMesh sources = createSources();
+        List<HeightfieldGeometry> heightfields = Collections.emptyList();
+        float min = Float.NEGATIVE_INFINITY, max = Float.POSITIVE_INFINITY;
+
+        TriangleMesh[] shared = NavMeshPipeline.buildProfiles(pipelines, sources.vertices, sources.indices,
+                heightfields, min, min, max, max, new BuildMonitor(null, null, null));
+        assertEquals(pipelines.length, shared.length);
+
+        for (int p = 0; p < pipelines.length; p++) {
+            TriangleMesh alone = pipelines[p].build(sources.vertices, sources.indices, heightfields,
+                    min, min, max, max, null, new BuildMonitor(null, null, null));
+            if (alone == null) {
+                assertNull(shared[p], "profile " + p);
+            } else {
+                assertArrayEquals(alone.vertices, shared[p].vertices, "profile " + p);
+                assertArrayEquals(alone.indices, shared[p].indices, "profile " + p);
+            }
+        }
+    }
+
+    /**
+     * A wavy terrain, and a flat deck over its middle half.
+     */
+    private static TriangleMesh createSources() {
+        int deck = SIZE / 2;
+        float[] vertices = new float[(SIZE * SIZE + 4) * 3];
+        int v = 0;
+        for (int z = 0; z < SIZE; z++) {
+            for (int x = 0; x < SIZE; x++) {
+                vertices[v++] = x;
+                vertices[v++] = (float) (Math.sin(x * 0.15) * 6 + Math.cos(z * 0.11) * 5);
+                vertices[v++] = z;
+            }
+        }
+        float[][] corners = { { deck / 2, deck / 2 }, { deck / 2, deck * 3 / 2 },
+            { deck * 3 / 2, deck * 3 / 2 }, { deck * 3 / 2, deck / 2 } };
+        for (float[] corner : corners) {
+            vertices[v++] = corner[0];
+            vertices[v++] = 1;
+            vertices[v++] = corner[1];
+        }
+
+        int[] indices = new int[(SIZE - 1) * (SIZE - 1) * 6 + 6];
+        int i = 0;
+        for (int z = 0; z < SIZE - 1; z++) {
+            for (int x = 0; x < SIZE - 1; x++) {
+                int a = z * SIZE + x, b = (z + 1) * SIZE + x;
+                indices[i++] = a;
+                indices[i++] = b;
+                indices[i++] = b + 1;
+                indices[i++] = a;
+                indices[i++] = b + 1;
+                indices[i++] = a + 1;
+            }
+        }
+        int base = SIZE * SIZE;
+        int[] quad = { 0, 1, 2, 0, 2, 3 };
+        for (int k : quad) {
+            indices[i++] = base + k;
+        }
+
+        TriangleMesh mesh = new TriangleMesh();
+        mesh.vertices = vertices;
+        mesh.indices = indices;
+        return mesh;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.jme3.ai.navmesh.gen;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Collections;
+
+import org.critterai.nmgen.TriangleMesh;
+import org.junit.jupiter.api.Test;
+
+import com.jme3.ai.navmesh.TiledNavMesh;
+
+/**
+ * Checks the publication of the tiles of a {@link NavMeshTileSet} to several
+ * navmeshes.
+ *
+ * @author capdevon
+ */
+public class NavMeshTileSetTest {
+
+    private static final float TILE_SIZE = 4;
+
+    /**
+     * A tile rebaked after two navmeshes were created must reach both of them,
+     * whatever the order of the updates.
+     */
+    @Test
+    public void testUpdateEarlierNavMesh() {
+        NavMeshBuildSettings settings = new NavMeshBuildSettings();
+        settings.setTileSize(TILE_SIZE);
+        NavMeshTileSet tileSet = new NavMeshTileSet(settings);
+        tileSet.putTiles(Collections.singletonList(createTile(1)));
+
+        TiledNavMesh first = tileSet.createNavMesh();
+        TiledNavMesh second = tileSet.createNavMesh();
+        assertEquals(2, first.getTileCellCount(0, 0));
+        assertEquals(2, second.getTileCellCount(0, 0));
+
+        NavMeshTile rebaked = createTile(2);
+        tileSet.putTiles(Collections.singletonList(rebaked));
+        tileSet.publish(second, Collections.singletonList(rebaked));
+        tileSet.publish(first, Collections.singletonList(rebaked));
+        assertEquals(8, second.getTileCellCount(0, 0));
+        assertEquals(8, first.getTileCellCount(0, 0));
+    }
+
+    /**
+     * A flat tile at the origin, split into quads of two triangles.
+     */
+    private static NavMeshTile createTile(int quadsPerSide) {
+        NavMeshTile tile = new NavMeshTile(0, 0, 0, 0, TILE_SIZE, TILE_SIZE);
+        int n = quadsPerSide + 1;
+        float step = TILE_SIZE / quadsPerSide;
+        TriangleMesh mesh = new TriangleMesh();
+        mesh.vertices = new float[n * n * 3];
+        for (int z = 0; z < n; z++) {
+            for (int x = 0; x < n; x++) {
+                int v = (z * n + x) * 3;
+                mesh.vertices[v] = x * step;
+                mesh.vertices[v + 2] = z * step;
+            }
+        }
+        mesh.indices = new int[quadsPerSide * quadsPerSide * 6];
+        int i = 0;
+        for (int z = 0; z < quadsPerSide; z++) {
+            for (int x = 0; x < quadsPerSide; x++) {
+                int a = z * n + x, b = a + n;
+                int[] quad = { a, b, b + 1, a, b + 1, a + 1 };
+                for (int k : quad) {
+                    mesh.indices[i++] = k;
+                }
+            }
+        }
+        tile.setMesh(mesh);
+        return tile;
+    }
+
+}
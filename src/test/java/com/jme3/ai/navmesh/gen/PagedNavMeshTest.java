@@ -0,0 +1,70 @@
+package com.jme3.ai.navmesh.gen;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.critterai.nmgen.TriangleMesh;
+import org.junit.jupiter.api.Test;
+
+import com.jme3.math.Vector3f;
+
+/**
+ * Checks the eviction of the tiles of a {@link PagedNavMesh}.
+ *
+ * @author capdevon
+ */
+public class PagedNavMeshTest {
+
+    private static final int TILES = 10;
+    private static final float TILE_SIZE = 4;
+
+    /**
+     * Resolves the start, then the goal of a path with a budget of a single
+     * lookup: the tiles around the start must stay resident.
+     */
+    @Test
+    public void testStartTilesSurviveGoalLookup() throws IOException {
+        File f = File.createTempFile("paged", ".nmt");
+        try {
+            writeTiles(f);
+            try (NavMeshTileFile file = NavMeshTileFile.open(f)) {
+                PagedNavMesh navMesh = new PagedNavMesh(file, 9 * 2 * PagedNavMesh.BYTES_PER_CELL);
+                assertNotNull(navMesh.findClosestCell(new Vector3f(1, 0, 1)), "start");
+                assertNotNull(navMesh.findClosestCell(new Vector3f(30, 0, 30)), "goal");
+                assertTrue(navMesh.hasTile(0, 0), "start tile evicted");
+                assertTrue(navMesh.hasTile(7, 7), "goal tile evicted");
+
+                // the start is no longer pinned by the next lookup
+                navMesh.findClosestCell(new Vector3f(30, 0, 2));
+                assertFalse(navMesh.hasTile(0, 0), "old tile not evicted");
+            }
+        } finally {
+            f.delete();
+        }
+    }
+
+    /**
+     * Writes a grid of flat tiles of two triangles each.
+     */
+    private static void writeTiles(File f) throws IOException {
+        try (NavMeshTileFile.Writer writer = new NavMeshTileFile.Writer(f, TILE_SIZE, 0.1f)) {
+            for (int z = 0; z < TILES; z++) {
+                for (int x = 0; x < TILES; x++) {
+                    float x0 = x * TILE_SIZE, z0 = z * TILE_SIZE;
+                    float x1 = x0 + TILE_SIZE, z1 = z0 + TILE_SIZE;
+                    NavMeshTile tile = new NavMeshTile(x, z, x0, z0, x1, z1);
+                    TriangleMesh mesh = new TriangleMesh();
+                    mesh.vertices = new float[] { x0, 0, z0, x1, 0, z0, x1, 0, z1, x0, 0, z1 };
+                    mesh.indices = new int[] { 0, 2, 1, 0, 3, 2 };
+                    tile.setMesh(mesh);
+                    writer.write(tile);
+                }
+            }
+        }
+    }
+
+}